@@ -8,20 +8,84 @@ import java.sql.*;
 import java.sql.Date;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
 public class BankingSystemSQLComplete {
 
     // ═══════════════════════════════════════════════════════════════
     //                        DATABASE CONFIGURATION
     // ═══════════════════════════════════════════════════════════════
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/banking_system";
-    private static final String DB_USER = "root";
-    private static final String DB_PASS = "bntyipo43505408^%^*%%^&^&fghhfhh5y56877"; // CHANGE THIS!
+    private static final String DB_URL = System.getProperty("banking.db.url", "jdbc:mysql://localhost:3306/banking_system");
+    private static final String DB_USER = System.getProperty("banking.db.user", "root");
+    private static final String DB_PASS = System.getProperty("banking.db.password", "bntyipo43505408^%^*%%^&^&fghhfhh5y56877"); // CHANGE THIS!
+    private static final int DB_POOL_SIZE = Integer.getInteger("banking.db.poolSize", 20);
+    private static final long DB_POOL_TIMEOUT_MS = 5000;
+    // Comma-separated JDBC URLs; accounts are spread by account_no, shard 0 also holds users
+    private static final String[] DB_SHARD_URLS = System.getProperty("banking.db.shards", DB_URL).split("\\s*,\\s*");
 
     // ═══════════════════════════════════════════════════════════════
     //                        SYSTEM CONSTANTS
@@ -38,17 +102,610 @@ public class BankingSystemSQLComplete {
     private static final double SAVINGS_INTEREST_RATE = 0.04;
     private static final double CHECKING_INTEREST_RATE = 0.02;
     private static final double BUSINESS_INTEREST_RATE = 0.03;
+    private static final double FIXED_INTEREST_RATE = 0.065;
+    private static final double FIXED_EARLY_PENALTY_RATE = 0.01; // rate forfeited on early withdrawal
+    private static final int FIXED_DEFAULT_TERM_MONTHS = 12;
+    private static final int FIXED_MAX_TERM_MONTHS = 120;
+    private static final int MINI_STATEMENT_SIZE = 10;
+
+    // Service Mode
+    private static final int HTTP_PORT = Integer.getInteger("banking.http.port", 8080);
+    private static final int HTTP_BACKLOG = 1024;
+    private static final int HTTP_MAX_BODY_BYTES = 16 * 1024;
+    private static final long SESSION_TIMEOUT_MS = 15 * 60 * 1000L;
+    private static final int PLATFORM_FALLBACK_THREADS = 200;
+    private static final long ASYNC_DEFAULT_TIMEOUT_MS = 10_000;
+
+    // Terminal Protocol
+    private static final int TERMINAL_PORT = Integer.getInteger("banking.terminal.port", 9090);
+    private static final int TERMINAL_BACKLOG = 1024;
+    private static final int TERMINAL_READ_BUFFER_BYTES = 16 * 1024;
+    private static final int TERMINAL_MAX_IN_FLIGHT = 256; // per connection
+
+    // Metrics
+    private static final boolean METRICS_ENABLED =
+            Boolean.parseBoolean(System.getProperty("banking.metrics.enabled", "true"));
+    private static final int METRICS_PORT = Integer.getInteger("banking.metrics.port", 9464);
+    private static final long SLOW_QUERY_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("banking.db.slowQueryMs", 200));
+    private static final boolean ENFORCE_ROUND_TRIP_BUDGETS = Boolean.getBoolean("banking.db.enforceRoundTripBudgets");
+
+    // Startup
+    private static final int STARTUP_WARM_CONNECTIONS =
+            Math.min(Integer.getInteger("banking.startup.warmConnections", 8), DB_POOL_SIZE); // per shard
+    private static final boolean STARTUP_BLOCKING_CATCH_UP = Boolean.getBoolean("banking.startup.blockingCatchUp");
+
+    // Bulk Posting
+    private static final int BULK_CHUNK_ROWS = 5000;
+    private static final int BULK_QUEUE_CHUNKS = 4;
+    private static final int BULK_MAP_WINDOW_BYTES = 256 * 1024 * 1024;
+    private static final String BULK_JDBC_PARAMS = "rewriteBatchedStatements=true";
+
+    // Bulk Onboarding
+    private static final int ONBOARDING_HASH_THREADS =
+            Integer.getInteger("banking.onboarding.hashThreads", Runtime.getRuntime().availableProcessors());
+    private static final int ONBOARDING_MAX_ACCOUNTS = 1000; // per API call
+
+    // Ledger Engine
+    private static final boolean LEDGER_ENABLED = Boolean.getBoolean("banking.ledger.enabled");
+    private static final String LEDGER_JOURNAL = System.getProperty("banking.ledger.journal", "ledger.journal");
+    private static final boolean LEDGER_FSYNC =
+            Boolean.parseBoolean(System.getProperty("banking.ledger.fsync", "true"));
+    private static final int LEDGER_RING_SIZE = 1 << 16;
+    private static final int LEDGER_PERSIST_BATCH = 5000;
+    private static final int LEDGER_PERSIST_QUEUE = 64; // writer batches
+    private static final String LEDGER_SNAPSHOT = System.getProperty("banking.ledger.snapshot", "ledger.snapshot");
+    private static final int LEDGER_SNAPSHOT_MINUTES = Integer.getInteger("banking.ledger.snapshotMinutes", 15);
+    private static final int LEDGER_REPLY_TIMEOUT_MS = Integer.getInteger("banking.ledger.replyTimeoutMs", 10_000);
+
+    // Idempotency
+    private static final int IDEMPOTENCY_CACHE_ENTRIES = Integer.getInteger("banking.idempotency.cacheEntries", 100_000);
+    private static final long IDEMPOTENCY_TTL_MS =
+            TimeUnit.MINUTES.toMillis(Long.getLong("banking.idempotency.ttlMinutes", 24 * 60));
+    private static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
+    // Settlement Window
+    private static final boolean SETTLEMENT_ENABLED = Boolean.getBoolean("banking.settlement.enabled");
+    private static final long SETTLEMENT_WINDOW_MS = Long.getLong("banking.settlement.windowMs", 20);
+    private static final int SETTLEMENT_MAX_BATCH = Integer.getInteger("banking.settlement.maxBatch", 2000);
+
+    // Balance Slots
+    private static final String SLOT_ACCOUNTS = System.getProperty("banking.slots.accounts", "");
+    private static final int SLOT_COUNT = Integer.getInteger("banking.slots.count", 8);
+    private static final long SLOT_REBALANCE_MS = Long.getLong("banking.slots.rebalanceMs", 1000);
+
+    // Optimistic Concurrency
+    private static final int CONCURRENCY_MAX_ATTEMPTS = Integer.getInteger("banking.concurrency.maxAttempts", 5);
+    private static final long CONCURRENCY_BACKOFF_MS = Long.getLong("banking.concurrency.backoffMs", 2);
+
+    // Fixed Deposits
+    private static final int MATURITY_CHUNK_ROWS = 1000;
+    private static final int MATURITY_THREADS = Integer.getInteger("banking.fixed.maturityThreads", 4);
+
+    // Interest Accrual
+    private static final boolean DAILY_ACCRUAL_ENABLED = Boolean.getBoolean("banking.interest.dailyAccrual");
+    private static final int ACCRUAL_RANGE_ACCOUNTS = 100_000;
+
+    // Statements
+    private static final int STATEMENT_RANGE_ACCOUNTS = 10_000;
+    private static final int STATEMENT_THREADS = Integer.getInteger("banking.statements.threads", 4);
+    private static final String STATEMENT_DIR = System.getProperty("banking.statements.dir", "statements");
+
+    // Velocity Checks
+    private static final boolean VELOCITY_ENABLED = Boolean.getBoolean("banking.velocity.enabled");
+    private static final String VELOCITY_ACTION = System.getProperty("banking.velocity.action", "flag");
+    private static final int VELOCITY_BUCKETS = 60; // one per minute
+    private static final int VELOCITY_WINDOW_MINUTES =
+            Math.max(1, Math.min(VELOCITY_BUCKETS, Integer.getInteger("banking.velocity.windowMinutes", 10)));
+    private static final int VELOCITY_MAX_DEBITS = Integer.getInteger("banking.velocity.maxDebits", 5);
+    private static final long VELOCITY_NEW_PAYEE_PAISE = Long.getLong("banking.velocity.newPayeeAmount", 10_000) * 100;
+    private static final double VELOCITY_Z_SCORE =
+            Double.parseDouble(System.getProperty("banking.velocity.zScore", "4"));
+    private static final int VELOCITY_MIN_SAMPLES = 10;
+    private static final int VELOCITY_PAYEES = 16;
+    private static final int VELOCITY_SEED_ROWS = 50;
+    private static final int VELOCITY_MAX_ACCOUNTS = Integer.getInteger("banking.velocity.maxAccounts", 100_000);
+    private static final long VELOCITY_IDLE_MINUTES = Long.getLong("banking.velocity.idleMinutes", 24 * 60);
 
     // ═══════════════════════════════════════════════════════════════
     //                        UTILITY CLASSES
     // ═══════════════════════════════════════════════════════════════
 
     /**
-     * Database connection utility
+     * Database connection utility backed by a fixed-size connection pool.
+     * Connections handed out are proxies whose close() returns them to the pool.
      */
     private static class DBUtil {
+        private static final Pool[] shards = new Pool[DB_SHARD_URLS.length];
+        private static final AtomicInteger nextShard = new AtomicInteger();
+        private static final ThreadLocal<StatementTracker> currentTracker = new ThreadLocal<>();
+
+        static {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new Pool(DB_SHARD_URLS[i]);
+            }
+        }
+
+        /** One database: its idle connections and the permits bounding how many are out */
+        private static final class Pool {
+            final String url;
+            final BlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+            final Semaphore permits = new Semaphore(DB_POOL_SIZE, true);
+
+            Pool(String url) { this.url = url; }
+        }
+
+        /**
+         * Connection to the home shard (users and other global tables)
+         */
         static Connection getConnection() throws SQLException {
-            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+            return acquire(shards[0]);
+        }
+
+        /**
+         * Connection to the shard that owns the given account
+         */
+        static Connection getConnection(int accountNo) throws SQLException {
+            return acquire(shards[shardOf(accountNo)]);
+        }
+
+        static Connection getShardConnection(int shard) throws SQLException {
+            return acquire(shards[shard]);
+        }
+
+        static int shardCount() { return shards.length; }
+
+        static boolean isSharded() { return shards.length > 1; }
+
+        /** Account numbers are local * N + shard, so the owner is recoverable from the number alone */
+        static int shardOf(int accountNo) {
+            return Math.floorMod(accountNo, shards.length);
+        }
+
+        /** Round-robin placement for new accounts */
+        static int nextShard() {
+            return Math.floorMod(nextShard.getAndIncrement(), shards.length);
+        }
+
+        @FunctionalInterface
+        interface ShardQuery<T> {
+            T run(Connection conn) throws SQLException;
+        }
+
+        /**
+         * Run the same query against every shard in parallel; results come back in shard order
+         */
+        static <T> List<T> fanOut(ShardQuery<T> query) throws SQLException {
+            if (shards.length == 1) {
+                try (Connection conn = getShardConnection(0)) {
+                    return Collections.singletonList(query.run(conn));
+                }
+            }
+            StatementTracker tracker = currentTracker.get();
+            List<Future<T>> futures = new ArrayList<>();
+            try {
+                for (int i = 0; i < shards.length; i++) {
+                    int shard = i;
+                    futures.add(FanOut.EXECUTOR.submit(() -> {
+                        setStatementTracker(tracker);
+                        try (Connection conn = getShardConnection(shard)) {
+                            return query.run(conn);
+                        } finally {
+                            setStatementTracker(null);
+                        }
+                    }));
+                }
+                List<T> results = new ArrayList<>(futures.size());
+                for (Future<T> future : futures) {
+                    results.add(future.get());
+                }
+                return results;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted during shard fan-out", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) throw (SQLException) cause;
+                throw new SQLException("Shard query failed", cause);
+            }
+        }
+
+        /** Created on first fan-out so single-database deployments never start it */
+        private static final class FanOut {
+            static final ExecutorService EXECUTOR = ThreadUtil.newPerTaskExecutor("shard-query");
+        }
+
+        private static Connection acquire(Pool pool) throws SQLException {
+            StatementTracker tracker = currentTracker.get();
+            if (tracker != null && tracker.isCancelled()) {
+                throw new SQLException("Operation cancelled");
+            }
+
+            ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+            event.begin();
+            long acquireStart = System.nanoTime();
+            try {
+                if (!pool.permits.tryAcquire(DB_POOL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Timed out waiting for a pooled database connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+
+            try {
+                Connection physical = pool.idle.poll();
+                while (physical != null && physical.isClosed()) {
+                    physical = pool.idle.poll();
+                }
+                boolean created = physical == null;
+                if (created) {
+                    physical = DriverManager.getConnection(pool.url, DB_USER, DB_PASS);
+                }
+                if (METRICS_ENABLED) {
+                    long waited = System.nanoTime() - acquireStart;
+                    Metrics.operation("db.acquireConnection").record(waited, ResultCode.OK);
+                    SqlMetrics.recordConnectionWait(waited);
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.permitsAvailable = pool.permits.availablePermits();
+                    event.newConnection = created;
+                    event.commit();
+                }
+                return pooled(pool, physical);
+            } catch (SQLException | RuntimeException e) {
+                pool.permits.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Stream a large result instead of buffering it: MySQL's driver needs Integer.MIN_VALUE,
+         * which other drivers reject
+         */
+        static void streamRows(Statement st) throws SQLException {
+            boolean mysql = st.getConnection().getMetaData().getURL().startsWith("jdbc:mysql:");
+            st.setFetchSize(mysql ? Integer.MIN_VALUE : 1000);
+        }
+
+        /**
+         * Open an unpooled connection with extra MySQL driver parameters, for long-running batch
+         * jobs; other drivers get the plain URL
+         */
+        static Connection openDedicated(String params) throws SQLException {
+            return openDedicated(0, params);
+        }
+
+        static Connection openDedicated(int shard, String params) throws SQLException {
+            String url = shards[shard].url;
+            if (url.startsWith("jdbc:mysql:")) {
+                url += (url.contains("?") ? "&" : "?") + params;
+            }
+            return DriverManager.getConnection(url, DB_USER, DB_PASS);
+        }
+
+        /**
+         * Create any missing tables (same DDL as the README), for scratch and embedded databases
+         */
+        static void ensureSchema(Connection conn) throws SQLException {
+            String[] ddl = {
+                """
+                CREATE TABLE IF NOT EXISTS accounts (
+                  account_no INT PRIMARY KEY AUTO_INCREMENT,
+                  holder_name VARCHAR(100) NOT NULL,
+                  account_type VARCHAR(50) NOT NULL,
+                  balance DOUBLE NOT NULL DEFAULT 0,
+                  active BOOLEAN NOT NULL DEFAULT TRUE,
+                  pin_hash VARCHAR(255),
+                  last_interest_date DATE,
+                  failed_login_attempts INT DEFAULT 0,
+                  locked BOOLEAN NOT NULL DEFAULT FALSE,
+                  daily_limit DOUBLE DEFAULT 0,
+                  last_daily_reset DATE,
+                  version INT NOT NULL DEFAULT 0
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS transactions (
+                  id INT PRIMARY KEY AUTO_INCREMENT,
+                  account_no INT NOT NULL,
+                  type VARCHAR(50) NOT NULL,
+                  amount DOUBLE NOT NULL,
+                  memo VARCHAR(255),
+                  txn_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+                  reverse_of INT,
+                  idempotency_key VARCHAR(64),
+                  FOREIGN KEY (account_no) REFERENCES accounts(account_no),
+                  CONSTRAINT uq_transactions_idempotency UNIQUE (account_no, idempotency_key),
+                  CONSTRAINT uq_transactions_reverse_of UNIQUE (reverse_of)
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS users (
+                  user_id INT PRIMARY KEY AUTO_INCREMENT,
+                  username VARCHAR(50) NOT NULL UNIQUE,
+                  full_name VARCHAR(100),
+                  password_hash VARCHAR(255) NOT NULL,
+                  role ENUM('USER','ADMIN') DEFAULT 'USER'
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS scheduled_transactions (
+                  id INT PRIMARY KEY AUTO_INCREMENT,
+                  account_no INT NOT NULL,
+                  type VARCHAR(50) NOT NULL,
+                  amount DOUBLE NOT NULL,
+                  memo VARCHAR(255),
+                  schedule_date DATE,
+                  executed BOOLEAN DEFAULT FALSE,
+                  FOREIGN KEY (account_no) REFERENCES accounts(account_no)
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS audit_log (
+                  id INT PRIMARY KEY AUTO_INCREMENT,
+                  event_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+                  user_id INT,
+                  account_no INT,
+                  event_text VARCHAR(255),
+                  FOREIGN KEY (user_id) REFERENCES users(user_id),
+                  FOREIGN KEY (account_no) REFERENCES accounts(account_no)
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS fixed_deposits (
+                  account_no INT PRIMARY KEY,
+                  principal DOUBLE NOT NULL,
+                  annual_rate DOUBLE NOT NULL,
+                  term_months INT NOT NULL,
+                  start_date DATE NOT NULL,
+                  maturity_date DATE NOT NULL,
+                  status VARCHAR(10) NOT NULL DEFAULT 'ACTIVE',
+                  settled_date DATE,
+                  interest_paid DOUBLE,
+                  FOREIGN KEY (account_no) REFERENCES accounts(account_no),
+                  INDEX idx_fixed_deposits_due (status, maturity_date)
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS interest_accruals (
+                  account_no INT PRIMARY KEY,
+                  accrued_micros BIGINT NOT NULL DEFAULT 0,
+                  accrued_through DATE,
+                  last_posted DATE,
+                  FOREIGN KEY (account_no) REFERENCES accounts(account_no)
+                )"""
+            };
+            try (Statement st = conn.createStatement()) {
+                for (String sql : ddl) {
+                    st.execute(sql);
+                }
+            }
+        }
+
+        /**
+         * Add the idempotency key column and its unique index to transactions on every shard,
+         * for databases created before keys existed
+         */
+        static void ensureIdempotencyKeys() throws SQLException {
+            for (int shard = 0; shard < shards.length; shard++) {
+                try (Connection conn = getShardConnection(shard);
+                     Statement st = conn.createStatement()) {
+                    try {
+                        st.executeQuery("SELECT idempotency_key FROM transactions WHERE 1 = 0").close();
+                        continue;
+                    } catch (SQLException missing) {
+                        // fall through and add it
+                    }
+                    System.out.println("Adding transactions.idempotency_key on shard " + shard + "...");
+                    st.execute("ALTER TABLE transactions ADD COLUMN idempotency_key VARCHAR(64)");
+                    st.execute("ALTER TABLE transactions ADD CONSTRAINT uq_transactions_idempotency"
+                            + " UNIQUE (account_no, idempotency_key)");
+                }
+            }
+        }
+
+        /**
+         * Add the accounts.version column on every shard, for databases created before
+         * optimistic concurrency control
+         */
+        static void ensureAccountVersions() throws SQLException {
+            for (int shard = 0; shard < shards.length; shard++) {
+                try (Connection conn = getShardConnection(shard);
+                     Statement st = conn.createStatement()) {
+                    try {
+                        st.executeQuery("SELECT version FROM accounts WHERE 1 = 0").close();
+                        continue;
+                    } catch (SQLException missing) {
+                        // fall through and add it
+                    }
+                    System.out.println("Adding accounts.version on shard " + shard + "...");
+                    st.execute("ALTER TABLE accounts ADD COLUMN version INT NOT NULL DEFAULT 0");
+                }
+            }
+        }
+
+        /**
+         * Create the fixed_deposits table on every shard, for databases created before term
+         * deposits existed
+         */
+        static void ensureFixedDeposits() throws SQLException {
+            for (int shard = 0; shard < shards.length; shard++) {
+                try (Connection conn = getShardConnection(shard);
+                     Statement st = conn.createStatement()) {
+                    st.execute("""
+                        CREATE TABLE IF NOT EXISTS fixed_deposits (
+                          account_no INT PRIMARY KEY,
+                          principal DOUBLE NOT NULL,
+                          annual_rate DOUBLE NOT NULL,
+                          term_months INT NOT NULL,
+                          start_date DATE NOT NULL,
+                          maturity_date DATE NOT NULL,
+                          status VARCHAR(10) NOT NULL DEFAULT 'ACTIVE',
+                          settled_date DATE,
+                          interest_paid DOUBLE,
+                          FOREIGN KEY (account_no) REFERENCES accounts(account_no),
+                          INDEX idx_fixed_deposits_due (status, maturity_date)
+                        )""");
+                }
+            }
+        }
+
+        /**
+         * Create the interest_accruals table on every shard, for databases created before
+         * daily accrual existed
+         */
+        static void ensureInterestAccruals() throws SQLException {
+            for (int shard = 0; shard < shards.length; shard++) {
+                try (Connection conn = getShardConnection(shard);
+                     Statement st = conn.createStatement()) {
+                    st.execute("""
+                        CREATE TABLE IF NOT EXISTS interest_accruals (
+                          account_no INT PRIMARY KEY,
+                          accrued_micros BIGINT NOT NULL DEFAULT 0,
+                          accrued_through DATE,
+                          last_posted DATE,
+                          FOREIGN KEY (account_no) REFERENCES accounts(account_no)
+                        )""");
+                }
+            }
+        }
+
+        /**
+         * Add the unique index on transactions.reverse_of on every shard, so a row can be
+         * reversed at most once
+         */
+        static void ensureReversalIndex() throws SQLException {
+            for (int shard = 0; shard < shards.length; shard++) {
+                try (Connection conn = getShardConnection(shard)) {
+                    if (hasUniqueIndexOn(conn, "transactions", "reverse_of")
+                            || hasUniqueIndexOn(conn, "TRANSACTIONS", "reverse_of")) {
+                        continue;
+                    }
+                    System.out.println("Adding unique index on transactions.reverse_of on shard " + shard + "...");
+                    try (Statement st = conn.createStatement()) {
+                        st.execute("ALTER TABLE transactions ADD CONSTRAINT uq_transactions_reverse_of UNIQUE (reverse_of)");
+                    }
+                }
+            }
+        }
+
+        private static boolean hasUniqueIndexOn(Connection conn, String table, String column) throws SQLException {
+            try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, table, true, false)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Create the tables sharding relies on and seed each shard's account sequence past its
+         * highest existing number. users lives on shard 0 only, so the other shards drop the
+         * audit_log.user_id foreign key that would refuse every user-attributed audit row.
+         */
+        static void ensureShards() throws SQLException {
+            String[] ddl = {
+                """
+                CREATE TABLE IF NOT EXISTS account_sequence (
+                  shard_id INT PRIMARY KEY,
+                  next_local INT NOT NULL
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS transfer_intents (
+                  intent_key VARCHAR(36) PRIMARY KEY,
+                  from_account INT NOT NULL,
+                  to_account INT NOT NULL,
+                  amount DOUBLE NOT NULL,
+                  debit_txn_id INT NOT NULL,
+                  state VARCHAR(16) NOT NULL,
+                  created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                  INDEX idx_transfer_intents_state (state)
+                )""",
+                """
+                CREATE TABLE IF NOT EXISTS transfer_receipts (
+                  intent_key VARCHAR(36) PRIMARY KEY,
+                  account_no INT NOT NULL,
+                  amount DOUBLE NOT NULL,
+                  received_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                )"""
+            };
+            String seedSql = """
+                INSERT INTO account_sequence (shard_id, next_local)
+                SELECT ?, m.next_local
+                FROM (SELECT FLOOR(COALESCE(MAX(account_no), 0) / ?) + 1 AS next_local FROM accounts) m
+                WHERE NOT EXISTS (SELECT 1 FROM account_sequence WHERE shard_id = ?)
+                """;
+            for (int shard = 0; shard < shards.length; shard++) {
+                try (Connection conn = getShardConnection(shard)) {
+                    try (Statement st = conn.createStatement()) {
+                        for (String sql : ddl) {
+                            st.execute(sql);
+                        }
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(seedSql)) {
+                        ps.setInt(1, shard);
+                        ps.setInt(2, shards.length);
+                        ps.setInt(3, shard);
+                        ps.executeUpdate();
+                    }
+                    if (shard > 0) {
+                        dropForeignKeysTo(conn, "audit_log", "users");
+                        dropForeignKeysTo(conn, "AUDIT_LOG", "users");
+                    }
+                }
+            }
+        }
+
+        private static void dropForeignKeysTo(Connection conn, String table, String referenced) throws SQLException {
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = conn.getMetaData().getImportedKeys(conn.getCatalog(), null, table)) {
+                while (rs.next()) {
+                    if (referenced.equalsIgnoreCase(rs.getString("PKTABLE_NAME")) && rs.getString("FK_NAME") != null) {
+                        names.add(rs.getString("FK_NAME"));
+                    }
+                }
+            }
+            try (Statement st = conn.createStatement()) {
+                for (String name : names) {
+                    System.out.println("Dropping " + table + " foreign key " + name + " to " + referenced + "...");
+                    st.execute("ALTER TABLE " + table + " DROP CONSTRAINT " + name);
+                }
+            }
+        }
+
+        /**
+         * Take the next account number owned by a shard; like AUTO_INCREMENT, numbers of
+         * failed inserts are not reused
+         */
+        static int allocateAccountNo(Connection conn, int shard) throws SQLException {
+            return allocateAccountNos(conn, shard, 1);
+        }
+
+        /**
+         * Reserve count consecutive numbers owned by a shard; the i-th is the returned number
+         * plus i * shardCount()
+         */
+        static int allocateAccountNos(Connection conn, int shard, int count) throws SQLException {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(
+                         "SELECT next_local FROM account_sequence WHERE shard_id = ? FOR UPDATE");
+                 PreparedStatement update = conn.prepareStatement(
+                         "UPDATE account_sequence SET next_local = next_local + ? WHERE shard_id = ?")) {
+                select.setInt(1, shard);
+                ResultSet rs = select.executeQuery();
+                if (!rs.next()) {
+                    throw new SQLException("No account sequence for shard " + shard);
+                }
+                int local = rs.getInt(1);
+                update.setInt(1, count);
+                update.setInt(2, shard);
+                update.executeUpdate();
+                conn.commit();
+                return local * shards.length + shard;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
 
         static void closeQuietly(AutoCloseable... resources) {
@@ -58,12 +715,120 @@ public class BankingSystemSQLComplete {
                 } catch (Exception ignored) {}
             }
         }
+
+        /**
+         * Close all idle pooled connections
+         */
+        static void shutdown() {
+            for (Pool pool : shards) {
+                Connection conn;
+                while ((conn = pool.idle.poll()) != null) {
+                    closeQuietly(conn);
+                }
+            }
+        }
+
+        private static Connection pooled(Pool pool, Connection physical) {
+            AtomicBoolean returned = new AtomicBoolean();
+            InvocationHandler handler = (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.equals("close")) {
+                    if (returned.compareAndSet(false, true)) {
+                        release(pool, physical);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed") && returned.get()) {
+                    return true;
+                }
+                if (returned.get()) {
+                    throw new SQLException("Connection has already been returned to the pool");
+                }
+                Object result;
+                try {
+                    result = method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Statement) {
+                    StatementTracker tracker = currentTracker.get();
+                    if (tracker != null) {
+                        tracker.register((Statement) result);
+                    }
+                    if (METRICS_ENABLED) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                        result = SqlMetrics.instrument((Statement) result, sql, method.getReturnType());
+                    }
+                }
+                return result;
+            };
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        }
+
+        /**
+         * Track statements opened by the current thread so that another thread can cancel them
+         */
+        static void setStatementTracker(StatementTracker tracker) {
+            if (tracker == null) {
+                currentTracker.remove();
+            } else {
+                currentTracker.set(tracker);
+            }
+        }
+
+        /**
+         * Statements opened on behalf of one logical call; cancel() aborts the in-flight
+         * query and makes any further statement or connection request fail fast
+         */
+        static final class StatementTracker {
+            private final Queue<Statement> statements = new ConcurrentLinkedQueue<>();
+            private volatile boolean cancelled;
+
+            boolean isCancelled() { return cancelled; }
+
+            void register(Statement statement) throws SQLException {
+                if (cancelled) {
+                    closeQuietly(statement);
+                    throw new SQLException("Operation cancelled");
+                }
+                statements.add(statement);
+            }
+
+            void cancel() {
+                cancelled = true;
+                for (Statement statement : statements) {
+                    try {
+                        statement.cancel();
+                    } catch (SQLException ignored) {
+                        // already closed or finished
+                    }
+                }
+            }
+        }
+
+        private static void release(Pool pool, Connection physical) {
+            try {
+                if (!physical.isClosed()) {
+                    // Never hand out a connection with a half-finished transaction
+                    if (!physical.getAutoCommit()) {
+                        physical.rollback();
+                        physical.setAutoCommit(true);
+                    }
+                    pool.idle.offer(physical);
+                }
+            } catch (SQLException e) {
+                closeQuietly(physical);
+            } finally {
+                pool.permits.release();
+            }
+        }
     }
 
     /**
      * Security utilities for PIN hashing and validation
      */
-    private static class SecurityUtil {
+    static class SecurityUtil {
         static String hashPin(String pin) {
             try {
                 MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -94,12 +859,12 @@ public class BankingSystemSQLComplete {
     /**
      * Input validation utilities
      */
-    private static class InputUtil {
+    static class InputUtil {
         static double getDouble(String prompt) {
             while (true) {
                 try {
                     System.out.print(prompt);
-                    return Double.parseDouble(sc.nextLine().trim());
+                    return parseDouble(sc.nextLine());
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid number. Please try again.");
                 }
@@ -110,13 +875,21 @@ public class BankingSystemSQLComplete {
             while (true) {
                 try {
                     System.out.print(prompt);
-                    return Integer.parseInt(sc.nextLine().trim());
+                    return parseInt(sc.nextLine());
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid number. Please try again.");
                 }
             }
         }
 
+        static double parseDouble(String line) {
+            return Double.parseDouble(line.trim());
+        }
+
+        static int parseInt(String line) {
+            return Integer.parseInt(line.trim());
+        }
+
         static String getString(String prompt) {
             System.out.print(prompt);
             return sc.nextLine().trim();
@@ -133,62 +906,421 @@ public class BankingSystemSQLComplete {
         }
     }
 
-    // ═══════════════════════════════════════════════════════════════
-    //                        DATA CLASSES
-    // ═══════════════════════════════════════════════════════════════
-
     /**
-     * Account data class
+     * Thread factory helpers
      */
-    static class Account {
-        private int accountNo;
-        private String holderName;
-        private String accountType;
-        private BigDecimal balance;
-        private boolean active;
-        private String pinHash;
-        private LocalDate lastInterestDate;
-        private int failedLoginAttempts;
-        private boolean locked;
-        private BigDecimal dailyLimit;
-        private LocalDate lastDailyReset;
-        private LocalDateTime createdDate;
-
-        // Constructors
-        public Account() {}
-
-        public Account(int accountNo, String holderName, String accountType,
-                       BigDecimal balance, boolean active, String pinHash,
-                       LocalDate lastInterestDate, int failedLoginAttempts,
-                       boolean locked, BigDecimal dailyLimit, LocalDate lastDailyReset) {
-            this.accountNo = accountNo;
-            this.holderName = holderName;
-            this.accountType = accountType;
-            this.balance = balance;
-            this.active = active;
-            this.pinHash = pinHash;
-            this.lastInterestDate = lastInterestDate;
-            this.failedLoginAttempts = failedLoginAttempts;
-            this.locked = locked;
-            this.dailyLimit = dailyLimit;
-            this.lastDailyReset = lastDailyReset;
+    private static class ThreadUtil {
+        /**
+         * One virtual thread per task on JDK 21+, otherwise a bounded pool of platform threads
+         */
+        static ExecutorService newPerTaskExecutor(String name) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                AtomicInteger counter = new AtomicInteger();
+                return Executors.newFixedThreadPool(PLATFORM_FALLBACK_THREADS, r -> {
+                    Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
         }
 
-        // Getters and Setters
-        public int getAccountNo() { return accountNo; }
-        public void setAccountNo(int accountNo) { this.accountNo = accountNo; }
+        /**
+         * One thread per task with no bound: virtual threads on JDK 21+, otherwise platform
+         * threads. Meant for load tools that need every task running at once.
+         */
+        static ExecutorService newThreadPerTaskExecutor(String name) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                AtomicInteger counter = new AtomicInteger();
+                return Executors.newCachedThreadPool(r -> {
+                    Thread thread = new Thread(null, r, name + "-" + counter.incrementAndGet(), 256 * 1024);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
 
-        public String getHolderName() { return holderName; }
-        public void setHolderName(String holderName) { this.holderName = holderName; }
+    /**
+     * Minimal JSON encoding/decoding for the service API
+     */
+    static class JsonUtil {
 
-        public String getAccountType() { return accountType; }
-        public void setAccountType(String accountType) { this.accountType = accountType; }
+        static String toJson(Object value) {
+            StringBuilder sb = new StringBuilder();
+            write(sb, value);
+            return sb.toString();
+        }
 
-        public BigDecimal getBalance() { return balance; }
-        public void setBalance(BigDecimal balance) { this.balance = balance; }
+        private static void write(StringBuilder sb, Object value) {
+            if (value == null) {
+                sb.append("null");
+            } else if (value instanceof BigDecimal) {
+                sb.append(((BigDecimal) value).toPlainString());
+            } else if (value instanceof Number || value instanceof Boolean) {
+                sb.append(value);
+            } else if (value instanceof Map) {
+                sb.append('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!first) sb.append(',');
+                    first = false;
+                    writeString(sb, String.valueOf(entry.getKey()));
+                    sb.append(':');
+                    write(sb, entry.getValue());
+                }
+                sb.append('}');
+            } else if (value instanceof Collection) {
+                sb.append('[');
+                boolean first = true;
+                for (Object item : (Collection<?>) value) {
+                    if (!first) sb.append(',');
+                    first = false;
+                    write(sb, item);
+                }
+                sb.append(']');
+            } else {
+                writeString(sb, value.toString());
+            }
+        }
 
-        public boolean isActive() { return active; }
-        public void setActive(boolean active) { this.active = active; }
+        private static void writeString(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                    }
+                }
+            }
+            sb.append('"');
+        }
+
+        /**
+         * Parse JSON text into Map/List/String/BigDecimal/Boolean/null
+         */
+        static Object parse(String json) {
+            Parser parser = new Parser(json);
+            Object value = parser.readValue();
+            parser.skipWhitespace();
+            if (parser.pos != json.length()) {
+                throw new IllegalArgumentException("Unexpected trailing content at " + parser.pos);
+            }
+            return value;
+        }
+
+        private static class Parser {
+            private final String text;
+            private int pos;
+
+            Parser(String text) {
+                this.text = text;
+            }
+
+            Object readValue() {
+                skipWhitespace();
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("Unexpected end of input");
+                }
+                char c = text.charAt(pos);
+                if (c == '{') return readObject();
+                if (c == '[') return readArray();
+                if (c == '"') return readString();
+                if (text.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+                if (text.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+                if (text.startsWith("null", pos)) { pos += 4; return null; }
+                return readNumber();
+            }
+
+            private Map<String, Object> readObject() {
+                Map<String, Object> map = new LinkedHashMap<>();
+                pos++;
+                skipWhitespace();
+                if (peek() == '}') { pos++; return map; }
+                while (true) {
+                    skipWhitespace();
+                    if (peek() != '"') {
+                        throw new IllegalArgumentException("Expected field name at " + pos);
+                    }
+                    String key = readString();
+                    skipWhitespace();
+                    expect(':');
+                    map.put(key, readValue());
+                    skipWhitespace();
+                    if (peek() == ',') { pos++; continue; }
+                    expect('}');
+                    return map;
+                }
+            }
+
+            private List<Object> readArray() {
+                List<Object> list = new ArrayList<>();
+                pos++;
+                skipWhitespace();
+                if (peek() == ']') { pos++; return list; }
+                while (true) {
+                    list.add(readValue());
+                    skipWhitespace();
+                    if (peek() == ',') { pos++; continue; }
+                    expect(']');
+                    return list;
+                }
+            }
+
+            private String readString() {
+                StringBuilder sb = new StringBuilder();
+                pos++;
+                while (pos < text.length()) {
+                    char c = text.charAt(pos++);
+                    if (c == '"') return sb.toString();
+                    if (c != '\\') { sb.append(c); continue; }
+                    if (pos >= text.length()) break;
+                    char esc = text.charAt(pos++);
+                    switch (esc) {
+                        case 'n' -> sb.append('\n');
+                        case 'r' -> sb.append('\r');
+                        case 't' -> sb.append('\t');
+                        case 'b' -> sb.append('\b');
+                        case 'f' -> sb.append('\f');
+                        case 'u' -> {
+                            if (pos + 4 > text.length()) {
+                                throw new IllegalArgumentException("Bad unicode escape at " + pos);
+                            }
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                        }
+                        default -> sb.append(esc);
+                    }
+                }
+                throw new IllegalArgumentException("Unterminated string");
+            }
+
+            private BigDecimal readNumber() {
+                int start = pos;
+                while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw new IllegalArgumentException("Unexpected character at " + pos);
+                }
+                try {
+                    return new BigDecimal(text.substring(start, pos));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number at " + start);
+                }
+            }
+
+            private char peek() {
+                return pos < text.length() ? text.charAt(pos) : '\0';
+            }
+
+            private void expect(char c) {
+                if (peek() != c) {
+                    throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+                }
+                pos++;
+            }
+
+            void skipWhitespace() {
+                while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Command-line option parsing for the tool modes (key=value arguments)
+     */
+    private static class CliUtil {
+        static Map<String, String> parseOptions(String[] args) {
+            Map<String, String> options = new HashMap<>();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq > 0 && !arg.startsWith("--")) {
+                    options.put(arg.substring(0, eq), arg.substring(eq + 1));
+                }
+            }
+            return options;
+        }
+
+        static int intOption(Map<String, String> options, String name, int defaultValue) {
+            String value = options.get(name);
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        }
+    }
+
+    /**
+     * Log-linear latency histogram in the style of HdrHistogram. Recording is lock-free
+     * and allocation-free; values are nanoseconds with roughly 1.5% precision.
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 7;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF_BUCKETS = SUB_BUCKETS / 2;
+        private static final int MAX_BITS = 40; // ~18 minutes in nanoseconds
+        private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+        private final AtomicLongArray counts =
+                new AtomicLongArray(SUB_BUCKETS + (MAX_BITS - SUB_BUCKET_BITS) * HALF_BUCKETS);
+        private final LongAdder totalCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+            counts.incrementAndGet(indexOf(value));
+            totalCount.increment();
+            totalNanos.add(value);
+            if (value > maxNanos.get()) {
+                maxNanos.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        long getCount() { return totalCount.sum(); }
+
+        long getMaxNanos() { return maxNanos.get(); }
+
+        long getTotalNanos() { return totalNanos.sum(); }
+
+        double getMeanNanos() {
+            long count = totalCount.sum();
+            return count == 0 ? 0 : (double) totalNanos.sum() / count;
+        }
+
+        /**
+         * Value at the given percentile (0-100), in nanoseconds
+         */
+        long percentile(double percentile) {
+            long count = totalCount.sum();
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) {
+                    return Math.min(valueAt(i), maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length(); i++) {
+                long c = other.counts.get(i);
+                if (c != 0) {
+                    counts.addAndGet(i, c);
+                }
+            }
+            totalCount.add(other.totalCount.sum());
+            totalNanos.add(other.totalNanos.sum());
+            maxNanos.accumulateAndGet(other.maxNanos.get(), Math::max);
+        }
+
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            int shift = msb - SUB_BUCKET_BITS + 1;
+            int top = (int) (value >>> shift);
+            return SUB_BUCKETS + (shift - 1) * HALF_BUCKETS + (top - HALF_BUCKETS);
+        }
+
+        private static long valueAt(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int offset = index - SUB_BUCKETS;
+            int shift = offset / HALF_BUCKETS + 1;
+            long top = offset % HALF_BUCKETS + HALF_BUCKETS;
+            return (top << shift) + (1L << (shift - 1));
+        }
+
+        /**
+         * One-line summary in milliseconds
+         */
+        String summary() {
+            return String.format("n=%d mean=%.3fms p50=%.3fms p95=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                    getCount(), getMeanNanos() / 1e6, percentile(50) / 1e6, percentile(95) / 1e6,
+                    percentile(99) / 1e6, percentile(99.9) / 1e6, getMaxNanos() / 1e6);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        DATA CLASSES
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Account data class
+     */
+    static class Account {
+        private int accountNo;
+        private String holderName;
+        private String accountType;
+        private BigDecimal balance;
+        private boolean active;
+        private String pinHash;
+        private LocalDate lastInterestDate;
+        private int failedLoginAttempts;
+        private boolean locked;
+        private BigDecimal dailyLimit;
+        private LocalDate lastDailyReset;
+        private LocalDateTime createdDate;
+        private int version;
+
+        // Constructors
+        public Account() {}
+
+        public Account(int accountNo, String holderName, String accountType,
+                       BigDecimal balance, boolean active, String pinHash,
+                       LocalDate lastInterestDate, int failedLoginAttempts,
+                       boolean locked, BigDecimal dailyLimit, LocalDate lastDailyReset) {
+            this.accountNo = accountNo;
+            this.holderName = holderName;
+            this.accountType = accountType;
+            this.balance = balance;
+            this.active = active;
+            this.pinHash = pinHash;
+            this.lastInterestDate = lastInterestDate;
+            this.failedLoginAttempts = failedLoginAttempts;
+            this.locked = locked;
+            this.dailyLimit = dailyLimit;
+            this.lastDailyReset = lastDailyReset;
+        }
+
+        // Getters and Setters
+        public int getAccountNo() { return accountNo; }
+        public void setAccountNo(int accountNo) { this.accountNo = accountNo; }
+
+        public String getHolderName() { return holderName; }
+        public void setHolderName(String holderName) { this.holderName = holderName; }
+
+        public String getAccountType() { return accountType; }
+        public void setAccountType(String accountType) { this.accountType = accountType; }
+
+        public BigDecimal getBalance() { return balance; }
+        public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+        public boolean isActive() { return active; }
+        public void setActive(boolean active) { this.active = active; }
 
         public String getPinHash() { return pinHash; }
         public void setPinHash(String pinHash) { this.pinHash = pinHash; }
@@ -210,6 +1342,9 @@ public class BankingSystemSQLComplete {
 
         public LocalDateTime getCreatedDate() { return createdDate; }
         public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
+
+        public int getVersion() { return version; }
+        public void setVersion(int version) { this.version = version; }
     }
 
     /**
@@ -297,6 +1432,136 @@ public class BankingSystemSQLComplete {
         public void setExecuted(boolean executed) { this.executed = executed; }
     }
 
+    /**
+     * Outcome codes for business operations
+     */
+    enum ResultCode {
+        OK,
+        INVALID_INPUT,
+        NOT_FOUND,
+        ACCOUNT_NOT_FOUND,
+        ACCOUNT_INACTIVE,
+        ACCOUNT_LOCKED,
+        INSUFFICIENT_FUNDS,
+        LIMIT_EXCEEDED,
+        AUTH_FAILED,
+        DB_ERROR,
+        TIMEOUT,
+        CANCELLED,
+        CONFLICT
+    }
+
+    /**
+     * Result of a business operation: an outcome code, a user-facing message and an optional value
+     */
+    static class Result<T> {
+        private final ResultCode code;
+        private final String message;
+        private final T value;
+
+        private Result(ResultCode code, String message, T value) {
+            this.code = code;
+            this.message = message;
+            this.value = value;
+        }
+
+        static <T> Result<T> ok(T value, String message) {
+            return new Result<>(ResultCode.OK, message, value);
+        }
+
+        static <T> Result<T> fail(ResultCode code, String message) {
+            return new Result<>(code, message, null);
+        }
+
+        public boolean isSuccess() { return code == ResultCode.OK; }
+        public ResultCode getCode() { return code; }
+        public String getMessage() { return message; }
+        public T getValue() { return value; }
+    }
+
+    /**
+     * Failure carrying a result code, used where a Result cannot be returned
+     * (HTTP handlers, exceptionally-completed futures)
+     */
+    static class BankingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final ResultCode code;
+
+        BankingException(ResultCode code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public ResultCode getCode() { return code; }
+    }
+
+    /**
+     * One page of a larger, ordered result
+     */
+    static class Page<T> {
+        private final List<T> items;
+        private final int page;
+        private final int pageSize;
+        private final boolean hasMore;
+
+        public Page(List<T> items, int page, int pageSize, boolean hasMore) {
+            this.items = items;
+            this.page = page;
+            this.pageSize = pageSize;
+            this.hasMore = hasMore;
+        }
+
+        public List<T> getItems() { return items; }
+        public int getPage() { return page; }
+        public int getPageSize() { return pageSize; }
+        public boolean hasMore() { return hasMore; }
+    }
+
+    /**
+     * Account summary: account details plus transaction totals
+     */
+    static class AccountSummary {
+        private final Account account;
+        private int totalTransactions;
+        private BigDecimal totalCredits = BigDecimal.ZERO;
+        private BigDecimal totalDebits = BigDecimal.ZERO;
+
+        public AccountSummary(Account account) {
+            this.account = account;
+        }
+
+        public Account getAccount() { return account; }
+
+        public int getTotalTransactions() { return totalTransactions; }
+        public void setTotalTransactions(int totalTransactions) { this.totalTransactions = totalTransactions; }
+
+        public BigDecimal getTotalCredits() { return totalCredits; }
+        public void setTotalCredits(BigDecimal totalCredits) { this.totalCredits = totalCredits; }
+
+        public BigDecimal getTotalDebits() { return totalDebits; }
+        public void setTotalDebits(BigDecimal totalDebits) { this.totalDebits = totalDebits; }
+    }
+
+    /**
+     * Outcome of a successful user login
+     */
+    static class LoginResult {
+        private final Account account;
+        private final BigDecimal interestCredited;
+        private final List<ScheduledTransaction> executedSchedules;
+
+        public LoginResult(Account account, BigDecimal interestCredited, List<ScheduledTransaction> executedSchedules) {
+            this.account = account;
+            this.interestCredited = interestCredited;
+            this.executedSchedules = executedSchedules;
+        }
+
+        public Account getAccount() { return account; }
+        public BigDecimal getInterestCredited() { return interestCredited; }
+        public List<ScheduledTransaction> getExecutedSchedules() { return executedSchedules; }
+    }
+
     // ═══════════════════════════════════════════════════════════════
     //                        AUDIT LOGGER
     // ═══════════════════════════════════════════════════════════════
@@ -311,9 +1576,21 @@ public class BankingSystemSQLComplete {
         }
 
         void log(String eventType, String description, Integer userId, Integer accountNo) {
+            try (Connection conn = accountNo != null ? DBUtil.getConnection(accountNo) : DBUtil.getConnection()) {
+                log(conn, eventType, description, userId, accountNo);
+            } catch (SQLException e) {
+                System.err.println("Failed to log audit event: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Write the audit row on the caller's connection, so it commits or rolls back with the
+         * change it describes
+         */
+        static void log(Connection conn, String eventType, String description, Integer userId, Integer accountNo)
+                throws SQLException {
             String sql = "INSERT INTO audit_log (event_time, user_id, account_no, event_text) VALUES (NOW(), ?, ?, ?)";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
 
                 if (userId != null) {
                     ps.setInt(1, userId);
@@ -329,1950 +1606,12289 @@ public class BankingSystemSQLComplete {
 
                 ps.setString(3, eventType + " | " + description);
                 ps.executeUpdate();
-
-            } catch (SQLException e) {
-                System.err.println("Failed to log audit event: " + e.getMessage());
             }
         }
 
-        void viewAuditLog(int limit) {
+        /**
+         * Most recent audit events, newest first
+         */
+        Result<List<Map<String, Object>>> getRecentEvents(int limit) {
             String sql = "SELECT event_time, event_text FROM audit_log ORDER BY event_time DESC LIMIT ?";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ps.setInt(1, limit);
-                ResultSet rs = ps.executeQuery();
-
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("           AUDIT LOG (Last " + limit + ")");
-                System.out.println("═══════════════════════════════════════");
-                System.out.printf("%-20s %s%n", "Time", "Event");
-                System.out.println("─────────────────────────────────────────");
+            try {
+                List<List<Map<String, Object>>> perShard = DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setInt(1, limit);
+                        ResultSet rs = ps.executeQuery();
+
+                        List<Map<String, Object>> events = new ArrayList<>();
+                        while (rs.next()) {
+                            Map<String, Object> event = new LinkedHashMap<>();
+                            event.put("eventTime", rs.getTimestamp("event_time").toLocalDateTime());
+                            event.put("eventText", rs.getString("event_text"));
+                            events.add(event);
+                        }
+                        return events;
+                    }
+                });
 
-                while (rs.next()) {
-                    System.out.printf("%-20s %s%n",
-                            rs.getTimestamp("event_time").toLocalDateTime().format(DATE_FMT),
-                            rs.getString("event_text"));
-                }
+                // Each shard's newest N, merged and cut back to N overall
+                List<Map<String, Object>> events = new ArrayList<>();
+                perShard.forEach(events::addAll);
+                events.sort(Comparator.comparing((Map<String, Object> e) -> (LocalDateTime) e.get("eventTime")).reversed());
+                return Result.ok(events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events, null);
 
             } catch (SQLException e) {
-                System.out.println("Error viewing audit log: " + e.getMessage());
+                return Result.fail(ResultCode.DB_ERROR, "Error viewing audit log: " + e.getMessage());
             }
         }
     }
 
     // ═══════════════════════════════════════════════════════════════
-    //                        ACCOUNT MANAGER
+    //                        IDEMPOTENCY CACHE
     // ═══════════════════════════════════════════════════════════════
 
     /**
-     * Comprehensive account management system
+     * Successful postings by (account, idempotency key), so that a client retry is answered
+     * without a database round trip. Entries expire after IDEMPOTENCY_TTL_MS and the oldest are
+     * dropped beyond IDEMPOTENCY_CACHE_ENTRIES; a retry that misses the cache is still caught by
+     * the unique key on transactions.
      */
-    static class AccountManager {
-
-        private final AuditLogger auditLogger;
-
-        public AccountManager(AuditLogger auditLogger) {
-            this.auditLogger = auditLogger;
+    static class IdempotencyCache {
+        // Insertion order is also expiry order, since every entry lives for the same TTL
+        private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+        private static final LongAdder cacheHits = new LongAdder();
+        private static final LongAdder databaseHits = new LongAdder();
+        private static final LongAdder conflicts = new LongAdder();
+        private static final LongAdder expired = new LongAdder();
+        private static final LongAdder evicted = new LongAdder();
+
+        private static final class Entry {
+            final String type;
+            final BigDecimal amount;
+            final Result<Transaction> result;
+            final long expiresAt;
+
+            Entry(String type, BigDecimal amount, Result<Transaction> result, long expiresAt) {
+                this.type = type;
+                this.amount = amount;
+                this.result = result;
+                this.expiresAt = expiresAt;
+            }
         }
 
         /**
-         * Create new account
+         * Reject keys the column cannot hold; null when the key is usable or absent
          */
-        public Account createAccount(String holderName, String accountType, double initialDeposit, String pin) {
-            if (!SecurityUtil.validateAccountType(accountType)) {
-                System.out.println("Invalid account type. Must be Savings, Checking, Business, or Fixed.");
-                return null;
+        static Result<Transaction> validate(String key) {
+            if (key != null && (key.isBlank() || key.length() > IDEMPOTENCY_KEY_MAX_LENGTH)) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "Idempotency key must be 1-" + IDEMPOTENCY_KEY_MAX_LENGTH + " characters.");
             }
+            return null;
+        }
 
-            if (!SecurityUtil.validatePin(pin)) {
-                System.out.println("Invalid PIN. Must be exactly 4 digits.");
+        /**
+         * The remembered result for a key, a failure if the key was used for a different
+         * posting, or null on a miss
+         */
+        static Result<Transaction> lookup(int accountNo, String key, String type, BigDecimal amount) {
+            Entry entry;
+            synchronized (entries) {
+                expire(System.currentTimeMillis());
+                entry = entries.get(accountNo + ":" + key);
+            }
+            if (entry == null) {
                 return null;
             }
+            if (!entry.type.equals(type) || entry.amount.compareTo(amount) != 0) {
+                return conflict();
+            }
+            cacheHits.increment();
+            return entry.result;
+        }
 
-            if (initialDeposit < 0) {
-                System.out.println("Initial deposit cannot be negative.");
-                return null;
+        static Result<Transaction> remember(int accountNo, String key, String type, BigDecimal amount,
+                                            Result<Transaction> result) {
+            if (key == null || !result.isSuccess()) {
+                return result;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (entries) {
+                expire(now);
+                entries.put(accountNo + ":" + key, new Entry(type, amount, result, now + IDEMPOTENCY_TTL_MS));
+                Iterator<Entry> oldest = entries.values().iterator();
+                while (entries.size() > IDEMPOTENCY_CACHE_ENTRIES && oldest.hasNext()) {
+                    oldest.next();
+                    oldest.remove();
+                    evicted.increment();
+                }
             }
+            return result;
+        }
 
-            String sql = """
-                INSERT INTO accounts (holder_name, account_type, balance, active, pin_hash, 
-                                    last_interest_date, failed_login_attempts, locked, 
-                                    daily_limit, last_daily_reset)
-                VALUES (?, ?, ?, ?, ?, CURDATE(), ?, ?, ?, CURDATE())
-                """;
+        /**
+         * A retry that missed the cache and was answered from the stored transactions row
+         */
+        static void recordDatabaseHit() {
+            databaseHits.increment();
+        }
 
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        static Result<Transaction> conflict() {
+            conflicts.increment();
+            return Result.fail(ResultCode.INVALID_INPUT, "Idempotency key was already used for a different request.");
+        }
 
-                ps.setString(1, holderName);
-                ps.setString(2, accountType);
-                ps.setBigDecimal(3, BigDecimal.valueOf(initialDeposit));
-                ps.setBoolean(4, true);
-                ps.setString(5, SecurityUtil.hashPin(pin));
-                ps.setInt(6, 0);
-                ps.setBoolean(7, false);
-
-                // Set daily limit based on account type
-                double dailyLimit = switch (accountType.toLowerCase()) {
-                    case "savings" -> DEFAULT_SAVINGS_LIMIT;
-                    case "checking" -> DEFAULT_CHECKING_LIMIT;
-                    case "business" -> DEFAULT_BUSINESS_LIMIT;
-                    default -> DEFAULT_SAVINGS_LIMIT;
-                };
-                ps.setBigDecimal(8, BigDecimal.valueOf(dailyLimit));
+        private static void expire(long now) {
+            Iterator<Entry> oldest = entries.values().iterator();
+            while (oldest.hasNext() && oldest.next().expiresAt <= now) {
+                oldest.remove();
+                expired.increment();
+            }
+        }
 
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    ResultSet generatedKeys = ps.getGeneratedKeys();
-                    if (generatedKeys.next()) {
-                        int accountNo = generatedKeys.getInt(1);
-
-                        // Log initial deposit transaction
-                        if (initialDeposit > 0) {
-                            addTransaction(accountNo, "INITIAL_DEPOSIT", BigDecimal.valueOf(initialDeposit),
-                                    "Account opening deposit", null);
-                        }
+        static int size() {
+            synchronized (entries) {
+                return entries.size();
+            }
+        }
 
-                        auditLogger.log("ACCOUNT_CREATED",
-                                "Account " + accountNo + " created for " + holderName, null, accountNo);
+        static void appendPrometheus(StringBuilder sb) {
+            sb.append("# HELP banking_idempotency_hits_total Retried postings answered with the original result\n");
+            sb.append("# TYPE banking_idempotency_hits_total counter\n");
+            sb.append("banking_idempotency_hits_total{source=\"cache\"} ").append(cacheHits.sum()).append('\n');
+            sb.append("banking_idempotency_hits_total{source=\"database\"} ").append(databaseHits.sum()).append('\n');
+            sb.append("# HELP banking_idempotency_conflicts_total Keys reused for a different posting\n");
+            sb.append("# TYPE banking_idempotency_conflicts_total counter\n");
+            sb.append("banking_idempotency_conflicts_total ").append(conflicts.sum()).append('\n');
+            sb.append("# HELP banking_idempotency_evictions_total Cache entries dropped by age or size\n");
+            sb.append("# TYPE banking_idempotency_evictions_total counter\n");
+            sb.append("banking_idempotency_evictions_total{reason=\"expired\"} ").append(expired.sum()).append('\n');
+            sb.append("banking_idempotency_evictions_total{reason=\"size\"} ").append(evicted.sum()).append('\n');
+            sb.append("# HELP banking_idempotency_cache_entries Keys currently cached\n");
+            sb.append("# TYPE banking_idempotency_cache_entries gauge\n");
+            sb.append("banking_idempotency_cache_entries ").append(size()).append('\n');
+        }
+    }
 
-                        return findAccount(accountNo);
-                    }
-                }
+    // ═══════════════════════════════════════════════════════════════
+    //                         VELOCITY CHECKS
+    // ═══════════════════════════════════════════════════════════════
 
-            } catch (SQLException e) {
-                System.out.println("Error creating account: " + e.getMessage());
-                auditLogger.log("ACCOUNT_CREATE_FAILED", "Failed to create account for " + holderName);
+    /**
+     * In-memory screening of every debit against the account's recent behaviour, without a
+     * database round trip. Each tracked account keeps a ring of one-minute buckets counting its
+     * debits, its last few transfer payees and an exponentially weighted mean and variance of its
+     * debit amounts. Three rules are evaluated before a withdrawal or transfer is posted:
+     * <ul>
+     *   <li>burst: more than banking.velocity.maxDebits debits within banking.velocity.windowMinutes</li>
+     *   <li>newPayee: a transfer above banking.velocity.newPayeeAmount to an account not paid recently</li>
+     *   <li>zScore: an amount more than banking.velocity.zScore deviations above the account's usual debit</li>
+     * </ul>
+     * Each rule flags (audit only) or blocks the posting, per -Dbanking.velocity.&lt;rule&gt;.action
+     * or the banking.velocity.action default. A screened debit holds its place in the burst window
+     * until it is settled: the account learns its amount and payee once it posts, and a debit that
+     * fails is taken back out. Blocked debits are not recorded. An account seen for
+     * the first time is seeded from its latest debit rows, so a restart neither forgets payees nor
+     * resets the windows. State is a few hundred bytes per account; accounts idle for
+     * banking.velocity.idleMinutes, and the least recently active beyond
+     * banking.velocity.maxAccounts, are dropped.
+     */
+    static class VelocityEngine {
+        enum Rule {
+            BURST("burst"), NEW_PAYEE("newPayee"), Z_SCORE("zScore");
+
+            final String key;
+            final boolean blocks;
+            final LongAdder flagged = new LongAdder();
+            final LongAdder blocked = new LongAdder();
+
+            Rule(String key) {
+                this.key = key;
+                this.blocks = "block".equalsIgnoreCase(System.getProperty("banking.velocity." + key + ".action",
+                        VELOCITY_ACTION));
             }
 
-            return null;
+            int bit() { return 1 << ordinal(); }
         }
 
+        private static final double EWMA_ALPHA = 0.1;
+        private static final String SEED_SQL = """
+            SELECT type, amount, memo, txn_time, reverse_of FROM transactions
+            WHERE account_no = ? AND type IN ('WITHDRAWAL', 'TRANSFER_OUT')
+            ORDER BY id DESC LIMIT ?
+            """;
+
+        private static final Map<Integer, Track> tracks = new ConcurrentHashMap<>();
+        private static final int blockMask = blockMask();
+        private static volatile long lastSweepMinute;
+        private static final LongAdder screened = new LongAdder();
+        private static final LongAdder screenNanos = new LongAdder();
+        private static final LongAdder seeded = new LongAdder();
+        private static final LongAdder evictedIdle = new LongAdder();
+        private static final LongAdder evictedSize = new LongAdder();
+
         /**
-         * Find account by account number
+         * The rules one debit tripped and whether any of them blocks it
          */
-        public Account findAccount(int accountNo) {
-            String sql = "SELECT * FROM accounts WHERE account_no = ?";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ps.setInt(1, accountNo);
-                ResultSet rs = ps.executeQuery();
+        static final class Hit {
+            final int rules;
+            final boolean blocked;
+            final String detail;
+
+            Hit(int rules, String detail) {
+                this.rules = rules;
+                this.blocked = (rules & blockMask) != 0;
+                this.detail = detail;
+            }
 
-                if (rs.next()) {
-                    return mapResultSetToAccount(rs);
+            String ruleNames() {
+                StringJoiner names = new StringJoiner(", ");
+                for (Rule rule : Rule.values()) {
+                    if ((rules & rule.bit()) != 0) {
+                        names.add(rule.key);
+                    }
                 }
-
-            } catch (SQLException e) {
-                System.out.println("Error finding account: " + e.getMessage());
+                return names.toString();
             }
-
-            return null;
         }
 
         /**
-         * Verify PIN for login
+         * One screened debit; unless blocked it holds its place in the burst window until settled
          */
-        public boolean verifyPin(int accountNo, String pin) {
-            Account account = findAccount(accountNo);
-            if (account == null || !account.isActive() || account.isLocked()) {
-                return false;
+        static final class Screening {
+            final Hit hit;
+            private final Track track; // null when nothing was reserved
+            private final long minute;
+            private final long paise;
+            private final int payee;
+
+            Screening(Hit hit, Track track, long minute, long paise, int payee) {
+                this.hit = hit;
+                this.track = track;
+                this.minute = minute;
+                this.paise = paise;
+                this.payee = payee;
             }
 
-            return account.getPinHash().equals(SecurityUtil.hashPin(pin));
+            boolean blocked() {
+                return hit != null && hit.blocked;
+            }
         }
 
-        /**
-         * Handle failed login attempt
-         */
-        public boolean handleFailedLogin(int accountNo) {
-            String sql = "UPDATE accounts SET failed_login_attempts = failed_login_attempts + 1 WHERE account_no = ?";
-            String lockSql = "UPDATE accounts SET locked = TRUE WHERE account_no = ? AND failed_login_attempts >= ?";
-
-            try (Connection conn = DBUtil.getConnection()) {
-                conn.setAutoCommit(false);
+        /** One account's windows; every access holds its monitor */
+        private static final class Track {
+            final long[] bucketMinute = new long[VELOCITY_BUCKETS];
+            final int[] debits = new int[VELOCITY_BUCKETS];
+            final int[] payees = new int[VELOCITY_PAYEES];
+            int payeeCount;
+            int nextPayee;
+            long samples;
+            double mean;
+            double variance;
+            int inFlight; // screened, not yet settled
+            boolean evicted;
+            volatile long lastMinute;
+
+            Track() {
+                Arrays.fill(bucketMinute, -1);
+            }
 
-                try (PreparedStatement ps1 = conn.prepareStatement(sql);
-                     PreparedStatement ps2 = conn.prepareStatement(lockSql)) {
+            Hit screen(long minute, String type, long paise, int payee) {
+                int rules = 0;
+                StringJoiner detail = new StringJoiner("; ");
 
-                    ps1.setInt(1, accountNo);
-                    ps1.executeUpdate();
+                int inWindow = debitsSince(minute - VELOCITY_WINDOW_MINUTES + 1, minute) + 1;
+                if (inWindow > VELOCITY_MAX_DEBITS) {
+                    rules |= Rule.BURST.bit();
+                    detail.add(inWindow + " debits in " + VELOCITY_WINDOW_MINUTES + " min");
+                }
+                if (payee != 0 && paise > VELOCITY_NEW_PAYEE_PAISE && !knows(payee)) {
+                    rules |= Rule.NEW_PAYEE.bit();
+                    detail.add("first transfer to account " + payee);
+                }
+                if (samples >= VELOCITY_MIN_SAMPLES && paise > mean) {
+                    // A floor on the deviation keeps accounts with identical debits from alerting on pennies
+                    double deviation = Math.max(Math.sqrt(variance), Math.max(mean * 0.05, 100));
+                    double z = (paise - mean) / deviation;
+                    if (z > VELOCITY_Z_SCORE) {
+                        rules |= Rule.Z_SCORE.bit();
+                        detail.add(String.format("z-score %.1f against a usual ₹%.2f", z, mean / 100));
+                    }
+                }
 
-                    ps2.setInt(1, accountNo);
-                    ps2.setInt(2, MAX_PIN_ATTEMPTS);
-                    int lockedRows = ps2.executeUpdate();
+                if ((rules & blockMask) == 0) {
+                    count(minute);
+                    inFlight++;
+                }
+                lastMinute = minute;
+                return rules == 0 ? null : new Hit(rules, detail.toString());
+            }
 
-                    conn.commit();
+            void record(long minute, long paise, int payee) {
+                count(minute);
+                learn(paise, payee);
+            }
 
-                    auditLogger.log("LOGIN_FAILED", "Failed login attempt for account " + accountNo, null, accountNo);
+            void count(long minute) {
+                int slot = (int) Math.floorMod(minute, (long) VELOCITY_BUCKETS);
+                if (bucketMinute[slot] != minute) {
+                    // The slot still holds a minute that has left every window
+                    bucketMinute[slot] = minute;
+                    debits[slot] = 0;
+                }
+                debits[slot]++;
+            }
 
-                    if (lockedRows > 0) {
-                        auditLogger.log("ACCOUNT_LOCKED", "Account " + accountNo + " locked due to multiple failed attempts", null, accountNo);
-                        return true; // Account was locked
-                    }
+            void uncount(long minute) {
+                int slot = (int) Math.floorMod(minute, (long) VELOCITY_BUCKETS);
+                if (bucketMinute[slot] == minute && debits[slot] > 0) {
+                    debits[slot]--;
+                }
+            }
 
-                } catch (SQLException e) {
-                    conn.rollback();
-                    throw e;
+            void learn(long paise, int payee) {
+                if (payee != 0 && !knows(payee)) {
+                    payees[nextPayee] = payee;
+                    nextPayee = (nextPayee + 1) % payees.length;
+                    payeeCount = Math.min(payeeCount + 1, payees.length);
                 }
+                if (samples++ == 0) {
+                    mean = paise;
+                } else {
+                    double diff = paise - mean;
+                    double step = EWMA_ALPHA * diff;
+                    mean += step;
+                    variance = (1 - EWMA_ALPHA) * (variance + diff * step);
+                }
+            }
 
-            } catch (SQLException e) {
-                System.out.println("Error handling failed login: " + e.getMessage());
+            int debitsSince(long fromMinute, long toMinute) {
+                int total = 0;
+                for (long m = Math.max(fromMinute, toMinute - VELOCITY_BUCKETS + 1); m <= toMinute; m++) {
+                    int slot = (int) Math.floorMod(m, (long) VELOCITY_BUCKETS);
+                    if (bucketMinute[slot] == m) {
+                        total += debits[slot];
+                    }
+                }
+                return total;
             }
 
-            return false;
+            boolean knows(int payee) {
+                for (int i = 0; i < payeeCount; i++) {
+                    if (payees[i] == payee) {
+                        return true;
+                    }
+                }
+                return false;
+            }
         }
 
         /**
-         * Reset failed login attempts
+         * Screen a debit about to be posted; its hit is null when no rule fired. payee is the
+         * destination of a transfer, or 0 for a withdrawal. Settle the result once the posting
+         * has committed or failed.
          */
-        public void resetFailedLoginAttempts(int accountNo) {
-            String sql = "UPDATE accounts SET failed_login_attempts = 0 WHERE account_no = ?";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ps.setInt(1, accountNo);
-                ps.executeUpdate();
+        static Screening screen(int accountNo, String type, BigDecimal amount, int payee) {
+            long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+            long paise = amount.movePointRight(2).longValue();
+            long start = 0;
+            Track track;
+            Hit hit;
+            while (true) {
+                track = tracks.get(accountNo);
+                if (track == null) {
+                    track = seed(accountNo, minute);
+                    Track raced = tracks.putIfAbsent(accountNo, track);
+                    if (raced != null) {
+                        track = raced;
+                    }
+                    if (minute != lastSweepMinute || tracks.size() > VELOCITY_MAX_ACCOUNTS) {
+                        sweep(minute);
+                    }
+                }
 
-            } catch (SQLException e) {
-                System.out.println("Error resetting failed login attempts: " + e.getMessage());
+                start = System.nanoTime();
+                synchronized (track) {
+                    if (track.evicted) {
+                        continue; // swept between the lookup and the lock; reserve in its replacement
+                    }
+                    hit = track.screen(minute, type, paise, payee);
+                }
+                break;
+            }
+            if (hit != null) {
+                for (Rule rule : Rule.values()) {
+                    if ((hit.rules & rule.bit()) != 0) {
+                        (rule.blocks ? rule.blocked : rule.flagged).increment();
+                    }
+                }
             }
+            screened.increment();
+            screenNanos.add(System.nanoTime() - start);
+            return new Screening(hit, hit != null && hit.blocked ? null : track, minute, paise, payee);
         }
 
         /**
-         * Deposit money to account
+         * Learn from a screened debit that posted, or give back the window place of one that did not
          */
-        public boolean deposit(int accountNo, double amount) {
-            if (amount <= 0) {
-                System.out.println("Deposit amount must be positive.");
-                return false;
+        static void settle(Screening screening, boolean posted) {
+            if (screening == null || screening.track == null) {
+                return;
             }
-
-            Account account = findAccount(accountNo);
-            if (account == null || !account.isActive() || account.isLocked()) {
-                System.out.println("Account not found, inactive, or locked.");
-                return false;
+            synchronized (screening.track) {
+                screening.track.inFlight--;
+                if (posted) {
+                    screening.track.learn(screening.paise, screening.payee);
+                } else {
+                    screening.track.uncount(screening.minute);
+                }
             }
+        }
 
-            String sql = "UPDATE accounts SET balance = balance + ? WHERE account_no = ?";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ps.setBigDecimal(1, BigDecimal.valueOf(amount));
-                ps.setInt(2, accountNo);
-
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    addTransaction(accountNo, "DEPOSIT", BigDecimal.valueOf(amount),
-                            "Cash deposit", null);
-
-                    auditLogger.log("DEPOSIT",
-                            "₹" + amount + " deposited to account " + accountNo, null, accountNo);
-
-                    return true;
+        /**
+         * A track rebuilt from the account's latest debits, oldest first; empty if they can't be read
+         */
+        private static Track seed(int accountNo, long minute) {
+            Track track = new Track();
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(SEED_SQL)) {
+                ps.setInt(1, accountNo);
+                ps.setInt(2, VELOCITY_SEED_ROWS);
+                Deque<Object[]> rows = new ArrayDeque<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // Reversals are filtered here rather than in SQL, which would steer the
+                        // planner onto the mostly-null reverse_of index
+                        rs.getInt("reverse_of");
+                        if (!rs.wasNull()) {
+                            continue;
+                        }
+                        rows.push(new Object[]{rs.getString("type"), rs.getBigDecimal("amount"),
+                                rs.getString("memo"), rs.getTimestamp("txn_time")});
+                    }
                 }
-
+                for (Object[] row : rows) {
+                    long rowMinute = TimeUnit.MILLISECONDS.toMinutes(((Timestamp) row[3]).getTime());
+                    int payee = "TRANSFER_OUT".equals(row[0]) ? payeeOf((String) row[2]) : 0;
+                    track.record(Math.min(rowMinute, minute), ((BigDecimal) row[1]).movePointRight(2).longValue(), payee);
+                }
+                seeded.increment();
             } catch (SQLException e) {
-                System.out.println("Error processing deposit: " + e.getMessage());
-                auditLogger.log("DEPOSIT_FAILED",
-                        "Failed to deposit ₹" + amount + " to account " + accountNo, null, accountNo);
+                System.err.println("Velocity history unavailable for account " + accountNo + ": " + e.getMessage());
             }
+            track.lastMinute = minute;
+            return track;
+        }
 
-            return false;
+        private static int payeeOf(String memo) {
+            String prefix = "Transfer to account ";
+            if (memo != null && memo.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(memo.substring(prefix.length()).strip());
+                } catch (NumberFormatException ignored) {
+                    // custom memo; the payee is relearned on the next transfer
+                }
+            }
+            return 0;
         }
 
         /**
-         * Withdraw money from account
+         * Drop idle accounts, then the least recently active until the map is back under its cap
          */
-        public boolean withdraw(int accountNo, double amount) {
-            if (amount <= 0) {
-                System.out.println("Withdrawal amount must be positive.");
-                return false;
+        private static synchronized void sweep(long minute) {
+            if (minute == lastSweepMinute && tracks.size() <= VELOCITY_MAX_ACCOUNTS) {
+                return;
             }
-
-            Account account = findAccount(accountNo);
-            if (account == null || !account.isActive() || account.isLocked()) {
-                System.out.println("Account not found, inactive, or locked.");
-                return false;
+            lastSweepMinute = minute;
+            long idleBefore = minute - VELOCITY_IDLE_MINUTES;
+            int before = tracks.size();
+            tracks.values().removeIf(t -> t.lastMinute < idleBefore && evict(t));
+            evictedIdle.add(Math.max(0, before - tracks.size()));
+            int excess = tracks.size() - VELOCITY_MAX_ACCOUNTS * 9 / 10;
+            if (tracks.size() > VELOCITY_MAX_ACCOUNTS && excess > 0) {
+                List<Map.Entry<Integer, Track>> oldest = new ArrayList<>(tracks.entrySet());
+                oldest.sort(Comparator.comparingLong(e -> e.getValue().lastMinute));
+                int removed = 0;
+                for (int i = 0; removed < excess && i < oldest.size(); i++) {
+                    Map.Entry<Integer, Track> entry = oldest.get(i);
+                    if (evict(entry.getValue()) && tracks.remove(entry.getKey(), entry.getValue())) {
+                        evictedSize.increment();
+                        removed++;
+                    }
+                }
             }
+        }
 
-            if (account.getBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
-                System.out.println("Insufficient balance.");
-                return false;
+        /**
+         * Mark a track as dropped unless a screened debit is still in flight on it
+         */
+        private static boolean evict(Track track) {
+            synchronized (track) {
+                if (track.inFlight > 0) {
+                    return false;
+                }
+                track.evicted = true;
+                return true;
             }
+        }
 
-            // Check daily limit
-            if (!checkDailyLimit(accountNo, amount)) {
-                System.out.println("Daily withdrawal limit exceeded.");
-                return false;
+        private static int blockMask() {
+            int mask = 0;
+            for (Rule rule : Rule.values()) {
+                if (rule.blocks) {
+                    mask |= rule.bit();
+                }
             }
-            /*
-             * Author: Samruddha Belsare
-             * Updated: 07-Oct-2025
-             */
-            String sql = "UPDATE accounts SET balance = balance - ? WHERE account_no = ?";
-            try (Connection conn = DBUtil.getConnection()) {
-                conn.setAutoCommit(false);
-
-                try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                    ps.setBigDecimal(1, BigDecimal.valueOf(amount));
-                    ps.setInt(2, accountNo);
+            return mask;
+        }
 
-                    int rowsAffected = ps.executeUpdate();
-                    if (rowsAffected > 0) {
-                        addTransaction(conn, accountNo, "WITHDRAWAL", BigDecimal.valueOf(amount),
-                                "Cash withdrawal", null);
+        static void appendPrometheus(StringBuilder sb) {
+            if (!VELOCITY_ENABLED) {
+                return;
+            }
+            sb.append("# HELP banking_velocity_screened_total Debits screened by the velocity rules\n");
+            sb.append("# TYPE banking_velocity_screened_total counter\n");
+            sb.append("banking_velocity_screened_total ").append(screened.sum()).append('\n');
+            sb.append("# HELP banking_velocity_screen_seconds_total Time spent evaluating rules, excluding seeding\n");
+            sb.append("# TYPE banking_velocity_screen_seconds_total counter\n");
+            sb.append("banking_velocity_screen_seconds_total ").append(screenNanos.sum() / 1e9).append('\n');
+            sb.append("# HELP banking_velocity_hits_total Debits that tripped a rule, by the rule's configured action\n");
+            sb.append("# TYPE banking_velocity_hits_total counter\n");
+            for (Rule rule : Rule.values()) {
+                sb.append("banking_velocity_hits_total{rule=\"").append(rule.key).append("\",action=\"flag\"} ")
+                        .append(rule.flagged.sum()).append('\n');
+                sb.append("banking_velocity_hits_total{rule=\"").append(rule.key).append("\",action=\"block\"} ")
+                        .append(rule.blocked.sum()).append('\n');
+            }
+            sb.append("# HELP banking_velocity_seeded_total Accounts loaded from their latest debits\n");
+            sb.append("# TYPE banking_velocity_seeded_total counter\n");
+            sb.append("banking_velocity_seeded_total ").append(seeded.sum()).append('\n');
+            sb.append("# HELP banking_velocity_evictions_total Tracked accounts dropped by idleness or size\n");
+            sb.append("# TYPE banking_velocity_evictions_total counter\n");
+            sb.append("banking_velocity_evictions_total{reason=\"idle\"} ").append(evictedIdle.sum()).append('\n');
+            sb.append("banking_velocity_evictions_total{reason=\"size\"} ").append(evictedSize.sum()).append('\n');
+            sb.append("# HELP banking_velocity_tracked_accounts Accounts with velocity state in memory\n");
+            sb.append("# TYPE banking_velocity_tracked_accounts gauge\n");
+            sb.append("banking_velocity_tracked_accounts ").append(tracks.size()).append('\n');
+        }
+    }
 
-                        conn.commit();
+    // ═══════════════════════════════════════════════════════════════
+    //                     OPTIMISTIC CONCURRENCY
+    // ═══════════════════════════════════════════════════════════════
 
-                        auditLogger.log("WITHDRAWAL",
-                                "₹" + amount + " withdrawn from account " + accountNo, null, accountNo);
+    /**
+     * Runs account mutations under optimistic or pessimistic concurrency control. Each
+     * operation picks its mode with -Dbanking.concurrency.&lt;operation&gt;=optimistic|pessimistic
+     * (default optimistic). An optimistic attempt reads the row without locking and writes it
+     * with a compare-and-set UPDATE ... WHERE version = ?. If another writer got there first,
+     * the attempt rolls back, backs off and re-reads, for up to banking.concurrency.maxAttempts
+     * attempts. A pessimistic attempt reads with SELECT ... FOR UPDATE and its CAS cannot
+     * fail. Attempts, conflicts and exhausted retries are counted per operation on /metrics,
+     * so each operation's mode can follow its measured contention.
+     *
+     * <p>accounts.version is bumped by every change that can invalidate a decision taken on an
+     * earlier read: debits, interest, lock and limit changes. Credits are commutative and
+     * leave it alone, so deposits into an account never make its withdrawals retry.
+     */
+    static class ConcurrencyControl {
+        enum Mode { OPTIMISTIC, PESSIMISTIC }
 
-                        return true;
-                    }
+        private static final Map<String, Mode> modes = new ConcurrentHashMap<>();
+        private static final Map<String, LongAdder[]> stats = new ConcurrentSkipListMap<>();
 
-                } catch (SQLException e) {
-                    conn.rollback();
-                    throw e;
-                }
+        /**
+         * The CAS found a newer version; the attempt is retried
+         */
+        static final class VersionConflict extends SQLException {
+            private static final long serialVersionUID = 1L;
 
-            } catch (SQLException e) {
-                System.out.println("Error processing withdrawal: " + e.getMessage());
-                auditLogger.log("WITHDRAWAL_FAILED",
-                        "Failed to withdraw ₹" + amount + " from account " + accountNo, null, accountNo);
+            VersionConflict() {
+                super("Account changed since it was read", "40001");
             }
-
-            return false;
         }
 
         /**
-         * Transfer money between accounts
+         * Every attempt conflicted
          */
-        public boolean transfer(int fromAccount, int toAccount, double amount) {
-            if (amount <= 0) {
-                System.out.println("Transfer amount must be positive.");
-                return false;
-            }
+        static final class RetriesExhausted extends SQLException {
+            private static final long serialVersionUID = 1L;
 
-            if (fromAccount == toAccount) {
-                System.out.println("Cannot transfer to the same account.");
-                return false;
+            RetriesExhausted(String operation, int attempts) {
+                super(operation + " conflicted " + attempts + " times", "40001");
             }
+        }
 
-            Account fromAcc = findAccount(fromAccount);
-            Account toAcc = findAccount(toAccount);
+        /**
+         * One attempt inside a transaction; pessimistic attempts must read with FOR UPDATE
+         */
+        interface Attempt<T> {
+            T run(Connection conn, int attempt, boolean pessimistic) throws SQLException;
+        }
 
-            if (fromAcc == null || !fromAcc.isActive() || fromAcc.isLocked()) {
-                System.out.println("Source account not found, inactive, or locked.");
-                return false;
+        static Mode modeOf(String operation) {
+            return modes.computeIfAbsent(operation, op -> "pessimistic".equalsIgnoreCase(
+                    System.getProperty("banking.concurrency." + op)) ? Mode.PESSIMISTIC : Mode.OPTIMISTIC);
+        }
+
+        /**
+         * Run the attempt on the account's shard until it commits without a conflict
+         */
+        static <T> T run(String operation, int accountNo, Attempt<T> body) throws SQLException {
+            boolean pessimistic = modeOf(operation) == Mode.PESSIMISTIC;
+            LongAdder[] counters = stats.computeIfAbsent(operation,
+                    op -> new LongAdder[]{new LongAdder(), new LongAdder(), new LongAdder()});
+
+            for (int attempt = 1; attempt <= CONCURRENCY_MAX_ATTEMPTS; attempt++) {
+                counters[0].increment();
+                try (Connection conn = DBUtil.getConnection(accountNo)) {
+                    conn.setAutoCommit(false);
+                    try {
+                        T result = body.run(conn, attempt, pessimistic);
+                        conn.commit();
+                        return result;
+                    } catch (VersionConflict conflict) {
+                        conn.rollback();
+                        counters[1].increment();
+                    } catch (SQLException | RuntimeException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+                backOff(attempt);
             }
+            counters[2].increment();
+            throw new RetriesExhausted(operation, CONCURRENCY_MAX_ATTEMPTS);
+        }
 
-            if (toAcc == null || !toAcc.isActive()) {
-                System.out.println("Destination account not found or inactive.");
-                return false;
+        /**
+         * Re-read an account inside the attempt, locking it when pessimistic; a split
+         * account's slots are included in the balance
+         */
+        static Account read(Connection conn, int accountNo, boolean pessimistic) throws SQLException {
+            String sql = "SELECT * FROM accounts WHERE account_no = ?" + (pessimistic ? " FOR UPDATE" : "");
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next()) {
+                    return null;
+                }
+                Account account = AccountManager.mapResultSetToAccount(rs);
+                if (BalanceSlots.isSplit(accountNo)) {
+                    account.setBalance(account.getBalance().add(BalanceSlots.slotTotal(conn, accountNo)));
+                }
+                return account;
             }
+        }
 
-            if (fromAcc.getBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
-                System.out.println("Insufficient balance in source account.");
-                return false;
+        /**
+         * Execute a compare-and-set UPDATE, which must match its row
+         */
+        static void cas(PreparedStatement ps) throws SQLException {
+            if (ps.executeUpdate() == 0) {
+                throw new VersionConflict();
             }
+        }
 
-            // Check daily limit for source account
-            if (!checkDailyLimit(fromAccount, amount)) {
-                System.out.println("Daily transfer limit exceeded.");
-                return false;
+        private static void backOff(int attempt) {
+            long ceiling = CONCURRENCY_BACKOFF_MS << Math.min(attempt - 1, 6);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }
 
-            String debitSql = "UPDATE accounts SET balance = balance - ? WHERE account_no = ?";
-            String creditSql = "UPDATE accounts SET balance = balance + ? WHERE account_no = ?";
+        static void appendPrometheus(StringBuilder sb) {
+            sb.append("# HELP banking_cas_attempts_total Account mutation attempts by operation and mode\n");
+            sb.append("# TYPE banking_cas_attempts_total counter\n");
+            stats.forEach((op, c) -> sb.append("banking_cas_attempts_total{operation=\"").append(op)
+                    .append("\",mode=\"").append(modeOf(op).name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(c[0].sum()).append('\n'));
+            sb.append("# HELP banking_cas_conflicts_total Attempts rolled back because the version had moved\n");
+            sb.append("# TYPE banking_cas_conflicts_total counter\n");
+            stats.forEach((op, c) -> sb.append("banking_cas_conflicts_total{operation=\"").append(op).append("\"} ")
+                    .append(c[1].sum()).append('\n'));
+            sb.append("# HELP banking_cas_retries_exhausted_total Mutations that failed after every attempt conflicted\n");
+            sb.append("# TYPE banking_cas_retries_exhausted_total counter\n");
+            stats.forEach((op, c) -> sb.append("banking_cas_retries_exhausted_total{operation=\"").append(op)
+                    .append("\"} ").append(c[2].sum()).append('\n'));
+        }
+    }
 
-            try (Connection conn = DBUtil.getConnection()) {
-                conn.setAutoCommit(false);
+    // ═══════════════════════════════════════════════════════════════
+    //                        ACCOUNT MANAGER
+    // ═══════════════════════════════════════════════════════════════
 
-                try (PreparedStatement debitPs = conn.prepareStatement(debitSql);
-                     PreparedStatement creditPs = conn.prepareStatement(creditSql)) {
+    /**
+     * Comprehensive account management system
+     */
+    static class AccountManager {
 
-                    // Debit from source account
-                    debitPs.setBigDecimal(1, BigDecimal.valueOf(amount));
-                    debitPs.setInt(2, fromAccount);
-                    debitPs.executeUpdate();
+        private final AuditLogger auditLogger;
+        private LedgerEngine ledger;
+        private SettlementWindow settlement;
 
-                    // Credit to destination account
-                    creditPs.setBigDecimal(1, BigDecimal.valueOf(amount));
-                    creditPs.setInt(2, toAccount);
-                    creditPs.executeUpdate();
+        public AccountManager(AuditLogger auditLogger) {
+            this.auditLogger = auditLogger;
+        }
 
-                    // Add transactions
-                    addTransaction(conn, fromAccount, "TRANSFER_OUT", BigDecimal.valueOf(amount),
-                            "Transfer to account " + toAccount, null);
-                    addTransaction(conn, toAccount, "TRANSFER_IN", BigDecimal.valueOf(amount),
-                            "Transfer from account " + fromAccount, null);
+        /**
+         * Route postings through the in-memory ledger engine instead of direct JDBC
+         */
+        void useLedger(LedgerEngine ledger) {
+            this.ledger = ledger;
+        }
 
-                    conn.commit();
-
-                    auditLogger.log("TRANSFER",
-                            "₹" + amount + " transferred from " + fromAccount + " to " + toAccount,
-                            null, fromAccount);
-
-                    return true;
-
-                } catch (SQLException e) {
-                    conn.rollback();
-                    throw e;
-                }
+        /**
+         * Settle same-shard transfers in netted windows instead of one by one
+         */
+        void useSettlementWindow(SettlementWindow settlement) {
+            this.settlement = settlement;
+        }
 
-            } catch (SQLException e) {
-                System.out.println("Error processing transfer: " + e.getMessage());
-                auditLogger.log("TRANSFER_FAILED",
-                        "Failed to transfer ₹" + amount + " from " + fromAccount + " to " + toAccount,
-                        null, fromAccount);
+        /**
+         * Forward a lock change already written to the database to the ledger engine, if any
+         */
+        void syncLedgerLock(int accountNo, boolean locked) {
+            if (ledger != null) {
+                ledger.setLocked(accountNo, locked);
             }
-
-            return false;
         }
 
         /**
-         * Apply interest if due
+         * Forward a daily limit change already written to the database to the ledger engine, if any
          */
-        public void applyInterestIfDue(int accountNo) {
-            Account account = findAccount(accountNo);
-            if (account == null || !account.isActive()) {
-                return;
+        void syncLedgerLimit(int accountNo, double dailyLimit) {
+            if (ledger != null) {
+                ledger.setDailyLimit(accountNo, BigDecimal.valueOf(dailyLimit));
             }
+        }
 
-            LocalDate today = LocalDate.now();
-            LocalDate lastInterestDate = account.getLastInterestDate();
+        /**
+         * Create new account
+         */
+        public Result<Account> createAccount(String holderName, String accountType, double initialDeposit, String pin) {
+            return createAccount(holderName, accountType, initialDeposit, pin, FIXED_DEFAULT_TERM_MONTHS);
+        }
 
-            if (lastInterestDate == null || lastInterestDate.isBefore(today)) {
-                double interestRate = switch (account.getAccountType().toLowerCase()) {
-                    case "savings" -> SAVINGS_INTEREST_RATE;
-                    case "checking" -> CHECKING_INTEREST_RATE;
-                    case "business" -> BUSINESS_INTEREST_RATE;
-                    default -> SAVINGS_INTEREST_RATE;
-                };
+        /**
+         * Create new account; for a Fixed account the initial deposit is the principal, held
+         * for termMonths
+         */
+        public Result<Account> createAccount(String holderName, String accountType, double initialDeposit, String pin,
+                                             int termMonths) {
+            Result<Account> invalid = checkNewAccount(holderName, accountType, initialDeposit, pin, termMonths);
+            if (invalid != null) {
+                return invalid;
+            }
+            boolean fixed = accountType.equalsIgnoreCase("Fixed");
 
-                // Calculate monthly interest (annual rate / 12)
-                BigDecimal monthlyRate = BigDecimal.valueOf(interestRate / 12.0);
-                BigDecimal interest = account.getBalance().multiply(monthlyRate)
-                        .setScale(2, RoundingMode.HALF_UP);
+            // Sharded deployments pick the number up front so that it encodes the owning shard
+            boolean sharded = DBUtil.isSharded();
+            String sql = sharded ? """
+                INSERT INTO accounts (holder_name, account_type, balance, active, pin_hash, 
+                                    last_interest_date, failed_login_attempts, locked, 
+                                    daily_limit, last_daily_reset, account_no)
+                VALUES (?, ?, ?, ?, ?, CURDATE(), ?, ?, ?, CURDATE(), ?)
+                """ : """
+                INSERT INTO accounts (holder_name, account_type, balance, active, pin_hash, 
+                                    last_interest_date, failed_login_attempts, locked, 
+                                    daily_limit, last_daily_reset)
+                VALUES (?, ?, ?, ?, ?, CURDATE(), ?, ?, ?, CURDATE())
+                """;
 
-                if (interest.compareTo(BigDecimal.ZERO) > 0) {
-                    String updateSql = """
-                        UPDATE accounts 
-                        SET balance = balance + ?, last_interest_date = CURDATE() 
-                        WHERE account_no = ?
-                        """;
+            // The inserts and the audit row commit together; the ledger and read-back take their own
+            int accountNo = 0;
+            double dailyLimit = defaultDailyLimit(accountType);
+            int shard = DBUtil.nextShard();
+            try (Connection conn = DBUtil.getShardConnection(shard);
+                 PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-                    try (Connection conn = DBUtil.getConnection();
-                         PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                int assignedNo = sharded ? DBUtil.allocateAccountNo(conn, shard) : 0;
 
-                        ps.setBigDecimal(1, interest);
-                        ps.setInt(2, accountNo);
-                        ps.executeUpdate();
+                conn.setAutoCommit(false);
+                try {
+                    ps.setString(1, holderName);
+                    ps.setString(2, accountType);
+                    // With the ledger engine the opening deposit reaches the row when it is persisted
+                    ps.setBigDecimal(3, ledger != null ? BigDecimal.ZERO : BigDecimal.valueOf(initialDeposit));
+                    ps.setBoolean(4, true);
+                    ps.setString(5, SecurityUtil.hashPin(pin));
+                    ps.setInt(6, 0);
+                    ps.setBoolean(7, false);
+                    ps.setBigDecimal(8, BigDecimal.valueOf(dailyLimit));
+                    if (sharded) {
+                        ps.setInt(9, assignedNo);
+                    }
 
-                        addTransaction(accountNo, "INTEREST", interest,
-                                "Monthly interest credit", null);
+                    int rowsAffected = ps.executeUpdate();
+                    if (rowsAffected > 0) {
+                        ResultSet generatedKeys = ps.getGeneratedKeys();
+                        if (sharded || generatedKeys.next()) {
+                            accountNo = sharded ? assignedNo : generatedKeys.getInt(1);
+                            if (fixed) {
+                                FixedDeposits.open(conn, accountNo, BigDecimal.valueOf(initialDeposit), termMonths);
+                            }
+                            if (ledger == null && initialDeposit > 0) {
+                                // Log initial deposit transaction
+                                addTransaction(conn, accountNo, "INITIAL_DEPOSIT", BigDecimal.valueOf(initialDeposit),
+                                        "Account opening deposit", null);
+                            }
+                            AuditLogger.log(conn, "ACCOUNT_CREATED",
+                                    "Account " + accountNo + " created for " + holderName, null, accountNo);
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
 
-                        auditLogger.log("INTEREST_APPLIED",
-                                "₹" + interest + " interest applied to account " + accountNo, null, accountNo);
+            } catch (SQLException e) {
+                auditLogger.log("ACCOUNT_CREATE_FAILED", "Failed to create account for " + holderName);
+                return Result.fail(ResultCode.DB_ERROR, "Error creating account: " + e.getMessage());
+            }
 
-                        System.out.println("Interest of ₹" + interest + " has been credited to your account.");
+            if (accountNo == 0) {
+                return Result.fail(ResultCode.DB_ERROR, "Account could not be created.");
+            }
+            LiveStatistics.recordAccountOpened(accountType);
 
-                    } catch (SQLException e) {
-                        System.out.println("Error applying interest: " + e.getMessage());
-                    }
+            if (ledger != null) {
+                Result<Transaction> opened = ledger.open(accountNo, accountType,
+                        BigDecimal.valueOf(dailyLimit), BigDecimal.valueOf(initialDeposit));
+                if (!opened.isSuccess()) {
+                    return Result.fail(opened.getCode(), opened.getMessage());
                 }
+                if (opened.getValue() != null) {
+                    LiveStatistics.recordPosting("INITIAL_DEPOSIT", opened.getValue().getAmount());
+                }
+            } else if (initialDeposit > 0) {
+                LiveStatistics.recordPosting("INITIAL_DEPOSIT", BigDecimal.valueOf(initialDeposit));
+            }
+
+            Account account = findAccount(accountNo);
+            if (account != null) {
+                return Result.ok(account, "Account created successfully.");
             }
+            return Result.fail(ResultCode.DB_ERROR, "Account could not be created.");
         }
 
         /**
-         * Check daily withdrawal/transfer limit
+         * The reason a new account would be refused, or null if it can be opened
          */
-        private boolean checkDailyLimit(int accountNo, double amount) {
-            Account account = findAccount(accountNo);
-            if (account == null) return false;
-
-            LocalDate today = LocalDate.now();
-
-            // Reset daily limit if it's a new day
-            if (!today.equals(account.getLastDailyReset())) {
-                String resetSql = "UPDATE accounts SET last_daily_reset = CURDATE() WHERE account_no = ?";
-                try (Connection conn = DBUtil.getConnection();
-                     PreparedStatement ps = conn.prepareStatement(resetSql)) {
-                    ps.setInt(1, accountNo);
-                    ps.executeUpdate();
-                } catch (SQLException e) {
-                    System.out.println("Error resetting daily limit: " + e.getMessage());
-                }
+        private Result<Account> checkNewAccount(String holderName, String accountType, double initialDeposit,
+                                                String pin, int termMonths) {
+            if (holderName == null || holderName.isBlank()) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Holder name is required.");
             }
 
-            // Get today's withdrawal/transfer total
-            String sql = """
-                SELECT COALESCE(SUM(amount), 0) as daily_total 
-                FROM transactions 
-                WHERE account_no = ? AND (type = 'WITHDRAWAL' OR type = 'TRANSFER_OUT') 
-                AND DATE(txn_time) = CURDATE()
-                """;
-
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (!SecurityUtil.validateAccountType(accountType)) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "Invalid account type. Must be Savings, Checking, Business, or Fixed.");
+            }
 
-                ps.setInt(1, accountNo);
-                ResultSet rs = ps.executeQuery();
+            if (!SecurityUtil.validatePin(pin)) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Invalid PIN. Must be exactly 4 digits.");
+            }
 
-                if (rs.next()) {
-                    BigDecimal dailyTotal = rs.getBigDecimal("daily_total");
-                    BigDecimal newTotal = dailyTotal.add(BigDecimal.valueOf(amount));
+            if (initialDeposit < 0) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Initial deposit cannot be negative.");
+            }
 
-                    return newTotal.compareTo(account.getDailyLimit()) <= 0;
+            boolean fixed = accountType.equalsIgnoreCase("Fixed");
+            if (fixed) {
+                if (ledger != null) {
+                    return Result.fail(ResultCode.INVALID_INPUT, "Fixed deposits are not available with the ledger engine.");
+                }
+                if (initialDeposit <= 0) {
+                    return Result.fail(ResultCode.INVALID_INPUT, "A fixed deposit needs a principal.");
+                }
+                if (termMonths < 1 || termMonths > FIXED_MAX_TERM_MONTHS) {
+                    return Result.fail(ResultCode.INVALID_INPUT,
+                            "Fixed deposit term must be 1 to " + FIXED_MAX_TERM_MONTHS + " months.");
                 }
-
-            } catch (SQLException e) {
-                System.out.println("Error checking daily limit: " + e.getMessage());
             }
+            return null;
+        }
 
-            return false;
+        /**
+         * Daily withdrawal/transfer limit a new account starts with
+         */
+        static double defaultDailyLimit(String accountType) {
+            return switch (accountType.toLowerCase()) {
+                case "savings" -> DEFAULT_SAVINGS_LIMIT;
+                case "checking" -> DEFAULT_CHECKING_LIMIT;
+                case "business" -> DEFAULT_BUSINESS_LIMIT;
+                default -> DEFAULT_SAVINGS_LIMIT;
+            };
         }
 
         /**
-         * Add transaction record
+         * Open many accounts at once. Each applicant is checked as in createAccount, and the
+         * valid ones are written with JDBC batches in one transaction per shard. A shard whose
+         * transaction fails has its applicants refused with DB_ERROR; the other shards' accounts
+         * stay open.
          */
-        private void addTransaction(int accountNo, String type, BigDecimal amount,
-                                    String memo, Integer reverseOf) {
-            try (Connection conn = DBUtil.getConnection()) {
-                addTransaction(conn, accountNo, type, amount, memo, reverseOf);
+        public Result<AccountOnboarding.Outcome> createAccounts(List<AccountOnboarding.Applicant> applicants) {
+            if (applicants.size() > ONBOARDING_MAX_ACCOUNTS) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "At most " + ONBOARDING_MAX_ACCOUNTS + " accounts per request; use --onboard-file for more.");
+            }
+            try {
+                AccountOnboarding.Outcome outcome = openAccounts(applicants, null, null);
+                return Result.ok(outcome, "Opened " + outcome.opened() + " of " + applicants.size() + " accounts.");
             } catch (SQLException e) {
-                System.out.println("Error adding transaction: " + e.getMessage());
+                // Only thrown when connections are supplied
+                return Result.fail(ResultCode.DB_ERROR, "Error creating accounts: " + e.getMessage());
             }
         }
 
-        private void addTransaction(Connection conn, int accountNo, String type, BigDecimal amount,
-                                    String memo, Integer reverseOf) throws SQLException {
-            String sql = """
-                INSERT INTO transactions (account_no, type, amount, memo, txn_time, reverse_of)
-                VALUES (?, ?, ?, ?, NOW(), ?)
-                """;
+        /**
+         * Shared by createAccounts and file onboarding. With connections (one per shard), the
+         * applicant on line n goes to shard n mod shardCount(), every shard's transaction runs
+         * beforeCommit even if it has no applicants, and a failure is thrown. Without them,
+         * shards are taken round-robin from the pool and a failure refuses that shard's
+         * applicants.
+         */
+        AccountOnboarding.Outcome openAccounts(List<AccountOnboarding.Applicant> applicants, Connection[] connections,
+                                               AccountOnboarding.BeforeCommit beforeCommit) throws SQLException {
+            AccountOnboarding.Outcome outcome = new AccountOnboarding.Outcome(applicants.size());
+            List<List<Integer>> byShard = new ArrayList<>();
+            for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                byShard.add(new ArrayList<>());
+            }
+            List<Integer> valid = new ArrayList<>();
+            for (int i = 0; i < applicants.size(); i++) {
+                AccountOnboarding.Applicant a = applicants.get(i);
+                Result<Account> invalid = checkNewAccount(a.holderName, a.accountType, a.initialDeposit, a.pin,
+                        a.termMonths);
+                if (invalid != null) {
+                    outcome.refusals[i] = invalid.getCode() + " " + invalid.getMessage();
+                    continue;
+                }
+                valid.add(i);
+                byShard.get(connections != null ? (int) (a.lineNo % connections.length) : DBUtil.nextShard()).add(i);
+            }
 
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, accountNo);
-                ps.setString(2, type);
-                ps.setBigDecimal(3, amount);
-                ps.setString(4, memo);
-                if (reverseOf != null) {
-                    ps.setInt(5, reverseOf);
-                } else {
-                    ps.setNull(5, Types.INTEGER);
+            String[] hashes = AccountOnboarding.hashPins(applicants, valid);
+            for (int shard = 0; shard < byShard.size(); shard++) {
+                List<Integer> indexes = byShard.get(shard);
+                if (connections != null) {
+                    AccountOnboarding.insert(connections[shard], shard, applicants, indexes, hashes, ledger != null,
+                            outcome, beforeCommit);
+                    continue;
+                }
+                if (indexes.isEmpty()) {
+                    continue;
+                }
+                try (Connection conn = DBUtil.getShardConnection(shard)) {
+                    AccountOnboarding.insert(conn, shard, applicants, indexes, hashes, ledger != null, outcome, null);
+                } catch (SQLException e) {
+                    auditLogger.log("ACCOUNT_CREATE_FAILED", "Failed to create " + indexes.size()
+                            + " accounts on shard " + shard + ": " + e.getMessage());
+                    for (int i : indexes) {
+                        outcome.refusals[i] = ResultCode.DB_ERROR + " Error creating account: " + e.getMessage();
+                    }
+                }
+            }
+
+            for (int i : valid) {
+                Account account = outcome.accounts[i];
+                if (account == null) {
+                    continue;
+                }
+                LiveStatistics.recordAccountOpened(account.getAccountType());
+                BigDecimal deposit = BigDecimal.valueOf(applicants.get(i).initialDeposit);
+                if (ledger != null) {
+                    Result<Transaction> opened = ledger.open(account.getAccountNo(), account.getAccountType(),
+                            account.getDailyLimit(), deposit);
+                    if (!opened.isSuccess()) {
+                        outcome.accounts[i] = null;
+                        outcome.refusals[i] = opened.getCode() + " " + opened.getMessage();
+                    } else if (opened.getValue() != null) {
+                        LiveStatistics.recordPosting("INITIAL_DEPOSIT", opened.getValue().getAmount());
+                    }
+                } else if (deposit.signum() > 0) {
+                    LiveStatistics.recordPosting("INITIAL_DEPOSIT", deposit);
                 }
-                ps.executeUpdate();
             }
+            return outcome;
         }
 
         /**
-         * Show mini statement
+         * Find account by account number
          */
-        public void showMiniStatement(int accountNo) {
-            String sql = """
-                SELECT type, amount, memo, txn_time 
-                FROM transactions 
-                WHERE account_no = ? 
-                ORDER BY txn_time DESC 
-                LIMIT 10
-                """;
-
-            try (Connection conn = DBUtil.getConnection();
+        public Account findAccount(int accountNo) {
+            String sql = "SELECT * FROM accounts WHERE account_no = ?";
+            try (Connection conn = DBUtil.getConnection(accountNo);
                  PreparedStatement ps = conn.prepareStatement(sql)) {
 
                 ps.setInt(1, accountNo);
                 ResultSet rs = ps.executeQuery();
 
-                Account account = findAccount(accountNo);
-                if (account != null) {
-                    System.out.println("═══════════════════════════════════════");
-                    System.out.println("           MINI STATEMENT");
-                    System.out.println("Account: " + accountNo + " | " + account.getHolderName());
-                    System.out.println("Current Balance: ₹" + account.getBalance());
-                    System.out.println("═══════════════════════════════════════");
-                    System.out.printf("%-15s %-12s %-25s %s%n", "Type", "Amount", "Description", "Date/Time");
-                    System.out.println("─────────────────────────────────────────");
-
-                    boolean hasTransactions = false;
-                    while (rs.next()) {
-                        hasTransactions = true;
-                        System.out.printf("%-15s ₹%-11.2f %-25s %s%n",
-                                rs.getString("type"),
-                                rs.getBigDecimal("amount").doubleValue(),
-                                rs.getString("memo"),
-                                rs.getTimestamp("txn_time").toLocalDateTime().format(DATE_FMT)
-                        );
+                if (rs.next()) {
+                    Account account = mapResultSetToAccount(rs);
+                    if (BalanceSlots.isSplit(accountNo)) {
+                        account.setBalance(account.getBalance().add(BalanceSlots.slotTotal(conn, accountNo)));
                     }
-
-                    if (!hasTransactions) {
-                        System.out.println("No transactions found.");
+                    if (ledger != null) {
+                        ledger.overlay(account);
                     }
-
-                    System.out.println("═══════════════════════════════════════");
+                    return account;
                 }
 
             } catch (SQLException e) {
-                System.out.println("Error retrieving mini statement: " + e.getMessage());
+                System.err.println("Error finding account: " + e.getMessage());
             }
+
+            return null;
         }
 
         /**
-         * Show detailed transaction history
+         * Authenticate an account holder, tracking failed attempts and lockout
          */
-        public void showTransactionHistory(int accountNo, int limit) {
-            String sql = """
-                SELECT t.type, t.amount, t.memo, t.txn_time, t.reverse_of
-                FROM transactions t
-                WHERE t.account_no = ? 
-                ORDER BY t.txn_time DESC 
-                LIMIT ?
-                """;
-
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ps.setInt(1, accountNo);
-                ps.setInt(2, limit);
-                ResultSet rs = ps.executeQuery();
-
-                Account account = findAccount(accountNo);
-                if (account != null) {
-                    System.out.println("═══════════════════════════════════════");
-                    System.out.println("        TRANSACTION HISTORY");
-                    System.out.println("Account: " + accountNo + " | " + account.getHolderName());
-                    System.out.println("Current Balance: ₹" + account.getBalance());
-                    System.out.println("═══════════════════════════════════════");
-                    System.out.printf("%-15s %-12s %-30s %-20s %s%n",
-                            "Type", "Amount", "Description", "Date/Time", "Notes");
-                    System.out.println("────────────────────────────────────────────────────────────────────────────");
-
-                    boolean hasTransactions = false;
-                    while (rs.next()) {
-                        hasTransactions = true;
-                        String notes = "";
-                        Integer reverseOf = rs.getObject("reverse_of", Integer.class);
-                        if (reverseOf != null) {
-                            notes = "(Reversal of #" + reverseOf + ")";
-                        }
+        public Result<Account> authenticate(int accountNo, String pin) {
+            Account account = findAccount(accountNo);
+            if (account == null) {
+                return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+            }
 
-                        System.out.printf("%-15s ₹%-11.2f %-30s %-20s %s%n",
-                                rs.getString("type"),
-                                rs.getBigDecimal("amount").doubleValue(),
-                                rs.getString("memo"),
-                                rs.getTimestamp("txn_time").toLocalDateTime().format(DATE_FMT),
-                                notes
-                        );
-                    }
+            if (!account.isActive()) {
+                return Result.fail(ResultCode.ACCOUNT_INACTIVE, "Account is inactive. Please contact admin.");
+            }
 
-                    if (!hasTransactions) {
-                        System.out.println("No transactions found.");
-                    }
+            if (account.isLocked()) {
+                return Result.fail(ResultCode.ACCOUNT_LOCKED,
+                        "Account is locked due to multiple failed login attempts. Please contact admin.");
+            }
 
-                    System.out.println("════════════════════════════════════════════════════════════════════════════");
+            if (pin != null && account.getPinHash().equals(SecurityUtil.hashPin(pin))) {
+                if (account.getFailedLoginAttempts() > 0) {
+                    resetFailedLoginAttempts(accountNo);
                 }
+                return Result.ok(account, "Login successful!");
+            }
 
-            } catch (SQLException e) {
-                System.out.println("Error retrieving transaction history: " + e.getMessage());
+            if (handleFailedLogin(accountNo)) {
+                return Result.fail(ResultCode.AUTH_FAILED,
+                        "Invalid PIN. Account has been locked due to multiple failed attempts.");
             }
+            return Result.fail(ResultCode.AUTH_FAILED, "Invalid PIN. Please try again.");
         }
 
         /**
-         * Get account summary
+         * Verify PIN for login
          */
-        public void showAccountSummary(int accountNo) {
+        public boolean verifyPin(int accountNo, String pin) {
             Account account = findAccount(accountNo);
-            if (account == null) {
-                System.out.println("Account not found.");
-                return;
+            if (account == null || !account.isActive() || account.isLocked()) {
+                return false;
             }
 
-            // Get transaction counts and totals
-            String sql = """
-                SELECT
-                    COUNT(*) as total_transactions,
-                    COALESCE(SUM(CASE WHEN type = 'DEPOSIT' OR type = 'TRANSFER_IN' OR type = 'INTEREST' THEN amount ELSE 0 END), 0) as total_credits,
-                    COALESCE(SUM(CASE WHEN type = 'WITHDRAWAL' OR type = 'TRANSFER_OUT' THEN amount ELSE 0 END), 0) as total_debits
-                FROM transactions
-                WHERE account_no = ?
-                """;
+            return account.getPinHash().equals(SecurityUtil.hashPin(pin));
+        }
 
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+        /**
+         * Handle failed login attempt
+         */
+        public boolean handleFailedLogin(int accountNo) {
+            String sql = "UPDATE accounts SET failed_login_attempts = failed_login_attempts + 1 WHERE account_no = ?";
+            String lockSql = "UPDATE accounts SET locked = TRUE, version = version + 1"
+                    + " WHERE account_no = ? AND failed_login_attempts >= ? AND locked = FALSE";
 
-                ps.setInt(1, accountNo);
-                ResultSet rs = ps.executeQuery();
+            int lockedRows;
+            try (Connection conn = DBUtil.getConnection(accountNo)) {
+                conn.setAutoCommit(false);
 
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("         ACCOUNT SUMMARY");
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("Account Number    : " + account.getAccountNo());
-                System.out.println("Holder Name       : " + account.getHolderName());
-                System.out.println("Account Type      : " + account.getAccountType());
-                System.out.println("Current Balance   : ₹" + account.getBalance());
-                System.out.println("Account Status    : " + (account.isActive() ? "Active" : "Inactive"));
-                System.out.println("Lock Status       : " + (account.isLocked() ? "Locked" : "Unlocked"));
-                System.out.println("Daily Limit       : ₹" + account.getDailyLimit());
-                System.out.println("Last Interest Date: " +
-                        (account.getLastInterestDate() != null ? account.getLastInterestDate().format(SIMPLE_DATE_FMT) : "Never"));
+                try (PreparedStatement ps1 = conn.prepareStatement(sql);
+                     PreparedStatement ps2 = conn.prepareStatement(lockSql)) {
 
-                if (rs.next()) {
-                    System.out.println("─────────────────────────────────────────");
-                    System.out.println("TRANSACTION SUMMARY:");
-                    System.out.println("Total Transactions: " + rs.getInt("total_transactions"));
-                    System.out.println("Total Credits     : ₹" + rs.getBigDecimal("total_credits"));
-                    System.out.println("Total Debits      : ₹" + rs.getBigDecimal("total_debits"));
-                }
+                    ps1.setInt(1, accountNo);
+                    ps1.executeUpdate();
 
-                System.out.println("═══════════════════════════════════════");
+                    ps2.setInt(1, accountNo);
+                    ps2.setInt(2, MAX_PIN_ATTEMPTS);
+                    lockedRows = ps2.executeUpdate();
+
+                    conn.commit();
+
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
 
             } catch (SQLException e) {
-                System.out.println("Error retrieving account summary: " + e.getMessage());
+                System.err.println("Error handling failed login: " + e.getMessage());
+                return false;
             }
-        }
-
-        /**
-         * Map ResultSet to Account object
-         */
-        private Account mapResultSetToAccount(ResultSet rs) throws SQLException {
-            Account account = new Account();
-            account.setAccountNo(rs.getInt("account_no"));
-            account.setHolderName(rs.getString("holder_name"));
-            account.setAccountType(rs.getString("account_type"));
-            account.setBalance(rs.getBigDecimal("balance"));
-            account.setActive(rs.getBoolean("active"));
-            account.setPinHash(rs.getString("pin_hash"));
 
-            Date lastInterestDate = rs.getDate("last_interest_date");
-            if (lastInterestDate != null) {
-                account.setLastInterestDate(lastInterestDate.toLocalDate());
+            if (lockedRows > 0) {
+                LiveStatistics.recordLockChanged(true);
+                syncLedgerLock(accountNo, true);
             }
 
-            account.setFailedLoginAttempts(rs.getInt("failed_login_attempts"));
-            account.setLocked(rs.getBoolean("locked"));
-            account.setDailyLimit(rs.getBigDecimal("daily_limit"));
+            auditLogger.log("LOGIN_FAILED", "Failed login attempt for account " + accountNo, null, accountNo);
 
-            Date lastDailyReset = rs.getDate("last_daily_reset");
-            if (lastDailyReset != null) {
-                account.setLastDailyReset(lastDailyReset.toLocalDate());
+            if (lockedRows > 0) {
+                auditLogger.log("ACCOUNT_LOCKED", "Account " + accountNo + " locked due to multiple failed attempts", null, accountNo);
+                return true; // Account was locked
             }
-
-            return account;
+            return false;
         }
-    }
-
-    // ═══════════════════════════════════════════════════════════════
-    //                     SCHEDULED MANAGER
-    // ═══════════════════════════════════════════════════════════════
 
-    /**
-     * Manages scheduled transactions
-     */
-    static class ScheduledManager {
+        /**
+         * Reset failed login attempts
+         */
+        public void resetFailedLoginAttempts(int accountNo) {
+            String sql = "UPDATE accounts SET failed_login_attempts = 0 WHERE account_no = ?";
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
-        private final AccountManager accountManager;
-        private final AuditLogger auditLogger;
+                ps.setInt(1, accountNo);
+                ps.executeUpdate();
 
-        public ScheduledManager(AccountManager accountManager, AuditLogger auditLogger) {
-            this.accountManager = accountManager;
-            this.auditLogger = auditLogger;
+            } catch (SQLException e) {
+                System.err.println("Error resetting failed login attempts: " + e.getMessage());
+            }
         }
 
         /**
-         * Schedule a transaction
+         * Deposit money to account
          */
-        public boolean scheduleTransaction(int accountNo, String type, double amount,
-                                           String memo, LocalDate scheduleDate) {
-            if (!isValidTransactionType(type)) {
-                System.out.println("Invalid transaction type for scheduling.");
-                return false;
+        public Result<Transaction> deposit(int accountNo, double amount) {
+            return deposit(accountNo, amount, null);
+        }
+
+        /**
+         * Deposit money to account; a repeated idempotency key returns the original result
+         */
+        public Result<Transaction> deposit(int accountNo, double amount, String idempotencyKey) {
+            if (amount <= 0) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Deposit amount must be positive.");
             }
 
-            String sql = """
-                INSERT INTO scheduled_transactions (account_no, type, amount, memo, schedule_date, executed)
-                VALUES (?, ?, ?, ?, ?, FALSE)
-                """;
+            Result<Transaction> replayed = replay(accountNo, idempotencyKey, "DEPOSIT", amount);
+            if (replayed != null) {
+                return replayed;
+            }
 
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (ledger != null) {
+                // The ledger only remembers recent keys; older ones are on the persisted rows
+                Result<Transaction> stored = findStored(accountNo, idempotencyKey, "DEPOSIT", amount, "Deposit successful!");
+                if (stored != null) {
+                    return stored;
+                }
+                Result<Transaction> result = ledger.deposit(accountNo, BigDecimal.valueOf(amount), idempotencyKey);
+                if (result.isSuccess()) {
+                    if (!LedgerEngine.REPLAYED.equals(result.getMessage())) {
+                        LiveStatistics.recordPosting("DEPOSIT", result.getValue().getAmount());
+                    }
+                    return IdempotencyCache.remember(accountNo, idempotencyKey, "DEPOSIT", BigDecimal.valueOf(amount),
+                            Result.ok(result.getValue(), "Deposit successful!"));
+                }
+                return result;
+            }
 
-                ps.setInt(1, accountNo);
-                ps.setString(2, type);
-                ps.setBigDecimal(3, BigDecimal.valueOf(amount));
-                ps.setString(4, memo);
-                ps.setDate(5, Date.valueOf(scheduleDate));
+            Account account = findAccount(accountNo);
+            Result<Transaction> unusable = checkAccountUsable(account, "Account");
+            if (unusable == null) {
+                unusable = checkTermHold(account, false);
+            }
+            if (unusable != null) {
+                return orStored(unusable, accountNo, idempotencyKey, "DEPOSIT", amount, "Deposit successful!");
+            }
 
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    auditLogger.log("TRANSACTION_SCHEDULED",
-                            type + " of ₹" + amount + " scheduled for " + scheduleDate +
-                                    " for account " + accountNo, null, accountNo);
-                    return true;
+            // The audit row takes its own connection, so it is written after this one is returned
+            Transaction txn = null;
+            try (Connection conn = DBUtil.getConnection(accountNo)) {
+                conn.setAutoCommit(false);
+
+                try {
+                    int rowsAffected = BalanceSlots.credit(conn, accountNo, BigDecimal.valueOf(amount), false);
+                    if (rowsAffected > 0) {
+                        txn = addTransaction(conn, accountNo, "DEPOSIT", BigDecimal.valueOf(amount),
+                                "Cash deposit", null, idempotencyKey);
+                        conn.commit();
+                    }
+
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
                 }
 
             } catch (SQLException e) {
-                System.out.println("Error scheduling transaction: " + e.getMessage());
+                Result<Transaction> original = e instanceof SQLIntegrityConstraintViolationException
+                        ? findStored(accountNo, idempotencyKey, "DEPOSIT", amount, "Deposit successful!") : null;
+                if (original != null) {
+                    return original;
+                }
+                auditLogger.log("DEPOSIT_FAILED",
+                        "Failed to deposit ₹" + amount + " to account " + accountNo, null, accountNo);
+                return Result.fail(ResultCode.DB_ERROR, "Error processing deposit: " + e.getMessage());
             }
 
-            return false;
+            if (txn == null) {
+                return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+            }
+            LiveStatistics.recordPosting("DEPOSIT", txn.getAmount());
+
+            auditLogger.log("DEPOSIT",
+                    "₹" + amount + " deposited to account " + accountNo, null, accountNo);
+
+            return IdempotencyCache.remember(accountNo, idempotencyKey, "DEPOSIT", txn.getAmount(),
+                    Result.ok(txn, "Deposit successful!"));
         }
 
         /**
-         * Apply due scheduled transactions for all accounts
+         * Withdraw money from account
          */
-        public void applyDueScheduledTransactions() {
-            String sql = """
-                SELECT id, account_no, type, amount, memo, schedule_date
-                FROM scheduled_transactions 
-                WHERE executed = FALSE AND schedule_date <= CURDATE()
-                ORDER BY schedule_date
-                """;
-
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ResultSet rs = ps.executeQuery();
+        public Result<Transaction> withdraw(int accountNo, double amount) {
+            return withdraw(accountNo, amount, null);
+        }
 
-                while (rs.next()) {
-                    int id = rs.getInt("id");
-                    int accountNo = rs.getInt("account_no");
-                    String type = rs.getString("type");
-                    BigDecimal amount = rs.getBigDecimal("amount");
-                    String memo = rs.getString("memo");
-                    LocalDate scheduleDate = rs.getDate("schedule_date").toLocalDate();
+        /**
+         * Withdraw money from account; a repeated idempotency key returns the original result
+         */
+        public Result<Transaction> withdraw(int accountNo, double amount, String idempotencyKey) {
+            if (amount <= 0) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Withdrawal amount must be positive.");
+            }
 
-                    if (executeScheduledTransaction(id, accountNo, type, amount.doubleValue(),
-                            memo, scheduleDate)) {
-                        markScheduledTransactionExecuted(id);
-                    }
-                }
+            Result<Transaction> replayed = replay(accountNo, idempotencyKey, "WITHDRAWAL", amount);
+            if (replayed != null) {
+                return replayed;
+            }
 
-            } catch (SQLException e) {
-                System.out.println("Error applying scheduled transactions: " + e.getMessage());
+            VelocityEngine.Screening screening = screenVelocity(accountNo, "WITHDRAWAL", amount, 0);
+            if (screening != null && screening.blocked()) {
+                return Result.fail(ResultCode.LIMIT_EXCEEDED, "Held by velocity checks: " + screening.hit.ruleNames() + ".");
+            }
+            Result<Transaction> result = null;
+            try {
+                result = postWithdrawal(accountNo, amount, idempotencyKey);
+                return result;
+            } finally {
+                VelocityEngine.settle(screening, result != null && result.isSuccess());
             }
         }
 
         /**
-         * Apply due scheduled transactions for specific account
+         * The withdrawal itself, once velocity screening let it through
          */
-        public void applyDueScheduledTransactionsForAccount(int accountNo) {
-            String sql = """
-                SELECT id, type, amount, memo, schedule_date
-                FROM scheduled_transactions 
-                WHERE account_no = ? AND executed = FALSE AND schedule_date <= CURDATE()
-                ORDER BY schedule_date
-                """;
-
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+        private Result<Transaction> postWithdrawal(int accountNo, double amount, String idempotencyKey) {
+            if (ledger != null) {
+                Result<Transaction> stored = findStored(accountNo, idempotencyKey, "WITHDRAWAL", amount,
+                        "Withdrawal successful!");
+                if (stored != null) {
+                    return stored;
+                }
+                Result<Transaction> result = ledger.withdraw(accountNo, BigDecimal.valueOf(amount), idempotencyKey);
+                if (result.isSuccess()) {
+                    if (!LedgerEngine.REPLAYED.equals(result.getMessage())) {
+                        LiveStatistics.recordPosting("WITHDRAWAL", result.getValue().getAmount());
+                    }
+                    return IdempotencyCache.remember(accountNo, idempotencyKey, "WITHDRAWAL", BigDecimal.valueOf(amount),
+                            Result.ok(result.getValue(), "Withdrawal successful!"));
+                }
+                return result;
+            }
 
-                ps.setInt(1, accountNo);
-                ResultSet rs = ps.executeQuery();
+            Account account = findAccount(accountNo);
+            Result<Transaction> unusable = checkAccountUsable(account, "Account");
+            if (unusable == null) {
+                unusable = checkTermHold(account, true);
+            }
+            if (unusable != null) {
+                return orStored(unusable, accountNo, idempotencyKey, "WITHDRAWAL", amount, "Withdrawal successful!");
+            }
 
-                while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String type = rs.getString("type");
-                    BigDecimal amount = rs.getBigDecimal("amount");
-                    String memo = rs.getString("memo");
-                    LocalDate scheduleDate = rs.getDate("schedule_date").toLocalDate();
+            if (account.getBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
+                return orStored(Result.fail(ResultCode.INSUFFICIENT_FUNDS, "Insufficient balance."),
+                        accountNo, idempotencyKey, "WITHDRAWAL", amount, "Withdrawal successful!");
+            }
 
-                    if (executeScheduledTransaction(id, accountNo, type, amount.doubleValue(),
-                            memo, scheduleDate)) {
-                        markScheduledTransactionExecuted(id);
-                        System.out.println("Scheduled " + type.toLowerCase() + " of ₹" + amount +
-                                " has been processed.");
+            /*
+             * Author: Samruddha Belsare
+             * Updated: 07-Oct-2025
+             */
+            String sql = "UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE account_no = ? AND version = ?";
+            try {
+                Result<Transaction> result = ConcurrencyControl.run("withdraw", accountNo, (conn, attempt, pessimistic) -> {
+                    Account current = currentAccount(conn, account, attempt, pessimistic);
+                    Result<Transaction> stale = checkDebit(current, "Account", amount, "Insufficient balance.");
+                    if (stale != null) {
+                        return stale;
+                    }
+                    if (!withinDailyLimit(conn, current, amount)) {
+                        return Result.fail(ResultCode.LIMIT_EXCEEDED, "Daily withdrawal limit exceeded.");
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        BalanceSlots.draw(conn, accountNo, BigDecimal.valueOf(amount));
+                        ps.setBigDecimal(1, BigDecimal.valueOf(amount));
+                        ps.setInt(2, accountNo);
+                        ps.setInt(3, current.getVersion());
+                        ConcurrencyControl.cas(ps);
                     }
+                    return Result.ok(addTransaction(conn, accountNo, "WITHDRAWAL", BigDecimal.valueOf(amount),
+                            "Cash withdrawal", null, idempotencyKey), "Withdrawal successful!");
+                });
+                if (!result.isSuccess()) {
+                    return orStored(result, accountNo, idempotencyKey, "WITHDRAWAL", amount, "Withdrawal successful!");
                 }
 
+                Transaction txn = result.getValue();
+                LiveStatistics.recordPosting("WITHDRAWAL", txn.getAmount());
+
+                auditLogger.log("WITHDRAWAL",
+                        "₹" + amount + " withdrawn from account " + accountNo, null, accountNo);
+
+                return IdempotencyCache.remember(accountNo, idempotencyKey, "WITHDRAWAL", txn.getAmount(), result);
+
+            } catch (ConcurrencyControl.RetriesExhausted e) {
+                return Result.fail(ResultCode.CONFLICT, "The account is busy. Please try again.");
             } catch (SQLException e) {
-                System.out.println("Error applying scheduled transactions for account: " + e.getMessage());
+                Result<Transaction> original = e instanceof SQLIntegrityConstraintViolationException
+                        ? findStored(accountNo, idempotencyKey, "WITHDRAWAL", amount, "Withdrawal successful!") : null;
+                if (original != null) {
+                    return original;
+                }
+                auditLogger.log("WITHDRAWAL_FAILED",
+                        "Failed to withdraw ₹" + amount + " from account " + accountNo, null, accountNo);
+                return Result.fail(ResultCode.DB_ERROR, "Error processing withdrawal: " + e.getMessage());
             }
         }
 
         /**
-         * Execute a scheduled transaction
+         * Transfer money between accounts
          */
-        private boolean executeScheduledTransaction(int scheduledId, int accountNo, String type,
-                                                    double amount, String memo, LocalDate scheduleDate) {
-            boolean success = false;
+        public Result<Transaction> transfer(int fromAccount, int toAccount, double amount) {
+            return transfer(fromAccount, toAccount, amount, null);
+        }
 
-            switch (type.toUpperCase()) {
-                case "DEPOSIT":
-                    success = accountManager.deposit(accountNo, amount);
-                    break;
-                case "WITHDRAWAL":
-                    success = accountManager.withdraw(accountNo, amount);
-                    break;
-                default:
-                    System.out.println("Unsupported scheduled transaction type: " + type);
-                    return false;
+        /**
+         * Transfer money between accounts; a repeated idempotency key returns the original result.
+         * The key is stored on the source account's TRANSFER_OUT row.
+         */
+        public Result<Transaction> transfer(int fromAccount, int toAccount, double amount, String idempotencyKey) {
+            if (amount <= 0) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Transfer amount must be positive.");
             }
 
-            if (success) {
-                auditLogger.log("SCHEDULED_TRANSACTION_EXECUTED",
-                        "Scheduled " + type + " of ₹" + amount + " executed for account " + accountNo,
-                        null, accountNo);
-            } else {
-                auditLogger.log("SCHEDULED_TRANSACTION_FAILED",
-                        "Scheduled " + type + " of ₹" + amount + " failed for account " + accountNo,
-                        null, accountNo);
+            if (fromAccount == toAccount) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Cannot transfer to the same account.");
             }
 
-            return success;
+            Result<Transaction> replayed = replay(fromAccount, idempotencyKey, "TRANSFER_OUT", amount);
+            if (replayed != null) {
+                return replayed;
+            }
+
+            VelocityEngine.Screening screening = screenVelocity(fromAccount, "TRANSFER_OUT", amount, toAccount);
+            if (screening != null && screening.blocked()) {
+                return Result.fail(ResultCode.LIMIT_EXCEEDED, "Held by velocity checks: " + screening.hit.ruleNames() + ".");
+            }
+            Result<Transaction> result = null;
+            try {
+                result = postTransfer(fromAccount, toAccount, amount, idempotencyKey);
+                return result;
+            } finally {
+                VelocityEngine.settle(screening, result != null && result.isSuccess());
+            }
         }
 
         /**
-         * Mark scheduled transaction as executed
+         * The transfer itself, once velocity screening let it through
          */
-        private void markScheduledTransactionExecuted(int scheduledId) {
-            String sql = "UPDATE scheduled_transactions SET executed = TRUE WHERE id = ?";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+        private Result<Transaction> postTransfer(int fromAccount, int toAccount, double amount, String idempotencyKey) {
+            if (ledger != null) {
+                Result<Transaction> stored = findStored(fromAccount, idempotencyKey, "TRANSFER_OUT", amount,
+                        "Transfer successful!");
+                if (stored != null) {
+                    return stored;
+                }
+                Result<Transaction> result = ledger.transfer(fromAccount, toAccount, BigDecimal.valueOf(amount),
+                        idempotencyKey);
+                if (result.isSuccess()) {
+                    if (!LedgerEngine.REPLAYED.equals(result.getMessage())) {
+                        LiveStatistics.recordPosting("TRANSFER_OUT", result.getValue().getAmount());
+                        LiveStatistics.recordPosting("TRANSFER_IN", result.getValue().getAmount());
+                    }
+                    return IdempotencyCache.remember(fromAccount, idempotencyKey, "TRANSFER_OUT",
+                            BigDecimal.valueOf(amount), Result.ok(result.getValue(), "Transfer successful!"));
+                }
+                return result;
+            }
 
-                ps.setInt(1, scheduledId);
-                ps.executeUpdate();
+            Account fromAcc = findAccount(fromAccount);
+            Account toAcc = findAccount(toAccount);
+
+            Result<Transaction> unusable = checkAccountUsable(fromAcc, "Source account");
+            if (unusable == null) {
+                unusable = checkTermHold(fromAcc, true);
+            }
+            if (unusable != null) {
+                return orStored(unusable, fromAccount, idempotencyKey, "TRANSFER_OUT", amount, "Transfer successful!");
+            }
+
+            if (toAcc == null || !toAcc.isActive()) {
+                return orStored(Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Destination account not found or inactive."),
+                        fromAccount, idempotencyKey, "TRANSFER_OUT", amount, "Transfer successful!");
+            }
+
+            Result<Transaction> held = checkTermHold(toAcc, false);
+            if (held != null) {
+                return orStored(held, fromAccount, idempotencyKey, "TRANSFER_OUT", amount, "Transfer successful!");
+            }
+
+            if (fromAcc.getBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
+                return orStored(Result.fail(ResultCode.INSUFFICIENT_FUNDS, "Insufficient balance in source account."),
+                        fromAccount, idempotencyKey, "TRANSFER_OUT", amount, "Transfer successful!");
+            }
+
+            if (DBUtil.shardOf(fromAccount) != DBUtil.shardOf(toAccount)) {
+                return IdempotencyCache.remember(fromAccount, idempotencyKey, "TRANSFER_OUT", BigDecimal.valueOf(amount),
+                        transferAcrossShards(fromAccount, toAccount, BigDecimal.valueOf(amount), idempotencyKey));
+            }
+
+            if (settlement != null) {
+                Result<Transaction> settled = settlement.submit(fromAccount, toAccount, BigDecimal.valueOf(amount),
+                        fromAcc.getBalance(), idempotencyKey);
+                if (settled != null) {
+                    if (!settled.isSuccess()) {
+                        return orStored(settled, fromAccount, idempotencyKey, "TRANSFER_OUT", amount,
+                                "Transfer successful!");
+                    }
+                    LiveStatistics.recordPosting("TRANSFER_OUT", settled.getValue().getAmount());
+                    LiveStatistics.recordPosting("TRANSFER_IN", settled.getValue().getAmount());
+                    return IdempotencyCache.remember(fromAccount, idempotencyKey, "TRANSFER_OUT",
+                            settled.getValue().getAmount(), settled);
+                }
+                // The window's batch failed as a whole; post this one directly
+            }
+
+            String debitSql = "UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE account_no = ? AND version = ?";
+
+            try {
+                Result<Transaction> result = ConcurrencyControl.run("transfer", fromAccount, (conn, attempt, pessimistic) -> {
+                    Account current = currentAccount(conn, fromAcc, attempt, pessimistic);
+                    Result<Transaction> stale = checkDebit(current, "Source account", amount,
+                            "Insufficient balance in source account.");
+                    if (stale != null) {
+                        return stale;
+                    }
+                    if (!withinDailyLimit(conn, current, amount)) {
+                        return Result.fail(ResultCode.LIMIT_EXCEEDED, "Daily transfer limit exceeded.");
+                    }
+
+                    // Debit from source account
+                    try (PreparedStatement debitPs = conn.prepareStatement(debitSql)) {
+                        BalanceSlots.draw(conn, fromAccount, BigDecimal.valueOf(amount));
+                        debitPs.setBigDecimal(1, BigDecimal.valueOf(amount));
+                        debitPs.setInt(2, fromAccount);
+                        debitPs.setInt(3, current.getVersion());
+                        ConcurrencyControl.cas(debitPs);
+                    }
+
+                    // Credit to destination account
+                    BalanceSlots.credit(conn, toAccount, BigDecimal.valueOf(amount), false);
+
+                    // Add transactions
+                    Transaction txn = addTransaction(conn, fromAccount, "TRANSFER_OUT", BigDecimal.valueOf(amount),
+                            "Transfer to account " + toAccount, null, idempotencyKey);
+                    addTransaction(conn, toAccount, "TRANSFER_IN", BigDecimal.valueOf(amount),
+                            "Transfer from account " + fromAccount, null);
+                    return Result.ok(txn, "Transfer successful!");
+                });
+                if (!result.isSuccess()) {
+                    return orStored(result, fromAccount, idempotencyKey, "TRANSFER_OUT", amount, "Transfer successful!");
+                }
+
+                Transaction txn = result.getValue();
+                LiveStatistics.recordPosting("TRANSFER_OUT", txn.getAmount());
+                LiveStatistics.recordPosting("TRANSFER_IN", txn.getAmount());
 
+                auditLogger.log("TRANSFER",
+                        "₹" + amount + " transferred from " + fromAccount + " to " + toAccount,
+                        null, fromAccount);
+
+                return IdempotencyCache.remember(fromAccount, idempotencyKey, "TRANSFER_OUT", txn.getAmount(), result);
+
+            } catch (ConcurrencyControl.RetriesExhausted e) {
+                return Result.fail(ResultCode.CONFLICT, "The source account is busy. Please try again.");
             } catch (SQLException e) {
-                System.out.println("Error marking scheduled transaction as executed: " + e.getMessage());
+                Result<Transaction> original = e instanceof SQLIntegrityConstraintViolationException
+                        ? findStored(fromAccount, idempotencyKey, "TRANSFER_OUT", amount, "Transfer successful!") : null;
+                if (original != null) {
+                    return original;
+                }
+                auditLogger.log("TRANSFER_FAILED",
+                        "Failed to transfer ₹" + amount + " from " + fromAccount + " to " + toAccount,
+                        null, fromAccount);
+                return Result.fail(ResultCode.DB_ERROR, "Error processing transfer: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Answer a retried posting from the cache; null when there is no key or no cached result
+         */
+        private Result<Transaction> replay(int accountNo, String idempotencyKey, String type, double amount) {
+            if (idempotencyKey == null) {
+                return null;
+            }
+            Result<Transaction> invalid = IdempotencyCache.validate(idempotencyKey);
+            if (invalid != null) {
+                return invalid;
             }
+            return IdempotencyCache.lookup(accountNo, idempotencyKey, type, BigDecimal.valueOf(amount));
+        }
+
+        /**
+         * A keyed posting that failed may be a retry whose original already went through (and
+         * changed the balance it was checked against); answer with the original if there is one
+         */
+        private Result<Transaction> orStored(Result<Transaction> failure, int accountNo, String idempotencyKey,
+                                             String type, double amount, String message) {
+            Result<Transaction> original = findStored(accountNo, idempotencyKey, type, amount, message);
+            return original != null ? original : failure;
         }
 
         /**
-         * View pending scheduled transactions for account
+         * Load the transactions row that holds an idempotency key and answer with it; null if
+         * there is none. The JDBC path only reaches it on failure, so its keyed postings cost no
+         * extra round trip; the ledger path checks it before publishing.
          */
-        public void viewPendingScheduledTransactions(int accountNo) {
+        private Result<Transaction> findStored(int accountNo, String idempotencyKey, String type, double amount,
+                                               String message) {
+            if (idempotencyKey == null) {
+                return null;
+            }
             String sql = """
-                SELECT id, type, amount, memo, schedule_date
-                FROM scheduled_transactions 
-                WHERE account_no = ? AND executed = FALSE
-                ORDER BY schedule_date
+                SELECT id, account_no, type, amount, memo, txn_time, reverse_of
+                FROM transactions
+                WHERE account_no = ? AND idempotency_key = ?
                 """;
-
-            try (Connection conn = DBUtil.getConnection();
+            try (Connection conn = DBUtil.getConnection(accountNo);
                  PreparedStatement ps = conn.prepareStatement(sql)) {
 
                 ps.setInt(1, accountNo);
+                ps.setString(2, idempotencyKey);
                 ResultSet rs = ps.executeQuery();
-
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("      PENDING SCHEDULED TRANSACTIONS");
-                System.out.println("═══════════════════════════════════════");
-                System.out.printf("%-5s %-12s %-12s %-25s %s%n", "ID", "Type", "Amount", "Description", "Date");
-                System.out.println("─────────────────────────────────────────────────────────────────");
-
-                boolean hasPending = false;
-                while (rs.next()) {
-                    hasPending = true;
-                    System.out.printf("%-5d %-12s ₹%-11.2f %-25s %s%n",
-                            rs.getInt("id"),
-                            rs.getString("type"),
-                            rs.getBigDecimal("amount").doubleValue(),
-                            rs.getString("memo"),
-                            rs.getDate("schedule_date").toLocalDate().format(SIMPLE_DATE_FMT)
-                    );
+                if (!rs.next()) {
+                    return null;
                 }
 
-                if (!hasPending) {
-                    System.out.println("No pending scheduled transactions.");
+                Transaction txn = mapResultSetToTransaction(rs);
+                if (!txn.getType().equals(type) || txn.getAmount().compareTo(BigDecimal.valueOf(amount)) != 0) {
+                    return IdempotencyCache.conflict();
                 }
-
-                System.out.println("═════════════════════════════════════════════════════════════════");
+                IdempotencyCache.recordDatabaseHit();
+                return IdempotencyCache.remember(accountNo, idempotencyKey, type, txn.getAmount(), Result.ok(txn, message));
 
             } catch (SQLException e) {
-                System.out.println("Error viewing pending scheduled transactions: " + e.getMessage());
+                return null;
             }
         }
 
         /**
-         * Cancel a scheduled transaction
+         * Transfer between accounts on different shards as a saga: the debit commits on the
+         * source shard together with a DEBITED intent, the credit commits on the destination
+         * together with a receipt keyed by the intent, and the intent is then closed. A credit
+         * the destination refuses is compensated on the source; one that cannot be attempted
+         * stays DEBITED until resumeTransferIntents() finishes it.
          */
-        public boolean cancelScheduledTransaction(int scheduledId, int accountNo) {
-            String sql = "DELETE FROM scheduled_transactions WHERE id = ? AND account_no = ? AND executed = FALSE";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+        private Result<Transaction> transferAcrossShards(int fromAccount, int toAccount, BigDecimal amount,
+                                                         String idempotencyKey) {
+            String debitSql = "UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE account_no = ? AND version = ?";
+            String intentSql = """
+                INSERT INTO transfer_intents (intent_key, from_account, to_account, amount, debit_txn_id, state, created_at)
+                VALUES (?, ?, ?, ?, ?, 'DEBITED', NOW())
+                """;
 
-                ps.setInt(1, scheduledId);
-                ps.setInt(2, accountNo);
+            String intentKey = UUID.randomUUID().toString();
+            Transaction txn;
+            try {
+                Result<Transaction> debited = ConcurrencyControl.run("transfer", fromAccount, (conn, attempt, pessimistic) -> {
+                    Account current = ConcurrencyControl.read(conn, fromAccount, pessimistic);
+                    Result<Transaction> stale = checkDebit(current, "Source account", amount.doubleValue(),
+                            "Insufficient balance in source account.");
+                    if (stale != null) {
+                        return stale;
+                    }
+                    if (!withinDailyLimit(conn, current, amount.doubleValue())) {
+                        return Result.fail(ResultCode.LIMIT_EXCEEDED, "Daily transfer limit exceeded.");
+                    }
 
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    auditLogger.log("SCHEDULED_TRANSACTION_CANCELLED",
-                            "Scheduled transaction #" + scheduledId + " cancelled for account " + accountNo,
-                            null, accountNo);
-                    return true;
+                    try (PreparedStatement debitPs = conn.prepareStatement(debitSql);
+                         PreparedStatement intentPs = conn.prepareStatement(intentSql)) {
+                        BalanceSlots.draw(conn, fromAccount, amount);
+                        debitPs.setBigDecimal(1, amount);
+                        debitPs.setInt(2, fromAccount);
+                        debitPs.setInt(3, current.getVersion());
+                        ConcurrencyControl.cas(debitPs);
+
+                        Transaction debit = addTransaction(conn, fromAccount, "TRANSFER_OUT", amount,
+                                "Transfer to account " + toAccount, null, idempotencyKey);
+
+                        intentPs.setString(1, intentKey);
+                        intentPs.setInt(2, fromAccount);
+                        intentPs.setInt(3, toAccount);
+                        intentPs.setBigDecimal(4, amount);
+                        intentPs.setInt(5, debit.getId());
+                        intentPs.executeUpdate();
+                        return Result.ok(debit, null);
+                    }
+                });
+                if (!debited.isSuccess()) {
+                    return orStored(debited, fromAccount, idempotencyKey, "TRANSFER_OUT", amount.doubleValue(),
+                            "Transfer successful!");
                 }
+                txn = debited.getValue();
+                LiveStatistics.recordPosting("TRANSFER_OUT", txn.getAmount());
 
+            } catch (ConcurrencyControl.RetriesExhausted e) {
+                return Result.fail(ResultCode.CONFLICT, "The source account is busy. Please try again.");
             } catch (SQLException e) {
-                System.out.println("Error cancelling scheduled transaction: " + e.getMessage());
+                Result<Transaction> original = e instanceof SQLIntegrityConstraintViolationException
+                        ? findStored(fromAccount, idempotencyKey, "TRANSFER_OUT", amount.doubleValue(), "Transfer successful!")
+                        : null;
+                if (original != null) {
+                    return original;
+                }
+                auditLogger.log("TRANSFER_FAILED",
+                        "Failed to transfer ₹" + amount + " from " + fromAccount + " to " + toAccount,
+                        null, fromAccount);
+                return Result.fail(ResultCode.DB_ERROR, "Error processing transfer: " + e.getMessage());
             }
 
-            return false;
+            String state = completeTransferIntent(intentKey, fromAccount, toAccount, amount, txn.getId());
+            return switch (state) {
+                case "COMPLETED" -> {
+                    auditLogger.log("TRANSFER",
+                            "₹" + amount + " transferred from " + fromAccount + " to " + toAccount,
+                            null, fromAccount);
+                    yield Result.ok(txn, "Transfer successful!");
+                }
+                case "COMPENSATED" -> Result.fail(ResultCode.ACCOUNT_NOT_FOUND,
+                        "Destination account not found or inactive. The amount has been returned.");
+                default -> Result.ok(txn, "Transfer accepted. The credit to account " + toAccount
+                        + " will complete when its database is reachable.");
+            };
         }
 
-        private boolean isValidTransactionType(String type) {
-            return type != null && (type.equalsIgnoreCase("DEPOSIT") || type.equalsIgnoreCase("WITHDRAWAL"));
-        }
-    }
+        /**
+         * Drive one DEBITED intent forward, returning its new state (DEBITED if the destination
+         * shard could not be reached). Safe to repeat: the receipt key stops a second credit and
+         * the state guard stops a second close.
+         */
+        private String completeTransferIntent(String intentKey, int fromAccount, int toAccount,
+                                              BigDecimal amount, int debitTxnId) {
+            String receiptCheckSql = "SELECT 1 FROM transfer_receipts WHERE intent_key = ?";
+            String receiptSql = "INSERT INTO transfer_receipts (intent_key, account_no, amount, received_at) VALUES (?, ?, ?, NOW())";
 
-    // ═══════════════════════════════════════════════════════════════
-    //                        ADMIN MANAGER
-    // ═══════════════════════════════════════════════════════════════
-    /*
-     * Author: Samruddha Belsare
-     * Updated: 07-Oct-2025
-     */
-    /**
-     * Administrative functions
-     */
-    static class AdminManager {
-
-        private final AccountManager accountManager;
-        private final AuditLogger auditLogger;
-
-        public AdminManager(AccountManager accountManager, AuditLogger auditLogger) {
-            this.accountManager = accountManager;
-            this.auditLogger = auditLogger;
-        }
+            boolean credited;
+            try (Connection conn = DBUtil.getConnection(toAccount)) {
+                conn.setAutoCommit(false);
 
-        /**
-         * Admin login flow
-         */
-        public void adminLoginFlow() {
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("           ADMIN LOGIN");
-            System.out.println("═══════════════════════════════════════");
+                try (PreparedStatement checkPs = conn.prepareStatement(receiptCheckSql);
+                     PreparedStatement receiptPs = conn.prepareStatement(receiptSql)) {
+
+                    checkPs.setString(1, intentKey);
+                    if (checkPs.executeQuery().next()) {
+                        credited = true;
+                    } else {
+                        credited = BalanceSlots.credit(conn, toAccount, amount, true) > 0;
+                        if (credited) {
+                            receiptPs.setString(1, intentKey);
+                            receiptPs.setInt(2, toAccount);
+                            receiptPs.setBigDecimal(3, amount);
+                            receiptPs.executeUpdate();
+                            addTransaction(conn, toAccount, "TRANSFER_IN", amount,
+                                    "Transfer from account " + fromAccount, null);
+                            conn.commit();
+                            LiveStatistics.recordPosting("TRANSFER_IN", amount);
+                        } else {
+                            conn.rollback();
+                        }
+                    }
 
-            String username = InputUtil.getString("Admin Username: ");
-            String password = InputUtil.getString("Admin Password: ");
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    // Another process wrote the receipt first
+                    conn.rollback();
+                    credited = true;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
 
-            if (authenticateAdmin(username, password)) {
-                System.out.println("Admin login successful!");
-                auditLogger.log("ADMIN_LOGIN_SUCCESS", "Admin " + username + " logged in");
-                adminMenu();
-            } else {
-                System.out.println("Invalid admin credentials.");
-                auditLogger.log("ADMIN_LOGIN_FAILED", "Failed admin login attempt for " + username);
+            } catch (SQLException e) {
+                System.err.println("Transfer " + intentKey + " left pending: " + e.getMessage());
+                return "DEBITED";
             }
+
+            return credited
+                    ? closeTransferIntent(intentKey, "COMPLETED", fromAccount, toAccount, amount, debitTxnId)
+                    : closeTransferIntent(intentKey, "COMPENSATED", fromAccount, toAccount, amount, debitTxnId);
         }
 
         /**
-         * Admin menu
+         * Move an intent out of DEBITED on the source shard; compensating also credits the
+         * source back in the same transaction
          */
-        private void adminMenu() {
-            while (true) {
-                System.out.println("\n═══════════════════════════════════════");
-                System.out.println("             ADMIN PANEL");
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("1. View All Accounts");
-                System.out.println("2. Lock/Unlock Account");
-                System.out.println("3. View Account Details");
-                System.out.println("4. System Statistics");
-                System.out.println("5. View Audit Log");
-                System.out.println("6. Generate Reports");
-                System.out.println("7. Manage Daily Limits");
-                System.out.println("8. Force Apply Interest");
-                System.out.println("9. Logout");
+        private String closeTransferIntent(String intentKey, String state, int fromAccount, int toAccount,
+                                           BigDecimal amount, int debitTxnId) {
+            String closeSql = "UPDATE transfer_intents SET state = ? WHERE intent_key = ? AND state = 'DEBITED'";
+            String refundSql = "UPDATE accounts SET balance = balance + ? WHERE account_no = ?";
 
-                int choice = InputUtil.getInt("Choose option: ");
+            boolean compensated;
+            try (Connection conn = DBUtil.getConnection(fromAccount)) {
+                conn.setAutoCommit(false);
 
-                switch (choice) {
-                    case 1 -> viewAllAccounts();
-                    case 2 -> manageAccountLock();
-                    case 3 -> viewAccountDetails();
-                    case 4 -> showSystemStatistics();
-                    case 5 -> auditLogger.viewAuditLog(50);
-                    case 6 -> generateReports();
-                    case 7 -> manageDailyLimits();
-                    case 8 -> forceApplyInterest();
-                    case 9 -> {
-                        auditLogger.log("ADMIN_LOGOUT", "Admin logged out");
-                        return;
-                    }
-                    default -> System.out.println("Invalid option.");
-                }
-            }
-        }
+                try (PreparedStatement closePs = conn.prepareStatement(closeSql);
+                     PreparedStatement refundPs = conn.prepareStatement(refundSql)) {
 
-        /**
-         * Authenticate admin user
-         */
-        private boolean authenticateAdmin(String username, String password) {
-            String sql = "SELECT password_hash FROM users WHERE username = ? AND role = 'ADMIN'";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                    closePs.setString(1, state);
+                    closePs.setString(2, intentKey);
+                    boolean closed = closePs.executeUpdate() > 0;
 
-                ps.setString(1, username);
-                ResultSet rs = ps.executeQuery();
+                    if (closed && state.equals("COMPENSATED")) {
+                        refundPs.setBigDecimal(1, amount);
+                        refundPs.setInt(2, fromAccount);
+                        refundPs.executeUpdate();
+                        addTransaction(conn, fromAccount, "TRANSFER_IN", amount,
+                                "Returned transfer to account " + toAccount, debitTxnId);
+                    }
 
-                if (rs.next()) {
-                    String storedHash = rs.getString("password_hash");
-                    // Simple hash comparison (in production, use proper password hashing)
-                    return storedHash.equals(SecurityUtil.hashPin(password));
+                    conn.commit();
+                    compensated = closed && state.equals("COMPENSATED");
+
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
                 }
 
             } catch (SQLException e) {
-                System.out.println("Error authenticating admin: " + e.getMessage());
+                System.err.println("Transfer " + intentKey + " left pending: " + e.getMessage());
+                return "DEBITED";
             }
 
-            return false;
+            if (compensated) {
+                LiveStatistics.recordPosting("TRANSFER_IN", amount);
+                auditLogger.log("TRANSFER_COMPENSATED",
+                        "₹" + amount + " returned to " + fromAccount + " after transfer to " + toAccount
+                                + " was refused", null, fromAccount);
+            }
+            return state;
         }
 
         /**
-         * View all accounts
+         * Finish cross-shard transfers interrupted after their debit, returning how many were closed
          */
-        private void viewAllAccounts() {
-            String sql = """
-                SELECT account_no, holder_name, account_type, balance, active, locked, 
-                       failed_login_attempts, daily_limit
-                FROM accounts 
-                ORDER BY account_no
-                """;
+        public int resumeTransferIntents() {
+            String sql = "SELECT intent_key, from_account, to_account, amount, debit_txn_id FROM transfer_intents WHERE state = 'DEBITED'";
 
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ResultSet rs = ps.executeQuery();
+            int closed = 0;
+            for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                List<Object[]> pending = new ArrayList<>();
+                try (Connection conn = DBUtil.getShardConnection(shard);
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
 
-                System.out.println("═══════════════════════════════════════════════════════════════════════════");
-                System.out.println("                              ALL ACCOUNTS");
-                System.out.println("═══════════════════════════════════════════════════════════════════════════");
-                System.out.printf("%-8s %-20s %-10s %-12s %-8s %-8s %-8s %-12s%n",
-                        "Acc No", "Name", "Type", "Balance", "Active", "Locked", "Attempts", "Daily Limit");
-                System.out.println("───────────────────────────────────────────────────────────────────────────");
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        pending.add(new Object[]{rs.getString("intent_key"), rs.getInt("from_account"),
+                                rs.getInt("to_account"), rs.getBigDecimal("amount"), rs.getInt("debit_txn_id")});
+                    }
 
-                while (rs.next()) {
-                    System.out.printf("%-8d %-20s %-10s ₹%-11.2f %-8s %-8s %-8d ₹%-11.2f%n",
-                            rs.getInt("account_no"),
-                            rs.getString("holder_name"),
-                            rs.getString("account_type"),
-                            rs.getBigDecimal("balance").doubleValue(),
-                            rs.getBoolean("active") ? "Yes" : "No",
-                            rs.getBoolean("locked") ? "Yes" : "No",
-                            rs.getInt("failed_login_attempts"),
-                            rs.getBigDecimal("daily_limit").doubleValue()
-                    );
+                } catch (SQLException e) {
+                    System.err.println("Error reading transfer intents on shard " + shard + ": " + e.getMessage());
+                    continue;
                 }
 
-                System.out.println("═══════════════════════════════════════════════════════════════════════════");
-
-            } catch (SQLException e) {
-                System.out.println("Error viewing accounts: " + e.getMessage());
+                for (Object[] intent : pending) {
+                    String state = completeTransferIntent((String) intent[0], (Integer) intent[1],
+                            (Integer) intent[2], (BigDecimal) intent[3], (Integer) intent[4]);
+                    if (!state.equals("DEBITED")) {
+                        closed++;
+                    }
+                }
             }
+            return closed;
         }
 
         /**
-         * Manage account lock/unlock
+         * Apply interest if due, returning the amount credited (zero if none)
          */
-        private void manageAccountLock() {
-            int accountNo = InputUtil.getInt("Enter account number: ");
-            Account account = accountManager.findAccount(accountNo);
-
-            if (account == null) {
-                System.out.println("Account not found.");
-                return;
+        public BigDecimal applyInterestIfDue(int accountNo) {
+            if (DAILY_ACCRUAL_ENABLED) {
+                return BigDecimal.ZERO; // paid by the monthly posting of accrued interest
+            }
+            if (ledger != null) {
+                Result<Transaction> result = ledger.applyInterest(accountNo);
+                if (!result.isSuccess() || result.getValue() == null) {
+                    return BigDecimal.ZERO;
+                }
+                LiveStatistics.recordPosting("INTEREST", result.getValue().getAmount());
+                return result.getValue().getAmount();
             }
 
-            System.out.println("Account " + accountNo + " (" + account.getHolderName() + ")");
-            System.out.println("Current status: " + (account.isLocked() ? "Locked" : "Unlocked"));
-
-            String action = InputUtil.getString("Enter action (lock/unlock): ");
-
-            boolean newLockStatus;
-            if ("lock".equalsIgnoreCase(action)) {
-                newLockStatus = true;
-            } else if ("unlock".equalsIgnoreCase(action)) {
-                newLockStatus = false;
-            } else {
-                System.out.println("Invalid action.");
-                return;
+            Account account = findAccount(accountNo);
+            if (account == null || !account.isActive()) {
+                return BigDecimal.ZERO;
+            }
+            // A running fixed deposit is paid its interest at maturity instead
+            if (checkTermHold(account, true) != null) {
+                return BigDecimal.ZERO;
             }
 
-            String sql = "UPDATE accounts SET locked = ?, failed_login_attempts = 0 WHERE account_no = ?";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
+            LocalDate today = LocalDate.now();
+            String updateSql = """
+                UPDATE accounts 
+                SET balance = balance + ?, last_interest_date = CURDATE(), version = version + 1 
+                WHERE account_no = ? AND version = ?
+                """;
 
-                ps.setBoolean(1, newLockStatus);
-                ps.setInt(2, accountNo);
+            try {
+                // Interest is computed from the balance read, so a concurrent change must force a re-read
+                BigDecimal interest = ConcurrencyControl.run("interest", accountNo, (conn, attempt, pessimistic) -> {
+                    Account current = currentAccount(conn, account, attempt, pessimistic);
+                    if (current == null || !current.isActive()) {
+                        return BigDecimal.ZERO;
+                    }
+                    LocalDate lastInterestDate = current.getLastInterestDate();
+                    if (lastInterestDate != null && !lastInterestDate.isBefore(today)) {
+                        return BigDecimal.ZERO;
+                    }
+                    BigDecimal due = calculateMonthlyInterest(current.getBalance(), current.getAccountType());
+                    if (due.compareTo(BigDecimal.ZERO) <= 0) {
+                        return BigDecimal.ZERO;
+                    }
 
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    String actionText = newLockStatus ? "locked" : "unlocked";
-                    System.out.println("Account " + accountNo + " has been " + actionText + ".");
-                    auditLogger.log("ACCOUNT_" + actionText.toUpperCase(),
-                            "Account " + accountNo + " " + actionText + " by admin", null, accountNo);
+                    try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                        ps.setBigDecimal(1, due);
+                        ps.setInt(2, accountNo);
+                        ps.setInt(3, current.getVersion());
+                        ConcurrencyControl.cas(ps);
+                    }
+                    addTransaction(conn, accountNo, "INTEREST", due, "Monthly interest credit", null);
+                    return due;
+                });
+
+                if (interest.compareTo(BigDecimal.ZERO) > 0) {
+                    LiveStatistics.recordPosting("INTEREST", interest);
+                    auditLogger.log("INTEREST_APPLIED",
+                            "₹" + interest + " interest applied to account " + accountNo, null, accountNo);
                 }
+                return interest;
 
             } catch (SQLException e) {
-                System.out.println("Error updating account lock status: " + e.getMessage());
+                System.err.println("Error applying interest: " + e.getMessage());
             }
+
+            return BigDecimal.ZERO;
         }
 
         /**
-         * View detailed account information
+         * The fixed deposit held on an account, or null if there is none
          */
-        private void viewAccountDetails() {
-            int accountNo = InputUtil.getInt("Enter account number: ");
-            accountManager.showAccountSummary(accountNo);
+        public FixedDeposits.Deposit findFixedDeposit(int accountNo) {
+            try {
+                return FixedDeposits.find(accountNo);
+            } catch (SQLException e) {
+                System.err.println("Error finding fixed deposit: " + e.getMessage());
+                return null;
+            }
         }
 
         /**
-         * Show system statistics
+         * Settle a fixed deposit now: before maturity it earns the penalised rate for the days
+         * held, from maturity on the full rate. Either way the principal and interest become
+         * available on the account.
          */
-        private void showSystemStatistics() {
-            String sql = """
-                SELECT 
-                    COUNT(*) as total_accounts,
-                    COUNT(CASE WHEN active = TRUE THEN 1 END) as active_accounts,
-                    COUNT(CASE WHEN locked = TRUE THEN 1 END) as locked_accounts,
-                    COALESCE(SUM(balance), 0) as total_balance,
-                    COUNT(CASE WHEN account_type = 'Savings' THEN 1 END) as savings_accounts,
-                    COUNT(CASE WHEN account_type = 'Checking' THEN 1 END) as checking_accounts,
-                    COUNT(CASE WHEN account_type = 'Business' THEN 1 END) as business_accounts
-                FROM accounts
-                """;
-
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ResultSet rs = ps.executeQuery();
-
-                if (rs.next()) {
-                    System.out.println("═══════════════════════════════════════");
-                    System.out.println("         SYSTEM STATISTICS");
-                    System.out.println("═══════════════════════════════════════");
-                    System.out.println("Total Accounts     : " + rs.getInt("total_accounts"));
-                    System.out.println("Active Accounts    : " + rs.getInt("active_accounts"));
-                    System.out.println("Locked Accounts    : " + rs.getInt("locked_accounts"));
-                    System.out.println("Total Balance      : ₹" + rs.getBigDecimal("total_balance"));
-                    System.out.println();
-                    System.out.println("Account Types:");
-                    System.out.println("  Savings          : " + rs.getInt("savings_accounts"));
-                    System.out.println("  Checking         : " + rs.getInt("checking_accounts"));
-                    System.out.println("  Business         : " + rs.getInt("business_accounts"));
-                    System.out.println("═══════════════════════════════════════");
-                }
-
-                // Transaction statistics
-                String txnSql = """
-                    SELECT 
-                        COUNT(*) as total_transactions,
-                        COUNT(CASE WHEN type = 'DEPOSIT' THEN 1 END) as deposits,
-                        COUNT(CASE WHEN type = 'WITHDRAWAL' THEN 1 END) as withdrawals,
-                        COUNT(CASE WHEN type LIKE 'TRANSFER%' THEN 1 END) as transfers
-                    FROM transactions
-                    WHERE DATE(txn_time) = CURDATE()
-                    """;
+        public Result<Transaction> breakFixedDeposit(int accountNo) {
+            String settleSql = "UPDATE fixed_deposits SET status = ?, settled_date = ?, interest_paid = ? WHERE account_no = ?";
+            String creditSql = "UPDATE accounts SET balance = balance + ?, last_interest_date = ? WHERE account_no = ?";
 
-                try (PreparedStatement txnPs = conn.prepareStatement(txnSql)) {
-                    ResultSet txnRs = txnPs.executeQuery();
+            LocalDate today = LocalDate.now();
+            FixedDeposits.Deposit deposit;
+            Transaction txn = null;
+            try (Connection conn = DBUtil.getConnection(accountNo)) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement settlePs = conn.prepareStatement(settleSql);
+                     PreparedStatement creditPs = conn.prepareStatement(creditSql)) {
 
-                    if (txnRs.next()) {
-                        System.out.println("TODAY'S TRANSACTIONS:");
-                        System.out.println("  Total            : " + txnRs.getInt("total_transactions"));
-                        System.out.println("  Deposits         : " + txnRs.getInt("deposits"));
-                        System.out.println("  Withdrawals      : " + txnRs.getInt("withdrawals"));
-                        System.out.println("  Transfers        : " + txnRs.getInt("transfers"));
-                        System.out.println("═══════════════════════════════════════");
+                    deposit = FixedDeposits.find(conn, accountNo, true);
+                    if (deposit == null || !deposit.isActive()) {
+                        conn.rollback();
+                        return Result.fail(ResultCode.INVALID_INPUT, "No running fixed deposit on this account.");
                     }
+                    BigDecimal interest = BigDecimal.valueOf(deposit.payoutPaise(today), 2);
+
+                    settlePs.setString(1, deposit.isMatured(today) ? "MATURED" : "BROKEN");
+                    settlePs.setDate(2, Date.valueOf(today));
+                    settlePs.setBigDecimal(3, interest);
+                    settlePs.setInt(4, accountNo);
+                    settlePs.executeUpdate();
+                    if (interest.signum() > 0) {
+                        creditPs.setBigDecimal(1, interest);
+                        creditPs.setDate(2, Date.valueOf(today));
+                        creditPs.setInt(3, accountNo);
+                        creditPs.executeUpdate();
+                        txn = addTransaction(conn, accountNo, "INTEREST", interest, deposit.isMatured(today)
+                                ? "Fixed deposit interest at maturity"
+                                : "Fixed deposit interest, withdrawn early", null);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
-
             } catch (SQLException e) {
-                System.out.println("Error retrieving system statistics: " + e.getMessage());
+                return Result.fail(ResultCode.DB_ERROR, "Error settling fixed deposit: " + e.getMessage());
+            }
+
+            BigDecimal principal = BigDecimal.valueOf(deposit.principalPaise, 2);
+            BigDecimal interest = txn != null ? txn.getAmount() : BigDecimal.valueOf(0, 2);
+            if (txn != null) {
+                LiveStatistics.recordPosting("INTEREST", interest);
             }
+            boolean early = !deposit.isMatured(today);
+            auditLogger.log(early ? "FIXED_DEPOSIT_BROKEN" : "FIXED_DEPOSIT_MATURED", "₹" + principal
+                    + " fixed deposit on account " + accountNo + (early ? " withdrawn early" : " matured")
+                    + " with ₹" + interest + " interest", null, accountNo);
+            return Result.ok(txn, "Fixed deposit settled. ₹" + principal + " principal and ₹" + interest
+                    + " interest are now available.");
         }
 
         /**
-         * Generate reports
+         * Monthly interest (annual rate / 12) on a balance, rounded to paise
          */
-        private void generateReports() {
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("           REPORT GENERATION");
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("1. Daily Transaction Report");
-            System.out.println("2. Weekly Transaction Report");
-            System.out.println("3. Account Balance Report");
-            System.out.println("4. Dormant Accounts Report");
+        static BigDecimal calculateMonthlyInterest(BigDecimal balance, String accountType) {
+            double interestRate = switch (accountType.toLowerCase()) {
+                case "savings" -> SAVINGS_INTEREST_RATE;
+                case "checking" -> CHECKING_INTEREST_RATE;
+                case "business" -> BUSINESS_INTEREST_RATE;
+                default -> SAVINGS_INTEREST_RATE;
+            };
 
-            int choice = InputUtil.getInt("Choose report: ");
+            BigDecimal monthlyRate = BigDecimal.valueOf(interestRate / 12.0);
+            return balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+        }
 
-            switch (choice) {
-                case 1 -> generateDailyTransactionReport();
-                case 2 -> generateWeeklyTransactionReport();
-                case 3 -> generateAccountBalanceReport();
-                case 4 -> generateDormantAccountsReport();
-                default -> System.out.println("Invalid option.");
+        /**
+         * Run a debit past the velocity rules and audit any hit; null when the rules are off
+         */
+        private VelocityEngine.Screening screenVelocity(int accountNo, String type, double amount, int payee) {
+            if (!VELOCITY_ENABLED) {
+                return null;
+            }
+            VelocityEngine.Screening screening = VelocityEngine.screen(accountNo, type, BigDecimal.valueOf(amount), payee);
+            VelocityEngine.Hit hit = screening.hit;
+            if (hit != null) {
+                auditLogger.log(hit.blocked ? "VELOCITY_BLOCK" : "VELOCITY_ALERT",
+                        type + " of ₹" + amount + " from account " + accountNo + " tripped " + hit.ruleNames()
+                                + " (" + hit.detail + ")", null, accountNo);
             }
+            return screening;
         }
 
-        private void generateDailyTransactionReport() {
+        /**
+         * Check daily withdrawal/transfer limit, on the attempt's connection: a debit that commits
+         * after this read bumps the version, so the attempt's CAS fails and it is checked again
+         */
+        private boolean withinDailyLimit(Connection conn, Account account, double amount) throws SQLException {
+            LocalDate today = LocalDate.now();
+
+            // Reset daily limit if it's a new day
+            if (!today.equals(account.getLastDailyReset())) {
+                String resetSql = "UPDATE accounts SET last_daily_reset = CURDATE() WHERE account_no = ?";
+                try (PreparedStatement ps = conn.prepareStatement(resetSql)) {
+                    ps.setInt(1, account.getAccountNo());
+                    ps.executeUpdate();
+                }
+            }
+
+            // Get today's withdrawal/transfer total
             String sql = """
-                SELECT 
-                    type, 
-                    COUNT(*) as count, 
-                    COALESCE(SUM(amount), 0) as total
+                SELECT COALESCE(SUM(amount), 0) as daily_total 
                 FROM transactions 
-                WHERE DATE(txn_time) = CURDATE()
-                GROUP BY type
-                ORDER BY type
+                WHERE account_no = ? AND (type = 'WITHDRAWAL' OR type = 'TRANSFER_OUT') 
+                AND reverse_of IS NULL AND DATE(txn_time) = CURDATE()
                 """;
 
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, account.getAccountNo());
                 ResultSet rs = ps.executeQuery();
+                BigDecimal dailyTotal = rs.next() ? rs.getBigDecimal("daily_total") : BigDecimal.ZERO;
+                return dailyTotal.add(BigDecimal.valueOf(amount)).compareTo(account.getDailyLimit()) <= 0;
+            }
+        }
 
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("      DAILY TRANSACTION REPORT");
-                System.out.println("      Date: " + LocalDate.now().format(SIMPLE_DATE_FMT));
-                System.out.println("═══════════════════════════════════════");
-                System.out.printf("%-15s %-10s %s%n", "Type", "Count", "Total Amount");
-                System.out.println("─────────────────────────────────────────");
-
-                while (rs.next()) {
-                    System.out.printf("%-15s %-10d ₹%.2f%n",
-                            rs.getString("type"),
-                            rs.getInt("count"),
-                            rs.getBigDecimal("total").doubleValue()
-                    );
-                }
+        /**
+         * The account as a mutation attempt should see it: the caller's earlier read on the first
+         * optimistic attempt, otherwise a fresh read (locked when pessimistic)
+         */
+        private Account currentAccount(Connection conn, Account seen, int attempt, boolean pessimistic)
+                throws SQLException {
+            return attempt == 1 && !pessimistic ? seen : ConcurrencyControl.read(conn, seen.getAccountNo(), pessimistic);
+        }
 
-                System.out.println("═══════════════════════════════════════");
+        /**
+         * Re-check a debit against the account as the attempt sees it
+         */
+        private Result<Transaction> checkDebit(Account account, String label, double amount, String insufficient) {
+            Result<Transaction> unusable = checkAccountUsable(account, label);
+            if (unusable != null) {
+                return unusable;
+            }
+            if (account.getBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
+                return Result.fail(ResultCode.INSUFFICIENT_FUNDS, insufficient);
+            }
+            return null;
+        }
 
+        /**
+         * Refuse to move money in or out of a Fixed account whose deposit is still running
+         */
+        private <T> Result<T> checkTermHold(Account account, boolean debit) {
+            if (!FixedDeposits.isFixed(account)) {
+                return null;
+            }
+            try {
+                FixedDeposits.Deposit deposit = FixedDeposits.find(account.getAccountNo());
+                if (deposit == null || !deposit.isActive()) {
+                    return null;
+                }
+                return Result.fail(ResultCode.INVALID_INPUT, debit
+                        ? "Fixed deposit is held until " + deposit.maturityDate.format(SIMPLE_DATE_FMT)
+                                + ". Use early withdrawal to break it."
+                        : "Fixed deposits do not accept further deposits.");
             } catch (SQLException e) {
-                System.out.println("Error generating daily transaction report: " + e.getMessage());
+                return Result.fail(ResultCode.DB_ERROR, "Error reading fixed deposit: " + e.getMessage());
             }
         }
 
-        private void generateWeeklyTransactionReport() {
-            // Implementation for weekly report
-            System.out.println("Weekly transaction report - Feature coming soon!");
+        /**
+         * Check that an account exists, is active and is not locked
+         */
+        private <T> Result<T> checkAccountUsable(Account account, String label) {
+            if (account == null) {
+                return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, label + " not found.");
+            }
+            if (!account.isActive()) {
+                return Result.fail(ResultCode.ACCOUNT_INACTIVE, label + " is inactive.");
+            }
+            if (account.isLocked()) {
+                return Result.fail(ResultCode.ACCOUNT_LOCKED, label + " is locked.");
+            }
+            return null;
         }
 
-        private void generateAccountBalanceReport() {
+        /**
+         * Add transaction record
+         */
+        private Transaction addTransaction(Connection conn, int accountNo, String type, BigDecimal amount,
+                                           String memo, Integer reverseOf) throws SQLException {
+            return addTransaction(conn, accountNo, type, amount, memo, reverseOf, null);
+        }
+
+        private Transaction addTransaction(Connection conn, int accountNo, String type, BigDecimal amount,
+                                           String memo, Integer reverseOf, String idempotencyKey) throws SQLException {
             String sql = """
-                SELECT 
-                    account_type,
-                    COUNT(*) as count,
-                    COALESCE(AVG(balance), 0) as avg_balance,
-                    COALESCE(SUM(balance), 0) as total_balance,
-                    COALESCE(MIN(balance), 0) as min_balance,
-                    COALESCE(MAX(balance), 0) as max_balance
-                FROM accounts
-                WHERE active = TRUE
-                GROUP BY account_type
-                ORDER BY account_type
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time, reverse_of, idempotency_key)
+                VALUES (?, ?, ?, ?, NOW(), ?, ?)
                 """;
 
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ResultSet rs = ps.executeQuery();
-
-                System.out.println("═══════════════════════════════════════════════════════════════════");
-                System.out.println("                        ACCOUNT BALANCE REPORT");
-                System.out.println("═══════════════════════════════════════════════════════════════════");
-                System.out.printf("%-10s %-8s %-12s %-12s %-12s %s%n",
-                        "Type", "Count", "Avg Balance", "Total", "Min", "Max");
-                System.out.println("───────────────────────────────────────────────────────────────────");
-
-                while (rs.next()) {
-                    System.out.printf("%-10s %-8d ₹%-11.2f ₹%-11.2f ₹%-11.2f ₹%.2f%n",
-                            rs.getString("account_type"),
-                            rs.getInt("count"),
-                            rs.getBigDecimal("avg_balance").doubleValue(),
-                            rs.getBigDecimal("total_balance").doubleValue(),
-                            rs.getBigDecimal("min_balance").doubleValue(),
-                            rs.getBigDecimal("max_balance").doubleValue()
-                    );
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, accountNo);
+                ps.setString(2, type);
+                ps.setBigDecimal(3, amount);
+                ps.setString(4, memo);
+                if (reverseOf != null) {
+                    ps.setInt(5, reverseOf);
+                } else {
+                    ps.setNull(5, Types.INTEGER);
                 }
+                ps.setString(6, idempotencyKey);
+                ps.executeUpdate();
 
-                System.out.println("═══════════════════════════════════════════════════════════════════");
-
-            } catch (SQLException e) {
-                System.out.println("Error generating balance report: " + e.getMessage());
+                ResultSet generatedKeys = ps.getGeneratedKeys();
+                int id = generatedKeys.next() ? generatedKeys.getInt(1) : 0;
+                return new Transaction(id, accountNo, type, amount, memo, LocalDateTime.now(), reverseOf);
             }
         }
 
-        private void generateDormantAccountsReport() {
+        /**
+         * Get the most recent transactions for an account, newest first
+         */
+        public Result<List<Transaction>> getTransactionHistory(int accountNo, int limit) {
+            return getTransactionHistory(accountNo, 0, limit);
+        }
+
+        /**
+         * Get one page of an account's transactions, newest first
+         */
+        public Result<List<Transaction>> getTransactionHistory(int accountNo, int offset, int limit) {
             String sql = """
-                SELECT DISTINCT a.account_no, a.holder_name, a.account_type, a.balance,
-                       COALESCE(MAX(t.txn_time), 'Never') as last_transaction
-                FROM accounts a
-                LEFT JOIN transactions t ON a.account_no = t.account_no
-                WHERE a.active = TRUE
-                GROUP BY a.account_no, a.holder_name, a.account_type, a.balance
-                HAVING last_transaction < DATE_SUB(NOW(), INTERVAL 90 DAY) OR last_transaction = 'Never'
-                ORDER BY last_transaction
+                SELECT t.id, t.account_no, t.type, t.amount, t.memo, t.txn_time, t.reverse_of
+                FROM transactions t
+                WHERE t.account_no = ?
+                ORDER BY t.txn_time DESC, t.id DESC
+                LIMIT ? OFFSET ?
                 """;
 
-            try (Connection conn = DBUtil.getConnection();
+            try (Connection conn = DBUtil.getConnection(accountNo);
                  PreparedStatement ps = conn.prepareStatement(sql)) {
 
+                ps.setInt(1, accountNo);
+                ps.setInt(2, limit);
+                ps.setInt(3, offset);
                 ResultSet rs = ps.executeQuery();
 
-                System.out.println("═══════════════════════════════════════════════════════════════════");
-                System.out.println("              DORMANT ACCOUNTS REPORT");
-                System.out.println("              (No activity for 90+ days)");
-                System.out.println("═══════════════════════════════════════════════════════════════════");
-                System.out.printf("%-8s %-20s %-10s %-12s %s%n",
-                        "Acc No", "Name", "Type", "Balance", "Last Transaction");
-                System.out.println("───────────────────────────────────────────────────────────────────");
-
-                boolean hasDormant = false;
+                List<Transaction> transactions = new ArrayList<>();
                 while (rs.next()) {
-                    hasDormant = true;
-                    Object lastTxn = rs.getObject("last_transaction");
-                    String lastTxnStr = lastTxn instanceof Timestamp ?
-                            ((Timestamp) lastTxn).toLocalDateTime().format(SIMPLE_DATE_FMT) :
-                            lastTxn.toString();
-
-                    System.out.printf("%-8d %-20s %-10s ₹%-11.2f %s%n",
-                            rs.getInt("account_no"),
-                            rs.getString("holder_name"),
-                            rs.getString("account_type"),
-                            rs.getBigDecimal("balance").doubleValue(),
-                            lastTxnStr
-                    );
+                    transactions.add(mapResultSetToTransaction(rs));
                 }
-
-                if (!hasDormant) {
-                    System.out.println("No dormant accounts found.");
-                }
-
-                System.out.println("═══════════════════════════════════════════════════════════════════");
+                return Result.ok(transactions, null);
 
             } catch (SQLException e) {
-                System.out.println("Error generating dormant accounts report: " + e.getMessage());
+                return Result.fail(ResultCode.DB_ERROR, "Error retrieving transaction history: " + e.getMessage());
             }
         }
 
         /**
-         * Manage daily limits
+         * Get account summary
          */
-        private void manageDailyLimits() {
-            int accountNo = InputUtil.getInt("Enter account number: ");
-            Account account = accountManager.findAccount(accountNo);
-
+        public Result<AccountSummary> getAccountSummary(int accountNo) {
+            Account account = findAccount(accountNo);
             if (account == null) {
-                System.out.println("Account not found.");
-                return;
+                return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
             }
 
-            System.out.println("Account: " + accountNo + " (" + account.getHolderName() + ")");
-            System.out.println("Current daily limit: ₹" + account.getDailyLimit());
-
-            double newLimit = InputUtil.getDouble("Enter new daily limit: ");
+            // Get transaction counts and totals
+            String sql = """
+                SELECT
+                    COUNT(*) as total_transactions,
+                    COALESCE(SUM(CASE WHEN type = 'DEPOSIT' OR type = 'TRANSFER_IN' OR type = 'INTEREST' THEN amount ELSE 0 END), 0) as total_credits,
+                    COALESCE(SUM(CASE WHEN type = 'WITHDRAWAL' OR type = 'TRANSFER_OUT' THEN amount ELSE 0 END), 0) as total_debits
+                FROM transactions
+                WHERE account_no = ?
+                """;
 
-            String sql = "UPDATE accounts SET daily_limit = ? WHERE account_no = ?";
-            try (Connection conn = DBUtil.getConnection();
+            try (Connection conn = DBUtil.getConnection(accountNo);
                  PreparedStatement ps = conn.prepareStatement(sql)) {
 
-                ps.setBigDecimal(1, BigDecimal.valueOf(newLimit));
-                ps.setInt(2, accountNo);
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
 
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    System.out.println("Daily limit updated successfully.");
-                    auditLogger.log("DAILY_LIMIT_CHANGED",
-                            "Daily limit for account " + accountNo + " changed to ₹" + newLimit,
-                            null, accountNo);
+                AccountSummary summary = new AccountSummary(account);
+                if (rs.next()) {
+                    summary.setTotalTransactions(rs.getInt("total_transactions"));
+                    summary.setTotalCredits(rs.getBigDecimal("total_credits"));
+                    summary.setTotalDebits(rs.getBigDecimal("total_debits"));
                 }
+                return Result.ok(summary, null);
 
             } catch (SQLException e) {
-                System.out.println("Error updating daily limit: " + e.getMessage());
+                return Result.fail(ResultCode.DB_ERROR, "Error retrieving account summary: " + e.getMessage());
             }
         }
 
         /**
-         * Force apply interest to all accounts
+         * Map ResultSet to Account object
          */
-        private void forceApplyInterest() {
-            String confirmation = InputUtil.getString("Are you sure you want to apply interest to all accounts? (yes/no): ");
+        static Account mapResultSetToAccount(ResultSet rs) throws SQLException {
+            Account account = new Account();
+            account.setAccountNo(rs.getInt("account_no"));
+            account.setHolderName(rs.getString("holder_name"));
+            account.setAccountType(rs.getString("account_type"));
+            account.setBalance(rs.getBigDecimal("balance"));
+            account.setActive(rs.getBoolean("active"));
+            account.setPinHash(rs.getString("pin_hash"));
 
-            if (!"yes".equalsIgnoreCase(confirmation)) {
-                System.out.println("Operation cancelled.");
-                return;
+            Date lastInterestDate = rs.getDate("last_interest_date");
+            if (lastInterestDate != null) {
+                account.setLastInterestDate(lastInterestDate.toLocalDate());
             }
 
-            String sql = "SELECT account_no FROM accounts WHERE active = TRUE";
-            try (Connection conn = DBUtil.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-
-                ResultSet rs = ps.executeQuery();
-                int processed = 0;
+            account.setFailedLoginAttempts(rs.getInt("failed_login_attempts"));
+            account.setLocked(rs.getBoolean("locked"));
+            account.setDailyLimit(rs.getBigDecimal("daily_limit"));
 
-                while (rs.next()) {
-                    int accountNo = rs.getInt("account_no");
-                    accountManager.applyInterestIfDue(accountNo);
-                    processed++;
-                }
+            Date lastDailyReset = rs.getDate("last_daily_reset");
+            if (lastDailyReset != null) {
+                account.setLastDailyReset(lastDailyReset.toLocalDate());
+            }
+            account.setVersion(rs.getInt("version"));
 
-                System.out.println("Interest processing completed for " + processed + " accounts.");
-                auditLogger.log("FORCE_INTEREST_APPLICATION",
-                        "Admin forced interest application for " + processed + " accounts");
+            return account;
+        }
 
-            } catch (SQLException e) {
-                System.out.println("Error applying interest: " + e.getMessage());
-            }
+        /**
+         * Map ResultSet to Transaction object
+         */
+        static Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
+            return new Transaction(
+                    rs.getInt("id"),
+                    rs.getInt("account_no"),
+                    rs.getString("type"),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("memo"),
+                    rs.getTimestamp("txn_time").toLocalDateTime(),
+                    rs.getObject("reverse_of", Integer.class));
         }
     }
 
     // ═══════════════════════════════════════════════════════════════
-    //                        MAIN MENU SYSTEM
+    //                     SCHEDULED MANAGER
     // ═══════════════════════════════════════════════════════════════
 
     /**
-     * Main menu controller
+     * Manages scheduled transactions
      */
-    static class MainMenuController {
+    static class ScheduledManager {
 
         private final AccountManager accountManager;
-        private final ScheduledManager scheduledManager;
-        private final AdminManager adminManager;
         private final AuditLogger auditLogger;
 
-        public MainMenuController() {
-            this.auditLogger = new AuditLogger();
-            this.accountManager = new AccountManager(auditLogger);
-            this.scheduledManager = new ScheduledManager(accountManager, auditLogger);
-            this.adminManager = new AdminManager(accountManager, auditLogger);
+        public ScheduledManager(AccountManager accountManager, AuditLogger auditLogger) {
+            this.accountManager = accountManager;
+            this.auditLogger = auditLogger;
         }
-        /*
-         * Author: Samruddha Belsare
-         * Updated: 07-Oct-2025
-         */
+
         /**
-         * Main menu loop
+         * Schedule a transaction
          */
-        public void start() {
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("    ADVANCED BANKING SYSTEM v2.0");
-            System.out.println("═══════════════════════════════════════");
-
-            // Apply any due scheduled transactions at startup
-            scheduledManager.applyDueScheduledTransactions();
-            auditLogger.log("SYSTEM_STARTUP", "Banking system started");
-
-            while (true) {
-                showMainMenu();
-                int choice = InputUtil.getInt("Choose option: ");
+        public Result<ScheduledTransaction> scheduleTransaction(int accountNo, String type, double amount,
+                                                                String memo, LocalDate scheduleDate) {
+            if (!isValidTransactionType(type)) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Invalid transaction type for scheduling.");
+            }
 
-                switch (choice) {
-                    case 1 -> createAccountFlow();
-                    case 2 -> userLoginFlow();
-                    case 3 -> adminManager.adminLoginFlow();
-                    case 4 -> {
-                        System.out.println("Thank you for using Advanced Banking System!");
-                        auditLogger.log("SYSTEM_SHUTDOWN", "Banking system shutdown");
-                        return;
-                    }
-                    default -> System.out.println("Invalid option. Please try again.");
-                }
+            if (amount <= 0) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Scheduled amount must be positive.");
             }
-        }
 
-        private void showMainMenu() {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("             MAIN MENU");
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("1. Create Account");
-            System.out.println("2. User Login");
-            System.out.println("3. Admin Panel");
-            System.out.println("4. Exit");
-            System.out.println("═══════════════════════════════════════");
-        }
+            if (scheduleDate == null || scheduleDate.isBefore(LocalDate.now())) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Schedule date cannot be in the past.");
+            }
 
-        /**
-         * Account creation flow
-         */
-        private void createAccountFlow() {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("          CREATE NEW ACCOUNT");
-            System.out.println("═══════════════════════════════════════");
+            String sql = """
+                INSERT INTO scheduled_transactions (account_no, type, amount, memo, schedule_date, executed)
+                VALUES (?, ?, ?, ?, ?, FALSE)
+                """;
 
-            String holderName = InputUtil.getString("Full Name: ");
+            ScheduledTransaction scheduled = null;
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            System.out.println("Account Types:");
-            System.out.println("1. Savings (Interest: 4%, Limit: ₹20,000)");
-            System.out.println("2. Checking (Interest: 2%, Limit: ₹15,000)");
-            System.out.println("3. Business (Interest: 3%, Limit: ₹50,000)");
-            System.out.println("4. Fixed (Interest: 4%, Limit: ₹20,000)");
+                ps.setInt(1, accountNo);
+                ps.setString(2, type.toUpperCase());
+                ps.setBigDecimal(3, BigDecimal.valueOf(amount));
+                ps.setString(4, memo);
+                ps.setDate(5, Date.valueOf(scheduleDate));
 
-            int typeChoice = InputUtil.getInt("Choose account type: ");
-            String accountType = switch (typeChoice) {
-                case 1 -> "Savings";
-                case 2 -> "Checking";
-                case 3 -> "Business";
-                case 4 -> "Fixed";
-                default -> {
-                    System.out.println("Invalid choice. Defaulting to Savings.");
-                    yield "Savings";
+                int rowsAffected = ps.executeUpdate();
+                if (rowsAffected > 0) {
+                    scheduled = new ScheduledTransaction();
+                    ResultSet generatedKeys = ps.getGeneratedKeys();
+                    if (generatedKeys.next()) {
+                        scheduled.setId(generatedKeys.getInt(1));
+                    }
+                    scheduled.setAccountNo(accountNo);
+                    scheduled.setType(type.toUpperCase());
+                    scheduled.setAmount(BigDecimal.valueOf(amount));
+                    scheduled.setMemo(memo);
+                    scheduled.setScheduleDate(scheduleDate);
                 }
-            };
 
-            double initialDeposit = InputUtil.getDouble("Initial deposit amount: ");
-            String pin = InputUtil.getPin("Set 4-digit PIN: ");
-            String confirmPin = InputUtil.getPin("Confirm PIN: ");
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error scheduling transaction: " + e.getMessage());
+            }
 
-            if (!pin.equals(confirmPin)) {
-                System.out.println("PINs do not match. Account creation cancelled.");
-                return;
+            if (scheduled != null) {
+                auditLogger.log("TRANSACTION_SCHEDULED",
+                        type + " of ₹" + amount + " scheduled for " + scheduleDate +
+                                " for account " + accountNo, null, accountNo);
+                return Result.ok(scheduled, "Transaction scheduled successfully!");
             }
 
-            Account newAccount = accountManager.createAccount(holderName, accountType, initialDeposit, pin);
+            return Result.fail(ResultCode.DB_ERROR, "Failed to schedule transaction.");
+        }
 
-            if (newAccount != null) {
-                System.out.println("\n✓ Account created successfully!");
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("Account Number: " + newAccount.getAccountNo());
-                System.out.println("Holder Name   : " + newAccount.getHolderName());
-                System.out.println("Account Type  : " + newAccount.getAccountType());
-                System.out.println("Initial Balance: ₹" + newAccount.getBalance());
-                System.out.println("Daily Limit   : ₹" + newAccount.getDailyLimit());
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("Please note down your account number for future reference.");
-            } else {
-                System.out.println("✗ Account creation failed. Please try again.");
+        /**
+         * Count scheduled transactions that are due and not yet executed, across all shards
+         */
+        public int countDueScheduledTransactions() {
+            String sql = "SELECT COUNT(*) FROM scheduled_transactions WHERE executed = FALSE AND schedule_date <= CURDATE()";
+            try {
+                int due = 0;
+                for (int count : DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ResultSet rs = ps.executeQuery();
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                })) {
+                    due += count;
+                }
+                return due;
+            } catch (SQLException e) {
+                System.err.println("Error counting scheduled transactions: " + e.getMessage());
+                return 0;
             }
         }
 
         /**
-         * User login flow
+         * Apply due scheduled transactions for all accounts, returning how many were executed
          */
-        private void userLoginFlow() {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("             USER LOGIN");
-            System.out.println("═══════════════════════════════════════");
+        public int applyDueScheduledTransactions() {
+            return applyDueScheduledTransactions(null, new AtomicBoolean());
+        }
 
-            int accountNo = InputUtil.getInt("Account Number: ");
-            String pin = InputUtil.getPin("PIN: ");
+        /**
+         * Same, counting every due row attempted into processed (when given) as it goes; once
+         * stop is set it returns after the current row, leaving the rest due
+         */
+        public int applyDueScheduledTransactions(LongAdder processed, AtomicBoolean stop) {
+            String sql = """
+                SELECT id, account_no, type, amount, memo, schedule_date, executed
+                FROM scheduled_transactions 
+                WHERE executed = FALSE AND schedule_date <= CURDATE()
+                ORDER BY schedule_date
+                """;
 
-            Account account = accountManager.findAccount(accountNo);
-            if (account == null) {
-                System.out.println("Account not found.");
-                return;
+            int executed = 0;
+            for (int shard = 0; shard < DBUtil.shardCount() && !stop.get(); shard++) {
+                // Read the shard's due rows first: posting takes connections of its own
+                List<ScheduledTransaction> due = new ArrayList<>();
+                try (Connection conn = DBUtil.getShardConnection(shard);
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        due.add(mapResultSetToScheduled(rs));
+                    }
+
+                } catch (SQLException e) {
+                    System.err.println("Error applying scheduled transactions: " + e.getMessage());
+                    continue;
+                }
+
+                for (ScheduledTransaction scheduled : due) {
+                    if (stop.get()) {
+                        break;
+                    }
+                    if (applyScheduledTransaction(scheduled)) {
+                        executed++;
+                    }
+                    if (processed != null) {
+                        processed.increment();
+                    }
+                }
             }
 
-            if (!account.isActive()) {
-                System.out.println("Account is inactive. Please contact admin.");
-                return;
+            return executed;
+        }
+
+        /**
+         * Apply due scheduled transactions for specific account, returning the ones executed
+         */
+        public List<ScheduledTransaction> applyDueScheduledTransactionsForAccount(int accountNo) {
+            String sql = """
+                SELECT id, account_no, type, amount, memo, schedule_date, executed
+                FROM scheduled_transactions 
+                WHERE account_no = ? AND executed = FALSE AND schedule_date <= CURDATE()
+                ORDER BY schedule_date
+                """;
+
+            List<ScheduledTransaction> due = new ArrayList<>();
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    due.add(mapResultSetToScheduled(rs));
+                }
+
+            } catch (SQLException e) {
+                System.err.println("Error applying scheduled transactions for account: " + e.getMessage());
             }
 
-            if (account.isLocked()) {
-                System.out.println("Account is locked due to multiple failed login attempts. Please contact admin.");
-                return;
+            List<ScheduledTransaction> executed = new ArrayList<>();
+            for (ScheduledTransaction scheduled : due) {
+                if (applyScheduledTransaction(scheduled)) {
+                    scheduled.setExecuted(true);
+                    executed.add(scheduled);
+                }
+            }
+            return executed;
+        }
+
+        /**
+         * Post a due row under its scheduled:<id> key, then mark it executed. Two callers on the
+         * same row post it once (the second is answered with the first's posting), and a crash
+         * between the posting and the mark leaves it due, so the next sweep replays the key and
+         * marks it. Only the caller whose mark changed the row counts it.
+         */
+        private boolean applyScheduledTransaction(ScheduledTransaction scheduled) {
+            int scheduledId = scheduled.getId();
+            int accountNo = scheduled.getAccountNo();
+            String type = scheduled.getType();
+            double amount = scheduled.getAmount().doubleValue();
+
+            Result<Transaction> result = executeScheduledTransaction(scheduledId, accountNo, type, amount);
+            if (!result.isSuccess()) {
+                auditLogger.log("SCHEDULED_TRANSACTION_FAILED",
+                        "Scheduled " + type + " of ₹" + amount + " failed for account " + accountNo +
+                                ": " + result.getMessage(),
+                        null, accountNo);
+                return false;
+            }
+            if (!markScheduledTransactionExecuted(scheduledId, accountNo)) {
+                return false;
             }
 
-            if (accountManager.verifyPin(accountNo, pin)) {
-                System.out.println("\n✓ Login successful!");
-                System.out.println("Welcome, " + account.getHolderName() + "!");
+            auditLogger.log("SCHEDULED_TRANSACTION_EXECUTED",
+                    "Scheduled " + type + " of ₹" + amount + " executed for account " + accountNo,
+                    null, accountNo);
+            return true;
+        }
+
+        /**
+         * Execute a scheduled transaction
+         */
+        private Result<Transaction> executeScheduledTransaction(int scheduledId, int accountNo, String type,
+                                                                double amount) {
+            return switch (type.toUpperCase()) {
+                // Keyed by schedule, so posting it again before it is marked executed replays the original
+                case "DEPOSIT" -> accountManager.deposit(accountNo, amount, "scheduled:" + scheduledId);
+                case "WITHDRAWAL" -> accountManager.withdraw(accountNo, amount, "scheduled:" + scheduledId);
+                default -> Result.fail(ResultCode.INVALID_INPUT, "Unsupported scheduled transaction type: " + type);
+            };
+        }
+
+        /**
+         * Mark a posted scheduled transaction as executed; true only if this call changed it
+         */
+        private boolean markScheduledTransactionExecuted(int scheduledId, int accountNo) {
+            String sql = "UPDATE scheduled_transactions SET executed = TRUE WHERE id = ? AND executed = FALSE";
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, scheduledId);
+                return ps.executeUpdate() == 1;
+
+            } catch (SQLException e) {
+                System.err.println("Error marking scheduled transaction as executed: " + e.getMessage());
+                return false;
+            }
+        }
 
-                accountManager.resetFailedLoginAttempts(accountNo);
-                accountManager.applyInterestIfDue(accountNo);
-                scheduledManager.applyDueScheduledTransactionsForAccount(accountNo);
+        /**
+         * Get pending scheduled transactions for account
+         */
+        public Result<List<ScheduledTransaction>> getPendingScheduledTransactions(int accountNo) {
+            String sql = """
+                SELECT id, account_no, type, amount, memo, schedule_date, executed
+                FROM scheduled_transactions 
+                WHERE account_no = ? AND executed = FALSE
+                ORDER BY schedule_date
+                """;
 
-                auditLogger.log("USER_LOGIN_SUCCESS", "User logged in", null, accountNo);
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
-                userSession(accountNo);
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
 
-            } else {
-                boolean locked = accountManager.handleFailedLogin(accountNo);
-                if (locked) {
-                    System.out.println("✗ Invalid PIN. Account has been locked due to multiple failed attempts.");
-                } else {
-                    System.out.println("✗ Invalid PIN. Please try again.");
+                List<ScheduledTransaction> pending = new ArrayList<>();
+                while (rs.next()) {
+                    pending.add(mapResultSetToScheduled(rs));
                 }
+                return Result.ok(pending, null);
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR,
+                        "Error viewing pending scheduled transactions: " + e.getMessage());
             }
         }
 
         /**
-         * User session menu
+         * Cancel a scheduled transaction
          */
-        private void userSession(int accountNo) {
+        public Result<Void> cancelScheduledTransaction(int scheduledId, int accountNo) {
+            String sql = "DELETE FROM scheduled_transactions WHERE id = ? AND account_no = ? AND executed = FALSE";
+            int rowsAffected;
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, scheduledId);
+                ps.setInt(2, accountNo);
+                rowsAffected = ps.executeUpdate();
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error cancelling scheduled transaction: " + e.getMessage());
+            }
+
+            if (rowsAffected > 0) {
+                auditLogger.log("SCHEDULED_TRANSACTION_CANCELLED",
+                        "Scheduled transaction #" + scheduledId + " cancelled for account " + accountNo,
+                        null, accountNo);
+                return Result.ok(null, "Scheduled transaction cancelled successfully!");
+            }
+
+            return Result.fail(ResultCode.NOT_FOUND, "No pending scheduled transaction #" + scheduledId + " found.");
+        }
+
+        private boolean isValidTransactionType(String type) {
+            return type != null && (type.equalsIgnoreCase("DEPOSIT") || type.equalsIgnoreCase("WITHDRAWAL"));
+        }
+
+        private ScheduledTransaction mapResultSetToScheduled(ResultSet rs) throws SQLException {
+            ScheduledTransaction scheduled = new ScheduledTransaction();
+            scheduled.setId(rs.getInt("id"));
+            scheduled.setAccountNo(rs.getInt("account_no"));
+            scheduled.setType(rs.getString("type"));
+            scheduled.setAmount(rs.getBigDecimal("amount"));
+            scheduled.setMemo(rs.getString("memo"));
+            scheduled.setScheduleDate(rs.getDate("schedule_date").toLocalDate());
+            scheduled.setExecuted(rs.getBoolean("executed"));
+            return scheduled;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        ADMIN MANAGER
+    // ═══════════════════════════════════════════════════════════════
+    /*
+     * Author: Samruddha Belsare
+     * Updated: 07-Oct-2025
+     */
+    /**
+     * Administrative functions
+     */
+    static class AdminManager {
+
+        private final AccountManager accountManager;
+        private final AuditLogger auditLogger;
+
+        public AdminManager(AccountManager accountManager, AuditLogger auditLogger) {
+            this.accountManager = accountManager;
+            this.auditLogger = auditLogger;
+        }
+
+        /**
+         * Admin login flow
+         */
+        public void adminLoginFlow() {
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("           ADMIN LOGIN");
+            System.out.println("═══════════════════════════════════════");
+
+            String username = InputUtil.getString("Admin Username: ");
+            String password = InputUtil.getString("Admin Password: ");
+
+            if (authenticateAdmin(username, password)) {
+                System.out.println("Admin login successful!");
+                auditLogger.log("ADMIN_LOGIN_SUCCESS", "Admin " + username + " logged in");
+                adminMenu();
+            } else {
+                System.out.println("Invalid admin credentials.");
+                auditLogger.log("ADMIN_LOGIN_FAILED", "Failed admin login attempt for " + username);
+            }
+        }
+
+        /**
+         * Admin menu
+         */
+        private void adminMenu() {
             while (true) {
-                showUserMenu(accountNo);
+                System.out.println("\n═══════════════════════════════════════");
+                System.out.println("             ADMIN PANEL");
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("1. View All Accounts");
+                System.out.println("2. Lock/Unlock Account");
+                System.out.println("3. View Account Details");
+                System.out.println("4. System Statistics");
+                System.out.println("5. View Audit Log");
+                System.out.println("6. Generate Reports");
+                System.out.println("7. Manage Daily Limits");
+                System.out.println("8. Force Apply Interest");
+                System.out.println("9. Live Dashboard");
+                System.out.println("10. Reverse Transaction");
+                System.out.println("11. Process Fixed Deposit Maturities");
+                System.out.println("12. Logout");
+
                 int choice = InputUtil.getInt("Choose option: ");
 
                 switch (choice) {
-                    case 1 -> showAccountBalance(accountNo);
-                    case 2 -> processDeposit(accountNo);
-                    case 3 -> processWithdrawal(accountNo);
-                    case 4 -> processTransfer(accountNo);
-                    case 5 -> accountManager.showMiniStatement(accountNo);
-                    case 6 -> showTransactionHistory(accountNo);
-                    case 7 -> accountManager.showAccountSummary(accountNo);
-                    case 8 -> manageScheduledTransactions(accountNo);
-                    case 9 -> {
-                        auditLogger.log("USER_LOGOUT", "User logged out", null, accountNo);
-                        System.out.println("Logged out successfully. Thank you!");
+                    case 1 -> viewAllAccounts();
+                    case 2 -> manageAccountLock();
+                    case 3 -> viewAccountDetails();
+                    case 4 -> showSystemStatistics();
+                    case 5 -> viewAuditLog(50);
+                    case 6 -> generateReports();
+                    case 7 -> manageDailyLimits();
+                    case 8 -> forceApplyInterest();
+                    case 9 -> showLiveDashboard();
+                    case 10 -> reverseTransaction();
+                    case 11 -> processMaturities();
+                    case 12 -> {
+                        auditLogger.log("ADMIN_LOGOUT", "Admin logged out");
                         return;
                     }
-                    default -> System.out.println("Invalid option. Please try again.");
+                    default -> System.out.println("Invalid option.");
                 }
             }
         }
 
-        private void showUserMenu(int accountNo) {
-            Account account = accountManager.findAccount(accountNo);
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("            USER DASHBOARD");
-            System.out.println("Account: " + accountNo + " | " +
-                    (account != null ? account.getHolderName() : "Unknown"));
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("1. Check Balance");
-            System.out.println("2. Deposit Money");
-            System.out.println("3. Withdraw Money");
-            System.out.println("4. Transfer Money");
-            System.out.println("5. Mini Statement");
-            System.out.println("6. Transaction History");
-            System.out.println("7. Account Summary");
-            System.out.println("8. Scheduled Transactions");
-            System.out.println("9. Logout");
-            System.out.println("═══════════════════════════════════════");
+        /**
+         * Authenticate admin user
+         */
+        public boolean authenticateAdmin(String username, String password) {
+            if (username == null || password == null) {
+                return false;
+            }
+
+            String sql = "SELECT password_hash FROM users WHERE username = ? AND role = 'ADMIN'";
+            try (Connection conn = DBUtil.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setString(1, username);
+                ResultSet rs = ps.executeQuery();
+
+                if (rs.next()) {
+                    String storedHash = rs.getString("password_hash");
+                    // Simple hash comparison (in production, use proper password hashing)
+                    return storedHash.equals(SecurityUtil.hashPin(password));
+                }
+
+            } catch (SQLException e) {
+                System.err.println("Error authenticating admin: " + e.getMessage());
+            }
+
+            return false;
         }
 
-        private void showAccountBalance(int accountNo) {
-            Account account = accountManager.findAccount(accountNo);
-            if (account != null) {
-                System.out.println("\n═══════════════════════════════════════");
-                System.out.println("           ACCOUNT BALANCE");
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("Current Balance: ₹" + account.getBalance());
-                System.out.println("Account Type   : " + account.getAccountType());
-                System.out.println("Daily Limit    : ₹" + account.getDailyLimit());
-                System.out.println("═══════════════════════════════════════");
+        /**
+         * Get all accounts ordered by account number
+         */
+        public Result<List<Account>> getAllAccounts() {
+            String sql = "SELECT * FROM accounts ORDER BY account_no";
+
+            try {
+                List<Account> accounts = new ArrayList<>();
+                DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ResultSet rs = ps.executeQuery();
+                        List<Account> shardAccounts = new ArrayList<>();
+                        while (rs.next()) {
+                            shardAccounts.add(AccountManager.mapResultSetToAccount(rs));
+                        }
+                        return shardAccounts;
+                    }
+                }).forEach(accounts::addAll);
+                accounts.sort(Comparator.comparingInt(Account::getAccountNo));
+                return Result.ok(accounts, null);
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error viewing accounts: " + e.getMessage());
+            }
+        }
+
+        /**
+         * View all accounts
+         */
+        private void viewAllAccounts() {
+            Result<List<Account>> result = getAllAccounts();
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+
+            System.out.println("═══════════════════════════════════════════════════════════════════════════");
+            System.out.println("                              ALL ACCOUNTS");
+            System.out.println("═══════════════════════════════════════════════════════════════════════════");
+            System.out.printf("%-8s %-20s %-10s %-12s %-8s %-8s %-8s %-12s%n",
+                    "Acc No", "Name", "Type", "Balance", "Active", "Locked", "Attempts", "Daily Limit");
+            System.out.println("───────────────────────────────────────────────────────────────────────────");
+
+            for (Account account : result.getValue()) {
+                System.out.printf("%-8d %-20s %-10s ₹%-11.2f %-8s %-8s %-8d ₹%-11.2f%n",
+                        account.getAccountNo(),
+                        account.getHolderName(),
+                        account.getAccountType(),
+                        account.getBalance().doubleValue(),
+                        account.isActive() ? "Yes" : "No",
+                        account.isLocked() ? "Yes" : "No",
+                        account.getFailedLoginAttempts(),
+                        account.getDailyLimit().doubleValue()
+                );
+            }
+
+            System.out.println("═══════════════════════════════════════════════════════════════════════════");
+        }
+
+        /**
+         * Lock or unlock an account, clearing failed login attempts
+         */
+        public Result<Void> setAccountLock(int accountNo, boolean locked) {
+            return setAccountLock(accountNo, locked, null);
+        }
+
+        /**
+         * Lock or unlock an account, refusing if its lock status is no longer the one the caller
+         * displayed (null skips that check). Postings bump the version too, so it is not compared.
+         */
+        public Result<Void> setAccountLock(int accountNo, boolean locked, Boolean expectedLocked) {
+            String sql = "UPDATE accounts SET locked = ?, failed_login_attempts = 0, version = version + 1"
+                    + " WHERE account_no = ? AND version = ?";
+            try {
+                Result<Boolean> changed = ConcurrencyControl.run("lock", accountNo, (conn, attempt, pessimistic) -> {
+                    Account current = ConcurrencyControl.read(conn, accountNo, pessimistic);
+                    if (current == null) {
+                        return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+                    }
+                    if (expectedLocked != null && current.isLocked() != expectedLocked) {
+                        return Result.fail(ResultCode.CONFLICT,
+                                "Account " + accountNo + " was " + (current.isLocked() ? "locked" : "unlocked")
+                                        + " since it was displayed. Review it and try again.");
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setBoolean(1, locked);
+                        ps.setInt(2, accountNo);
+                        ps.setInt(3, current.getVersion());
+                        ConcurrencyControl.cas(ps);
+                    }
+                    // Only a real change moves the live locked count
+                    return Result.ok(current.isLocked() != locked, null);
+                });
+                if (!changed.isSuccess()) {
+                    return Result.fail(changed.getCode(), changed.getMessage());
+                }
+                if (changed.getValue()) {
+                    LiveStatistics.recordLockChanged(locked);
+                    accountManager.syncLedgerLock(accountNo, locked);
+                }
+
+                String actionText = locked ? "locked" : "unlocked";
+                auditLogger.log("ACCOUNT_" + actionText.toUpperCase(),
+                        "Account " + accountNo + " " + actionText + " by admin", null, accountNo);
+                return Result.ok(null, "Account " + accountNo + " has been " + actionText + ".");
+
+            } catch (ConcurrencyControl.RetriesExhausted e) {
+                return Result.fail(ResultCode.CONFLICT, "Account " + accountNo + " is busy. Please try again.");
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error updating account lock status: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Manage account lock/unlock
+         */
+        private void manageAccountLock() {
+            int accountNo = InputUtil.getInt("Enter account number: ");
+            Account account = accountManager.findAccount(accountNo);
+
+            if (account == null) {
+                System.out.println("Account not found.");
+                return;
+            }
+
+            System.out.println("Account " + accountNo + " (" + account.getHolderName() + ")");
+            System.out.println("Current status: " + (account.isLocked() ? "Locked" : "Unlocked"));
+
+            String action = InputUtil.getString("Enter action (lock/unlock): ");
+
+            boolean newLockStatus;
+            if ("lock".equalsIgnoreCase(action)) {
+                newLockStatus = true;
+            } else if ("unlock".equalsIgnoreCase(action)) {
+                newLockStatus = false;
+            } else {
+                System.out.println("Invalid action.");
+                return;
+            }
+
+            System.out.println(setAccountLock(accountNo, newLockStatus, account.isLocked()).getMessage());
+        }
+
+        /**
+         * View detailed account information
+         */
+        private void viewAccountDetails() {
+            int accountNo = InputUtil.getInt("Enter account number: ");
+            Result<AccountSummary> result = accountManager.getAccountSummary(accountNo);
+            if (result.isSuccess()) {
+                ConsoleView.printAccountSummary(result.getValue());
+            } else {
+                System.out.println(result.getMessage());
+            }
+        }
+
+        /**
+         * Get system statistics: account totals plus today's transaction counts, served from
+         * the in-memory running totals (seeded from the database on first use)
+         */
+        public Result<Map<String, Object>> getSystemStatistics() {
+            try {
+                if (!LiveStatistics.isSeeded()) {
+                    LiveStatistics.seed();
+                }
+                return Result.ok(LiveStatistics.snapshot(), null);
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error retrieving system statistics: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Show system statistics
+         */
+        private void showSystemStatistics() {
+            Result<Map<String, Object>> result = getSystemStatistics();
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+
+            Map<String, Object> stats = result.getValue();
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("         SYSTEM STATISTICS");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("Total Accounts     : " + stats.get("totalAccounts"));
+            System.out.println("Active Accounts    : " + stats.get("activeAccounts"));
+            System.out.println("Locked Accounts    : " + stats.get("lockedAccounts"));
+            System.out.println("Total Balance      : ₹" + stats.get("totalBalance"));
+            System.out.println();
+            System.out.println("Account Types:");
+            System.out.println("  Savings          : " + stats.get("savingsAccounts"));
+            System.out.println("  Checking         : " + stats.get("checkingAccounts"));
+            System.out.println("  Business         : " + stats.get("businessAccounts"));
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("TODAY'S TRANSACTIONS:");
+            System.out.println("  Total            : " + stats.get("todayTransactions"));
+            System.out.println("  Deposits         : " + stats.get("todayDeposits"));
+            System.out.println("  Withdrawals      : " + stats.get("todayWithdrawals"));
+            System.out.println("  Transfers        : " + stats.get("todayTransfers"));
+            System.out.println("═══════════════════════════════════════");
+        }
+
+        /**
+         * Redraw the statistics every second until Enter is pressed; reads only in-memory totals
+         */
+        private void showLiveDashboard() {
+            if (getSystemStatistics().getValue() == null) {
+                System.out.println("Statistics are unavailable.");
+                return;
+            }
+
+            ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "live-dashboard");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleAtFixedRate(() -> {
+                Map<String, Object> stats = LiveStatistics.snapshot();
+                System.out.print("\033[H\033[2J");
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("   LIVE DASHBOARD  " + LocalDateTime.now().format(DATE_FMT));
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("Accounts           : " + stats.get("totalAccounts") + " (" + stats.get("activeAccounts")
+                        + " active, " + stats.get("lockedAccounts") + " locked)");
+                System.out.println("Total Balance      : ₹" + stats.get("totalBalance"));
+                System.out.println("Postings/sec       : " + stats.get("postingsLastSecond") + " (avg "
+                        + stats.get("postingsPerSecondAvg") + " over " + stats.get("throughputWindowSeconds") + "s)");
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("TODAY:                 Count        Amount");
+                @SuppressWarnings("unchecked")
+                Map<String, Map<String, Object>> byType = (Map<String, Map<String, Object>>) stats.get("todayByType");
+                for (Map.Entry<String, Map<String, Object>> entry : byType.entrySet()) {
+                    System.out.printf("  %-16s %9s  ₹%12s%n", entry.getKey(),
+                            entry.getValue().get("count"), entry.getValue().get("amount"));
+                }
+                System.out.println("  Total            " + String.format("%9s", stats.get("todayTransactions")));
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("Press Enter to return.");
+            }, 0, 1, TimeUnit.SECONDS);
+
+            try {
+                sc.nextLine();
+            } finally {
+                refresher.shutdownNow();
+            }
+        }
+
+        /**
+         * Generate reports
+         */
+        private void generateReports() {
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("           REPORT GENERATION");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("1. Daily Transaction Report");
+            System.out.println("2. Weekly Transaction Report");
+            System.out.println("3. Account Balance Report");
+            System.out.println("4. Dormant Accounts Report");
+
+            int choice = InputUtil.getInt("Choose report: ");
+
+            switch (choice) {
+                case 1 -> generateDailyTransactionReport();
+                case 2 -> generateWeeklyTransactionReport();
+                case 3 -> generateAccountBalanceReport();
+                case 4 -> generateDormantAccountsReport();
+                default -> System.out.println("Invalid option.");
+            }
+        }
+
+        /**
+         * Today's transaction counts and totals grouped by type
+         */
+        public Result<List<Map<String, Object>>> getDailyTransactionReport() {
+            String sql = """
+                SELECT 
+                    type, 
+                    COUNT(*) as count, 
+                    COALESCE(SUM(amount), 0) as total
+                FROM transactions 
+                WHERE DATE(txn_time) = CURDATE()
+                GROUP BY type
+                ORDER BY type
+                """;
+
+            try {
+                // Shards report the same types; add their counts and totals together
+                Map<String, Map<String, Object>> byType = new TreeMap<>();
+                for (List<Map<String, Object>> shardRows : DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ResultSet rs = ps.executeQuery();
+                        List<Map<String, Object>> rows = new ArrayList<>();
+                        while (rs.next()) {
+                            Map<String, Object> row = new LinkedHashMap<>();
+                            row.put("type", rs.getString("type"));
+                            row.put("count", rs.getInt("count"));
+                            row.put("total", rs.getBigDecimal("total"));
+                            rows.add(row);
+                        }
+                        return rows;
+                    }
+                })) {
+                    for (Map<String, Object> row : shardRows) {
+                        byType.merge((String) row.get("type"), row, (a, b) -> {
+                            a.put("count", (Integer) a.get("count") + (Integer) b.get("count"));
+                            a.put("total", ((BigDecimal) a.get("total")).add((BigDecimal) b.get("total")));
+                            return a;
+                        });
+                    }
+                }
+                return Result.ok(new ArrayList<>(byType.values()), null);
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error generating daily transaction report: " + e.getMessage());
+            }
+        }
+
+        private void generateDailyTransactionReport() {
+            Result<List<Map<String, Object>>> result = getDailyTransactionReport();
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("      DAILY TRANSACTION REPORT");
+            System.out.println("      Date: " + LocalDate.now().format(SIMPLE_DATE_FMT));
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("%-15s %-10s %s%n", "Type", "Count", "Total Amount");
+            System.out.println("─────────────────────────────────────────");
+
+            for (Map<String, Object> row : result.getValue()) {
+                System.out.printf("%-15s %-10d ₹%.2f%n",
+                        row.get("type"),
+                        row.get("count"),
+                        ((BigDecimal) row.get("total")).doubleValue()
+                );
+            }
+
+            System.out.println("═══════════════════════════════════════");
+        }
+
+        private void generateWeeklyTransactionReport() {
+            // Implementation for weekly report
+            System.out.println("Weekly transaction report - Feature coming soon!");
+        }
+
+        /**
+         * Balance aggregates of active accounts grouped by account type
+         */
+        public Result<List<Map<String, Object>>> getAccountBalanceReport() {
+            String sql = """
+                SELECT 
+                    account_type,
+                    COUNT(*) as count,
+                    COALESCE(AVG(balance), 0) as avg_balance,
+                    COALESCE(SUM(balance), 0) as total_balance,
+                    COALESCE(MIN(balance), 0) as min_balance,
+                    COALESCE(MAX(balance), 0) as max_balance
+                FROM accounts
+                WHERE active = TRUE
+                GROUP BY account_type
+                ORDER BY account_type
+                """;
+
+            try {
+                // Counts and sums add up, min/max combine, and the average is recomputed from both
+                Map<String, Map<String, Object>> byType = new TreeMap<>();
+                for (List<Map<String, Object>> shardRows : DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ResultSet rs = ps.executeQuery();
+                        List<Map<String, Object>> rows = new ArrayList<>();
+                        while (rs.next()) {
+                            Map<String, Object> row = new LinkedHashMap<>();
+                            row.put("accountType", rs.getString("account_type"));
+                            row.put("count", rs.getInt("count"));
+                            row.put("avgBalance", rs.getBigDecimal("avg_balance"));
+                            row.put("totalBalance", rs.getBigDecimal("total_balance"));
+                            row.put("minBalance", rs.getBigDecimal("min_balance"));
+                            row.put("maxBalance", rs.getBigDecimal("max_balance"));
+                            rows.add(row);
+                        }
+                        return rows;
+                    }
+                })) {
+                    for (Map<String, Object> row : shardRows) {
+                        byType.merge((String) row.get("accountType"), row, (a, b) -> {
+                            int count = (Integer) a.get("count") + (Integer) b.get("count");
+                            BigDecimal total = ((BigDecimal) a.get("totalBalance")).add((BigDecimal) b.get("totalBalance"));
+                            a.put("count", count);
+                            a.put("avgBalance", total.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP));
+                            a.put("totalBalance", total);
+                            a.put("minBalance", ((BigDecimal) a.get("minBalance")).min((BigDecimal) b.get("minBalance")));
+                            a.put("maxBalance", ((BigDecimal) a.get("maxBalance")).max((BigDecimal) b.get("maxBalance")));
+                            return a;
+                        });
+                    }
+                }
+                return Result.ok(new ArrayList<>(byType.values()), null);
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error generating balance report: " + e.getMessage());
+            }
+        }
+
+        private void generateAccountBalanceReport() {
+            Result<List<Map<String, Object>>> result = getAccountBalanceReport();
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+
+            System.out.println("═══════════════════════════════════════════════════════════════════");
+            System.out.println("                        ACCOUNT BALANCE REPORT");
+            System.out.println("═══════════════════════════════════════════════════════════════════");
+            System.out.printf("%-10s %-8s %-12s %-12s %-12s %s%n",
+                    "Type", "Count", "Avg Balance", "Total", "Min", "Max");
+            System.out.println("───────────────────────────────────────────────────────────────────");
+
+            for (Map<String, Object> row : result.getValue()) {
+                System.out.printf("%-10s %-8d ₹%-11.2f ₹%-11.2f ₹%-11.2f ₹%.2f%n",
+                        row.get("accountType"),
+                        row.get("count"),
+                        ((BigDecimal) row.get("avgBalance")).doubleValue(),
+                        ((BigDecimal) row.get("totalBalance")).doubleValue(),
+                        ((BigDecimal) row.get("minBalance")).doubleValue(),
+                        ((BigDecimal) row.get("maxBalance")).doubleValue()
+                );
+            }
+
+            System.out.println("═══════════════════════════════════════════════════════════════════");
+        }
+
+        /**
+         * Active accounts with no activity for 90+ days
+         */
+        public Result<List<Map<String, Object>>> getDormantAccountsReport() {
+            String sql = """
+                SELECT a.account_no, a.holder_name, a.account_type, a.balance,
+                       MAX(t.txn_time) AS last_txn_time
+                FROM accounts a
+                LEFT JOIN transactions t ON a.account_no = t.account_no
+                WHERE a.active = TRUE
+                GROUP BY a.account_no, a.holder_name, a.account_type, a.balance
+                HAVING MAX(t.txn_time) IS NULL OR MAX(t.txn_time) < ?
+                """;
+            Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(90));
+
+            try {
+                // Keep the raw timestamp next to each row so the shards merge on it, never-used accounts first
+                List<Map.Entry<LocalDateTime, Map<String, Object>>> keyed = new ArrayList<>();
+                DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setTimestamp(1, cutoff);
+                        ResultSet rs = ps.executeQuery();
+                        List<Map.Entry<LocalDateTime, Map<String, Object>>> rows = new ArrayList<>();
+                        while (rs.next()) {
+                            Timestamp lastTxn = rs.getTimestamp("last_txn_time");
+                            LocalDateTime lastTxnTime = lastTxn != null ? lastTxn.toLocalDateTime() : null;
+                            String lastTxnStr = lastTxnTime != null ? lastTxnTime.format(SIMPLE_DATE_FMT) : "Never";
+
+                            Map<String, Object> row = new LinkedHashMap<>();
+                            row.put("accountNo", rs.getInt("account_no"));
+                            row.put("holderName", rs.getString("holder_name"));
+                            row.put("accountType", rs.getString("account_type"));
+                            row.put("balance", rs.getBigDecimal("balance"));
+                            row.put("lastTransaction", lastTxnStr);
+                            rows.add(new AbstractMap.SimpleImmutableEntry<>(lastTxnTime, row));
+                        }
+                        return rows;
+                    }
+                }).forEach(keyed::addAll);
+                keyed.sort(Map.Entry.comparingByKey(Comparator.nullsFirst(Comparator.naturalOrder())));
+
+                List<Map<String, Object>> rows = new ArrayList<>(keyed.size());
+                keyed.forEach(entry -> rows.add(entry.getValue()));
+                return Result.ok(rows, null);
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error generating dormant accounts report: " + e.getMessage());
+            }
+        }
+
+        private void generateDormantAccountsReport() {
+            Result<List<Map<String, Object>>> result = getDormantAccountsReport();
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+
+            System.out.println("═══════════════════════════════════════════════════════════════════");
+            System.out.println("              DORMANT ACCOUNTS REPORT");
+            System.out.println("              (No activity for 90+ days)");
+            System.out.println("═══════════════════════════════════════════════════════════════════");
+            System.out.printf("%-8s %-20s %-10s %-12s %s%n",
+                    "Acc No", "Name", "Type", "Balance", "Last Transaction");
+            System.out.println("───────────────────────────────────────────────────────────────────");
+
+            for (Map<String, Object> row : result.getValue()) {
+                System.out.printf("%-8d %-20s %-10s ₹%-11.2f %s%n",
+                        row.get("accountNo"),
+                        row.get("holderName"),
+                        row.get("accountType"),
+                        ((BigDecimal) row.get("balance")).doubleValue(),
+                        row.get("lastTransaction")
+                );
+            }
+
+            if (result.getValue().isEmpty()) {
+                System.out.println("No dormant accounts found.");
+            }
+
+            System.out.println("═══════════════════════════════════════════════════════════════════");
+        }
+
+        /**
+         * View recent audit log entries
+         */
+        private void viewAuditLog(int limit) {
+            Result<List<Map<String, Object>>> result = auditLogger.getRecentEvents(limit);
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("           AUDIT LOG (Last " + limit + ")");
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("%-20s %s%n", "Time", "Event");
+            System.out.println("─────────────────────────────────────────");
+
+            for (Map<String, Object> row : result.getValue()) {
+                System.out.printf("%-20s %s%n",
+                        ((LocalDateTime) row.get("eventTime")).format(DATE_FMT),
+                        row.get("eventText"));
+            }
+        }
+
+        /**
+         * Set the daily withdrawal/transfer limit of an account
+         */
+        public Result<Void> setDailyLimit(int accountNo, double newLimit) {
+            return setDailyLimit(accountNo, newLimit, null);
+        }
+
+        /**
+         * Set the daily limit, refusing if the account's limit is no longer the one the caller
+         * displayed (null skips that check). Postings bump the version too, so it is not compared.
+         */
+        public Result<Void> setDailyLimit(int accountNo, double newLimit, BigDecimal expectedLimit) {
+            if (newLimit < 0) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Daily limit cannot be negative.");
+            }
+
+            String sql = "UPDATE accounts SET daily_limit = ?, version = version + 1 WHERE account_no = ? AND version = ?";
+            try {
+                Result<Void> result = ConcurrencyControl.run("limit", accountNo, (conn, attempt, pessimistic) -> {
+                    Account current = ConcurrencyControl.read(conn, accountNo, pessimistic);
+                    if (current == null) {
+                        return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+                    }
+                    if (expectedLimit != null && current.getDailyLimit().compareTo(expectedLimit) != 0) {
+                        return Result.fail(ResultCode.CONFLICT, "Daily limit of account " + accountNo
+                                + " changed since it was displayed. Review it and try again.");
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setBigDecimal(1, BigDecimal.valueOf(newLimit));
+                        ps.setInt(2, accountNo);
+                        ps.setInt(3, current.getVersion());
+                        ConcurrencyControl.cas(ps);
+                    }
+                    return Result.ok(null, "Daily limit updated successfully.");
+                });
+                if (result.isSuccess()) {
+                    accountManager.syncLedgerLimit(accountNo, newLimit);
+                    auditLogger.log("DAILY_LIMIT_CHANGED",
+                            "Daily limit for account " + accountNo + " changed to ₹" + newLimit,
+                            null, accountNo);
+                }
+                return result;
+
+            } catch (ConcurrencyControl.RetriesExhausted e) {
+                return Result.fail(ResultCode.CONFLICT, "Account " + accountNo + " is busy. Please try again.");
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error updating daily limit: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Manage daily limits
+         */
+        private void manageDailyLimits() {
+            int accountNo = InputUtil.getInt("Enter account number: ");
+            Account account = accountManager.findAccount(accountNo);
+
+            if (account == null) {
+                System.out.println("Account not found.");
+                return;
+            }
+
+            System.out.println("Account: " + accountNo + " (" + account.getHolderName() + ")");
+            System.out.println("Current daily limit: ₹" + account.getDailyLimit());
+
+            double newLimit = InputUtil.getDouble("Enter new daily limit: ");
+
+            System.out.println(setDailyLimit(accountNo, newLimit, account.getDailyLimit()).getMessage());
+        }
+
+        /**
+         * Apply interest to every active account, returning how many were processed
+         */
+        public Result<Integer> applyInterestToAllAccounts() {
+            if (DAILY_ACCRUAL_ENABLED) {
+                Result<Map<String, Object>> posted = new InterestAccrualJob(auditLogger, LocalDate.now(),
+                        ACCRUAL_RANGE_ACCOUNTS).post();
+                if (!posted.isSuccess()) {
+                    return Result.fail(posted.getCode(), posted.getMessage());
+                }
+                return Result.ok(((Number) posted.getValue().get("credited")).intValue(), posted.getMessage());
+            }
+            String sql = "SELECT account_no FROM accounts WHERE active = TRUE";
+            try {
+                // Each account is credited on its own pooled connection, so the shard scans are
+                // read and released first
+                List<List<Integer>> perShard = DBUtil.fanOut(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ResultSet rs = ps.executeQuery();
+                        List<Integer> accountNos = new ArrayList<>();
+                        while (rs.next()) {
+                            accountNos.add(rs.getInt("account_no"));
+                        }
+                        return accountNos;
+                    }
+                });
+                int processed = 0;
+                for (List<Integer> accountNos : perShard) {
+                    for (int accountNo : accountNos) {
+                        accountManager.applyInterestIfDue(accountNo);
+                        processed++;
+                    }
+                }
+
+                auditLogger.log("FORCE_INTEREST_APPLICATION",
+                        "Admin forced interest application for " + processed + " accounts");
+                return Result.ok(processed, "Interest processing completed for " + processed + " accounts.");
+
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Error applying interest: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Force apply interest to all accounts
+         */
+        private void forceApplyInterest() {
+            String confirmation = InputUtil.getString("Are you sure you want to apply interest to all accounts? (yes/no): ");
+
+            if (!"yes".equalsIgnoreCase(confirmation)) {
+                System.out.println("Operation cancelled.");
+                return;
+            }
+
+            System.out.println(applyInterestToAllAccounts().getMessage());
+        }
+
+        /**
+         * Pay out every fixed deposit that has matured by today
+         */
+        private void processMaturities() {
+            Result<Map<String, Object>> result = new FixedDepositMaturityJob(auditLogger, LocalDate.now(),
+                    MATURITY_THREADS, MATURITY_CHUNK_ROWS).run();
+            System.out.println(result.getMessage());
+            if (result.isSuccess()) {
+                Map<String, Object> report = result.getValue();
+                System.out.println("Interest paid: ₹" + report.get("interestPaid") + " in " + report.get("seconds") + "s");
+            }
+        }
+
+        /**
+         * Reverse one posted transaction after previewing its effect on the balance
+         */
+        private void reverseTransaction() {
+            ReversalJob.Criteria criteria = new ReversalJob.Criteria();
+            criteria.accountNo = InputUtil.getInt("Enter account number: ");
+            criteria.ids = List.of(InputUtil.getInt("Enter transaction ID to reverse: "));
+            String reason = InputUtil.getString("Reason: ");
+
+            Result<Map<String, Object>> preview =
+                    new ReversalJob(auditLogger, criteria, reason, true, false, 1).run();
+            if (!preview.isSuccess()) {
+                System.out.println(preview.getMessage());
+                return;
+            }
+            List<?> diff = (List<?>) preview.getValue().get("diff");
+            if (diff.isEmpty()) {
+                System.out.println("No such transaction on this account, or it is already a reversal or reversed.");
+                return;
+            }
+            Map<?, ?> row = (Map<?, ?>) diff.get(0);
+            System.out.println("Balance: ₹" + row.get("balance") + " → ₹" + row.get("newBalance")
+                    + " (" + row.get("status") + ")");
+            if (!"OK".equals(row.get("status"))) {
+                return;
+            }
+
+            String confirmation = InputUtil.getString("Post the reversal? (yes/no): ");
+            if (!"yes".equalsIgnoreCase(confirmation)) {
+                System.out.println("Operation cancelled.");
+                return;
+            }
+            System.out.println(new ReversalJob(auditLogger, criteria, reason, false, false, 1).run().getMessage());
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        CONSOLE VIEWS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Console rendering of account data shared by the user and admin menus
+     */
+    static class ConsoleView {
+
+        static void printMiniStatement(Account account, List<Transaction> transactions) {
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("           MINI STATEMENT");
+            System.out.println("Account: " + account.getAccountNo() + " | " + account.getHolderName());
+            System.out.println("Current Balance: ₹" + account.getBalance());
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("%-15s %-12s %-25s %s%n", "Type", "Amount", "Description", "Date/Time");
+            System.out.println("─────────────────────────────────────────");
+
+            for (Transaction txn : transactions) {
+                System.out.printf("%-15s ₹%-11.2f %-25s %s%n",
+                        txn.getType(),
+                        txn.getAmount().doubleValue(),
+                        txn.getMemo(),
+                        txn.getTxnTime().format(DATE_FMT)
+                );
+            }
+
+            if (transactions.isEmpty()) {
+                System.out.println("No transactions found.");
+            }
+
+            System.out.println("═══════════════════════════════════════");
+        }
+
+        static void printTransactionHistory(Account account, List<Transaction> transactions) {
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("        TRANSACTION HISTORY");
+            System.out.println("Account: " + account.getAccountNo() + " | " + account.getHolderName());
+            System.out.println("Current Balance: ₹" + account.getBalance());
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("%-15s %-12s %-30s %-20s %s%n",
+                    "Type", "Amount", "Description", "Date/Time", "Notes");
+            System.out.println("────────────────────────────────────────────────────────────────────────────");
+
+            for (Transaction txn : transactions) {
+                String notes = "";
+                if (txn.getReverseOf() != null) {
+                    notes = "(Reversal of #" + txn.getReverseOf() + ")";
+                }
+
+                System.out.printf("%-15s ₹%-11.2f %-30s %-20s %s%n",
+                        txn.getType(),
+                        txn.getAmount().doubleValue(),
+                        txn.getMemo(),
+                        txn.getTxnTime().format(DATE_FMT),
+                        notes
+                );
+            }
+
+            if (transactions.isEmpty()) {
+                System.out.println("No transactions found.");
+            }
+
+            System.out.println("════════════════════════════════════════════════════════════════════════════");
+        }
+
+        static void printAccountSummary(AccountSummary summary) {
+            Account account = summary.getAccount();
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("         ACCOUNT SUMMARY");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("Account Number    : " + account.getAccountNo());
+            System.out.println("Holder Name       : " + account.getHolderName());
+            System.out.println("Account Type      : " + account.getAccountType());
+            System.out.println("Current Balance   : ₹" + account.getBalance());
+            System.out.println("Account Status    : " + (account.isActive() ? "Active" : "Inactive"));
+            System.out.println("Lock Status       : " + (account.isLocked() ? "Locked" : "Unlocked"));
+            System.out.println("Daily Limit       : ₹" + account.getDailyLimit());
+            System.out.println("Last Interest Date: " +
+                    (account.getLastInterestDate() != null ? account.getLastInterestDate().format(SIMPLE_DATE_FMT) : "Never"));
+            System.out.println("─────────────────────────────────────────");
+            System.out.println("TRANSACTION SUMMARY:");
+            System.out.println("Total Transactions: " + summary.getTotalTransactions());
+            System.out.println("Total Credits     : ₹" + summary.getTotalCredits());
+            System.out.println("Total Debits      : ₹" + summary.getTotalDebits());
+            System.out.println("═══════════════════════════════════════");
+        }
+
+        static void printPendingScheduled(List<ScheduledTransaction> pending) {
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("      PENDING SCHEDULED TRANSACTIONS");
+            System.out.println("═══════════════════════════════════════");
+            System.out.printf("%-5s %-12s %-12s %-25s %s%n", "ID", "Type", "Amount", "Description", "Date");
+            System.out.println("─────────────────────────────────────────────────────────────────");
+
+            for (ScheduledTransaction scheduled : pending) {
+                System.out.printf("%-5d %-12s ₹%-11.2f %-25s %s%n",
+                        scheduled.getId(),
+                        scheduled.getType(),
+                        scheduled.getAmount().doubleValue(),
+                        scheduled.getMemo(),
+                        scheduled.getScheduleDate().format(SIMPLE_DATE_FMT)
+                );
+            }
+
+            if (pending.isEmpty()) {
+                System.out.println("No pending scheduled transactions.");
+            }
+
+            System.out.println("═════════════════════════════════════════════════════════════════");
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        MAIN MENU SYSTEM
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Main menu controller
+     */
+    static class MainMenuController {
+
+        private final BankingServices services;
+        private final AccountManager accountManager;
+        private final ScheduledManager scheduledManager;
+        private final AdminManager adminManager;
+        private final AuditLogger auditLogger;
+
+        public MainMenuController(BankingServices services) {
+            this.services = services;
+            this.auditLogger = services.getAuditLogger();
+            this.accountManager = services.getAccountManager();
+            this.scheduledManager = services.getScheduledManager();
+            this.adminManager = services.getAdminManager();
+        }
+        /*
+         * Author: Samruddha Belsare
+         * Updated: 07-Oct-2025
+         */
+        /**
+         * Main menu loop
+         */
+        public void start() {
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("    ADVANCED BANKING SYSTEM v2.0");
+            System.out.println("═══════════════════════════════════════");
+
+            // Due scheduled transactions are caught up in the background (see Startup)
+            auditLogger.log("SYSTEM_STARTUP", "Banking system started, core ready in " + Startup.summary());
+
+            while (true) {
+                showMainMenu();
+                int choice = InputUtil.getInt("Choose option: ");
+
+                switch (choice) {
+                    case 1 -> createAccountFlow();
+                    case 2 -> userLoginFlow();
+                    case 3 -> adminManager.adminLoginFlow();
+                    case 4 -> {
+                        System.out.println("Thank you for using Advanced Banking System!");
+                        auditLogger.log("SYSTEM_SHUTDOWN", "Banking system shutdown");
+                        return;
+                    }
+                    default -> System.out.println("Invalid option. Please try again.");
+                }
+            }
+        }
+
+        private void showMainMenu() {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("             MAIN MENU");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("1. Create Account");
+            System.out.println("2. User Login");
+            System.out.println("3. Admin Panel");
+            System.out.println("4. Exit");
+            System.out.println("═══════════════════════════════════════");
+            String catchUp = Startup.progressLine();
+            if (catchUp != null) {
+                System.out.println(catchUp);
+            }
+        }
+
+        /**
+         * Account creation flow
+         */
+        private void createAccountFlow() {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("          CREATE NEW ACCOUNT");
+            System.out.println("═══════════════════════════════════════");
+
+            String holderName = InputUtil.getString("Full Name: ");
+
+            System.out.println("Account Types:");
+            System.out.println("1. Savings (Interest: 4%, Limit: ₹20,000)");
+            System.out.println("2. Checking (Interest: 2%, Limit: ₹15,000)");
+            System.out.println("3. Business (Interest: 3%, Limit: ₹50,000)");
+            System.out.println("4. Fixed (Interest: 6.5% paid at maturity, 1-120 months)");
+
+            int typeChoice = InputUtil.getInt("Choose account type: ");
+            String accountType = switch (typeChoice) {
+                case 1 -> "Savings";
+                case 2 -> "Checking";
+                case 3 -> "Business";
+                case 4 -> "Fixed";
+                default -> {
+                    System.out.println("Invalid choice. Defaulting to Savings.");
+                    yield "Savings";
+                }
+            };
+
+            double initialDeposit = InputUtil.getDouble(accountType.equals("Fixed")
+                    ? "Deposit amount (principal): " : "Initial deposit amount: ");
+            int termMonths = accountType.equals("Fixed")
+                    ? InputUtil.getInt("Term in months: ") : FIXED_DEFAULT_TERM_MONTHS;
+            String pin = InputUtil.getPin("Set 4-digit PIN: ");
+            String confirmPin = InputUtil.getPin("Confirm PIN: ");
+
+            if (!pin.equals(confirmPin)) {
+                System.out.println("PINs do not match. Account creation cancelled.");
+                return;
+            }
+
+            Result<Account> result = accountManager.createAccount(holderName, accountType, initialDeposit, pin,
+                    termMonths);
+
+            if (result.isSuccess()) {
+                Account newAccount = result.getValue();
+                System.out.println("\n✓ Account created successfully!");
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("Account Number: " + newAccount.getAccountNo());
+                System.out.println("Holder Name   : " + newAccount.getHolderName());
+                System.out.println("Account Type  : " + newAccount.getAccountType());
+                System.out.println("Initial Balance: ₹" + newAccount.getBalance());
+                System.out.println("Daily Limit   : ₹" + newAccount.getDailyLimit());
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("Please note down your account number for future reference.");
+            } else {
+                System.out.println(result.getMessage());
+                System.out.println("✗ Account creation failed. Please try again.");
+            }
+        }
+
+        /**
+         * User login flow
+         */
+        private void userLoginFlow() {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("             USER LOGIN");
+            System.out.println("═══════════════════════════════════════");
+
+            int accountNo = InputUtil.getInt("Account Number: ");
+            String pin = InputUtil.getPin("PIN: ");
+
+            Result<LoginResult> result = services.login(accountNo, pin);
+            if (!result.isSuccess()) {
+                System.out.println((result.getCode() == ResultCode.AUTH_FAILED ? "✗ " : "") + result.getMessage());
+                return;
+            }
+
+            LoginResult login = result.getValue();
+            System.out.println("\n✓ Login successful!");
+            System.out.println("Welcome, " + login.getAccount().getHolderName() + "!");
+
+            if (login.getInterestCredited().compareTo(BigDecimal.ZERO) > 0) {
+                System.out.println("Interest of ₹" + login.getInterestCredited() + " has been credited to your account.");
+            }
+            for (ScheduledTransaction scheduled : login.getExecutedSchedules()) {
+                System.out.println("Scheduled " + scheduled.getType().toLowerCase() + " of ₹" + scheduled.getAmount() +
+                        " has been processed.");
+            }
+
+            userSession(accountNo);
+        }
+
+        /**
+         * User session menu
+         */
+        private void userSession(int accountNo) {
+            while (true) {
+                showUserMenu(accountNo);
+                int choice = InputUtil.getInt("Choose option: ");
+
+                switch (choice) {
+                    case 1 -> showAccountBalance(accountNo);
+                    case 2 -> processDeposit(accountNo);
+                    case 3 -> processWithdrawal(accountNo);
+                    case 4 -> processTransfer(accountNo);
+                    case 5 -> showMiniStatement(accountNo);
+                    case 6 -> showTransactionHistory(accountNo);
+                    case 7 -> showAccountSummary(accountNo);
+                    case 8 -> manageScheduledTransactions(accountNo);
+                    case 9 -> showFixedDeposit(accountNo);
+                    case 10 -> {
+                        auditLogger.log("USER_LOGOUT", "User logged out", null, accountNo);
+                        System.out.println("Logged out successfully. Thank you!");
+                        return;
+                    }
+                    default -> System.out.println("Invalid option. Please try again.");
+                }
+            }
+        }
+
+        private void showUserMenu(int accountNo) {
+            Account account = accountManager.findAccount(accountNo);
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("            USER DASHBOARD");
+            System.out.println("Account: " + accountNo + " | " +
+                    (account != null ? account.getHolderName() : "Unknown"));
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("1. Check Balance");
+            System.out.println("2. Deposit Money");
+            System.out.println("3. Withdraw Money");
+            System.out.println("4. Transfer Money");
+            System.out.println("5. Mini Statement");
+            System.out.println("6. Transaction History");
+            System.out.println("7. Account Summary");
+            System.out.println("8. Scheduled Transactions");
+            System.out.println("9. Fixed Deposit");
+            System.out.println("10. Logout");
+            System.out.println("═══════════════════════════════════════");
+        }
+
+        private void showAccountBalance(int accountNo) {
+            Account account = accountManager.findAccount(accountNo);
+            if (account != null) {
+                System.out.println("\n═══════════════════════════════════════");
+                System.out.println("           ACCOUNT BALANCE");
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("Current Balance: ₹" + account.getBalance());
+                System.out.println("Account Type   : " + account.getAccountType());
+                System.out.println("Daily Limit    : ₹" + account.getDailyLimit());
+                System.out.println("═══════════════════════════════════════");
+            }
+        }
+
+        private void showFixedDeposit(int accountNo) {
+            FixedDeposits.Deposit deposit = accountManager.findFixedDeposit(accountNo);
+            if (deposit == null) {
+                System.out.println("This account holds no fixed deposit.");
+                return;
+            }
+            LocalDate today = LocalDate.now();
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("            FIXED DEPOSIT");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("Principal      : ₹" + BigDecimal.valueOf(deposit.principalPaise, 2));
+            System.out.printf("Interest Rate  : %.2f%% a year%n", deposit.annualRate * 100);
+            System.out.println("Term           : " + deposit.termMonths + " months");
+            System.out.println("Opened         : " + deposit.startDate.format(SIMPLE_DATE_FMT));
+            System.out.println("Maturity Date  : " + deposit.maturityDate.format(SIMPLE_DATE_FMT));
+            System.out.println("Status         : " + deposit.status);
+            if (!deposit.isActive()) {
+                System.out.println("Interest Paid  : ₹" + BigDecimal.valueOf(deposit.interestPaidPaise, 2)
+                        + " on " + deposit.settledDate.format(SIMPLE_DATE_FMT));
+                System.out.println("═══════════════════════════════════════");
+                return;
+            }
+            System.out.println("Accrued So Far : ₹" + BigDecimal.valueOf(deposit.accruedPaise(today), 2));
+            System.out.println("At Maturity    : ₹" + BigDecimal.valueOf(deposit.accruedPaise(deposit.maturityDate), 2));
+            System.out.println("═══════════════════════════════════════");
+
+            if (deposit.isMatured(today)) {
+                System.out.println("This deposit has matured and will be paid out in the next maturity run.");
+                return;
+            }
+            System.out.printf("Early withdrawal pays %.2f%% a year instead: ₹%s interest today.%n",
+                    Math.max(0, deposit.annualRate - FIXED_EARLY_PENALTY_RATE) * 100,
+                    BigDecimal.valueOf(deposit.payoutPaise(today), 2));
+            String confirmation = InputUtil.getString("Withdraw early? (yes/no): ");
+            if ("yes".equalsIgnoreCase(confirmation)) {
+                System.out.println(accountManager.breakFixedDeposit(accountNo).getMessage());
+            }
+        }
+
+        private void processDeposit(int accountNo) {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("            DEPOSIT MONEY");
+            System.out.println("═══════════════════════════════════════");
+
+            double amount = InputUtil.getDouble("Enter deposit amount: ₹");
+
+            if (amount <= 0) {
+                System.out.println("Invalid amount. Deposit cancelled.");
+                return;
+            }
+
+            String confirmation = InputUtil.getString("Confirm deposit of ₹" + amount + "? (yes/no): ");
+
+            if ("yes".equalsIgnoreCase(confirmation)) {
+                Result<Transaction> result = accountManager.deposit(accountNo, amount);
+                if (result.isSuccess()) {
+                    System.out.println("✓ Deposit successful!");
+                    showAccountBalance(accountNo);
+                } else {
+                    System.out.println(result.getMessage());
+                    System.out.println("✗ Deposit failed. Please try again.");
+                }
+            } else {
+                System.out.println("Deposit cancelled.");
+            }
+        }
+
+        private void processWithdrawal(int accountNo) {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("           WITHDRAW MONEY");
+            System.out.println("═══════════════════════════════════════");
+
+            showAccountBalance(accountNo);
+
+            double amount = InputUtil.getDouble("Enter withdrawal amount: ₹");
+
+            if (amount <= 0) {
+                System.out.println("Invalid amount. Withdrawal cancelled.");
+                return;
+            }
+
+            String confirmation = InputUtil.getString("Confirm withdrawal of ₹" + amount + "? (yes/no): ");
+
+            if ("yes".equalsIgnoreCase(confirmation)) {
+                Result<Transaction> result = accountManager.withdraw(accountNo, amount);
+                if (result.isSuccess()) {
+                    System.out.println("✓ Withdrawal successful!");
+                    showAccountBalance(accountNo);
+                } else {
+                    System.out.println(result.getMessage());
+                    System.out.println("✗ Withdrawal failed. Please check your balance and daily limit.");
+                }
+            } else {
+                System.out.println("Withdrawal cancelled.");
+            }
+        }
+
+        private void processTransfer(int accountNo) {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("           TRANSFER MONEY");
+            System.out.println("═══════════════════════════════════════");
+
+            showAccountBalance(accountNo);
+
+            int toAccount = InputUtil.getInt("Enter destination account number: ");
+
+            if (toAccount == accountNo) {
+                System.out.println("Cannot transfer to the same account.");
+                return;
+            }
+
+            // Verify destination account exists
+            Account destAccount = accountManager.findAccount(toAccount);
+            if (destAccount == null) {
+                System.out.println("Destination account not found.");
+                return;
+            }
+
+            System.out.println("Destination: " + destAccount.getHolderName() +
+                    " (Account: " + toAccount + ")");
+
+            double amount = InputUtil.getDouble("Enter transfer amount: ₹");
+
+            if (amount <= 0) {
+                System.out.println("Invalid amount. Transfer cancelled.");
+                return;
+            }
+
+            String confirmation = InputUtil.getString(
+                    "Confirm transfer of ₹" + amount + " to " + destAccount.getHolderName() +
+                            " (Account: " + toAccount + ")? (yes/no): ");
+
+            if ("yes".equalsIgnoreCase(confirmation)) {
+                Result<Transaction> result = accountManager.transfer(accountNo, toAccount, amount);
+                if (result.isSuccess()) {
+                    System.out.println("✓ Transfer successful!");
+                    showAccountBalance(accountNo);
+                } else {
+                    System.out.println(result.getMessage());
+                    System.out.println("✗ Transfer failed. Please check your balance and daily limit.");
+                }
+            } else {
+                System.out.println("Transfer cancelled.");
+            }
+        }
+
+        private void showMiniStatement(int accountNo) {
+            Account account = accountManager.findAccount(accountNo);
+            Result<List<Transaction>> result = accountManager.getTransactionHistory(accountNo, MINI_STATEMENT_SIZE);
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+            } else if (account != null) {
+                ConsoleView.printMiniStatement(account, result.getValue());
+            }
+        }
+
+        private void showTransactionHistory(int accountNo) {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("        TRANSACTION HISTORY");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("1. Last 10 transactions");
+            System.out.println("2. Last 25 transactions");
+            System.out.println("3. Last 50 transactions");
+
+            int choice = InputUtil.getInt("Choose option: ");
+            int limit = switch (choice) {
+                case 1 -> 10;
+                case 2 -> 25;
+                case 3 -> 50;
+                default -> 10;
+            };
+            /*
+             * Author: Samruddha Belsare
+             * Updated: 07-Oct-2025
+             */
+            Account account = accountManager.findAccount(accountNo);
+            Result<List<Transaction>> result = accountManager.getTransactionHistory(accountNo, limit);
+            if (!result.isSuccess()) {
+                System.out.println(result.getMessage());
+            } else if (account != null) {
+                ConsoleView.printTransactionHistory(account, result.getValue());
+            }
+        }
+
+        private void showAccountSummary(int accountNo) {
+            Result<AccountSummary> result = accountManager.getAccountSummary(accountNo);
+            if (result.isSuccess()) {
+                ConsoleView.printAccountSummary(result.getValue());
+            } else {
+                System.out.println(result.getMessage());
+            }
+        }
+
+        private void manageScheduledTransactions(int accountNo) {
+            while (true) {
+                System.out.println("\n═══════════════════════════════════════");
+                System.out.println("       SCHEDULED TRANSACTIONS");
+                System.out.println("═══════════════════════════════════════");
+                System.out.println("1. View Pending Scheduled Transactions");
+                System.out.println("2. Schedule New Transaction");
+                System.out.println("3. Cancel Scheduled Transaction");
+                System.out.println("4. Back to Main Menu");
+
+                int choice = InputUtil.getInt("Choose option: ");
+
+                switch (choice) {
+                    case 1 -> viewPendingScheduledTransactions(accountNo);
+                    case 2 -> scheduleNewTransaction(accountNo);
+                    case 3 -> cancelScheduledTransaction(accountNo);
+                    case 4 -> { return; }
+                    default -> System.out.println("Invalid option.");
+                }
+            }
+        }
+
+        private void viewPendingScheduledTransactions(int accountNo) {
+            Result<List<ScheduledTransaction>> result = scheduledManager.getPendingScheduledTransactions(accountNo);
+            if (result.isSuccess()) {
+                ConsoleView.printPendingScheduled(result.getValue());
+            } else {
+                System.out.println(result.getMessage());
+            }
+        }
+
+        private void scheduleNewTransaction(int accountNo) {
+            System.out.println("\n═══════════════════════════════════════");
+            System.out.println("       SCHEDULE NEW TRANSACTION");
+            System.out.println("═══════════════════════════════════════");
+            System.out.println("1. Schedule Deposit");
+            System.out.println("2. Schedule Withdrawal");
+
+            int type = InputUtil.getInt("Choose transaction type: ");
+            String txnType;
+
+            switch (type) {
+                case 1 -> txnType = "DEPOSIT";
+                case 2 -> txnType = "WITHDRAWAL";
+                default -> {
+                    System.out.println("Invalid type.");
+                    return;
+                }
+            }
+
+            double amount = InputUtil.getDouble("Enter amount: ₹");
+            String memo = InputUtil.getString("Enter description: ");
+
+            System.out.print("Enter schedule date (YYYY-MM-DD): ");
+            String dateStr = sc.nextLine().trim();
+
+            LocalDate scheduleDate;
+            try {
+                scheduleDate = LocalDate.parse(dateStr);
+            } catch (Exception e) {
+                System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+                return;
+            }
+
+            Result<ScheduledTransaction> result =
+                    scheduledManager.scheduleTransaction(accountNo, txnType, amount, memo, scheduleDate);
+            if (result.isSuccess()) {
+                System.out.println("✓ Transaction scheduled successfully!");
+            } else {
+                System.out.println(result.getMessage());
+                System.out.println("✗ Failed to schedule transaction.");
+            }
+        }
+
+        private void cancelScheduledTransaction(int accountNo) {
+            viewPendingScheduledTransactions(accountNo);
+
+            int scheduledId = InputUtil.getInt("Enter ID of transaction to cancel (0 to go back): ");
+
+            if (scheduledId == 0) {
+                return;
+            }
+
+            String confirmation = InputUtil.getString("Are you sure you want to cancel this scheduled transaction? (yes/no): ");
+
+            if ("yes".equalsIgnoreCase(confirmation)) {
+                if (scheduledManager.cancelScheduledTransaction(scheduledId, accountNo).isSuccess()) {
+                    System.out.println("✓ Scheduled transaction cancelled successfully!");
+                } else {
+                    System.out.println("✗ Failed to cancel scheduled transaction.");
+                }
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                            METRICS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * JMX view of one operation's metrics (latencies in milliseconds)
+     */
+    public interface OperationMetricsMBean {
+        long getCount();
+        long getSuccessCount();
+        long getFailureCount();
+        long getInsufficientFundsCount();
+        long getLimitExceededCount();
+        long getLockedCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP95Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+        long getStatementCount();
+        long getMaxStatementsPerCall();
+    }
+
+    /**
+     * Latency histogram and outcome counters for one named operation
+     */
+    static class OperationMetrics implements OperationMetricsMBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder success = new LongAdder();
+        private final LongAdder failure = new LongAdder();
+        private final LongAdder insufficientFunds = new LongAdder();
+        private final LongAdder limitExceeded = new LongAdder();
+        private final LongAdder locked = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        OperationMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, ResultCode code) {
+            latency.record(nanos);
+            if (code == ResultCode.OK) {
+                success.increment();
+                return;
+            }
+            failure.increment();
+            if (code == ResultCode.INSUFFICIENT_FUNDS) {
+                insufficientFunds.increment();
+            } else if (code == ResultCode.LIMIT_EXCEEDED) {
+                limitExceeded.increment();
+            } else if (code == ResultCode.ACCOUNT_LOCKED) {
+                locked.increment();
+            }
+        }
+
+        /**
+         * Statements (database round trips) executed by one call, including nested operations
+         */
+        void recordStatements(long count) {
+            statements.add(count);
+            if (count > maxStatements.get()) {
+                maxStatements.accumulateAndGet(count, Math::max);
+            }
+        }
+
+        String getName() { return name; }
+        LatencyHistogram getLatency() { return latency; }
+
+        @Override public long getCount() { return latency.getCount(); }
+        @Override public long getSuccessCount() { return success.sum(); }
+        @Override public long getFailureCount() { return failure.sum(); }
+        @Override public long getInsufficientFundsCount() { return insufficientFunds.sum(); }
+        @Override public long getLimitExceededCount() { return limitExceeded.sum(); }
+        @Override public long getLockedCount() { return locked.sum(); }
+        @Override public double getMeanMillis() { return latency.getMeanNanos() / 1e6; }
+        @Override public double getP50Millis() { return latency.percentile(50) / 1e6; }
+        @Override public double getP95Millis() { return latency.percentile(95) / 1e6; }
+        @Override public double getP99Millis() { return latency.percentile(99) / 1e6; }
+        @Override public double getP999Millis() { return latency.percentile(99.9) / 1e6; }
+        @Override public double getMaxMillis() { return latency.getMaxNanos() / 1e6; }
+        @Override public long getStatementCount() { return statements.sum(); }
+        @Override public long getMaxStatementsPerCall() { return maxStatements.get(); }
+    }
+
+    /**
+     * Process-wide registry of operation metrics. Each operation is registered as a JMX
+     * MBean (banking:type=Operation,name=...) the first time it is used.
+     */
+    static class Metrics {
+        private static final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+
+        static OperationMetrics operation(String name) {
+            OperationMetrics metrics = operations.get(name);
+            if (metrics != null) {
+                return metrics;
+            }
+            // computeIfAbsent on a skip list may run the factory twice, so only the winner registers
+            OperationMetrics created = new OperationMetrics(name);
+            OperationMetrics existing = operations.putIfAbsent(name, created);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(created, OperationMetricsMBean.class),
+                        new ObjectName("banking:type=Operation,name=" + ObjectName.quote(name)));
+            } catch (JMException e) {
+                System.err.println("Could not register JMX metrics for " + name + ": " + e.getMessage());
+            }
+            return created;
+        }
+
+        static Collection<OperationMetrics> all() {
+            return operations.values();
+        }
+
+        /**
+         * Time an operation. A Result is classified by its code, null or an exception counts
+         * as a failure, and any other value counts as a success.
+         */
+        static <T> T timed(String name, Supplier<T> operation) {
+            return timed(name, 0, Double.NaN, operation);
+        }
+
+        static void timed(String name, int accountNo, Runnable operation) {
+            timed(name, accountNo, Double.NaN, () -> {
+                operation.run();
+                return Boolean.TRUE;
+            });
+        }
+
+        /**
+         * As {@link #timed(String, Supplier)}, also emitting a banking.Operation JFR event for
+         * the account. A NaN amount is taken from the result (transaction, interest or
+         * scheduled postings) where there is one.
+         */
+        static <T> T timed(String name, int accountNo, double amount, Supplier<T> operation) {
+            BankingOperationEvent event = new BankingOperationEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long[] counters = SqlMetrics.threadCounters();
+            long statements = counters[0];
+            long dbNanos = counters[1];
+            long waitNanos = counters[2];
+            T value = null;
+            boolean completed = false;
+            try {
+                value = operation.get();
+                completed = true;
+            } finally {
+                ResultCode code = value instanceof Result ? ((Result<?>) value).getCode()
+                        : value != null ? ResultCode.OK : ResultCode.DB_ERROR;
+                long used = counters[0] - statements;
+                OperationMetrics metrics = operation(name);
+                metrics.record(System.nanoTime() - start, code);
+                metrics.recordStatements(used);
+
+                event.end();
+                if (event.shouldCommit()) {
+                    event.operation = name;
+                    event.accountNo = accountNo;
+                    event.amount = Double.isNaN(amount) ? amountOf(value) : amount;
+                    event.outcome = completed ? code.name() : "EXCEPTION";
+                    event.statements = used;
+                    event.dbTime = counters[1] - dbNanos;
+                    event.lockWait = counters[2] - waitNanos;
+                    event.commit();
+                }
+                if (completed && code == ResultCode.OK && ENFORCE_ROUND_TRIP_BUDGETS) {
+                    SqlMetrics.checkBudget(name, used);
+                }
+            }
+            return value;
+        }
+
+        private static double amountOf(Object value) {
+            if (value instanceof Result) {
+                value = ((Result<?>) value).getValue();
+            }
+            if (value instanceof Transaction) {
+                return ((Transaction) value).getAmount().doubleValue();
+            }
+            if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).doubleValue();
+            }
+            if (value instanceof List) {
+                double total = 0;
+                for (Object item : (List<?>) value) {
+                    if (item instanceof ScheduledTransaction) {
+                        total += ((ScheduledTransaction) item).getAmount().doubleValue();
+                    }
+                }
+                return total;
+            }
+            return 0;
+        }
+
+        /**
+         * Prometheus text exposition format (version 0.0.4)
+         */
+        static String toPrometheus() {
+            StringBuilder sb = new StringBuilder(8192);
+            sb.append("# HELP banking_operation_duration_seconds Latency of banking operations\n");
+            sb.append("# TYPE banking_operation_duration_seconds summary\n");
+            for (OperationMetrics m : all()) {
+                LatencyHistogram h = m.getLatency();
+                String label = "operation=\"" + m.getName() + "\"";
+                for (double q : new double[]{0.5, 0.95, 0.99, 0.999}) {
+                    sb.append("banking_operation_duration_seconds{").append(label).append(",quantile=\"").append(q)
+                            .append("\"} ").append(h.percentile(q * 100) / 1e9).append('\n');
+                }
+                sb.append("banking_operation_duration_seconds_sum{").append(label).append("} ")
+                        .append(h.getTotalNanos() / 1e9).append('\n');
+                sb.append("banking_operation_duration_seconds_count{").append(label).append("} ")
+                        .append(h.getCount()).append('\n');
+            }
+
+            sb.append("# HELP banking_operation_statements_total Database round trips made by banking operations\n");
+            sb.append("# TYPE banking_operation_statements_total counter\n");
+            for (OperationMetrics m : all()) {
+                sb.append("banking_operation_statements_total{operation=\"").append(m.getName()).append("\"} ")
+                        .append(m.getStatementCount()).append('\n');
+            }
+
+            sb.append("# HELP banking_sql_duration_seconds Execution time per SQL statement\n");
+            sb.append("# TYPE banking_sql_duration_seconds summary\n");
+            for (SqlStatementMetrics m : SqlMetrics.all()) {
+                LatencyHistogram h = m.getLatency();
+                String label = "sql=\"" + m.getSql().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+                sb.append("banking_sql_duration_seconds{").append(label).append(",quantile=\"0.99\"} ")
+                        .append(h.percentile(99) / 1e9).append('\n');
+                sb.append("banking_sql_duration_seconds_sum{").append(label).append("} ")
+                        .append(h.getTotalNanos() / 1e9).append('\n');
+                sb.append("banking_sql_duration_seconds_count{").append(label).append("} ")
+                        .append(h.getCount()).append('\n');
+                sb.append("banking_sql_rows_total{").append(label).append("} ").append(m.getRows()).append('\n');
+            }
+
+            sb.append("# HELP banking_operation_total Banking operations by outcome\n");
+            sb.append("# TYPE banking_operation_total counter\n");
+            for (OperationMetrics m : all()) {
+                appendOutcome(sb, m, "success", m.getSuccessCount());
+                appendOutcome(sb, m, "failure", m.getFailureCount());
+                appendOutcome(sb, m, "insufficient_funds", m.getInsufficientFundsCount());
+                appendOutcome(sb, m, "limit_exceeded", m.getLimitExceededCount());
+                appendOutcome(sb, m, "locked", m.getLockedCount());
+            }
+
+            IdempotencyCache.appendPrometheus(sb);
+            VelocityEngine.appendPrometheus(sb);
+            SettlementWindow.appendPrometheus(sb);
+            BalanceSlots.appendPrometheus(sb);
+            ConcurrencyControl.appendPrometheus(sb);
+            Startup.appendPrometheus(sb);
+            return sb.toString();
+        }
+
+        private static void appendOutcome(StringBuilder sb, OperationMetrics m, String outcome, long value) {
+            sb.append("banking_operation_total{operation=\"").append(m.getName()).append("\",outcome=\"")
+                    .append(outcome).append("\"} ").append(value).append('\n');
+        }
+    }
+
+    /**
+     * Execution statistics for one SQL text
+     */
+    static class SqlStatementMetrics {
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+
+        SqlStatementMetrics(String sql) {
+            this.sql = sql;
+        }
+
+        String getSql() { return sql; }
+        LatencyHistogram getLatency() { return latency; }
+        long getRows() { return rows.sum(); }
+    }
+
+    /**
+     * JDBC instrumentation behind DBUtil. Pooled connections hand out statement proxies
+     * that record per-SQL execution time and rows, count round trips for the current
+     * thread, and log statements slower than banking.db.slowQueryMs with their bound
+     * parameters. The round-trip counts feed each timed operation's statement total and
+     * the round-trip budgets below.
+     */
+    static class SqlMetrics {
+        /**
+         * Maximum statements per successful call for the core operations, including nested
+         * lookups and the audit write. Each is exactly what RoundTripCheck measures today, so
+         * one extra query fails the build; raising a number here should be a conscious decision.
+         */
+        static final Map<String, Integer> ROUND_TRIP_BUDGETS = Map.ofEntries(
+                Map.entry("account.findAccount", 1),
+                Map.entry("account.authenticate", 2),
+                Map.entry("account.deposit", 4),
+                Map.entry("account.withdraw", 5),
+                Map.entry("account.transfer", 8),
+                Map.entry("account.getTransactionHistory", 1),
+                Map.entry("account.getAccountSummary", 2),
+                Map.entry("scheduled.getPendingScheduledTransactions", 1),
+                Map.entry("audit.log", 1)
+        );
+
+        private static final ConcurrentMap<String, SqlStatementMetrics> statements = new ConcurrentHashMap<>();
+        // Per thread: {statements executed, nanos executing statements, nanos waiting for connections}
+        private static final ThreadLocal<long[]> threadCounters = ThreadLocal.withInitial(() -> new long[3]);
+
+        /**
+         * Statements executed so far by the current thread
+         */
+        static long threadStatementCount() {
+            return threadCounters.get()[0];
+        }
+
+        /**
+         * The current thread's running counters; read before and after a call to get its share
+         */
+        static long[] threadCounters() {
+            return threadCounters.get();
+        }
+
+        static void recordConnectionWait(long nanos) {
+            threadCounters.get()[2] += nanos;
+        }
+
+        static Collection<SqlStatementMetrics> all() {
+            return statements.values();
+        }
+
+        /**
+         * Run an action and fail with AssertionError if it executes more than maxStatements
+         * statements, e.g. {@code SqlMetrics.assertRoundTrips(2, () -> manager.deposit(1001, 500))}
+         */
+        static <T> T assertRoundTrips(int maxStatements, Supplier<T> action) {
+            long before = threadStatementCount();
+            T value = action.get();
+            long used = threadStatementCount() - before;
+            if (used > maxStatements) {
+                throw new AssertionError("Expected at most " + maxStatements + " statements, executed " + used);
+            }
+            return value;
+        }
+
+        /**
+         * Enforce ROUND_TRIP_BUDGETS for a successful operation (only with -Dbanking.db.enforceRoundTripBudgets=true)
+         */
+        static void checkBudget(String operation, long used) {
+            Integer budget = ROUND_TRIP_BUDGETS.get(operation);
+            if (budget != null && used > budget) {
+                throw new AssertionError("Round-trip budget exceeded for " + operation + ": "
+                        + used + " statements, budget " + budget);
+            }
+        }
+
+        /**
+         * Wrap a statement returned by a pooled connection; sql is null for plain Statements
+         */
+        static Statement instrument(Statement raw, String sql, Class<?> type) {
+            Map<Integer, Object> params = new TreeMap<>();
+            InvocationHandler handler = (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    params.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters")) {
+                    params.clear();
+                }
+                if (!name.startsWith("execute")) {
+                    return invoke(raw, method, args);
+                }
+
+                String text = sql != null ? sql
+                        : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "?";
+                long start = System.nanoTime();
+                Object result = invoke(raw, method, args);
+                long elapsed = System.nanoTime() - start;
+
+                long rows = 0;
+                if (result instanceof Number) {
+                    rows = ((Number) result).longValue();
+                } else if (result instanceof int[]) {
+                    for (int count : (int[]) result) rows += Math.max(count, 0);
+                } else if (result instanceof long[]) {
+                    for (long count : (long[]) result) rows += Math.max(count, 0);
+                }
+                SqlStatementMetrics metrics = record(text, elapsed, rows);
+                if (elapsed >= SLOW_QUERY_NANOS) {
+                    logSlow(metrics.getSql(), elapsed, result instanceof ResultSet ? -1 : rows, params);
+                }
+                return result instanceof ResultSet ? countRows((ResultSet) result, metrics) : result;
+            };
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        private static SqlStatementMetrics record(String sql, long nanos, long rows) {
+            SqlStatementMetrics metrics = statements.get(sql);
+            if (metrics == null) {
+                metrics = statements.computeIfAbsent(sql, key -> new SqlStatementMetrics(key.strip().replaceAll("\\s+", " ")));
+            }
+            metrics.latency.record(nanos);
+            metrics.rows.add(rows);
+            long[] counters = threadCounters.get();
+            counters[0]++;
+            counters[1] += nanos;
+            return metrics;
+        }
+
+        private static ResultSet countRows(ResultSet raw, SqlStatementMetrics metrics) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                Object result = invoke(raw, method, args);
+                if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                    metrics.rows.increment();
+                }
+                return result;
+            };
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, handler);
+        }
+
+        private static void logSlow(String sql, long nanos, long rows, Map<Integer, Object> params) {
+            // Never write credential hashes to the log
+            Object shown = sql.contains("_hash") ? "[redacted]" : params.values();
+            System.err.printf("[SLOW SQL] %.1fms%s %s params=%s%n", nanos / 1e6,
+                    rows >= 0 ? " rows=" + rows : "", sql, shown);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Calls every operation in ROUND_TRIP_BUDGETS once on two fresh accounts and compares the
+     * statements it executed with its budget. The build runs it against an in-memory H2
+     * database (--check-round-trips), so an extra lookup fails mvn test.
+     */
+    static class RoundTripCheck {
+
+        /**
+         * Returns the number of operations over budget, failed, or not exercised
+         */
+        static int run() throws SQLException {
+            try (Connection conn = DBUtil.getConnection()) {
+                DBUtil.ensureSchema(conn);
+            }
+            BankingServices services = new BankingServices();
+            AccountManager accounts = services.getAccountManager();
+            int from = accounts.createAccount("Budget Check A", "Savings", 10000, "1234").getValue().getAccountNo();
+            int to = accounts.createAccount("Budget Check B", "Savings", 10000, "1234").getValue().getAccountNo();
+
+            Map<String, Supplier<?>> calls = new LinkedHashMap<>();
+            calls.put("account.findAccount", () -> accounts.findAccount(from));
+            // A login after a wrong PIN also clears the failed attempt: the costlier successful path
+            accounts.authenticate(from, "0000");
+            calls.put("account.authenticate", () -> accounts.authenticate(from, "1234"));
+            calls.put("account.deposit", () -> accounts.deposit(from, 500));
+            calls.put("account.withdraw", () -> accounts.withdraw(from, 200));
+            calls.put("account.transfer", () -> accounts.transfer(from, to, 100));
+            calls.put("account.getTransactionHistory", () -> accounts.getTransactionHistory(from, 10));
+            calls.put("account.getAccountSummary", () -> accounts.getAccountSummary(from));
+            calls.put("scheduled.getPendingScheduledTransactions",
+                    () -> services.getScheduledManager().getPendingScheduledTransactions(from));
+            calls.put("audit.log", () -> {
+                services.getAuditLogger().log("ROUND_TRIP_CHECK", "Budget check", null, from);
+                return null;
+            });
+
+            int failures = 0;
+            for (Map.Entry<String, Integer> budget : new TreeMap<>(SqlMetrics.ROUND_TRIP_BUDGETS).entrySet()) {
+                Supplier<?> call = calls.get(budget.getKey());
+                if (call == null) {
+                    System.out.printf("✗ %-42s no check call%n", budget.getKey());
+                    failures++;
+                    continue;
+                }
+                long before = SqlMetrics.threadStatementCount();
+                Object value = call.get();
+                long used = SqlMetrics.threadStatementCount() - before;
+                boolean failed = value == null && !budget.getKey().equals("audit.log")
+                        || value instanceof Result && !((Result<?>) value).isSuccess();
+                boolean ok = !failed && used <= budget.getValue();
+                System.out.printf("%s %-42s %2d statements, budget %d%s%n", ok ? "✓" : "✗", budget.getKey(),
+                        used, budget.getValue(), failed ? " (call failed)" : "");
+                if (!ok) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+    }
+
+    /**
+     * Races the concurrency-sensitive paths against each other on fresh accounts and checks
+     * the money afterwards. The build runs it against an in-memory H2 database
+     * (--check-concurrency), so a lost update or a double posting fails mvn test.
+     */
+    static class ConcurrencyCheck {
+        private static final int THREADS = 16;
+
+        private final AccountManager accounts;
+        private final AdminManager admin;
+        private final AuditLogger auditLogger;
+        private int failures;
+
+        private ConcurrencyCheck(BankingServices services) {
+            this.accounts = services.getAccountManager();
+            this.admin = services.getAdminManager();
+            this.auditLogger = services.getAuditLogger();
+        }
+
+        /**
+         * Returns the number of checks that failed
+         */
+        static int run() throws Exception {
+            try (Connection conn = DBUtil.getConnection()) {
+                DBUtil.ensureSchema(conn);
+            }
+            ConcurrencyCheck check = new ConcurrencyCheck(new BankingServices());
+            check.duplicateKeyRetry();
+            check.concurrentWithdrawals();
+            check.retriesExhausted();
+            check.dailyLimitRace();
+            check.balanceSlots();
+            check.creditDuringFold();
+            check.velocityRollback();
+            check.ledgerRestart();
+            return check.failures;
+        }
+
+        /**
+         * Concurrent retries of one keyed deposit post it once and all get its transaction;
+         * the key then refuses a different posting
+         */
+        private void duplicateKeyRetry() throws Exception {
+            int account = open(1000);
+            String key = "check-" + account;
+            int ok = 0;
+            Set<Integer> ids = new HashSet<>();
+            for (Result<Transaction> result : concurrently(THREADS, i -> accounts.deposit(account, 75, key))) {
+                if (result.isSuccess()) {
+                    ok++;
+                    ids.add(result.getValue().getId());
+                }
+            }
+            int rows = keyedRows(account, key);
+            BigDecimal balance = balance(account);
+            report("idempotency.duplicateKeyRetry", ok == THREADS && ids.size() == 1 && rows == 1
+                            && balance.compareTo(BigDecimal.valueOf(1075)) == 0,
+                    ok + "/" + THREADS + " answered, " + ids.size() + " transaction ids, " + rows + " rows, balance "
+                            + balance);
+
+            Result<Transaction> reused = accounts.withdraw(account, 75, key);
+            balance = balance(account);
+            report("idempotency.keyConflict", !reused.isSuccess() && balance.compareTo(BigDecimal.valueOf(1075)) == 0,
+                    "withdrawal under the deposit's key: " + reused.getCode() + ", balance " + balance);
+        }
+
+        /**
+         * Two withdrawals that each fit the balance but not together: exactly one posts
+         */
+        private void concurrentWithdrawals() throws Exception {
+            int rounds = 20;
+            int wrong = 0;
+            String detail = rounds + " rounds of 2 × 80.00 against 100.00";
+            for (int round = 0; round < rounds; round++) {
+                int account = open(100);
+                List<Result<Transaction>> results = concurrently(2, i -> untilSettled(() -> accounts.withdraw(account, 80)));
+                long posted = results.stream().filter(Result::isSuccess).count();
+                long refused = results.stream().filter(r -> r.getCode() == ResultCode.INSUFFICIENT_FUNDS).count();
+                BigDecimal balance = balance(account);
+                if (posted != 1 || refused != 1 || balance.compareTo(BigDecimal.valueOf(20)) != 0) {
+                    wrong++;
+                    detail = "round " + round + ": " + posted + " posted, " + refused + " refused, balance " + balance;
+                }
+            }
+            report("cas.concurrentWithdrawals", wrong == 0, detail);
+        }
+
+        /**
+         * An attempt whose row changes under it every time is retried maxAttempts times and
+         * then gives up without writing
+         */
+        private void retriesExhausted() throws Exception {
+            int account = open(500);
+            AtomicInteger attempts = new AtomicInteger();
+            String outcome;
+            try {
+                ConcurrencyControl.run("check", account, (conn, attempt, pessimistic) -> {
+                    attempts.incrementAndGet();
+                    Account current = ConcurrencyControl.read(conn, account, false);
+                    try (Connection other = DBUtil.getConnection(account);
+                         PreparedStatement bump = other.prepareStatement(
+                                 "UPDATE accounts SET version = version + 1 WHERE account_no = ?")) {
+                        bump.setInt(1, account);
+                        bump.executeUpdate();
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts SET balance = balance - 1,"
+                            + " version = version + 1 WHERE account_no = ? AND version = ?")) {
+                        ps.setInt(1, account);
+                        ps.setInt(2, current.getVersion());
+                        ConcurrencyControl.cas(ps);
+                    }
+                    return null;
+                });
+                outcome = "committed";
+            } catch (ConcurrencyControl.RetriesExhausted e) {
+                outcome = "exhausted";
+            }
+            BigDecimal balance = balance(account);
+            report("cas.retriesExhausted", outcome.equals("exhausted") && attempts.get() == CONCURRENCY_MAX_ATTEMPTS
+                            && balance.compareTo(BigDecimal.valueOf(500)) == 0,
+                    outcome + " after " + attempts.get() + " attempts (max " + CONCURRENCY_MAX_ATTEMPTS + "), balance "
+                            + balance);
+        }
+
+        /**
+         * Concurrent debits under a daily limit that fits ten of them: exactly ten post
+         */
+        private void dailyLimitRace() throws Exception {
+            int account = open(10000);
+            Result<Void> limited = admin.setDailyLimit(account, 1000, null);
+            if (!limited.isSuccess()) {
+                throw new IllegalStateException("Could not set the daily limit: " + limited.getMessage());
+            }
+            int debits = 32;
+            List<Result<Transaction>> results = concurrently(debits, i -> untilSettled(() -> accounts.withdraw(account, 100)));
+            long posted = results.stream().filter(Result::isSuccess).count();
+            long refused = results.stream().filter(r -> r.getCode() == ResultCode.LIMIT_EXCEEDED).count();
+            BigDecimal balance = balance(account);
+            report("cas.dailyLimitRace", posted == 10 && refused == debits - 10
+                            && balance.compareTo(BigDecimal.valueOf(9000)) == 0,
+                    posted + " of " + debits + " × 100.00 posted under a 1000.00 limit, " + refused
+                            + " refused, balance " + balance);
+        }
+
+        /**
+         * Deposits and withdrawals on a split account while its slots are folded and re-split
+         * underneath them: no credit fails or goes missing, and every debit is covered
+         */
+        private void balanceSlots() throws Exception {
+            int account = open(1000);
+            BalanceSlots.split(account, 4);
+            int depositors = 8;
+            int deposits = 25;
+            int withdrawals = 20;
+            int resplits = 200;
+            List<int[]> counts = concurrently(depositors + 2, i -> {
+                int[] done = new int[2]; // succeeded, failed
+                for (int n = 0; n < (i < depositors ? deposits : i == depositors ? withdrawals : resplits); n++) {
+                    boolean ok;
+                    if (i < depositors) {
+                        ok = accounts.deposit(account, 10).isSuccess();
+                    } else if (i == depositors) {
+                        ok = untilSettled(() -> accounts.withdraw(account, 30)).isSuccess();
+                    } else {
+                        try {
+                            BalanceSlots.unsplit(account);
+                            BalanceSlots.split(account, 4);
+                            ok = true;
+                        } catch (SQLException e) {
+                            ok = false;
+                        }
+                    }
+                    done[ok ? 0 : 1]++;
+                }
+                return done;
+            });
+            BalanceSlots.unsplit(account);
+
+            int failed = counts.stream().mapToInt(c -> c[1]).sum();
+            int posted = counts.get(depositors)[0];
+            BigDecimal expected = BigDecimal.valueOf(1000 + depositors * deposits * 10 - posted * 30);
+            BigDecimal balance = balance(account);
+            int slotRows;
+            try (Connection conn = DBUtil.getConnection(account);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT COUNT(*) FROM account_balance_slots WHERE account_no = ?")) {
+                ps.setInt(1, account);
+                ResultSet rs = ps.executeQuery();
+                slotRows = rs.next() ? rs.getInt(1) : -1;
+            }
+            report("slots.foldUnderLoad", failed == 0 && posted == withdrawals && slotRows == 0
+                            && balance.compareTo(expected) == 0,
+                    failed + " failed calls, " + posted + "/" + withdrawals + " debits, balance " + balance
+                            + " (expected " + expected + "), " + slotRows + " slot rows left");
+        }
+
+        /**
+         * Deposits that picked a slot and are waiting on its row when an unsplit deletes it:
+         * each lands on the accounts row instead, none fails or goes missing
+         */
+        private void creditDuringFold() throws Exception {
+            int account = open(1000);
+            BalanceSlots.split(account, 4);
+            List<Boolean> results;
+            try (Connection hold = DBUtil.getConnection(account)) {
+                hold.setAutoCommit(false);
+                try (PreparedStatement ps = hold.prepareStatement(
+                        "SELECT slot FROM account_balance_slots WHERE account_no = ? FOR UPDATE")) {
+                    ps.setInt(1, account);
+                    ps.executeQuery();
+                }
+                // The deposits queue on the held slot rows, the unsplit behind them, then the rows go
+                results = concurrently(THREADS + 2, i -> {
+                    try {
+                        if (i < THREADS) {
+                            return accounts.deposit(account, 10).isSuccess();
+                        }
+                        if (i == THREADS) {
+                            Thread.sleep(100);
+                            BalanceSlots.unsplit(account);
+                        } else {
+                            Thread.sleep(250);
+                            hold.commit();
+                        }
+                        return true;
+                    } catch (SQLException | InterruptedException e) {
+                        return false;
+                    }
+                });
+            }
+            long ok = results.stream().filter(Boolean::booleanValue).count();
+            BigDecimal expected = BigDecimal.valueOf(1000 + THREADS * 10);
+            BigDecimal balance = balance(account);
+            report("slots.creditDuringFold", ok == THREADS + 2 && balance.compareTo(expected) == 0,
+                    (ok - 2) + "/" + THREADS + " deposits posted across an unsplit, balance " + balance
+                            + " (expected " + expected + ")");
+        }
+
+        /**
+         * Debits that were screened but declined give their burst-window places back: after more
+         * declines than the window allows, maxDebits debits still post and only the next is held
+         */
+        private void velocityRollback() throws Exception {
+            if (!VELOCITY_ENABLED) {
+                report("velocity.declinedDebitsReleased", true, "skipped, -Dbanking.velocity.enabled is off");
+                return;
+            }
+            int account = open(100);
+            int declined = 0;
+            for (int n = 0; n < VELOCITY_MAX_DEBITS + 3; n++) {
+                if (accounts.withdraw(account, 500).getCode() == ResultCode.INSUFFICIENT_FUNDS) {
+                    declined++;
+                }
+            }
+            int posted = 0;
+            for (int n = 0; n < VELOCITY_MAX_DEBITS; n++) {
+                if (accounts.withdraw(account, 1).isSuccess()) {
+                    posted++;
+                }
+            }
+            Result<Transaction> held = accounts.withdraw(account, 1);
+            BigDecimal expected = BigDecimal.valueOf(100 - VELOCITY_MAX_DEBITS);
+            BigDecimal balance = balance(account);
+            report("velocity.declinedDebitsReleased", declined == VELOCITY_MAX_DEBITS + 3
+                            && posted == VELOCITY_MAX_DEBITS && held.getCode() == ResultCode.LIMIT_EXCEEDED
+                            && balance.compareTo(expected) == 0,
+                    declined + " declined, then " + posted + "/" + VELOCITY_MAX_DEBITS + " posted and the next "
+                            + held.getCode() + ", balance " + balance);
+        }
+
+        /**
+         * Postings acknowledged by a ledger that dies before persisting them are written from its
+         * journal on the next start, once each; a retried key then answers with the stored row
+         */
+        private void ledgerRestart() throws Exception {
+            int account = open(1000);
+            String key = "ledger-check-" + account;
+            Path dir = Files.createTempDirectory("ledger-check");
+            Path journal = dir.resolve("ledger.journal");
+            Path snapshot = dir.resolve("ledger.snapshot");
+            try {
+                LedgerEngine crashed = LedgerEngine.start(journal, snapshot);
+                crashed.persister.interrupt();
+                crashed.persister.join();
+                boolean acknowledged = crashed.deposit(account, BigDecimal.valueOf(250), key).isSuccess()
+                        & crashed.withdraw(account, BigDecimal.valueOf(100), null).isSuccess();
+                crash(crashed);
+                int rowsBefore = keyedRows(account, key);
+
+                LedgerEngine restarted = LedgerEngine.start(journal, snapshot);
+                int rows = keyedRows(account, key);
+                BigDecimal balance = balance(account);
+                report("ledger.restartFromJournal", acknowledged && rowsBefore == 0 && rows == 1
+                                && balance.compareTo(BigDecimal.valueOf(1150)) == 0,
+                        "acknowledged " + acknowledged + ", keyed rows " + rowsBefore + " before and " + rows
+                                + " after the restart, balance " + balance);
+
+                AccountManager ledgerAccounts = new AccountManager(auditLogger);
+                ledgerAccounts.useLedger(restarted);
+                Result<Transaction> retried = ledgerAccounts.deposit(account, 250, key);
+                Result<Transaction> reused = ledgerAccounts.withdraw(account, 250, key);
+                restarted.close();
+                rows = keyedRows(account, key);
+                balance = balance(account);
+                report("ledger.retryAfterRestart", retried.isSuccess() && retried.getValue().getId() != 0
+                                && !reused.isSuccess() && rows == 1 && balance.compareTo(BigDecimal.valueOf(1150)) == 0,
+                        "retry " + retried.getCode() + " with transaction " + (retried.isSuccess()
+                                ? retried.getValue().getId() : "none") + ", reuse " + reused.getCode() + ", "
+                                + rows + " keyed rows, balance " + balance);
+            } finally {
+                Files.deleteIfExists(journal);
+                Files.deleteIfExists(snapshot);
+                Files.deleteIfExists(dir);
+            }
+        }
+
+        /**
+         * Stop a ledger as a crash would: the journal is closed, nothing else is drained
+         */
+        private static void crash(LedgerEngine engine) throws Exception {
+            engine.running = false;
+            if (engine.snapshots != null) {
+                engine.snapshots.shutdownNow();
+            }
+            LockSupport.unpark(engine.writer);
+            engine.writer.join();
+            engine.journal.close();
+        }
+
+        /**
+         * Retry a posting that gave up on conflicts, as a client would
+         */
+        private static Result<Transaction> untilSettled(Supplier<Result<Transaction>> posting) {
+            Result<Transaction> result;
+            do {
+                result = posting.get();
+            } while (result.getCode() == ResultCode.CONFLICT);
+            return result;
+        }
+
+        private int open(double deposit) {
+            Result<Account> opened = accounts.createAccount("Concurrency Check", "Savings", deposit, "1234");
+            if (!opened.isSuccess()) {
+                throw new IllegalStateException("Could not open a check account: " + opened.getMessage());
+            }
+            return opened.getValue().getAccountNo();
+        }
+
+        /**
+         * Start n calls at once and wait for all of them
+         */
+        private static <T> List<T> concurrently(int n, IntFunction<T> call) throws Exception {
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = ThreadUtil.newThreadPerTaskExecutor("concurrency-check");
+            try {
+                List<Future<T>> futures = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    int index = i;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return call.apply(index);
+                    }));
+                }
+                start.countDown();
+                List<T> results = new ArrayList<>();
+                for (Future<T> future : futures) {
+                    results.add(future.get(1, TimeUnit.MINUTES));
+                }
+                return results;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private static BigDecimal balance(int accountNo) throws SQLException {
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement("SELECT balance FROM accounts WHERE account_no = ?")) {
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        }
+
+        private static int keyedRows(int accountNo, String key) throws SQLException {
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT COUNT(*) FROM transactions WHERE account_no = ? AND idempotency_key = ?")) {
+                ps.setInt(1, accountNo);
+                ps.setString(2, key);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+
+        private void report(String name, boolean ok, String detail) {
+            System.out.printf("%s %-42s %s%n", ok ? "✓" : "✗", name, detail);
+            if (!ok) {
+                failures++;
+            }
+        }
+    }
+
+    /**
+     * Plain-text Prometheus endpoint (GET /metrics), bound to the loopback interface
+     */
+    static class MetricsHttpExporter {
+        private HttpServer server;
+
+        void start(int port) throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = Metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.createContext("/dashboard", exchange -> {
+                byte[] body = LiveStatistics.toHtml().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        void stop() {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    /**
+     * AuditLogger with every operation timed under "audit.*"
+     */
+    static class InstrumentedAuditLogger extends AuditLogger {
+        @Override
+        void log(String eventType, String description, Integer userId, Integer accountNo) {
+            Metrics.timed("audit.log", accountNo != null ? accountNo : 0, () -> super.log(eventType, description, userId, accountNo));
+        }
+
+        @Override
+        Result<List<Map<String, Object>>> getRecentEvents(int limit) {
+            return Metrics.timed("audit.getRecentEvents", () -> super.getRecentEvents(limit));
+        }
+    }
+
+    /**
+     * AccountManager with every public operation timed under "account.*"
+     */
+    static class InstrumentedAccountManager extends AccountManager {
+        public InstrumentedAccountManager(AuditLogger auditLogger) {
+            super(auditLogger);
+        }
+
+        @Override
+        public Result<Account> createAccount(String holderName, String accountType, double initialDeposit, String pin,
+                                             int termMonths) {
+            return Metrics.timed("account.createAccount",
+                    () -> super.createAccount(holderName, accountType, initialDeposit, pin, termMonths));
+        }
+
+        @Override
+        public Result<AccountOnboarding.Outcome> createAccounts(List<AccountOnboarding.Applicant> applicants) {
+            return Metrics.timed("account.createAccounts", () -> super.createAccounts(applicants));
+        }
+
+        @Override
+        public Account findAccount(int accountNo) {
+            return Metrics.timed("account.findAccount", accountNo, 0, () -> super.findAccount(accountNo));
+        }
+
+        @Override
+        public Result<Account> authenticate(int accountNo, String pin) {
+            return Metrics.timed("account.authenticate", accountNo, 0, () -> super.authenticate(accountNo, pin));
+        }
+
+        @Override
+        public boolean verifyPin(int accountNo, String pin) {
+            return Metrics.timed("account.verifyPin", () -> super.verifyPin(accountNo, pin));
+        }
+
+        @Override
+        public boolean handleFailedLogin(int accountNo) {
+            return Metrics.timed("account.handleFailedLogin", () -> super.handleFailedLogin(accountNo));
+        }
+
+        @Override
+        public void resetFailedLoginAttempts(int accountNo) {
+            Metrics.timed("account.resetFailedLoginAttempts", accountNo, () -> super.resetFailedLoginAttempts(accountNo));
+        }
+
+        @Override
+        public Result<Transaction> deposit(int accountNo, double amount, String idempotencyKey) {
+            return Metrics.timed("account.deposit", accountNo, amount,
+                    () -> super.deposit(accountNo, amount, idempotencyKey));
+        }
+
+        @Override
+        public Result<Transaction> withdraw(int accountNo, double amount, String idempotencyKey) {
+            return Metrics.timed("account.withdraw", accountNo, amount,
+                    () -> super.withdraw(accountNo, amount, idempotencyKey));
+        }
+
+        @Override
+        public Result<Transaction> transfer(int fromAccount, int toAccount, double amount, String idempotencyKey) {
+            return Metrics.timed("account.transfer", fromAccount, amount,
+                    () -> super.transfer(fromAccount, toAccount, amount, idempotencyKey));
+        }
+
+        @Override
+        public BigDecimal applyInterestIfDue(int accountNo) {
+            return Metrics.timed("account.applyInterestIfDue", accountNo, Double.NaN, () -> super.applyInterestIfDue(accountNo));
+        }
+
+        @Override
+        public Result<Transaction> breakFixedDeposit(int accountNo) {
+            return Metrics.timed("account.breakFixedDeposit", accountNo, Double.NaN, () -> super.breakFixedDeposit(accountNo));
+        }
+
+        @Override
+        public Result<List<Transaction>> getTransactionHistory(int accountNo, int offset, int limit) {
+            return Metrics.timed("account.getTransactionHistory",
+                    () -> super.getTransactionHistory(accountNo, offset, limit));
+        }
+
+        @Override
+        public Result<AccountSummary> getAccountSummary(int accountNo) {
+            return Metrics.timed("account.getAccountSummary", () -> super.getAccountSummary(accountNo));
+        }
+    }
+
+    /**
+     * ScheduledManager with every public operation timed under "scheduled.*"
+     */
+    static class InstrumentedScheduledManager extends ScheduledManager {
+        public InstrumentedScheduledManager(AccountManager accountManager, AuditLogger auditLogger) {
+            super(accountManager, auditLogger);
+        }
+
+        @Override
+        public Result<ScheduledTransaction> scheduleTransaction(int accountNo, String type, double amount,
+                                                                String memo, LocalDate scheduleDate) {
+            return Metrics.timed("scheduled.scheduleTransaction",
+                    () -> super.scheduleTransaction(accountNo, type, amount, memo, scheduleDate));
+        }
+
+        @Override
+        public int applyDueScheduledTransactions(LongAdder processed, AtomicBoolean stop) {
+            return Metrics.timed("scheduled.applyDueScheduledTransactions",
+                    () -> super.applyDueScheduledTransactions(processed, stop));
+        }
+
+        @Override
+        public List<ScheduledTransaction> applyDueScheduledTransactionsForAccount(int accountNo) {
+            return Metrics.timed("scheduled.applyDueScheduledTransactionsForAccount", accountNo, Double.NaN,
+                    () -> super.applyDueScheduledTransactionsForAccount(accountNo));
+        }
+
+        @Override
+        public Result<List<ScheduledTransaction>> getPendingScheduledTransactions(int accountNo) {
+            return Metrics.timed("scheduled.getPendingScheduledTransactions",
+                    () -> super.getPendingScheduledTransactions(accountNo));
+        }
+
+        @Override
+        public Result<Void> cancelScheduledTransaction(int scheduledId, int accountNo) {
+            return Metrics.timed("scheduled.cancelScheduledTransaction",
+                    () -> super.cancelScheduledTransaction(scheduledId, accountNo));
+        }
+    }
+
+    /**
+     * AdminManager with every public data operation timed under "admin.*" (the interactive
+     * console flows are not timed; the operations they call are)
+     */
+    static class InstrumentedAdminManager extends AdminManager {
+        public InstrumentedAdminManager(AccountManager accountManager, AuditLogger auditLogger) {
+            super(accountManager, auditLogger);
+        }
+
+        @Override
+        public boolean authenticateAdmin(String username, String password) {
+            return Metrics.timed("admin.authenticateAdmin", () -> super.authenticateAdmin(username, password));
+        }
+
+        @Override
+        public Result<List<Account>> getAllAccounts() {
+            return Metrics.timed("admin.getAllAccounts", super::getAllAccounts);
+        }
+
+        @Override
+        public Result<Void> setAccountLock(int accountNo, boolean locked, Boolean expectedLocked) {
+            return Metrics.timed("admin.setAccountLock", () -> super.setAccountLock(accountNo, locked, expectedLocked));
+        }
+
+        @Override
+        public Result<Map<String, Object>> getSystemStatistics() {
+            return Metrics.timed("admin.getSystemStatistics", super::getSystemStatistics);
+        }
+
+        @Override
+        public Result<List<Map<String, Object>>> getDailyTransactionReport() {
+            return Metrics.timed("admin.getDailyTransactionReport", super::getDailyTransactionReport);
+        }
+
+        @Override
+        public Result<List<Map<String, Object>>> getAccountBalanceReport() {
+            return Metrics.timed("admin.getAccountBalanceReport", super::getAccountBalanceReport);
+        }
+
+        @Override
+        public Result<List<Map<String, Object>>> getDormantAccountsReport() {
+            return Metrics.timed("admin.getDormantAccountsReport", super::getDormantAccountsReport);
+        }
+
+        @Override
+        public Result<Void> setDailyLimit(int accountNo, double newLimit, BigDecimal expectedLimit) {
+            return Metrics.timed("admin.setDailyLimit", () -> super.setDailyLimit(accountNo, newLimit, expectedLimit));
+        }
+
+        @Override
+        public Result<Integer> applyInterestToAllAccounts() {
+            return Metrics.timed("admin.applyInterestToAllAccounts", super::applyInterestToAllAccounts);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        FLIGHT RECORDER
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * One timed banking operation. The event duration is the whole call. dbTime is time
+     * spent executing statements (row-lock waits inside the database included), and
+     * lockWait is time blocked waiting for a pooled connection.
+     */
+    @Name("banking.Operation")
+    @Label("Banking Operation")
+    @Category("Banking")
+    @StackTrace(false)
+    static class BankingOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Account")
+        int accountNo;
+
+        @Label("Amount")
+        double amount;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Statements")
+        long statements;
+
+        @Label("DB Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long dbTime;
+
+        @Label("Lock Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long lockWait;
+    }
+
+    /**
+     * Wait for a pooled JDBC connection
+     */
+    @Name("banking.ConnectionAcquire")
+    @Label("Connection Acquire")
+    @Category("Banking")
+    static class ConnectionAcquireEvent extends Event {
+        @Label("Permits Available")
+        int permitsAvailable;
+
+        @Label("New Connection")
+        boolean newConnection;
+    }
+
+    /**
+     * Summarises a .jfr recording into a per-operation latency breakdown (total, DB, lock
+     * wait and remaining in-JVM time) alongside the GC pauses and thread parks captured
+     * in the same recording
+     */
+    static class JfrAnalyzer {
+
+        private static final class OperationStats {
+            final LatencyHistogram duration = new LatencyHistogram();
+            long dbNanos;
+            long lockNanos;
+            long statements;
+            final Map<String, Long> outcomes = new TreeMap<>();
+        }
+
+        static void run(Path file) throws IOException {
+            Map<String, OperationStats> operations = new TreeMap<>();
+            LatencyHistogram acquire = new LatencyHistogram();
+            LatencyHistogram gcPauses = new LatencyHistogram();
+            LatencyHistogram parks = new LatencyHistogram();
+
+            try (RecordingFile recording = new RecordingFile(file)) {
+                while (recording.hasMoreEvents()) {
+                    RecordedEvent event = recording.readEvent();
+                    long nanos = event.getDuration().toNanos();
+                    switch (event.getEventType().getName()) {
+                        case "banking.Operation" -> {
+                            OperationStats stats = operations.computeIfAbsent(event.getString("operation"),
+                                    key -> new OperationStats());
+                            stats.duration.record(nanos);
+                            stats.dbNanos += event.getLong("dbTime");
+                            stats.lockNanos += event.getLong("lockWait");
+                            stats.statements += event.getLong("statements");
+                            stats.outcomes.merge(event.getString("outcome"), 1L, Long::sum);
+                        }
+                        case "banking.ConnectionAcquire" -> acquire.record(nanos);
+                        case "jdk.GCPhasePause" -> gcPauses.record(nanos);
+                        case "jdk.ThreadPark" -> parks.record(nanos);
+                        default -> { }
+                    }
+                }
+            }
+
+            System.out.printf("%-50s %8s %9s %9s %9s %9s %9s %9s %6s  %s%n", "Operation", "count", "mean ms",
+                    "p50 ms", "p99 ms", "max ms", "db ms", "lock ms", "stmts", "outcomes");
+            operations.forEach((name, s) -> {
+                long count = s.duration.getCount();
+                System.out.printf("%-50s %8d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %6.1f  %s%n", name, count,
+                        s.duration.getMeanNanos() / 1e6, s.duration.percentile(50) / 1e6,
+                        s.duration.percentile(99) / 1e6, s.duration.getMaxNanos() / 1e6,
+                        s.dbNanos / 1e6 / count, s.lockNanos / 1e6 / count, (double) s.statements / count, s.outcomes);
+            });
+            System.out.println();
+            System.out.println("Connection acquire  " + acquire.summary());
+            System.out.println("GC pauses           " + gcPauses.summary());
+            System.out.println("Thread parks        " + parks.summary());
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        LIVE STATISTICS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Running totals behind the admin statistics and dashboard. Seeded once from the database at
+     * startup, then kept current by the posting paths after each commit, so reading them never
+     * scans accounts or transactions. Totals cover postings made by this process since the seed.
+     */
+    static class LiveStatistics {
+        private static final int THROUGHPUT_WINDOW_SECONDS = 60;
+
+        private static final LongAdder totalAccounts = new LongAdder();
+        private static final LongAdder activeAccounts = new LongAdder();
+        private static final LongAdder lockedAccounts = new LongAdder();
+        private static final LongAdder balancePaise = new LongAdder();
+        private static final Map<String, LongAdder> accountsByType = new ConcurrentHashMap<>();
+        private static final AtomicReference<DayTotals> today = new AtomicReference<>(new DayTotals(LocalDate.now()));
+        private static final LongAdder postings = new LongAdder();
+
+        // Per-second posting counts for the last minute, written only by the sampler thread
+        private static final long[] perSecond = new long[THROUGHPUT_WINDOW_SECONDS];
+        private static int sampleIndex;
+        private static int samples;
+        private static long lastSampleTotal;
+
+        private static volatile LocalDateTime seededAt;
+        private static ScheduledExecutorService sampler;
+
+        /**
+         * Today's count and paise per transaction type; replaced wholesale at midnight
+         */
+        private static final class DayTotals {
+            final LocalDate date;
+            final long endMillis;
+            final Map<String, LongAdder[]> byType = new ConcurrentHashMap<>();
+
+            DayTotals(LocalDate date) {
+                this.date = date;
+                this.endMillis = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+
+            void add(String type, long count, long paise) {
+                LongAdder[] totals = byType.computeIfAbsent(type, t -> new LongAdder[] {new LongAdder(), new LongAdder()});
+                totals[0].add(count);
+                totals[1].add(paise);
+            }
+
+            long count(String type) {
+                LongAdder[] totals = byType.get(type);
+                return totals == null ? 0 : totals[0].sum();
+            }
+        }
+
+        /**
+         * Load the totals from the database and start the throughput sampler
+         */
+        static synchronized void seed() throws SQLException {
+            String accountSql = """
+                SELECT account_type, active, locked, COUNT(*) as accounts, COALESCE(SUM(balance), 0) as balance
+                FROM accounts
+                GROUP BY account_type, active, locked
+                """;
+            String txnSql = """
+                SELECT type, COUNT(*) as count, COALESCE(SUM(amount), 0) as amount
+                FROM transactions
+                WHERE txn_time >= CURDATE()
+                GROUP BY type
+                """;
+
+            DayTotals day = new DayTotals(LocalDate.now());
+            totalAccounts.reset();
+            activeAccounts.reset();
+            lockedAccounts.reset();
+            balancePaise.reset();
+            accountsByType.clear();
+
+            // Totals are sums, so each shard simply adds its share
+            DBUtil.fanOut(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(accountSql);
+                     PreparedStatement txnPs = conn.prepareStatement(txnSql)) {
+
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        long accounts = rs.getLong("accounts");
+                        totalAccounts.add(accounts);
+                        if (rs.getBoolean("active")) activeAccounts.add(accounts);
+                        if (rs.getBoolean("locked")) lockedAccounts.add(accounts);
+                        balancePaise.add(toPaise(rs.getBigDecimal("balance")));
+                        accountsByType.computeIfAbsent(typeKey(rs.getString("account_type")), t -> new LongAdder()).add(accounts);
+                    }
+
+                    ResultSet txnRs = txnPs.executeQuery();
+                    while (txnRs.next()) {
+                        day.add(txnRs.getString("type"), txnRs.getLong("count"), toPaise(txnRs.getBigDecimal("amount")));
+                    }
+                }
+                return null;
+            });
+            today.set(day);
+            seededAt = LocalDateTime.now();
+
+            if (sampler == null) {
+                sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "live-statistics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                lastSampleTotal = postings.sum();
+                sampler.scheduleAtFixedRate(LiveStatistics::sample, 1, 1, TimeUnit.SECONDS);
+            }
+        }
+
+        static boolean isSeeded() {
+            return seededAt != null;
+        }
+
+        /**
+         * A new account row; its opening balance arrives through the INITIAL_DEPOSIT posting
+         */
+        static void recordAccountOpened(String accountType) {
+            totalAccounts.increment();
+            activeAccounts.increment();
+            accountsByType.computeIfAbsent(typeKey(accountType), t -> new LongAdder()).increment();
+        }
+
+        static void recordLockChanged(boolean locked) {
+            lockedAccounts.add(locked ? 1 : -1);
+        }
+
+        /**
+         * A committed transaction row; credits raise and debits lower the total balance
+         */
+        static void recordPosting(String type, BigDecimal amount) {
+            recordPosting(type, toPaise(amount));
+        }
+
+        static void recordPosting(String type, long paise) {
+            switch (type) {
+                case "WITHDRAWAL", "TRANSFER_OUT" -> balancePaise.add(-paise);
+                default -> balancePaise.add(paise);
+            }
+            currentDay().add(type, 1, paise);
+            postings.increment();
+        }
+
+        private static DayTotals currentDay() {
+            DayTotals day = today.get();
+            if (System.currentTimeMillis() >= day.endMillis) {
+                today.compareAndSet(day, new DayTotals(LocalDate.now()));
+                day = today.get();
+            }
+            return day;
+        }
+
+        private static synchronized void sample() {
+            long total = postings.sum();
+            perSecond[sampleIndex] = total - lastSampleTotal;
+            lastSampleTotal = total;
+            sampleIndex = (sampleIndex + 1) % THROUGHPUT_WINDOW_SECONDS;
+            samples = Math.min(samples + 1, THROUGHPUT_WINDOW_SECONDS);
+        }
+
+        /**
+         * Same keys as the old SQL statistics, plus today's amounts by type and posting throughput
+         */
+        static Map<String, Object> snapshot() {
+            DayTotals day = currentDay();
+            long todayTotal = 0;
+            Map<String, Object> todayByType = new TreeMap<>();
+            for (Map.Entry<String, LongAdder[]> entry : day.byType.entrySet()) {
+                long count = entry.getValue()[0].sum();
+                todayTotal += count;
+                Map<String, Object> totals = new LinkedHashMap<>();
+                totals.put("count", count);
+                totals.put("amount", BigDecimal.valueOf(entry.getValue()[1].sum(), 2));
+                todayByType.put(entry.getKey(), totals);
+            }
+
+            long lastSecond;
+            double average;
+            synchronized (LiveStatistics.class) {
+                lastSecond = samples == 0 ? 0
+                        : perSecond[(sampleIndex + THROUGHPUT_WINDOW_SECONDS - 1) % THROUGHPUT_WINDOW_SECONDS];
+                long windowTotal = 0;
+                for (int i = 0; i < samples; i++) {
+                    windowTotal += perSecond[i];
+                }
+                average = samples == 0 ? 0 : (double) windowTotal / samples;
+            }
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("totalAccounts", totalAccounts.sum());
+            stats.put("activeAccounts", activeAccounts.sum());
+            stats.put("lockedAccounts", lockedAccounts.sum());
+            stats.put("totalBalance", BigDecimal.valueOf(balancePaise.sum(), 2));
+            stats.put("savingsAccounts", typeCount("Savings"));
+            stats.put("checkingAccounts", typeCount("Checking"));
+            stats.put("businessAccounts", typeCount("Business"));
+            stats.put("todayTransactions", todayTotal);
+            stats.put("todayDeposits", day.count("DEPOSIT"));
+            stats.put("todayWithdrawals", day.count("WITHDRAWAL"));
+            stats.put("todayTransfers", day.count("TRANSFER_OUT") + day.count("TRANSFER_IN"));
+            stats.put("todayByType", todayByType);
+            stats.put("postingsLastSecond", lastSecond);
+            stats.put("postingsPerSecondAvg", Math.round(average * 10) / 10.0);
+            stats.put("throughputWindowSeconds", samples);
+            stats.put("seededAt", seededAt == null ? null : seededAt.format(DATE_FMT));
+            return stats;
+        }
+
+        /**
+         * Self-refreshing page for the loopback metrics port
+         */
+        @SuppressWarnings("unchecked")
+        static String toHtml() {
+            Map<String, Object> stats = snapshot();
+            StringBuilder html = new StringBuilder(2048);
+            html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><meta http-equiv=\"refresh\" content=\"1\">")
+                    .append("<title>Banking Dashboard</title></head><body><h1>Banking Dashboard</h1><table>");
+            for (Map.Entry<String, Object> entry : stats.entrySet()) {
+                if (!entry.getKey().equals("todayByType")) {
+                    html.append("<tr><th align=\"left\">").append(entry.getKey()).append("</th><td>")
+                            .append(entry.getValue()).append("</td></tr>");
+                }
+            }
+            html.append("</table><h2>Today by type</h2><table><tr><th>Type</th><th>Count</th><th>Amount</th></tr>");
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) stats.get("todayByType")).entrySet()) {
+                Map<String, Object> totals = (Map<String, Object>) entry.getValue();
+                html.append("<tr><td>").append(entry.getKey().replace("&", "&amp;").replace("<", "&lt;"))
+                        .append("</td><td>").append(totals.get("count"))
+                        .append("</td><td>").append(totals.get("amount")).append("</td></tr>");
+            }
+            return html.append("</table></body></html>").toString();
+        }
+
+        private static long typeCount(String accountType) {
+            LongAdder count = accountsByType.get(typeKey(accountType));
+            return count == null ? 0 : count.sum();
+        }
+
+        // Account types compare case-insensitively, as they do in MySQL's default collation
+        private static String typeKey(String accountType) {
+            return accountType.toLowerCase(Locale.ROOT);
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                         LEDGER ENGINE
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * In-memory ledger core for peak periods (-Dbanking.ledger.enabled=true).
+     *
+     * <p>Balances, daily limits and usage, and lock flags are held in memory and owned by one
+     * writer thread. Callers publish commands into a pre-allocated ring buffer and wait on a future;
+     * the writer drains whatever is published, applies the same rules as the JDBC path without
+     * locks or database round trips, appends each accepted posting to the journal, forces it to
+     * disk, and only then answers. A persister thread writes the postings to accounts, transactions
+     * and audit_log in batches, moving ledger_checkpoints forward in the same database transaction.
+     * On start, journal records past the checkpoint are persisted before state is loaded, so an
+     * acknowledged posting survives a crash.
+     *
+     * <p>Account rows, lock and limit changes are still written through JDBC and then forwarded
+     * here. Transaction IDs are assigned by the database when a batch is persisted, so postings
+     * answer with ID 0.
+     */
+    static class LedgerEngine {
+        // Journal record kinds (also the command codes for postings)
+        private static final byte OPEN = 1;
+        private static final byte DEPOSIT = 2;
+        private static final byte WITHDRAWAL = 3;
+        private static final byte TRANSFER = 4;
+        private static final byte INTEREST = 5;
+        // State-only commands, never journaled
+        private static final byte LOCK = 6;
+        private static final byte UNLOCK = 7;
+        private static final byte SET_LIMIT = 8;
+
+        static final String ACCOUNT_SQL = """
+            SELECT account_no, account_type, balance, active, locked, daily_limit, last_interest_date
+            FROM accounts
+            """;
+        static final String DAILY_USAGE_SQL = """
+            SELECT account_no, COALESCE(SUM(amount), 0) as daily_total
+            FROM transactions
+            WHERE (type = 'WITHDRAWAL' OR type = 'TRANSFER_OUT') AND reverse_of IS NULL AND txn_time >= CURDATE()
+            GROUP BY account_no
+            """;
+
+        // seq, time, account, toAccount, paise, kind, key length + 2 pad, key bytes, crc
+        private static final int RECORD_BYTES = 40; // without the key
+        private static final int MAX_KEY_BYTES = IDEMPOTENCY_KEY_MAX_LENGTH * 3;
+        private static final int WRITER_BATCH = 1024;
+        // How long the writer keeps a key after it is persisted, to cover callers that checked the database just before
+        private static final long KEY_RETENTION_MS = 60_000;
+        static final String REPLAYED = "Replayed from the ledger";
+
+        private final Path journalPath;
+        private final String journalKey;
+        private Map<Integer, LedgerAccount> accounts = new ConcurrentHashMap<>();
+
+        private final Command[] ring;
+        private final int mask;
+        private final AtomicLong claimed = new AtomicLong(-1);
+        private final AtomicLongArray published;
+        private final AtomicLong consumed = new AtomicLong(-1);
+        private volatile boolean writerParked;
+        private volatile boolean running = true;
+        private volatile Throwable failure;
+
+        private final BlockingQueue<List<Posting>> persistQueue = new ArrayBlockingQueue<>(LEDGER_PERSIST_QUEUE);
+        private final ByteBuffer journalBuffer = ByteBuffer.allocateDirect(WRITER_BATCH * (RECORD_BYTES + MAX_KEY_BYTES));
+        // Writer-owned: keyed postings by "account:key", oldest first, until persisted and retained
+        private final Map<String, Posting> recentKeys = new HashMap<>();
+        private final ArrayDeque<Posting> keyedPostings = new ArrayDeque<>();
+        private final CRC32 crc = new CRC32();
+        private FileChannel journal;
+        private long nextSeq;
+        private volatile long persistedSeq;
+        private Thread writer;
+        private Thread persister;
+        private ScheduledExecutorService snapshots;
+
+        /**
+         * Mutable ring slot, reused once the writer has moved past it
+         */
+        private static final class Command {
+            byte op;
+            int accountNo;
+            int toAccount;
+            long amountPaise;
+            String accountType;
+            String idempotencyKey;
+            CompletableFuture<Result<Transaction>> reply;
+        }
+
+        /**
+         * Writer-owned account state; balance is volatile so readers see whole values
+         */
+        private static final class LedgerAccount {
+            final String accountType;
+            volatile long balancePaise;
+            long dailyLimitPaise;
+            long dailyUsedPaise;
+            long usageDay;
+            volatile long lastInterestDay;
+            boolean active;
+            volatile boolean locked;
+
+            LedgerAccount(String accountType, long balancePaise, long dailyLimitPaise, boolean active, boolean locked,
+                          long lastInterestDay) {
+                this.accountType = accountType;
+                this.balancePaise = balancePaise;
+                this.dailyLimitPaise = dailyLimitPaise;
+                this.active = active;
+                this.locked = locked;
+                this.lastInterestDay = lastInterestDay;
+            }
+        }
+
+        /**
+         * One accepted posting, as journaled and as handed to the persister
+         */
+        private static final class Posting {
+            final long seq;
+            final long timeMillis;
+            final byte kind;
+            final int accountNo;
+            final int toAccount;
+            final long amountPaise;
+            final String idempotencyKey;
+            long persistedSeenMillis; // writer-owned
+
+            Posting(long seq, long timeMillis, byte kind, int accountNo, int toAccount, long amountPaise,
+                    String idempotencyKey) {
+                this.seq = seq;
+                this.timeMillis = timeMillis;
+                this.kind = kind;
+                this.accountNo = accountNo;
+                this.toAccount = toAccount;
+                this.amountPaise = amountPaise;
+                this.idempotencyKey = idempotencyKey;
+            }
+        }
+
+        private LedgerEngine(Path journalPath, int ringSize) {
+            if (Integer.bitCount(ringSize) != 1) {
+                throw new IllegalArgumentException("Ledger ring size must be a power of two: " + ringSize);
+            }
+            this.journalPath = journalPath.toAbsolutePath();
+            this.journalKey = this.journalPath.toString();
+            this.ring = new Command[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                ring[i] = new Command();
+            }
+            this.mask = ringSize - 1;
+            this.published = new AtomicLongArray(ringSize);
+            for (int i = 0; i < ringSize; i++) {
+                published.set(i, -1);
+            }
+        }
+
+        /**
+         * Recover the journal tail, load account state and start the writer and persister
+         */
+        static LedgerEngine start(Path journalPath, Path snapshotPath) throws SQLException, IOException {
+            long started = System.nanoTime();
+            LedgerEngine engine = new LedgerEngine(journalPath, LEDGER_RING_SIZE);
+            int recovered = engine.recover();
+            String source = engine.load(snapshotPath);
+
+            engine.writer = new Thread(engine::runWriter, "ledger-writer");
+            engine.persister = new Thread(engine::runPersister, "ledger-persister");
+            engine.writer.setDaemon(true);
+            engine.persister.setDaemon(true);
+            engine.writer.start();
+            engine.persister.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(engine::close, "ledger-shutdown"));
+
+            System.out.printf("✓ Ledger engine: %,d accounts from %s, %,d journal records recovered, started in %d ms%n",
+                    engine.accounts.size(), source, recovered,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+            if (LEDGER_SNAPSHOT_MINUTES > 0) {
+                engine.snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "ledger-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                engine.snapshots.scheduleWithFixedDelay(() -> {
+                    try {
+                        LedgerSnapshot.write(snapshotPath);
+                    } catch (SQLException | IOException e) {
+                        System.err.println("Ledger snapshot failed: " + e.getMessage());
+                    }
+                }, LEDGER_SNAPSHOT_MINUTES, LEDGER_SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+            }
+            return engine;
+        }
+
+        // ─────────────────────────── Commands ───────────────────────────
+
+        /**
+         * A key already posted is answered with the original posting and the REPLAYED message,
+         * or a conflict if it was used for a different posting
+         */
+        Result<Transaction> deposit(int accountNo, BigDecimal amount, String idempotencyKey) {
+            return await(publish(DEPOSIT, accountNo, 0, toPaise(amount), null, idempotencyKey));
+        }
+
+        Result<Transaction> withdraw(int accountNo, BigDecimal amount, String idempotencyKey) {
+            return await(publish(WITHDRAWAL, accountNo, 0, toPaise(amount), null, idempotencyKey));
+        }
+
+        Result<Transaction> transfer(int fromAccount, int toAccount, BigDecimal amount, String idempotencyKey) {
+            return await(publish(TRANSFER, fromAccount, toAccount, toPaise(amount), null, idempotencyKey));
+        }
+
+        /**
+         * Credit monthly interest unless it was already credited today; the value is null when none was due
+         */
+        Result<Transaction> applyInterest(int accountNo) {
+            return await(publish(INTEREST, accountNo, 0, 0, null, null));
+        }
+
+        /**
+         * Register an account row already inserted with a zero balance, posting its opening deposit
+         */
+        Result<Transaction> open(int accountNo, String accountType, BigDecimal dailyLimit, BigDecimal initialDeposit) {
+            return await(publish(OPEN, accountNo, 0, toPaise(initialDeposit), accountType + "|" + toPaise(dailyLimit), null));
+        }
+
+        void setLocked(int accountNo, boolean locked) {
+            await(publish(locked ? LOCK : UNLOCK, accountNo, 0, 0, null, null));
+        }
+
+        void setDailyLimit(int accountNo, BigDecimal dailyLimit) {
+            await(publish(SET_LIMIT, accountNo, 0, toPaise(dailyLimit), null, null));
+        }
+
+        /**
+         * Replace the database balance and interest date, which may lag, with the ledger's own
+         */
+        void overlay(Account account) {
+            LedgerAccount state = accounts.get(account.getAccountNo());
+            if (state != null) {
+                account.setBalance(BigDecimal.valueOf(state.balancePaise, 2));
+                account.setLocked(state.locked);
+                if (state.lastInterestDay != Long.MIN_VALUE) {
+                    account.setLastInterestDate(LocalDate.ofEpochDay(state.lastInterestDay));
+                }
+            }
+        }
+
+        private CompletableFuture<Result<Transaction>> publish(byte op, int accountNo, int toAccount, long amountPaise,
+                                                              String accountType, String idempotencyKey) {
+            CompletableFuture<Result<Transaction>> reply = new CompletableFuture<>();
+            if (!running || failure != null) {
+                reply.complete(unavailable());
+                return reply;
+            }
+
+            long seq = claimed.incrementAndGet();
+            while (seq - consumed.get() > ring.length) {
+                // Ring full: wait for the writer to free the slot, unless it has died and never will
+                if (failure != null) {
+                    reply.complete(unavailable());
+                    return reply;
+                }
+                LockSupport.parkNanos(1_000);
+            }
+
+            Command cmd = ring[(int) (seq & mask)];
+            cmd.op = op;
+            cmd.accountNo = accountNo;
+            cmd.toAccount = toAccount;
+            cmd.amountPaise = amountPaise;
+            cmd.accountType = accountType;
+            cmd.idempotencyKey = idempotencyKey;
+            cmd.reply = reply;
+            published.set((int) (seq & mask), seq);
+
+            if (writerParked) {
+                LockSupport.unpark(writer);
+            }
+            return reply;
+        }
+
+        /**
+         * A timed-out posting may still be applied later, so the caller is told the outcome is unknown
+         */
+        private static Result<Transaction> await(CompletableFuture<Result<Transaction>> reply) {
+            try {
+                return reply.get(LEDGER_REPLY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return Result.fail(ResultCode.DB_ERROR,
+                        "Ledger engine did not answer within " + LEDGER_REPLY_TIMEOUT_MS + " ms; check the account before retrying.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.fail(ResultCode.DB_ERROR, "Interrupted while waiting for the ledger engine.");
+            } catch (ExecutionException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Ledger engine error: " + e.getCause().getMessage());
+            }
+        }
+
+        private Result<Transaction> unavailable() {
+            return Result.fail(ResultCode.DB_ERROR, failure != null
+                    ? "Ledger engine stopped after a journal failure: " + failure.getMessage()
+                    : "Ledger engine is shut down.");
+        }
+
+        // ─────────────────────────── Writer ───────────────────────────
+
+        private void runWriter() {
+            long next = 0;
+            List<CompletableFuture<Result<Transaction>>> replies = new ArrayList<>(WRITER_BATCH);
+            List<Result<Transaction>> results = new ArrayList<>(WRITER_BATCH);
+
+            try {
+                while (running || next <= claimed.get()) {
+                    long end = next;
+                    while (end - next < WRITER_BATCH && published.get((int) (end & mask)) == end) {
+                        end++;
+                    }
+                    if (end == next) {
+                        writerParked = true;
+                        if (published.get((int) (next & mask)) != next) {
+                            LockSupport.parkNanos(1_000_000);
+                        }
+                        writerParked = false;
+                        continue;
+                    }
+
+                    long today = LocalDate.now().toEpochDay();
+                    long now = System.currentTimeMillis();
+                    List<Posting> accepted = new ArrayList<>();
+                    journalBuffer.clear();
+                    for (long seq = next; seq < end; seq++) {
+                        Command cmd = ring[(int) (seq & mask)];
+                        results.add(apply(cmd, today, now, accepted));
+                        replies.add(cmd.reply);
+                        cmd.reply = null;
+                        cmd.accountType = null;
+                        cmd.idempotencyKey = null;
+                    }
+                    forgetPersistedKeys(now);
+                    consumed.set(end - 1);
+                    next = end;
+
+                    if (!accepted.isEmpty()) {
+                        journalBuffer.flip();
+                        while (journalBuffer.hasRemaining()) {
+                            journal.write(journalBuffer);
+                        }
+                        if (LEDGER_FSYNC) {
+                            journal.force(false);
+                        }
+                    }
+
+                    for (int i = 0; i < replies.size(); i++) {
+                        replies.get(i).complete(results.get(i));
+                    }
+                    replies.clear();
+                    results.clear();
+
+                    if (!accepted.isEmpty()) {
+                        persistQueue.put(accepted);
+                    }
+                }
+            } catch (Throwable e) {
+                // Memory may now be ahead of the journal: stop taking postings until a restart recovers
+                failure = e;
+                System.err.println("Ledger writer stopped: " + e);
+                Result<Transaction> failed = unavailable();
+                for (CompletableFuture<Result<Transaction>> reply : replies) {
+                    reply.complete(failed);
+                }
+                drainRingAfterFailure(next, failed);
+            }
+        }
+
+        private void drainRingAfterFailure(long next, Result<Transaction> failed) {
+            for (long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1); System.nanoTime() < deadline; ) {
+                if (published.get((int) (next & mask)) == next) {
+                    ring[(int) (next & mask)].reply.complete(failed);
+                    consumed.set(next++);
+                } else if (next > claimed.get()) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Same checks and messages as the JDBC path in AccountManager
+         */
+        private Result<Transaction> apply(Command cmd, long today, long now, List<Posting> accepted) {
+            if (cmd.idempotencyKey != null) {
+                Posting original = recentKeys.get(cmd.accountNo + ":" + cmd.idempotencyKey);
+                if (original != null) {
+                    return replay(original, cmd);
+                }
+            }
+            LedgerAccount account = accounts.get(cmd.accountNo);
+            switch (cmd.op) {
+                case OPEN -> {
+                    String[] parts = cmd.accountType.split("\\|");
+                    accounts.put(cmd.accountNo,
+                            new LedgerAccount(parts[0], 0, Long.parseLong(parts[1]), true, false, today));
+                    if (cmd.amountPaise == 0) {
+                        return Result.ok(null, null);
+                    }
+                    accounts.get(cmd.accountNo).balancePaise = cmd.amountPaise;
+                    return accept(cmd, OPEN, "INITIAL_DEPOSIT", "Account opening deposit", now, accepted);
+                }
+                case DEPOSIT -> {
+                    Result<Transaction> unusable = checkUsable(account, "Account");
+                    if (unusable != null) return unusable;
+                    account.balancePaise += cmd.amountPaise;
+                    return accept(cmd, DEPOSIT, "DEPOSIT", "Cash deposit", now, accepted);
+                }
+                case WITHDRAWAL -> {
+                    Result<Transaction> unusable = checkUsable(account, "Account");
+                    if (unusable != null) return unusable;
+                    if (account.balancePaise < cmd.amountPaise) {
+                        return Result.fail(ResultCode.INSUFFICIENT_FUNDS, "Insufficient balance.");
+                    }
+                    if (!withinDailyLimit(account, cmd.amountPaise, today)) {
+                        return Result.fail(ResultCode.LIMIT_EXCEEDED, "Daily withdrawal limit exceeded.");
+                    }
+                    account.balancePaise -= cmd.amountPaise;
+                    account.dailyUsedPaise += cmd.amountPaise;
+                    return accept(cmd, WITHDRAWAL, "WITHDRAWAL", "Cash withdrawal", now, accepted);
+                }
+                case TRANSFER -> {
+                    Result<Transaction> unusable = checkUsable(account, "Source account");
+                    if (unusable != null) return unusable;
+                    LedgerAccount target = accounts.get(cmd.toAccount);
+                    if (target == null || !target.active) {
+                        return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Destination account not found or inactive.");
+                    }
+                    if (account.balancePaise < cmd.amountPaise) {
+                        return Result.fail(ResultCode.INSUFFICIENT_FUNDS, "Insufficient balance in source account.");
+                    }
+                    if (!withinDailyLimit(account, cmd.amountPaise, today)) {
+                        return Result.fail(ResultCode.LIMIT_EXCEEDED, "Daily transfer limit exceeded.");
+                    }
+                    account.balancePaise -= cmd.amountPaise;
+                    account.dailyUsedPaise += cmd.amountPaise;
+                    target.balancePaise += cmd.amountPaise;
+                    return accept(cmd, TRANSFER, "TRANSFER_OUT", "Transfer to account " + cmd.toAccount, now, accepted);
+                }
+                case INTEREST -> {
+                    if (account == null || !account.active || account.lastInterestDay >= today) {
+                        return Result.ok(null, null);
+                    }
+                    BigDecimal interest = AccountManager.calculateMonthlyInterest(
+                            BigDecimal.valueOf(account.balancePaise, 2), account.accountType);
+                    if (interest.signum() <= 0) {
+                        return Result.ok(null, null);
+                    }
+                    cmd.amountPaise = toPaise(interest);
+                    account.lastInterestDay = today;
+                    account.balancePaise += cmd.amountPaise;
+                    return accept(cmd, INTEREST, "INTEREST", "Monthly interest credit", now, accepted);
+                }
+                case LOCK, UNLOCK -> {
+                    if (account != null) account.locked = cmd.op == LOCK;
+                    return Result.ok(null, null);
+                }
+                case SET_LIMIT -> {
+                    if (account != null) account.dailyLimitPaise = cmd.amountPaise;
+                    return Result.ok(null, null);
+                }
+                default -> {
+                    return Result.fail(ResultCode.INVALID_INPUT, "Unknown ledger command " + cmd.op);
+                }
+            }
+        }
+
+        private static Result<Transaction> checkUsable(LedgerAccount account, String label) {
+            if (account == null) {
+                return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, label + " not found.");
+            }
+            if (!account.active) {
+                return Result.fail(ResultCode.ACCOUNT_INACTIVE, label + " is inactive.");
+            }
+            if (account.locked) {
+                return Result.fail(ResultCode.ACCOUNT_LOCKED, label + " is locked.");
+            }
+            return null;
+        }
+
+        private static boolean withinDailyLimit(LedgerAccount account, long amountPaise, long today) {
+            if (account.usageDay != today) {
+                account.usageDay = today;
+                account.dailyUsedPaise = 0;
+            }
+            return account.dailyUsedPaise + amountPaise <= account.dailyLimitPaise;
+        }
+
+        private Result<Transaction> accept(Command cmd, byte kind, String type, String memo, long now,
+                                           List<Posting> accepted) {
+            Posting posting = new Posting(++nextSeq, now, kind, cmd.accountNo, cmd.toAccount, cmd.amountPaise,
+                    cmd.idempotencyKey);
+            writeRecord(journalBuffer, posting);
+            accepted.add(posting);
+            if (posting.idempotencyKey != null) {
+                recentKeys.put(posting.accountNo + ":" + posting.idempotencyKey, posting);
+                keyedPostings.add(posting);
+            }
+            Transaction txn = new Transaction(0, cmd.accountNo, type, BigDecimal.valueOf(cmd.amountPaise, 2), memo,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault()), null);
+            return Result.ok(txn, null);
+        }
+
+        /**
+         * Answer a repeated key with the posting it was first used for, as the JDBC path does
+         */
+        private static Result<Transaction> replay(Posting original, Command cmd) {
+            if (original.kind != cmd.op || original.amountPaise != cmd.amountPaise
+                    || (original.kind == TRANSFER && original.toAccount != cmd.toAccount)) {
+                return IdempotencyCache.conflict();
+            }
+            String type = original.kind == DEPOSIT ? "DEPOSIT" : original.kind == WITHDRAWAL ? "WITHDRAWAL" : "TRANSFER_OUT";
+            String memo = original.kind == DEPOSIT ? "Cash deposit" : original.kind == WITHDRAWAL ? "Cash withdrawal"
+                    : "Transfer to account " + original.toAccount;
+            Transaction txn = new Transaction(0, original.accountNo, type, BigDecimal.valueOf(original.amountPaise, 2),
+                    memo, LocalDateTime.ofInstant(Instant.ofEpochMilli(original.timeMillis), ZoneId.systemDefault()),
+                    null);
+            return Result.ok(txn, REPLAYED);
+        }
+
+        /**
+         * Drop keys persisted at least KEY_RETENTION_MS ago; from then on the caller's database
+         * check finds them
+         */
+        private void forgetPersistedKeys(long now) {
+            long persisted = persistedSeq;
+            Posting oldest;
+            while ((oldest = keyedPostings.peek()) != null && oldest.seq <= persisted) {
+                if (oldest.persistedSeenMillis == 0) {
+                    oldest.persistedSeenMillis = now;
+                }
+                if (now - oldest.persistedSeenMillis < KEY_RETENTION_MS) {
+                    break;
+                }
+                keyedPostings.poll();
+                recentKeys.remove(oldest.accountNo + ":" + oldest.idempotencyKey, oldest);
+            }
+        }
+
+        private void writeRecord(ByteBuffer buf, Posting p) {
+            int start = buf.position();
+            byte[] key = p.idempotencyKey == null ? new byte[0] : p.idempotencyKey.getBytes(StandardCharsets.UTF_8);
+            buf.putLong(p.seq).putLong(p.timeMillis).putInt(p.accountNo).putInt(p.toAccount).putLong(p.amountPaise)
+                    .put(p.kind).put((byte) key.length).put((byte) 0).put((byte) 0).put(key);
+            crc.reset();
+            crc.update(buf.duplicate().position(start).limit(start + RECORD_BYTES - 4 + key.length));
+            buf.putInt((int) crc.getValue());
+        }
+
+        // ─────────────────────────── Persister ───────────────────────────
+
+        private void runPersister() {
+            while (true) {
+                List<Posting> rows;
+                try {
+                    List<Posting> first = persistQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (!writer.isAlive() && persistQueue.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    rows = new ArrayList<>(first);
+                    List<Posting> more;
+                    while (rows.size() < LEDGER_PERSIST_BATCH && (more = persistQueue.poll()) != null) {
+                        rows.addAll(more);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                // The journal holds these rows, so keep retrying rather than dropping them
+                for (long backoff = 100; ; backoff = Math.min(backoff * 2, 5_000)) {
+                    try {
+                        persist(rows);
+                        persistedSeq = rows.get(rows.size() - 1).seq;
+                        break;
+                    } catch (SQLException e) {
+                        System.err.println("Ledger persist failed, retrying: " + e.getMessage());
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Write a run of postings, their audit rows and the checkpoint in one database transaction
+         */
+        private void persist(List<Posting> rows) throws SQLException {
+            String balanceSql = "UPDATE accounts SET balance = balance + ? WHERE account_no = ?";
+            String interestSql = "UPDATE accounts SET last_interest_date = ? WHERE account_no = ?";
+            String txnSql = """
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time, idempotency_key)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """;
+            String auditSql = "INSERT INTO audit_log (event_time, user_id, account_no, event_text) VALUES (?, NULL, ?, ?)";
+            String checkpointSql = """
+                INSERT INTO ledger_checkpoints (journal_key, persisted_seq, updated_at)
+                VALUES (?, ?, NOW())
+                ON DUPLICATE KEY UPDATE persisted_seq = VALUES(persisted_seq), updated_at = NOW()
+                """;
+
+            try (Connection conn = DBUtil.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement balancePs = conn.prepareStatement(balanceSql);
+                     PreparedStatement interestPs = conn.prepareStatement(interestSql);
+                     PreparedStatement txnPs = conn.prepareStatement(txnSql);
+                     PreparedStatement auditPs = conn.prepareStatement(auditSql);
+                     PreparedStatement checkpointPs = conn.prepareStatement(checkpointSql)) {
+
+                    // Net per account, applied in account order like the bulk poster
+                    Map<Integer, Long> deltas = new TreeMap<>();
+                    for (Posting p : rows) {
+                        BigDecimal amount = BigDecimal.valueOf(p.amountPaise, 2);
+                        Timestamp time = new Timestamp(p.timeMillis);
+                        switch (p.kind) {
+                            case OPEN -> {
+                                addRow(txnPs, p.accountNo, "INITIAL_DEPOSIT", amount, "Account opening deposit", time, null);
+                                deltas.merge(p.accountNo, p.amountPaise, Long::sum);
+                            }
+                            case DEPOSIT -> {
+                                addRow(txnPs, p.accountNo, "DEPOSIT", amount, "Cash deposit", time, p.idempotencyKey);
+                                addAudit(auditPs, time, p.accountNo,
+                                        "DEPOSIT | ₹" + amount + " deposited to account " + p.accountNo);
+                                deltas.merge(p.accountNo, p.amountPaise, Long::sum);
+                            }
+                            case WITHDRAWAL -> {
+                                addRow(txnPs, p.accountNo, "WITHDRAWAL", amount, "Cash withdrawal", time, p.idempotencyKey);
+                                addAudit(auditPs, time, p.accountNo,
+                                        "WITHDRAWAL | ₹" + amount + " withdrawn from account " + p.accountNo);
+                                deltas.merge(p.accountNo, -p.amountPaise, Long::sum);
+                            }
+                            case TRANSFER -> {
+                                addRow(txnPs, p.accountNo, "TRANSFER_OUT", amount,
+                                        "Transfer to account " + p.toAccount, time, p.idempotencyKey);
+                                addRow(txnPs, p.toAccount, "TRANSFER_IN", amount,
+                                        "Transfer from account " + p.accountNo, time, null);
+                                addAudit(auditPs, time, p.accountNo, "TRANSFER | ₹" + amount + " transferred from "
+                                        + p.accountNo + " to " + p.toAccount);
+                                deltas.merge(p.accountNo, -p.amountPaise, Long::sum);
+                                deltas.merge(p.toAccount, p.amountPaise, Long::sum);
+                            }
+                            case INTEREST -> {
+                                interestPs.setDate(1, Date.valueOf(time.toLocalDateTime().toLocalDate()));
+                                interestPs.setInt(2, p.accountNo);
+                                interestPs.addBatch();
+                                addRow(txnPs, p.accountNo, "INTEREST", amount, "Monthly interest credit", time, null);
+                                addAudit(auditPs, time, p.accountNo,
+                                        "INTEREST_APPLIED | ₹" + amount + " interest applied to account " + p.accountNo);
+                                deltas.merge(p.accountNo, p.amountPaise, Long::sum);
+                            }
+                            default -> throw new SQLException("Unknown journal record kind " + p.kind);
+                        }
+                    }
+                    for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                        if (delta.getValue() != 0) {
+                            balancePs.setBigDecimal(1, BigDecimal.valueOf(delta.getValue(), 2));
+                            balancePs.setInt(2, delta.getKey());
+                            balancePs.addBatch();
+                        }
+                    }
+
+                    balancePs.executeBatch();
+                    interestPs.executeBatch();
+                    txnPs.executeBatch();
+                    auditPs.executeBatch();
+                    checkpointPs.setString(1, journalKey);
+                    checkpointPs.setLong(2, rows.get(rows.size() - 1).seq);
+                    checkpointPs.executeUpdate();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        }
+
+        private static void addRow(PreparedStatement ps, int accountNo, String type, BigDecimal amount, String memo,
+                                   Timestamp time, String idempotencyKey) throws SQLException {
+            ps.setInt(1, accountNo);
+            ps.setString(2, type);
+            ps.setBigDecimal(3, amount);
+            ps.setString(4, memo);
+            ps.setTimestamp(5, time);
+            ps.setString(6, idempotencyKey);
+            ps.addBatch();
+        }
+
+        private static void addAudit(PreparedStatement ps, Timestamp time, int accountNo, String text)
+                throws SQLException {
+            ps.setTimestamp(1, time);
+            ps.setInt(2, accountNo);
+            ps.setString(3, text);
+            ps.addBatch();
+        }
+
+        // ─────────────────────────── Startup and shutdown ───────────────────────────
+
+        /**
+         * Persist journal records past the checkpoint, then start a fresh journal. Returns the
+         * number of records recovered.
+         */
+        private int recover() throws SQLException, IOException {
+            try (Connection conn = DBUtil.getConnection(); Statement st = conn.createStatement()) {
+                st.execute("""
+                    CREATE TABLE IF NOT EXISTS ledger_checkpoints (
+                      journal_key VARCHAR(255) PRIMARY KEY,
+                      persisted_seq BIGINT NOT NULL,
+                      updated_at DATETIME
+                    )
+                    """);
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT persisted_seq FROM ledger_checkpoints WHERE journal_key = ?")) {
+                    ps.setString(1, journalKey);
+                    ResultSet rs = ps.executeQuery();
+                    persistedSeq = rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+
+            List<Posting> pending = new ArrayList<>();
+            long lastSeq = persistedSeq;
+            if (Files.exists(journalPath)) {
+                try (FileChannel in = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+                    ByteBuffer buf = ByteBuffer.allocate((RECORD_BYTES + MAX_KEY_BYTES) * WRITER_BATCH);
+                    CRC32 check = new CRC32();
+                    boolean more = true;
+                    read:
+                    while (more) {
+                        more = in.read(buf) >= 0;
+                        buf.flip();
+                        // A record cut short at the end is a torn tail from a crash mid-write: it was never acknowledged
+                        while (buf.remaining() >= RECORD_BYTES
+                                && buf.remaining() >= RECORD_BYTES + (buf.get(buf.position() + 33) & 0xFF)) {
+                            int start = buf.position();
+                            int keyBytes = buf.get(start + 33) & 0xFF;
+                            check.reset();
+                            check.update(buf.duplicate().limit(start + RECORD_BYTES - 4 + keyBytes));
+                            long seq = buf.getLong();
+                            long timeMillis = buf.getLong();
+                            int accountNo = buf.getInt();
+                            int toAccount = buf.getInt();
+                            long amountPaise = buf.getLong();
+                            String key = keyBytes == 0 ? null
+                                    : new String(buf.array(), start + RECORD_BYTES - 4, keyBytes, StandardCharsets.UTF_8);
+                            Posting p = new Posting(seq, timeMillis, buf.get(start + 32), accountNo, toAccount,
+                                    amountPaise, key);
+                            buf.position(start + RECORD_BYTES - 4 + keyBytes);
+                            if (buf.getInt() != (int) check.getValue()) {
+                                break read;
+                            }
+                            lastSeq = Math.max(lastSeq, p.seq);
+                            if (p.seq > persistedSeq) {
+                                pending.add(p);
+                            }
+                        }
+                        buf.compact();
+                    }
+                }
+            }
+
+            for (int from = 0; from < pending.size(); from += LEDGER_PERSIST_BATCH) {
+                persist(pending.subList(from, Math.min(from + LEDGER_PERSIST_BATCH, pending.size())));
+            }
+            nextSeq = lastSeq;
+            persistedSeq = lastSeq;
+
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            return pending.size();
+        }
+
+        /**
+         * Load account state: from the snapshot plus newer rows when there is a usable one,
+         * otherwise from the database. Returns a description of where the state came from.
+         */
+        private String load(Path snapshotPath) throws SQLException {
+            if (Files.exists(snapshotPath)) {
+                try {
+                    LedgerSnapshot.Header header = LedgerSnapshot.read(snapshotPath);
+                    accounts = header.accounts;
+                    long replayed = replaySince(header);
+                    return String.format("snapshot of %,d accounts (%,d bytes mapped) + %,d newer rows replayed",
+                            header.count, header.bytes, replayed);
+                } catch (IOException e) {
+                    System.err.println("Ignoring ledger snapshot " + snapshotPath + ": " + e.getMessage());
+                }
+            }
+
+            long today = LocalDate.now().toEpochDay();
+            try (Connection conn = DBUtil.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(ACCOUNT_SQL);
+                 PreparedStatement usagePs = conn.prepareStatement(DAILY_USAGE_SQL)) {
+
+                accounts = new ConcurrentHashMap<>();
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    accounts.put(rs.getInt("account_no"), accountFrom(rs));
+                }
+
+                ResultSet usage = usagePs.executeQuery();
+                while (usage.next()) {
+                    LedgerAccount account = accounts.get(usage.getInt("account_no"));
+                    if (account != null) {
+                        account.usageDay = today;
+                        account.dailyUsedPaise = toPaise(usage.getBigDecimal("daily_total"));
+                    }
+                }
+            }
+            return "full load from the database";
+        }
+
+        /**
+         * Bring snapshot state up to date: accounts opened since, transactions rows past the
+         * high-water mark, and accounts whose lock or limit was changed according to audit_log
+         */
+        private long replaySince(LedgerSnapshot.Header header) throws SQLException {
+            String newAccountsSql = ACCOUNT_SQL + " WHERE account_no > ?";
+            String txnSql = "SELECT account_no, type, amount, txn_time, reverse_of FROM transactions WHERE id > ? ORDER BY id";
+            String auditSql = """
+                SELECT DISTINCT account_no FROM audit_log
+                WHERE id > ? AND account_no IS NOT NULL
+                  AND (event_text LIKE 'ACCOUNT_LOCKED%' OR event_text LIKE 'ACCOUNT_UNLOCKED%'
+                       OR event_text LIKE 'DAILY_LIMIT_CHANGED%')
+                """;
+            String refreshSql = ACCOUNT_SQL + " WHERE account_no = ?";
+            long today = LocalDate.now().toEpochDay();
+            long replayed = 0;
+
+            try (Connection conn = DBUtil.getConnection();
+                 PreparedStatement newPs = conn.prepareStatement(newAccountsSql);
+                 PreparedStatement txnPs = conn.prepareStatement(txnSql);
+                 PreparedStatement auditPs = conn.prepareStatement(auditSql);
+                 PreparedStatement refreshPs = conn.prepareStatement(refreshSql)) {
+
+                // Accounts opened after the snapshot come with their current balance
+                newPs.setInt(1, header.maxAccountNo);
+                ResultSet rs = newPs.executeQuery();
+                while (rs.next()) {
+                    accounts.put(rs.getInt("account_no"), accountFrom(rs));
+                }
+
+                txnPs.setLong(1, header.txnHighWater);
+                DBUtil.streamRows(txnPs);
+                rs = txnPs.executeQuery();
+                while (rs.next()) {
+                    int accountNo = rs.getInt("account_no");
+                    LedgerAccount account = accounts.get(accountNo);
+                    if (account == null) {
+                        continue;
+                    }
+                    String type = rs.getString("type");
+                    long paise = toPaise(rs.getBigDecimal("amount"));
+                    long day = rs.getTimestamp("txn_time").toLocalDateTime().toLocalDate().toEpochDay();
+                    boolean debit = type.equals("WITHDRAWAL") || type.equals("TRANSFER_OUT");
+
+                    if (accountNo <= header.maxAccountNo) {
+                        account.balancePaise += debit ? -paise : paise;
+                    }
+                    // Reversal rows move the balance but never count against the daily limit
+                    if (debit && day == today && rs.getObject("reverse_of") == null) {
+                        if (account.usageDay != today) {
+                            account.usageDay = today;
+                            account.dailyUsedPaise = 0;
+                        }
+                        account.dailyUsedPaise += paise;
+                    }
+                    if (type.equals("INTEREST")) {
+                        account.lastInterestDay = Math.max(account.lastInterestDay, day);
+                    }
+                    replayed++;
+                }
+
+                auditPs.setLong(1, header.auditHighWater);
+                rs = auditPs.executeQuery();
+                while (rs.next()) {
+                    LedgerAccount account = accounts.get(rs.getInt("account_no"));
+                    if (account == null) {
+                        continue;
+                    }
+                    refreshPs.setInt(1, rs.getInt("account_no"));
+                    ResultSet current = refreshPs.executeQuery();
+                    if (current.next()) {
+                        account.locked = current.getBoolean("locked");
+                        account.active = current.getBoolean("active");
+                        account.dailyLimitPaise = toPaise(current.getBigDecimal("daily_limit"));
+                    }
+                }
+            }
+            return replayed;
+        }
+
+        private static LedgerAccount accountFrom(ResultSet rs) throws SQLException {
+            Date lastInterest = rs.getDate("last_interest_date");
+            return new LedgerAccount(
+                    rs.getString("account_type"),
+                    toPaise(rs.getBigDecimal("balance")),
+                    toPaise(rs.getBigDecimal("daily_limit")),
+                    rs.getBoolean("active"),
+                    rs.getBoolean("locked"),
+                    lastInterest == null ? Long.MIN_VALUE : lastInterest.toLocalDate().toEpochDay());
+        }
+
+        /**
+         * Stop taking postings, drain the ring and wait for the persister to catch up
+         */
+        void close() {
+            if (!running) {
+                return;
+            }
+            running = false;
+            if (snapshots != null) {
+                snapshots.shutdownNow();
+            }
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+                persister.join(TimeUnit.SECONDS.toMillis(30));
+                journal.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("Error closing ledger journal: " + e.getMessage());
+            }
+        }
+
+        static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    /**
+     * Compact binary snapshot of ledger account state, so a restart maps one file and replays
+     * only newer rows instead of re-reading every account.
+     *
+     * <p>The state is read from the database in one repeatable-read transaction, which gives the
+     * account rows, today's spend and the transactions/audit_log high-water marks from the same
+     * point in time. The file is written beside the target and renamed over it.
+     *
+     * <p>Layout (big-endian): a 64-byte header (magic, version, created millis, transactions and
+     * audit_log high-water IDs, snapshot day, record count, highest account number, CRC32 of the
+     * records), fixed 40-byte records (account, balance, daily limit, daily spend, last interest day
+     * in paise/epoch days, type index, flags), then the account type names.
+     */
+    static class LedgerSnapshot {
+        private static final int MAGIC = 0x424B534E; // "BKSN"
+        private static final int VERSION = 1;
+        private static final int HEADER_BYTES = 64;
+        private static final int RECORD_BYTES = 40;
+        private static final byte ACTIVE = 1;
+        private static final byte LOCKED = 2;
+        private static final int WINDOW_RECORDS = 1 << 20;
+
+        static final class Header {
+            long createdMillis;
+            long txnHighWater;
+            long auditHighWater;
+            long day;
+            long count;
+            int maxAccountNo;
+            long bytes;
+            Map<Integer, LedgerEngine.LedgerAccount> accounts;
+        }
+
+        /**
+         * Write a snapshot of the current database state; returns {accounts, bytes}
+         */
+        static long[] write(Path target) throws SQLException, IOException {
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            long today = LocalDate.now().toEpochDay();
+            Map<String, Integer> types = new LinkedHashMap<>();
+            CRC32 crc = new CRC32();
+            long count = 0;
+            int maxAccountNo = 0;
+            long txnHighWater;
+            long auditHighWater;
+
+            try (Connection conn = DBUtil.getConnection();
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                int isolation = conn.getTransactionIsolation();
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                conn.setAutoCommit(false);
+                try (Statement st = conn.createStatement()) {
+                    ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transactions");
+                    txnHighWater = rs.next() ? rs.getLong(1) : 0;
+                    rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM audit_log");
+                    auditHighWater = rs.next() ? rs.getLong(1) : 0;
+
+                    Map<Integer, Long> spend = new HashMap<>();
+                    rs = st.executeQuery(LedgerEngine.DAILY_USAGE_SQL);
+                    while (rs.next()) {
+                        spend.put(rs.getInt("account_no"), LedgerEngine.toPaise(rs.getBigDecimal("daily_total")));
+                    }
+
+                    ByteBuffer buf = ByteBuffer.allocateDirect(RECORD_BYTES * 8192);
+                    out.position(HEADER_BYTES);
+                    try (Statement stream = conn.createStatement()) {
+                        DBUtil.streamRows(stream);
+                        rs = stream.executeQuery(LedgerEngine.ACCOUNT_SQL + " ORDER BY account_no");
+                        while (rs.next()) {
+                            int accountNo = rs.getInt("account_no");
+                            Date lastInterest = rs.getDate("last_interest_date");
+                            int typeIndex = types.computeIfAbsent(rs.getString("account_type"), t -> types.size());
+                            buf.putInt(accountNo)
+                                    .putLong(LedgerEngine.toPaise(rs.getBigDecimal("balance")))
+                                    .putLong(LedgerEngine.toPaise(rs.getBigDecimal("daily_limit")))
+                                    .putLong(spend.getOrDefault(accountNo, 0L))
+                                    .putLong(lastInterest == null ? Long.MIN_VALUE : lastInterest.toLocalDate().toEpochDay())
+                                    .put((byte) typeIndex)
+                                    .put((byte) ((rs.getBoolean("active") ? ACTIVE : 0) | (rs.getBoolean("locked") ? LOCKED : 0)))
+                                    .putShort((short) 0);
+                            maxAccountNo = Math.max(maxAccountNo, accountNo);
+                            count++;
+                            if (!buf.hasRemaining()) {
+                                flush(buf, out, crc);
+                            }
+                        }
+                    }
+                    flush(buf, out, crc);
+                    conn.commit();
+                } finally {
+                    conn.setAutoCommit(true);
+                    conn.setTransactionIsolation(isolation);
+                }
+
+                if (types.size() > 127) {
+                    throw new IOException("Too many account types for a snapshot: " + types.size());
+                }
+                ByteBuffer names = ByteBuffer.allocate(4096);
+                names.putInt(types.size());
+                for (String type : types.keySet()) {
+                    byte[] bytes = type.getBytes(StandardCharsets.UTF_8);
+                    names.putShort((short) bytes.length).put(bytes);
+                }
+                names.flip();
+                while (names.hasRemaining()) {
+                    out.write(names);
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putLong(txnHighWater)
+                        .putLong(auditHighWater).putLong(today).putLong(count).putInt(maxAccountNo)
+                        .putInt((int) crc.getValue());
+                header.clear();
+                out.write(header, 0);
+                out.force(true);
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new long[]{count, Files.size(target)};
+        }
+
+        private static void flush(ByteBuffer buf, FileChannel out, CRC32 crc) throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            buf.clear();
+        }
+
+        /**
+         * Map a snapshot and decode it into ledger account state
+         */
+        static Header read(Path file) throws IOException {
+            Header header = new Header();
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size < HEADER_BYTES) {
+                    throw new IOException("truncated header");
+                }
+                MappedByteBuffer head = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                if (head.getInt() != MAGIC || head.getInt() != VERSION) {
+                    throw new IOException("not a version " + VERSION + " ledger snapshot");
+                }
+                header.createdMillis = head.getLong();
+                header.txnHighWater = head.getLong();
+                header.auditHighWater = head.getLong();
+                header.day = head.getLong();
+                header.count = head.getLong();
+                header.maxAccountNo = head.getInt();
+                int expectedCrc = head.getInt();
+
+                long recordsEnd = HEADER_BYTES + header.count * RECORD_BYTES;
+                if (recordsEnd + 4 > size) {
+                    throw new IOException("truncated records");
+                }
+                ByteBuffer names = in.map(FileChannel.MapMode.READ_ONLY, recordsEnd, size - recordsEnd);
+                String[] types = new String[names.getInt()];
+                for (int i = 0; i < types.length; i++) {
+                    byte[] bytes = new byte[names.getShort()];
+                    names.get(bytes);
+                    types[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+
+                Map<Integer, LedgerEngine.LedgerAccount> accounts =
+                        new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE, header.count * 4 / 3 + 16));
+                CRC32 crc = new CRC32();
+                for (long first = 0; first < header.count; first += WINDOW_RECORDS) {
+                    long records = Math.min(WINDOW_RECORDS, header.count - first);
+                    MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES + first * RECORD_BYTES, records * RECORD_BYTES);
+                    crc.update(window.duplicate());
+                    for (long r = 0; r < records; r++) {
+                        int accountNo = window.getInt();
+                        long balance = window.getLong();
+                        long limit = window.getLong();
+                        long spend = window.getLong();
+                        long lastInterest = window.getLong();
+                        String type = types[window.get()];
+                        byte flags = window.get();
+                        window.getShort();
+
+                        LedgerEngine.LedgerAccount account = new LedgerEngine.LedgerAccount(type, balance, limit,
+                                (flags & ACTIVE) != 0, (flags & LOCKED) != 0, lastInterest);
+                        account.usageDay = header.day;
+                        account.dailyUsedPaise = spend;
+                        accounts.put(accountNo, account);
+                    }
+                }
+                if ((int) crc.getValue() != expectedCrc) {
+                    throw new IOException("record checksum mismatch");
+                }
+                header.accounts = accounts;
+                header.bytes = size;
+            }
+            return header;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                            STARTUP
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Brings the process up in timed phases and reports readiness. After the database check,
+     * the pool is warmed while the schema is migrated; the live statistics are then seeded while
+     * the services are wired. Traffic is admitted as soon as that core is ready. Scheduled
+     * transactions that fell due during downtime are caught up afterwards on a background
+     * thread; a login still applies its own account's due items first. Each path posts a row
+     * under its scheduled:<id> key before marking it executed, so it is posted once and a crash
+     * in between leaves it due for the next sweep to replay and mark.
+     */
+    static class Startup {
+        enum State { STARTING, CATCHING_UP, READY }
+
+        private static final long startedAt = System.nanoTime();
+        private static final Map<String, Long> phaseMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+        private static volatile State state = State.STARTING;
+        private static volatile long coreReadyMillis = -1;
+
+        private static final LongAdder backlogProcessed = new LongAdder();
+        private static volatile int backlogDue;
+        private static volatile int backlogExecuted;
+        private static volatile long backlogStartedAt;
+        private static volatile long backlogMillis = -1;
+        private static final AtomicBoolean stopCatchUp = new AtomicBoolean();
+        private static volatile Thread catchUpThread;
+
+        @FunctionalInterface
+        interface Phase {
+            void run() throws Exception;
+        }
+
+        /**
+         * Run one phase on the calling thread and record how long it took
+         */
+        static void phase(String name, Phase task) throws SQLException {
+            long started = System.nanoTime();
+            try {
+                task.run();
+            } catch (SQLException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Startup phase " + name + " failed: " + e.getMessage(), e);
+            }
+            phaseMillis.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+
+        /**
+         * Warm the pool, migrate the schema, seed the statistics and wire the services,
+         * overlapping whatever does not depend on each other
+         */
+        static BankingServices core() throws SQLException {
+            BankingServices[] services = new BankingServices[1];
+            ExecutorService executor = ThreadUtil.newThreadPerTaskExecutor("startup");
+            try {
+                CompletableFuture<Void> pool = async("pool", Startup::warmPool, executor);
+                CompletableFuture<Void> schema = async("schema", BankingServices::prepareDatabase, executor);
+                // Slots are folded by the schema phase, so the totals are read after it
+                CompletableFuture<Void> statistics =
+                        schema.thenCompose(v -> async("statistics", LiveStatistics::seed, executor));
+                CompletableFuture<Void> wired =
+                        schema.thenCompose(v -> async("services", () -> services[0] = new BankingServices(), executor));
+                CompletableFuture.allOf(pool, statistics, wired).join();
+            } catch (CompletionException e) {
+                Throwable cause = e;
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof SQLException) throw (SQLException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IllegalStateException("Startup failed: " + cause.getMessage(), cause);
+            } finally {
+                executor.shutdown();
+            }
+
+            coreReadyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            System.out.println("✓ Core ready in " + summary());
+            return services[0];
+        }
+
+        private static CompletableFuture<Void> async(String name, Phase task, Executor executor) {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    phase(name, task);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+
+        /**
+         * Open the first connections of every shard at once, so early requests do not each pay
+         * for a connect, then hand them back to the pool
+         */
+        private static void warmPool() throws Exception {
+            ExecutorService executor = ThreadUtil.newThreadPerTaskExecutor("startup-pool");
+            List<Future<Connection>> opened = new ArrayList<>();
+            try {
+                for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                    int target = shard;
+                    for (int i = 0; i < STARTUP_WARM_CONNECTIONS; i++) {
+                        opened.add(executor.submit(() -> DBUtil.getShardConnection(target)));
+                    }
+                }
+                for (Future<Connection> future : opened) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof SQLException ? (SQLException) e.getCause() : e;
+                    }
+                }
+            } finally {
+                for (Future<Connection> future : opened) {
+                    try {
+                        DBUtil.closeQuietly(future.get());
+                    } catch (ExecutionException ignored) {
+                        // never opened
+                    }
+                }
+                executor.shutdown();
+            }
+        }
+
+        /**
+         * Apply the scheduled transactions that are due, in the background unless
+         * banking.startup.blockingCatchUp is set; announce prints the outcome when it finishes
+         */
+        static void catchUp(BankingServices services, boolean announce) {
+            ScheduledManager scheduledManager = services.getScheduledManager();
+            backlogDue = scheduledManager.countDueScheduledTransactions();
+            backlogStartedAt = System.nanoTime();
+            state = State.CATCHING_UP;
+
+            Runnable task = () -> {
+                try {
+                    backlogExecuted = scheduledManager.applyDueScheduledTransactions(backlogProcessed, stopCatchUp);
+                } finally {
+                    backlogMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - backlogStartedAt);
+                    state = State.READY;
+                }
+                long processed = backlogProcessed.sum();
+                if (processed > 0) {
+                    String outcome = String.format("%,d of %,d due scheduled transactions executed in %,d ms",
+                            backlogExecuted, processed, backlogMillis);
+                    services.getAuditLogger().log("SCHEDULED_CATCH_UP", outcome);
+                    if (announce) {
+                        System.out.println("✓ Caught up: " + outcome);
+                    }
+                }
+            };
+            if (backlogDue == 0 || STARTUP_BLOCKING_CATCH_UP) {
+                task.run();
+                return;
+            }
+            if (announce) {
+                System.out.printf("✓ Catching up %,d scheduled transactions in the background%n", backlogDue);
+            }
+            Thread thread = new Thread(task, "scheduled-catch-up");
+            thread.setDaemon(true);
+            catchUpThread = thread;
+            thread.start();
+        }
+
+        /**
+         * Stop a running catch-up after its current posting and wait for it, before the pool is
+         * shut down; whatever is left stays due for the next start
+         */
+        static void stopCatchUp() {
+            Thread thread = catchUpThread;
+            if (thread == null || !thread.isAlive()) {
+                return;
+            }
+            stopCatchUp.set(true);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        static State state() {
+            return state;
+        }
+
+        /**
+         * Core start time followed by each phase, e.g. "412 ms (database 35 ms, pool 80 ms, ...)"
+         */
+        static String summary() {
+            StringJoiner phases = new StringJoiner(", ", " (", ")");
+            synchronized (phaseMillis) {
+                phaseMillis.forEach((name, ms) -> phases.add(name + " " + ms + " ms"));
+            }
+            return coreReadyMillis + " ms" + phases;
+        }
+
+        private static int remaining() {
+            return state == State.CATCHING_UP ? Math.max(0, backlogDue - backlogProcessed.intValue()) : 0;
+        }
+
+        /** Seconds left at the rate so far, or -1 before the first item is done */
+        private static long etaSeconds() {
+            long processed = backlogProcessed.sum();
+            if (state != State.CATCHING_UP || processed == 0) {
+                return -1;
+            }
+            double nanosPerItem = (double) (System.nanoTime() - backlogStartedAt) / processed;
+            return (long) Math.ceil(remaining() * nanosPerItem / 1e9);
+        }
+
+        /**
+         * One line for the console menu while the backlog runs, otherwise null
+         */
+        static String progressLine() {
+            if (state != State.CATCHING_UP) {
+                return null;
+            }
+            long eta = etaSeconds();
+            return String.format("Catching up scheduled transactions: %,d of %,d left%s",
+                    remaining(), backlogDue, eta < 0 ? "" : " (about " + eta + "s)");
+        }
+
+        static Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("state", state.name());
+            status.put("coreReadyMs", coreReadyMillis);
+            synchronized (phaseMillis) {
+                status.put("phasesMs", new LinkedHashMap<>(phaseMillis));
+            }
+            Map<String, Object> backlog = new LinkedHashMap<>();
+            backlog.put("due", backlogDue);
+            backlog.put("processed", backlogProcessed.sum());
+            backlog.put("remaining", remaining());
+            if (state == State.CATCHING_UP) {
+                backlog.put("etaSeconds", etaSeconds());
+            } else if (backlogMillis >= 0) {
+                backlog.put("executed", backlogExecuted);
+                backlog.put("tookMs", backlogMillis);
+            }
+            status.put("scheduledBacklog", backlog);
+            return status;
+        }
+
+        static void appendPrometheus(StringBuilder sb) {
+            sb.append("# HELP banking_startup_phase_seconds Time taken by each startup phase\n");
+            sb.append("# TYPE banking_startup_phase_seconds gauge\n");
+            synchronized (phaseMillis) {
+                phaseMillis.forEach((name, ms) -> sb.append("banking_startup_phase_seconds{phase=\"").append(name)
+                        .append("\"} ").append(ms / 1000.0).append('\n'));
+            }
+            sb.append("# HELP banking_startup_state Current startup state (1 for the active one)\n");
+            sb.append("# TYPE banking_startup_state gauge\n");
+            for (State s : State.values()) {
+                sb.append("banking_startup_state{state=\"").append(s.name().toLowerCase()).append("\"} ")
+                        .append(s == state ? 1 : 0).append('\n');
+            }
+            sb.append("# HELP banking_startup_backlog_remaining Due scheduled transactions the catch-up has not reached\n");
+            sb.append("# TYPE banking_startup_backlog_remaining gauge\n");
+            sb.append("banking_startup_backlog_remaining ").append(remaining()).append('\n');
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        BANKING SERVICES
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Wires the managers together once so every client (console menu, HTTP service)
+     * shares the same instances and connection pool
+     */
+    static class BankingServices {
+        private static boolean databasePrepared;
+
+        private final AuditLogger auditLogger;
+        private final AccountManager accountManager;
+        private final ScheduledManager scheduledManager;
+        private final AdminManager adminManager;
+
+        public BankingServices() {
+            if (METRICS_ENABLED) {
+                this.auditLogger = new InstrumentedAuditLogger();
+                this.accountManager = new InstrumentedAccountManager(auditLogger);
+                this.scheduledManager = new InstrumentedScheduledManager(accountManager, auditLogger);
+                this.adminManager = new InstrumentedAdminManager(accountManager, auditLogger);
+            } else {
+                this.auditLogger = new AuditLogger();
+                this.accountManager = new AccountManager(auditLogger);
+                this.scheduledManager = new ScheduledManager(accountManager, auditLogger);
+                this.adminManager = new AdminManager(accountManager, auditLogger);
+            }
+
+            prepareDatabase();
+            if (!SLOT_ACCOUNTS.isBlank() && LEDGER_ENABLED) {
+                throw new IllegalStateException("Balance slots and the ledger engine cannot run together");
+            }
+            BalanceSlots.startRebalancer();
+
+            if (DAILY_ACCRUAL_ENABLED && LEDGER_ENABLED) {
+                throw new IllegalStateException("Daily interest accrual and the ledger engine cannot run together");
+            }
+
+            if (SETTLEMENT_ENABLED) {
+                if (LEDGER_ENABLED) {
+                    throw new IllegalStateException("Settlement windows and the ledger engine cannot run together");
+                }
+                accountManager.useSettlementWindow(SettlementWindow.start(SETTLEMENT_WINDOW_MS, SETTLEMENT_MAX_BATCH));
+            }
+
+            if (LEDGER_ENABLED) {
+                if (DBUtil.isSharded()) {
+                    throw new IllegalStateException("The ledger engine needs a single database; unset banking.db.shards");
+                }
+                try {
+                    accountManager.useLedger(LedgerEngine.start(Paths.get(LEDGER_JOURNAL), Paths.get(LEDGER_SNAPSHOT)));
+                } catch (SQLException | IOException e) {
+                    throw new IllegalStateException("Ledger engine failed to start: " + e.getMessage(), e);
+                }
+            }
+
+            if (DBUtil.isSharded()) {
+                int resumed = accountManager.resumeTransferIntents();
+                if (resumed > 0) {
+                    System.out.println("✓ Finished " + resumed + " interrupted cross-shard transfers");
+                }
+            }
+        }
+
+        /**
+         * Migrate the schema and fold or split balance slots; later calls do nothing, so startup
+         * can run it ahead of the constructor
+         */
+        static synchronized void prepareDatabase() {
+            if (databasePrepared) {
+                return;
+            }
+            try {
+                DBUtil.ensureIdempotencyKeys();
+                DBUtil.ensureReversalIndex();
+                DBUtil.ensureAccountVersions();
+                DBUtil.ensureFixedDeposits();
+                DBUtil.ensureInterestAccruals();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not migrate the database schema: " + e.getMessage(), e);
+            }
+
+            try {
+                BalanceSlots.prepare();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not prepare balance slots: " + e.getMessage(), e);
+            }
+            databasePrepared = true;
+        }
+
+        /**
+         * Full user login: authenticate, then apply due interest and scheduled transactions
+         */
+        public Result<LoginResult> login(int accountNo, String pin) {
+            Result<Account> auth = accountManager.authenticate(accountNo, pin);
+            if (!auth.isSuccess()) {
+                return Result.fail(auth.getCode(), auth.getMessage());
+            }
+
+            BigDecimal interest = accountManager.applyInterestIfDue(accountNo);
+            List<ScheduledTransaction> executed = scheduledManager.applyDueScheduledTransactionsForAccount(accountNo);
+
+            auditLogger.log("USER_LOGIN_SUCCESS", "User logged in", null, accountNo);
+
+            return Result.ok(new LoginResult(auth.getValue(), interest, executed), auth.getMessage());
+        }
+
+        public AuditLogger getAuditLogger() { return auditLogger; }
+        public AccountManager getAccountManager() { return accountManager; }
+        public ScheduledManager getScheduledManager() { return scheduledManager; }
+        public AdminManager getAdminManager() { return adminManager; }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                          ASYNC API
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * CompletableFuture facade over the managers so callers can overlap work, e.g. load an
+     * account summary and its history in parallel. Successful calls complete with a typed
+     * value; failures complete exceptionally with a {@link BankingException} carrying the
+     * {@link ResultCode}. Every call has a timeout, and a timed-out or cancelled call also
+     * cancels the JDBC statement it is running.
+     */
+    static class AsyncAccountService {
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "async-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final BankingServices services;
+        private final Executor executor;
+        private final Duration timeout;
+
+        /**
+         * Runs on virtual threads (where available) with the default timeout
+         */
+        public AsyncAccountService(BankingServices services) {
+            this(services, ThreadUtil.newPerTaskExecutor("async"), Duration.ofMillis(ASYNC_DEFAULT_TIMEOUT_MS));
+        }
+
+        public AsyncAccountService(BankingServices services, Executor executor, Duration timeout) {
+            this.services = services;
+            this.executor = executor;
+            this.timeout = timeout;
+        }
+
+        /**
+         * Same service and executor with a different per-call timeout
+         */
+        public AsyncAccountService withTimeout(Duration timeout) {
+            return new AsyncAccountService(services, executor, timeout);
+        }
+
+        public CompletableFuture<Account> createAccount(String holderName, String accountType,
+                                                        double initialDeposit, String pin) {
+            return call(() -> services.getAccountManager().createAccount(holderName, accountType, initialDeposit, pin));
+        }
+
+        public CompletableFuture<LoginResult> login(int accountNo, String pin) {
+            return call(() -> services.login(accountNo, pin));
+        }
+
+        public CompletableFuture<Account> findAccount(int accountNo) {
+            return call(() -> {
+                Account account = services.getAccountManager().findAccount(accountNo);
+                return account != null
+                        ? Result.ok(account, null)
+                        : Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+            });
+        }
+
+        public CompletableFuture<Transaction> deposit(int accountNo, double amount) {
+            return deposit(accountNo, amount, null);
+        }
+
+        public CompletableFuture<Transaction> deposit(int accountNo, double amount, String idempotencyKey) {
+            return call(() -> services.getAccountManager().deposit(accountNo, amount, idempotencyKey));
+        }
+
+        public CompletableFuture<Transaction> withdraw(int accountNo, double amount) {
+            return withdraw(accountNo, amount, null);
+        }
+
+        public CompletableFuture<Transaction> withdraw(int accountNo, double amount, String idempotencyKey) {
+            return call(() -> services.getAccountManager().withdraw(accountNo, amount, idempotencyKey));
+        }
+
+        /**
+         * Completes with the TRANSFER_OUT row written for the source account
+         */
+        public CompletableFuture<Transaction> transfer(int fromAccount, int toAccount, double amount) {
+            return transfer(fromAccount, toAccount, amount, null);
+        }
+
+        public CompletableFuture<Transaction> transfer(int fromAccount, int toAccount, double amount,
+                                                       String idempotencyKey) {
+            return call(() -> services.getAccountManager().transfer(fromAccount, toAccount, amount, idempotencyKey));
+        }
+
+        /**
+         * One page of transactions, newest first; page numbers start at 0
+         */
+        public CompletableFuture<Page<Transaction>> getTransactionHistory(int accountNo, int page, int pageSize) {
+            if (page < 0 || pageSize <= 0) {
+                return CompletableFuture.failedFuture(
+                        new BankingException(ResultCode.INVALID_INPUT, "Invalid page request."));
+            }
+            return call(() -> {
+                // Fetch one extra row to learn whether another page follows
+                Result<List<Transaction>> result = services.getAccountManager()
+                        .getTransactionHistory(accountNo, page * pageSize, pageSize + 1);
+                if (!result.isSuccess()) {
+                    return Result.fail(result.getCode(), result.getMessage());
+                }
+                List<Transaction> rows = result.getValue();
+                boolean hasMore = rows.size() > pageSize;
+                List<Transaction> items = hasMore ? rows.subList(0, pageSize) : rows;
+                return Result.ok(new Page<>(items, page, pageSize, hasMore), null);
+            });
+        }
+
+        public CompletableFuture<AccountSummary> getAccountSummary(int accountNo) {
+            return call(() -> services.getAccountManager().getAccountSummary(accountNo));
+        }
+
+        public CompletableFuture<ScheduledTransaction> scheduleTransaction(int accountNo, String type, double amount,
+                                                                           String memo, LocalDate scheduleDate) {
+            return call(() -> services.getScheduledManager()
+                    .scheduleTransaction(accountNo, type, amount, memo, scheduleDate));
+        }
+
+        public CompletableFuture<List<ScheduledTransaction>> getPendingScheduledTransactions(int accountNo) {
+            return call(() -> services.getScheduledManager().getPendingScheduledTransactions(accountNo));
+        }
+
+        public CompletableFuture<Void> cancelScheduledTransaction(int scheduledId, int accountNo) {
+            return call(() -> services.getScheduledManager().cancelScheduledTransaction(scheduledId, accountNo));
+        }
+
+        /**
+         * Run a synchronous operation on the executor, mapping its Result onto the future.
+         * Timeout or cancellation of the future cancels the statements the operation opened.
+         */
+        private <T> CompletableFuture<T> call(Supplier<Result<T>> operation) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            DBUtil.StatementTracker tracker = new DBUtil.StatementTracker();
+
+            try {
+                executor.execute(() -> {
+                    if (future.isDone()) {
+                        return; // cancelled or timed out while queued
+                    }
+                    DBUtil.setStatementTracker(tracker);
+                    try {
+                        Result<T> result = operation.get();
+                        if (result.isSuccess()) {
+                            future.complete(result.getValue());
+                        } else {
+                            future.completeExceptionally(new BankingException(result.getCode(), result.getMessage()));
+                        }
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        DBUtil.setStatementTracker(null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(new BankingException(ResultCode.CANCELLED, "Executor is shut down."));
+                return future;
+            }
+
+            ScheduledFuture<?> timer = TIMER.schedule(() -> {
+                future.completeExceptionally(new BankingException(ResultCode.TIMEOUT,
+                        "Operation timed out after " + timeout.toMillis() + "ms."));
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            future.whenComplete((value, error) -> {
+                timer.cancel(false);
+                if (error instanceof CancellationException
+                        || (error instanceof BankingException
+                            && ((BankingException) error).getCode() == ResultCode.TIMEOUT)) {
+                    tracker.cancel();
+                }
+            });
+            return future;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        HTTP SERVICE MODE
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Headless JSON API on the JDK's built-in HTTP server. Every request runs on its
+     * own thread (virtual where the JDK supports it), so concurrent clients share one
+     * process and one connection pool.
+     */
+    static class BankingHttpServer {
+
+        private final BankingServices services;
+        private final AccountManager accountManager;
+        private final ScheduledManager scheduledManager;
+        private final AdminManager adminManager;
+        private final AuditLogger auditLogger;
+        private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+        private final SecureRandom random = new SecureRandom();
+
+        private HttpServer server;
+        private ExecutorService executor;
+
+        public BankingHttpServer(BankingServices services) {
+            this.services = services;
+            this.accountManager = services.getAccountManager();
+            this.scheduledManager = services.getScheduledManager();
+            this.adminManager = services.getAdminManager();
+            this.auditLogger = services.getAuditLogger();
+        }
+
+        public void start(int port) throws IOException {
+            server = HttpServer.create(new InetSocketAddress(port), HTTP_BACKLOG);
+            executor = ThreadUtil.newPerTaskExecutor("http");
+            server.setExecutor(executor);
+            server.createContext("/api/", this::handle);
+            server.start();
+        }
+
+        public void stop() {
+            if (server != null) {
+                server.stop(1);
+                executor.shutdown();
+            }
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            int status;
+            Map<String, Object> body = new LinkedHashMap<>();
+            try {
+                Result<?> result = route(exchange);
+                status = httpStatus(result.getCode());
+                body.put("status", result.getCode());
+                body.put("message", result.getMessage());
+                if (result.isSuccess()) {
+                    body.put("data", view(result.getValue()));
+                }
+            } catch (BankingException e) {
+                status = httpStatus(e.getCode());
+                body.put("status", e.getCode());
+                body.put("message", e.getMessage());
+            } catch (Exception e) {
+                status = 500;
+                body.put("status", ResultCode.DB_ERROR);
+                body.put("message", "Internal error: " + e.getMessage());
+            }
+
+            byte[] bytes = JsonUtil.toJson(body).getBytes(StandardCharsets.UTF_8);
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private Result<?> route(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            Result<?> result = switch (method + " " + path) {
+                case "GET /api/health" -> Result.ok(Startup.status(), Startup.state().name());
+                case "POST /api/accounts" -> createAccount(readBody(exchange));
+                case "POST /api/login" -> login(readBody(exchange));
+                case "POST /api/logout" -> logout(exchange);
+                case "GET /api/account/balance" -> balance(requireUser(exchange));
+                case "POST /api/account/deposit" -> accountManager.deposit(requireUser(exchange),
+                        doubleField(readBody(exchange), "amount"), idempotencyKey(exchange));
+                case "POST /api/account/withdraw" -> accountManager.withdraw(requireUser(exchange),
+                        doubleField(readBody(exchange), "amount"), idempotencyKey(exchange));
+                case "POST /api/account/transfer" ->
+                        transfer(requireUser(exchange), readBody(exchange), idempotencyKey(exchange));
+                case "GET /api/account/history" -> accountManager.getTransactionHistory(requireUser(exchange),
+                        intParam(query, "limit", MINI_STATEMENT_SIZE, 1, 100));
+                case "GET /api/account/summary" -> accountManager.getAccountSummary(requireUser(exchange));
+                case "GET /api/account/fixed-deposit" -> fixedDeposit(requireUser(exchange));
+                case "POST /api/account/fixed-deposit/break" -> accountManager.breakFixedDeposit(requireUser(exchange));
+                case "GET /api/account/scheduled" ->
+                        scheduledManager.getPendingScheduledTransactions(requireUser(exchange));
+                case "POST /api/account/scheduled" -> schedule(requireUser(exchange), readBody(exchange));
+                case "POST /api/admin/login" -> adminLogin(readBody(exchange));
+                case "GET /api/admin/accounts" -> admin(exchange, adminManager::getAllAccounts);
+                case "POST /api/admin/accounts/bulk" -> createAccounts(exchange,
+                        readBody(exchange, ONBOARDING_MAX_ACCOUNTS * 256));
+                case "GET /api/admin/statistics" -> admin(exchange, adminManager::getSystemStatistics);
+                case "GET /api/admin/reports/daily" -> admin(exchange, adminManager::getDailyTransactionReport);
+                case "GET /api/admin/reports/balances" -> admin(exchange, adminManager::getAccountBalanceReport);
+                case "GET /api/admin/reports/dormant" -> admin(exchange, adminManager::getDormantAccountsReport);
+                case "GET /api/admin/audit" -> admin(exchange,
+                        () -> auditLogger.getRecentEvents(intParam(query, "limit", 50, 1, 1000)));
+                default -> null;
+            };
+
+            if (result == null && "DELETE".equals(method) && path.startsWith("/api/account/scheduled/")) {
+                int accountNo = requireUser(exchange);
+                result = scheduledManager.cancelScheduledTransaction(
+                        parseInt(path.substring("/api/account/scheduled/".length()), "scheduled id"), accountNo);
+            }
+
+            if (result == null) {
+                throw new BankingException(ResultCode.NOT_FOUND, "No such endpoint: " + method + " " + path);
+            }
+            return result;
+        }
+
+        // ─────────────────────────── Endpoints ───────────────────────────
+
+        private Result<Account> createAccount(Map<String, Object> body) {
+            return accountManager.createAccount(
+                    stringField(body, "holderName"),
+                    stringField(body, "accountType"),
+                    doubleField(body, "initialDeposit"),
+                    stringField(body, "pin"),
+                    body.containsKey("termMonths") ? intField(body, "termMonths") : FIXED_DEFAULT_TERM_MONTHS);
+        }
+
+        private Result<?> createAccounts(HttpExchange exchange, Map<String, Object> body) {
+            return admin(exchange, () -> {
+                if (!(body.get("accounts") instanceof List<?> items)) {
+                    throw new BankingException(ResultCode.INVALID_INPUT, "Field 'accounts' must be an array.");
+                }
+                List<AccountOnboarding.Applicant> applicants = new ArrayList<>();
+                for (Object item : items) {
+                    if (!(item instanceof Map)) {
+                        throw new BankingException(ResultCode.INVALID_INPUT, "Each account must be a JSON object.");
+                    }
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> fields = (Map<String, Object>) item;
+                    applicants.add(new AccountOnboarding.Applicant(applicants.size(), stringField(fields, "holderName"),
+                            stringField(fields, "accountType"), doubleField(fields, "initialDeposit"),
+                            stringField(fields, "pin"), fields.containsKey("termMonths")
+                                    ? intField(fields, "termMonths") : FIXED_DEFAULT_TERM_MONTHS));
+                }
+                Result<AccountOnboarding.Outcome> result = accountManager.createAccounts(applicants);
+                if (!result.isSuccess()) {
+                    return result;
+                }
+                AccountOnboarding.Outcome outcome = result.getValue();
+                List<Object> opened = new ArrayList<>();
+                List<Object> refused = new ArrayList<>();
+                for (int i = 0; i < applicants.size(); i++) {
+                    if (outcome.accounts[i] != null) {
+                        opened.add(outcome.accounts[i]);
+                    } else {
+                        refused.add(Map.of("index", i, "reason", outcome.refusals[i]));
+                    }
+                }
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("opened", opened);
+                data.put("refused", refused);
+                return Result.ok(data, result.getMessage());
+            });
+        }
+
+        private Result<Map<String, Object>> login(Map<String, Object> body) {
+            int accountNo = intField(body, "accountNo");
+            Result<LoginResult> result = services.login(accountNo, stringField(body, "pin"));
+            if (!result.isSuccess()) {
+                return Result.fail(result.getCode(), result.getMessage());
+            }
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("token", openSession(new Session(accountNo, null)));
+            data.put("login", result.getValue());
+            return Result.ok(data, result.getMessage());
+        }
+
+        private Result<Map<String, Object>> adminLogin(Map<String, Object> body) {
+            String username = stringField(body, "username");
+            if (!adminManager.authenticateAdmin(username, stringField(body, "password"))) {
+                auditLogger.log("ADMIN_LOGIN_FAILED", "Failed admin login attempt for " + username);
+                return Result.fail(ResultCode.AUTH_FAILED, "Invalid admin credentials.");
+            }
+
+            auditLogger.log("ADMIN_LOGIN_SUCCESS", "Admin " + username + " logged in");
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("token", openSession(new Session(null, username)));
+            return Result.ok(data, "Admin login successful!");
+        }
+
+        private Result<Void> logout(HttpExchange exchange) {
+            Session session = sessions.remove(bearerToken(exchange));
+            if (session == null) {
+                return Result.fail(ResultCode.AUTH_FAILED, "Not logged in.");
+            }
+            if (session.accountNo != null) {
+                auditLogger.log("USER_LOGOUT", "User logged out", null, session.accountNo);
+            } else {
+                auditLogger.log("ADMIN_LOGOUT", "Admin logged out");
+            }
+            return Result.ok(null, "Logged out successfully. Thank you!");
+        }
+
+        private Result<Account> balance(int accountNo) {
+            Account account = accountManager.findAccount(accountNo);
+            if (account == null) {
+                return Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+            }
+            return Result.ok(account, null);
+        }
+
+        private Result<Map<String, Object>> fixedDeposit(int accountNo) {
+            FixedDeposits.Deposit deposit = accountManager.findFixedDeposit(accountNo);
+            if (deposit == null) {
+                return Result.fail(ResultCode.NOT_FOUND, "This account holds no fixed deposit.");
+            }
+            LocalDate today = LocalDate.now();
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("principal", BigDecimal.valueOf(deposit.principalPaise, 2));
+            data.put("annualRate", deposit.annualRate);
+            data.put("termMonths", deposit.termMonths);
+            data.put("startDate", deposit.startDate.toString());
+            data.put("maturityDate", deposit.maturityDate.toString());
+            data.put("status", deposit.status);
+            if (deposit.isActive()) {
+                data.put("accruedInterest", BigDecimal.valueOf(deposit.accruedPaise(today), 2));
+                data.put("interestAtMaturity", BigDecimal.valueOf(deposit.accruedPaise(deposit.maturityDate), 2));
+                data.put("earlyWithdrawalInterest", BigDecimal.valueOf(deposit.payoutPaise(today), 2));
+            } else {
+                data.put("settledDate", deposit.settledDate.toString());
+                data.put("interestPaid", BigDecimal.valueOf(deposit.interestPaidPaise, 2));
+            }
+            return Result.ok(data, null);
+        }
+
+        private Result<Transaction> transfer(int accountNo, Map<String, Object> body, String idempotencyKey) {
+            return accountManager.transfer(accountNo, intField(body, "toAccount"), doubleField(body, "amount"),
+                    idempotencyKey);
+        }
+
+        private Result<ScheduledTransaction> schedule(int accountNo, Map<String, Object> body) {
+            LocalDate scheduleDate;
+            try {
+                scheduleDate = LocalDate.parse(stringField(body, "scheduleDate"));
+            } catch (DateTimeException e) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Invalid date format. Please use YYYY-MM-DD.");
+            }
+            Object memo = body.get("memo");
+            return scheduledManager.scheduleTransaction(accountNo, stringField(body, "type"),
+                    doubleField(body, "amount"), memo != null ? memo.toString() : "", scheduleDate);
+        }
+
+        private Result<?> admin(HttpExchange exchange, Supplier<Result<?>> action) {
+            Session session = requireSession(exchange);
+            if (session.adminUser == null) {
+                throw new BankingException(ResultCode.AUTH_FAILED, "Admin login required.");
+            }
+            return action.get();
+        }
+
+        // ─────────────────────────── Sessions ────────────────────────────
+
+        private static final class Session {
+            final Integer accountNo;
+            final String adminUser;
+            volatile long expiresAt;
+
+            Session(Integer accountNo, String adminUser) {
+                this.accountNo = accountNo;
+                this.adminUser = adminUser;
+            }
+        }
+
+        private String openSession(Session session) {
+            long now = System.currentTimeMillis();
+            sessions.values().removeIf(s -> s.expiresAt < now);
+
+            byte[] tokenBytes = new byte[24];
+            random.nextBytes(tokenBytes);
+            String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+            session.expiresAt = now + SESSION_TIMEOUT_MS;
+            sessions.put(token, session);
+            return token;
+        }
+
+        private Session requireSession(HttpExchange exchange) {
+            String token = bearerToken(exchange);
+            Session session = token != null ? sessions.get(token) : null;
+            long now = System.currentTimeMillis();
+            if (session == null || session.expiresAt < now) {
+                if (session != null) {
+                    sessions.remove(token);
+                }
+                throw new BankingException(ResultCode.AUTH_FAILED, "Login required.");
+            }
+            session.expiresAt = now + SESSION_TIMEOUT_MS;
+            return session;
+        }
+
+        private int requireUser(HttpExchange exchange) {
+            Session session = requireSession(exchange);
+            if (session.accountNo == null) {
+                throw new BankingException(ResultCode.AUTH_FAILED, "Account login required.");
+            }
+            return session.accountNo;
+        }
+
+        private static String bearerToken(HttpExchange exchange) {
+            String header = exchange.getRequestHeaders().getFirst("Authorization");
+            if (header == null || !header.startsWith("Bearer ")) {
+                return null;
+            }
+            return header.substring("Bearer ".length()).trim();
+        }
+
+        // ─────────────────────────── Request parsing ─────────────────────
+
+        /**
+         * Optional Idempotency-Key header; retries carrying the same key are not posted twice
+         */
+        private static String idempotencyKey(HttpExchange exchange) {
+            return exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        }
+
+        private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+            return readBody(exchange, HTTP_MAX_BODY_BYTES);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> readBody(HttpExchange exchange, int maxBytes) throws IOException {
+            byte[] bytes;
+            try (InputStream in = exchange.getRequestBody()) {
+                bytes = in.readNBytes(maxBytes + 1);
+            }
+            if (bytes.length > maxBytes) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Request body too large.");
+            }
+
+            Object parsed;
+            try {
+                parsed = JsonUtil.parse(new String(bytes, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Malformed JSON: " + e.getMessage());
+            }
+            if (!(parsed instanceof Map)) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Request body must be a JSON object.");
+            }
+            return (Map<String, Object>) parsed;
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> params = new HashMap<>();
+            if (rawQuery == null || rawQuery.isEmpty()) {
+                return params;
+            }
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+                String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+                params.put(key, value);
+            }
+            return params;
+        }
+
+        private static String stringField(Map<String, Object> body, String name) {
+            Object value = body.get(name);
+            if (value == null) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Missing field: " + name);
+            }
+            return value.toString();
+        }
+
+        private static double doubleField(Map<String, Object> body, String name) {
+            Object value = body.get(name);
+            if (!(value instanceof Number)) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Field '" + name + "' must be a number.");
+            }
+            return ((Number) value).doubleValue();
+        }
+
+        private static int intField(Map<String, Object> body, String name) {
+            Object value = body.get(name);
+            if (!(value instanceof Number)) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Field '" + name + "' must be a number.");
+            }
+            return ((Number) value).intValue();
+        }
+
+        private static int intParam(Map<String, String> query, String name, int defaultValue, int min, int max) {
+            String value = query.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            return Math.max(min, Math.min(max, parseInt(value, name)));
+        }
+
+        private static int parseInt(String value, String name) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new BankingException(ResultCode.INVALID_INPUT, "Invalid " + name + ": " + value);
+            }
+        }
+
+        // ─────────────────────────── Response mapping ────────────────────
+
+        private static int httpStatus(ResultCode code) {
+            return switch (code) {
+                case OK -> 200;
+                case INVALID_INPUT -> 400;
+                case AUTH_FAILED -> 401;
+                case NOT_FOUND, ACCOUNT_NOT_FOUND -> 404;
+                case ACCOUNT_INACTIVE, CONFLICT -> 409;
+                case INSUFFICIENT_FUNDS, LIMIT_EXCEEDED -> 422;
+                case ACCOUNT_LOCKED -> 423;
+                case DB_ERROR -> 500;
+                case CANCELLED -> 503;
+                case TIMEOUT -> 504;
+            };
+        }
+
+        /**
+         * Convert result values into JSON-friendly maps, never exposing PIN hashes
+         */
+        private static Object view(Object value) {
+            if (value instanceof Account) {
+                Account account = (Account) value;
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("accountNo", account.getAccountNo());
+                map.put("holderName", account.getHolderName());
+                map.put("accountType", account.getAccountType());
+                map.put("balance", account.getBalance());
+                map.put("active", account.isActive());
+                map.put("locked", account.isLocked());
+                map.put("dailyLimit", account.getDailyLimit());
+                map.put("lastInterestDate", account.getLastInterestDate());
+                return map;
+            }
+            if (value instanceof Transaction) {
+                Transaction txn = (Transaction) value;
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("id", txn.getId());
+                map.put("accountNo", txn.getAccountNo());
+                map.put("type", txn.getType());
+                map.put("amount", txn.getAmount());
+                map.put("memo", txn.getMemo());
+                map.put("txnTime", txn.getTxnTime());
+                map.put("reverseOf", txn.getReverseOf());
+                return map;
+            }
+            if (value instanceof ScheduledTransaction) {
+                ScheduledTransaction scheduled = (ScheduledTransaction) value;
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("id", scheduled.getId());
+                map.put("type", scheduled.getType());
+                map.put("amount", scheduled.getAmount());
+                map.put("memo", scheduled.getMemo());
+                map.put("scheduleDate", scheduled.getScheduleDate());
+                map.put("executed", scheduled.isExecuted());
+                return map;
+            }
+            if (value instanceof AccountSummary) {
+                AccountSummary summary = (AccountSummary) value;
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("account", view(summary.getAccount()));
+                map.put("totalTransactions", summary.getTotalTransactions());
+                map.put("totalCredits", summary.getTotalCredits());
+                map.put("totalDebits", summary.getTotalDebits());
+                return map;
+            }
+            if (value instanceof LoginResult) {
+                LoginResult login = (LoginResult) value;
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("account", view(login.getAccount()));
+                map.put("interestCredited", login.getInterestCredited());
+                map.put("executedSchedules", view(login.getExecutedSchedules()));
+                return map;
+            }
+            if (value instanceof Map) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                ((Map<?, ?>) value).forEach((k, v) -> map.put(String.valueOf(k), view(v)));
+                return map;
+            }
+            if (value instanceof Collection) {
+                List<Object> list = new ArrayList<>();
+                for (Object item : (Collection<?>) value) {
+                    list.add(view(item));
+                }
+                return list;
+            }
+            return value;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                     TERMINAL PROTOCOL (NIO)
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Pool of reusable direct byte buffers of one fixed size
+     */
+    static class BufferPool {
+        private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger freeCount = new AtomicInteger();
+        private final int bufferSize;
+        private final int maxPooled;
+
+        BufferPool(int bufferSize, int maxPooled) {
+            this.bufferSize = bufferSize;
+            this.maxPooled = maxPooled;
+        }
+
+        ByteBuffer acquire() {
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                return ByteBuffer.allocateDirect(bufferSize);
+            }
+            freeCount.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            if (freeCount.incrementAndGet() <= maxPooled) {
+                free.offer(buffer);
+            } else {
+                freeCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Compact length-prefixed binary protocol for ATM/POS terminals, served by a single
+     * non-blocking selector thread. Requests are pipelined: each carries a correlation ID,
+     * is executed on its own worker thread, and its response is written back as soon as it
+     * completes, possibly out of order.
+     *
+     * All integers are big-endian; amounts and balances are in paise.
+     * <pre>
+     * Request  (33 bytes): int length=29 | long correlationId | byte op | int accountNo
+     *                      | 4 bytes PIN (ASCII digits) | int toAccount | long amount
+     * Response (22 bytes): int length=18 | long correlationId | byte op | byte status
+     *                      | long value (balance for BALANCE, transaction id otherwise)
+     * </pre>
+     * The status byte is the {@link ResultCode} ordinal.
+     */
+    static class TerminalServer {
+        static final byte OP_BALANCE = 1;
+        static final byte OP_DEPOSIT = 2;
+        static final byte OP_WITHDRAW = 3;
+        static final byte OP_TRANSFER = 4;
+
+        static final int REQUEST_LENGTH = 29;
+        static final int RESPONSE_LENGTH = 18;
+        static final int REQUEST_FRAME = 4 + REQUEST_LENGTH;
+        static final int RESPONSE_FRAME = 4 + RESPONSE_LENGTH;
+
+        private final AccountManager accountManager;
+        private final BufferPool readBuffers = new BufferPool(TERMINAL_READ_BUFFER_BYTES, 256);
+        private final BufferPool responseBuffers = new BufferPool(RESPONSE_FRAME, 8192);
+        private final Queue<TerminalConnection> ready = new ConcurrentLinkedQueue<>();
+        private ExecutorService workers;
+        private Selector selector;
+        private ServerSocketChannel serverChannel;
+        private Thread selectorThread;
+        private volatile boolean running;
+
+        public TerminalServer(AccountManager accountManager) {
+            this.accountManager = accountManager;
+        }
+
+        public void start(int port) throws IOException {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(new InetSocketAddress(port), TERMINAL_BACKLOG);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            workers = ThreadUtil.newPerTaskExecutor("terminal");
+
+            running = true;
+            selectorThread = new Thread(this::runSelector, "terminal-selector");
+            selectorThread.start();
+        }
+
+        public void stop() {
+            running = false;
+            if (selector != null) {
+                selector.wakeup();
+            }
+            if (selectorThread != null) {
+                try {
+                    selectorThread.join(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (workers != null) {
+                workers.shutdown();
+            }
+        }
+
+        /**
+         * Per-connection state, touched by the selector thread except for the response queue
+         */
+        private final class TerminalConnection {
+            final SocketChannel channel;
+            final SelectionKey key;
+            final ByteBuffer in;
+            final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+            final AtomicInteger inFlight = new AtomicInteger();
+            boolean readPaused;
+
+            TerminalConnection(SocketChannel channel, SelectionKey key) {
+                this.channel = channel;
+                this.key = key;
+                this.in = readBuffers.acquire();
+            }
+        }
+
+        private void runSelector() {
+            try {
+                while (running) {
+                    selector.select();
+
+                    TerminalConnection conn;
+                    while ((conn = ready.poll()) != null) {
+                        onResponsesReady(conn);
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        try {
+                            if (key.isAcceptable()) {
+                                accept();
+                            } else {
+                                if (key.isReadable()) {
+                                    read((TerminalConnection) key.attachment());
+                                }
+                                if (key.isValid() && key.isWritable()) {
+                                    write((TerminalConnection) key.attachment());
+                                }
+                            }
+                        } catch (IOException e) {
+                            if (key.attachment() != null) {
+                                close((TerminalConnection) key.attachment());
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Terminal server stopped: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() != null) {
+                        close((TerminalConnection) key.attachment());
+                    }
+                }
+                DBUtil.closeQuietly(serverChannel, selector);
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new TerminalConnection(channel, key));
+            }
+        }
+
+        private void read(TerminalConnection conn) throws IOException {
+            int n = conn.channel.read(conn.in);
+            if (n < 0) {
+                close(conn);
+                return;
+            }
+            decodeFrames(conn);
+        }
+
+        /**
+         * Decode every complete frame in the read buffer straight from the direct buffer
+         */
+        private void decodeFrames(TerminalConnection conn) throws IOException {
+            ByteBuffer in = conn.in;
+            in.flip();
+            while (in.remaining() >= REQUEST_FRAME) {
+                if (conn.inFlight.get() >= TERMINAL_MAX_IN_FLIGHT) {
+                    // Backpressure: stop reading until responses drain
+                    conn.readPaused = true;
+                    conn.key.interestOps(conn.key.interestOps() & ~SelectionKey.OP_READ);
+                    break;
+                }
+
+                int length = in.getInt();
+                if (length != REQUEST_LENGTH) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                long correlationId = in.getLong();
+                byte op = in.get();
+                int accountNo = in.getInt();
+                char[] pin = new char[4];
+                for (int i = 0; i < 4; i++) {
+                    pin[i] = (char) in.get();
+                }
+                int toAccount = in.getInt();
+                long amountPaise = in.getLong();
+
+                conn.inFlight.incrementAndGet();
+                workers.execute(() -> {
+                    ByteBuffer response = responseBuffers.acquire();
+                    encode(response, correlationId, op,
+                            execute(op, accountNo, new String(pin), toAccount, amountPaise));
+                    conn.out.add(response);
+                    conn.inFlight.decrementAndGet();
+                    ready.add(conn);
+                    selector.wakeup();
+                });
+            }
+            in.compact();
+        }
+
+        /**
+         * Run one request against AccountManager, returning status and value
+         */
+        private long[] execute(byte op, int accountNo, String pin, int toAccount, long amountPaise) {
+            Result<Account> auth = accountManager.authenticate(accountNo, pin);
+            if (!auth.isSuccess()) {
+                return new long[]{auth.getCode().ordinal(), 0};
+            }
+
+            double amount = amountPaise / 100.0;
+            Result<Transaction> posting = switch (op) {
+                case OP_BALANCE -> null;
+                case OP_DEPOSIT -> accountManager.deposit(accountNo, amount);
+                case OP_WITHDRAW -> accountManager.withdraw(accountNo, amount);
+                case OP_TRANSFER -> accountManager.transfer(accountNo, toAccount, amount);
+                default -> Result.fail(ResultCode.INVALID_INPUT, "Unknown op " + op);
+            };
+
+            if (posting == null) {
+                long balance = auth.getValue().getBalance().movePointRight(2).longValue();
+                return new long[]{ResultCode.OK.ordinal(), balance};
+            }
+            long txnId = posting.isSuccess() && posting.getValue() != null ? posting.getValue().getId() : 0;
+            return new long[]{posting.getCode().ordinal(), txnId};
+        }
+
+        private static void encode(ByteBuffer buffer, long correlationId, byte op, long[] statusAndValue) {
+            buffer.putInt(RESPONSE_LENGTH)
+                    .putLong(correlationId)
+                    .put(op)
+                    .put((byte) statusAndValue[0])
+                    .putLong(statusAndValue[1])
+                    .flip();
+        }
+
+        private void onResponsesReady(TerminalConnection conn) {
+            if (!conn.key.isValid()) {
+                return;
+            }
+            conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_WRITE);
+            if (conn.readPaused && conn.inFlight.get() < TERMINAL_MAX_IN_FLIGHT / 2) {
+                conn.readPaused = false;
+                conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_READ);
+                try {
+                    decodeFrames(conn);
+                } catch (IOException e) {
+                    close(conn);
+                }
+            }
+        }
+
+        /**
+         * Gathering write of every queued response
+         */
+        private void write(TerminalConnection conn) throws IOException {
+            ByteBuffer[] batch = new ByteBuffer[Math.min(64, Math.max(1, conn.out.size()))];
+            while (!conn.out.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : conn.out) {
+                    if (count == batch.length) break;
+                    batch[count++] = buffer;
+                }
+                conn.channel.write(batch, 0, count);
+
+                for (int i = 0; i < count; i++) {
+                    if (batch[i].hasRemaining()) {
+                        return; // socket buffer full; OP_WRITE stays set
+                    }
+                    responseBuffers.release(conn.out.poll());
+                    batch[i] = null;
+                }
+            }
+            conn.key.interestOps(conn.key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+
+        private void close(TerminalConnection conn) {
+            conn.key.cancel();
+            DBUtil.closeQuietly(conn.channel);
+            if (conn.in != null) {
+                readBuffers.release(conn.in);
+            }
+        }
+    }
+
+    /**
+     * Loopback load client for the terminal protocol and the JSON service. Runs for a fixed
+     * duration and prints requests/sec and latency percentiles for each protocol.
+     */
+    static class TerminalLoadClient {
+
+        static void run(Map<String, String> options) throws Exception {
+            String protocol = options.getOrDefault("protocol", "both");
+            String host = options.getOrDefault("host", "localhost");
+            int connections = CliUtil.intOption(options, "connections", 8);
+            int depth = CliUtil.intOption(options, "depth", 16);
+            int seconds = CliUtil.intOption(options, "seconds", 10);
+            int accountNo = CliUtil.intOption(options, "account", 1);
+            String pin = options.getOrDefault("pin", "0000");
+            byte op = "deposit".equalsIgnoreCase(options.get("op")) ? TerminalServer.OP_DEPOSIT : TerminalServer.OP_BALANCE;
+
+            System.out.printf("Load: %d connections x %d in flight for %ds, op=%s, account=%d%n",
+                    connections, depth, seconds, op == TerminalServer.OP_DEPOSIT ? "deposit" : "balance", accountNo);
+
+            if (!"json".equals(protocol)) {
+                report("binary", runBinary(host, CliUtil.intOption(options, "port", TERMINAL_PORT),
+                        connections, depth, seconds, op, accountNo, pin), seconds);
+            }
+            if (!"binary".equals(protocol)) {
+                report("json", runJson(host, CliUtil.intOption(options, "httpPort", HTTP_PORT),
+                        connections * depth, seconds, op, accountNo, pin), seconds);
+            }
+        }
+
+        private static void report(String protocol, LoadStats stats, int seconds) {
+            System.out.printf("%-6s  %10.0f req/s  errors=%d  %s%n",
+                    protocol, stats.latency.getCount() / (double) seconds, stats.errors.sum(), stats.latency.summary());
+        }
+
+        private static final class LoadStats {
+            final LatencyHistogram latency = new LatencyHistogram();
+            final LongAdder errors = new LongAdder();
+        }
+
+        private static LoadStats runBinary(String host, int port, int connections, int depth, int seconds,
+                                           byte op, int accountNo, String pin) throws Exception {
+            LoadStats stats = new LoadStats();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Thread> threads = new ArrayList<>();
+
+            for (int c = 0; c < connections; c++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Semaphore window = new Semaphore(depth);
+                long[] sentAt = new long[depth];
+                Queue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+                for (int i = 0; i < depth; i++) {
+                    freeSlots.add(i);
+                }
+                AtomicBoolean done = new AtomicBoolean();
+
+                Thread writer = new Thread(() -> {
+                    ByteBuffer frame = ByteBuffer.allocateDirect(TerminalServer.REQUEST_FRAME);
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            if (!window.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                                continue;
+                            }
+                            int slot = freeSlots.poll();
+                            sentAt[slot] = System.nanoTime();
+                            frame.clear();
+                            frame.putInt(TerminalServer.REQUEST_LENGTH).putLong(slot).put(op).putInt(accountNo);
+                            for (int i = 0; i < 4; i++) {
+                                frame.put((byte) (i < pin.length() ? pin.charAt(i) : '0'));
+                            }
+                            frame.putInt(0).putLong(100).flip();
+                            while (frame.hasRemaining()) {
+                                channel.write(frame);
+                            }
+                        }
+                        window.acquire(depth); // wait for the last responses
+                    } catch (Exception e) {
+                        stats.errors.increment();
+                    } finally {
+                        done.set(true);
+                        DBUtil.closeQuietly(channel);
+                    }
+                }, "load-writer-" + c);
+
+                Thread reader = new Thread(() -> {
+                    ByteBuffer in = ByteBuffer.allocateDirect(TerminalServer.RESPONSE_FRAME * 256);
+                    try {
+                        while (!done.get()) {
+                            if (channel.read(in) < 0) break;
+                            in.flip();
+                            while (in.remaining() >= TerminalServer.RESPONSE_FRAME) {
+                                in.getInt();
+                                int slot = (int) in.getLong();
+                                in.get();
+                                byte status = in.get();
+                                in.getLong();
+                                stats.latency.record(System.nanoTime() - sentAt[slot]);
+                                if (status != ResultCode.OK.ordinal()) {
+                                    stats.errors.increment();
+                                }
+                                freeSlots.add(slot);
+                                window.release();
+                            }
+                            in.compact();
+                        }
+                    } catch (IOException ignored) {
+                        // channel closed by writer at the end of the run
+                    }
+                }, "load-reader-" + c);
+
+                threads.add(writer);
+                threads.add(reader);
+            }
+
+            for (Thread t : threads) t.start();
+            for (Thread t : threads) t.join();
+            return stats;
+        }
+
+        private static LoadStats runJson(String host, int port, int concurrency, int seconds,
+                                         byte op, int accountNo, String pin) throws Exception {
+            LoadStats stats = new LoadStats();
+            ExecutorService executor = ThreadUtil.newPerTaskExecutor("load-json");
+            HttpClient client = HttpClient.newBuilder().executor(executor).build();
+            String base = "http://" + host + ":" + port + "/api";
+
+            HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(base + "/login"))
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"accountNo\":" + accountNo + ",\"pin\":\"" + pin + "\"}")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Object data = ((Map<?, ?>) JsonUtil.parse(login.body())).get("data");
+            Object token = data instanceof Map ? ((Map<?, ?>) data).get("token") : null;
+            if (token == null) {
+                throw new IllegalStateException("JSON login failed: " + login.body());
+            }
+
+            HttpRequest request = op == TerminalServer.OP_DEPOSIT
+                    ? HttpRequest.newBuilder(URI.create(base + "/account/deposit"))
+                        .header("Authorization", "Bearer " + token)
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":1.00}")).build()
+                    : HttpRequest.newBuilder(URI.create(base + "/account/balance"))
+                        .header("Authorization", "Bearer " + token).GET().build();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            stats.latency.record(System.nanoTime() - start);
+                            if (response.statusCode() != 200) {
+                                stats.errors.increment();
+                            }
+                        } catch (IOException e) {
+                            stats.errors.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            executor.shutdown();
+            return stats;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                       SETTLEMENT WINDOW
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Netting mode for same-shard transfers (-Dbanking.settlement.enabled=true). Many small
+     * transfers between a few hundred business accounts otherwise queue on the hot accounts'
+     * row locks, two balance UPDATEs per transfer.
+     *
+     * <p>A submitted transfer reserves its amount against the source's balance, minus what
+     * the source already has reserved in open windows. It then waits for its window to
+     * settle. A window closes after banking.settlement.windowMs or once it holds
+     * banking.settlement.maxBatch transfers, and one thread settles it per shard in a single
+     * transaction. The settle step locks the accounts in account order and re-checks each
+     * transfer in arrival order against the locked balance and today's limit usage. Money
+     * received in the same window does not count. It then applies one netted UPDATE per
+     * account and batch-inserts the TRANSFER_OUT/TRANSFER_IN rows and their audit rows. If
+     * the batch fails as a whole, each of its transfers falls back to the direct path.
+     */
+    static class SettlementWindow {
+        private static final LongAdder windows = new LongAdder();
+        private static final LongAdder settled = new LongAdder();
+        private static final LongAdder rejected = new LongAdder();
+        private static final LongAdder balanceUpdates = new LongAdder();
+        private static final LongAdder fallbacks = new LongAdder();
+
+        /**
+         * One transfer waiting for its window; amounts are held in paise
+         */
+        private static final class Pending {
+            final int fromAccount;
+            final int toAccount;
+            final long amountPaise;
+            final String idempotencyKey;
+            final CompletableFuture<Result<Transaction>> outcome = new CompletableFuture<>();
+
+            Pending(int fromAccount, int toAccount, long amountPaise, String idempotencyKey) {
+                this.fromAccount = fromAccount;
+                this.toAccount = toAccount;
+                this.amountPaise = amountPaise;
+                this.idempotencyKey = idempotencyKey;
+            }
+        }
+
+        private final long windowNanos;
+        private final int maxBatch;
+        private final Object lock = new Object();
+        private final Map<Integer, Long> reserved = new HashMap<>();
+        private final Map<String, Pending> keyed = new HashMap<>();
+        private List<Pending> open = new ArrayList<>();
+        private long openedAt;
+        private volatile boolean running = true;
+        private final Thread settler;
+        private final Connection[] connections = new Connection[DBUtil.shardCount()];
+
+        SettlementWindow(long windowMillis, int maxBatch) {
+            this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, windowMillis));
+            this.maxBatch = Math.max(1, maxBatch);
+            this.settler = new Thread(this::runSettler, "settlement-window");
+            this.settler.setDaemon(true);
+        }
+
+        static SettlementWindow start(long windowMillis, int maxBatch) {
+            SettlementWindow window = new SettlementWindow(windowMillis, maxBatch);
+            window.settler.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(window::close, "settlement-shutdown"));
+            System.out.printf("✓ Transfers settle in %d ms windows of up to %,d%n",
+                    TimeUnit.NANOSECONDS.toMillis(window.windowNanos), window.maxBatch);
+            return window;
+        }
+
+        /**
+         * Reserve and queue a transfer whose accounts were already checked, then wait for its
+         * window. Returns null if the window's batch failed and the caller should post directly.
+         */
+        Result<Transaction> submit(int fromAccount, int toAccount, BigDecimal amount, BigDecimal fromBalance,
+                                   String idempotencyKey) {
+            long amountPaise = toPaise(amount);
+            Pending pending;
+            synchronized (lock) {
+                Pending same = idempotencyKey != null ? keyed.get(fromAccount + ":" + idempotencyKey) : null;
+                if (same != null) {
+                    if (same.toAccount != toAccount || same.amountPaise != amountPaise) {
+                        return IdempotencyCache.conflict();
+                    }
+                    pending = same;
+                } else {
+                    if (!running) {
+                        return null;
+                    }
+                    long held = reserved.getOrDefault(fromAccount, 0L);
+                    if (toPaise(fromBalance) - held < amountPaise) {
+                        rejected.increment();
+                        return Result.fail(ResultCode.INSUFFICIENT_FUNDS, "Insufficient balance in source account.");
+                    }
+                    pending = new Pending(fromAccount, toAccount, amountPaise, idempotencyKey);
+                    reserved.merge(fromAccount, amountPaise, Long::sum);
+                    if (idempotencyKey != null) {
+                        keyed.put(fromAccount + ":" + idempotencyKey, pending);
+                    }
+                    if (open.isEmpty()) {
+                        openedAt = System.nanoTime();
+                    }
+                    open.add(pending);
+                    if (open.size() == 1 || open.size() >= maxBatch) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+            return pending.outcome.join();
+        }
+
+        private void runSettler() {
+            while (true) {
+                List<Pending> batch;
+                synchronized (lock) {
+                    try {
+                        while (running && open.isEmpty()) {
+                            lock.wait();
+                        }
+                        while (running && open.size() < maxBatch) {
+                            long remaining = openedAt + windowNanos - System.nanoTime();
+                            if (remaining <= 0) {
+                                break;
+                            }
+                            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        running = false;
+                    }
+                    if (open.isEmpty()) {
+                        return;
+                    }
+                    batch = open;
+                    open = new ArrayList<>();
+                }
+
+                try {
+                    settle(batch);
+                } finally {
+                    synchronized (lock) {
+                        for (Pending p : batch) {
+                            reserved.computeIfPresent(p.fromAccount, (k, v) -> v == p.amountPaise ? null : v - p.amountPaise);
+                            if (p.idempotencyKey != null) {
+                                keyed.remove(p.fromAccount + ":" + p.idempotencyKey, p);
+                            }
+                        }
+                    }
+                    for (Pending p : batch) {
+                        p.outcome.complete(null);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Settle one window, one transaction per shard
+         */
+        private void settle(List<Pending> batch) {
+            windows.increment();
+            Map<Integer, List<Pending>> byShard = new TreeMap<>();
+            for (Pending p : batch) {
+                byShard.computeIfAbsent(DBUtil.shardOf(p.fromAccount), k -> new ArrayList<>()).add(p);
+            }
+            for (Map.Entry<Integer, List<Pending>> shard : byShard.entrySet()) {
+                try {
+                    settleShard(shard.getKey(), shard.getValue());
+                } catch (SQLException e) {
+                    System.err.println("Settlement window failed on shard " + shard.getKey() + ", posting "
+                            + shard.getValue().size() + " transfers directly: " + e.getMessage());
+                    closeConnection(shard.getKey());
+                    fallbacks.add(shard.getValue().size());
+                }
+            }
+        }
+
+        private void settleShard(int shard, List<Pending> batch) throws SQLException {
+            Set<Integer> accounts = new TreeSet<>();
+            Set<Integer> sources = new TreeSet<>();
+            for (Pending p : batch) {
+                accounts.add(p.fromAccount);
+                accounts.add(p.toAccount);
+                sources.add(p.fromAccount);
+            }
+            String lockSql = "SELECT account_no, balance, daily_limit FROM accounts WHERE account_no IN ("
+                    + placeholders(accounts.size()) + ") ORDER BY account_no FOR UPDATE";
+            String usageSql = """
+                SELECT account_no, COALESCE(SUM(amount), 0) AS daily_total
+                FROM transactions
+                WHERE (type = 'WITHDRAWAL' OR type = 'TRANSFER_OUT') AND reverse_of IS NULL
+                  AND txn_time >= CURDATE() AND account_no IN (%s)
+                GROUP BY account_no
+                """.formatted(placeholders(sources.size()));
+            String updateSql = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_no = ?";
+            String insertSql = """
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time, idempotency_key)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """;
+            String auditSql = "INSERT INTO audit_log (event_time, user_id, account_no, event_text) VALUES (?, NULL, ?, ?)";
+
+            Connection conn = connection(shard);
+            conn.setAutoCommit(false);
+            try (PreparedStatement lockPs = conn.prepareStatement(lockSql);
+                 PreparedStatement usagePs = conn.prepareStatement(usageSql);
+                 PreparedStatement updatePs = conn.prepareStatement(updateSql);
+                 PreparedStatement insertPs = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement auditPs = conn.prepareStatement(auditSql)) {
+
+                Map<Integer, long[]> state = new HashMap<>(); // balance, daily limit, used today
+                int i = 1;
+                for (int accountNo : accounts) {
+                    lockPs.setInt(i++, accountNo);
+                }
+                try (ResultSet rs = lockPs.executeQuery()) {
+                    while (rs.next()) {
+                        state.put(rs.getInt("account_no"), new long[]{
+                                toPaise(rs.getBigDecimal("balance")), toPaise(rs.getBigDecimal("daily_limit")), 0});
+                    }
+                }
+                i = 1;
+                for (int accountNo : sources) {
+                    usagePs.setInt(i++, accountNo);
+                }
+                try (ResultSet rs = usagePs.executeQuery()) {
+                    while (rs.next()) {
+                        state.get(rs.getInt("account_no"))[2] = toPaise(rs.getBigDecimal("daily_total"));
+                    }
+                }
+
+                // Re-check in arrival order; only money already on the row counts as available
+                Map<Integer, Long> deltas = new TreeMap<>();
+                List<Pending> accepted = new ArrayList<>();
+                Map<Pending, Result<Transaction>> refused = new HashMap<>();
+                for (Pending p : batch) {
+                    long[] from = state.get(p.fromAccount);
+                    if (from == null || !state.containsKey(p.toAccount)) {
+                        refused.put(p, Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found."));
+                    } else if (from[0] < p.amountPaise) {
+                        refused.put(p, Result.fail(ResultCode.INSUFFICIENT_FUNDS, "Insufficient balance in source account."));
+                    } else if (from[2] + p.amountPaise > from[1]) {
+                        refused.put(p, Result.fail(ResultCode.LIMIT_EXCEEDED, "Daily transfer limit exceeded."));
+                    } else {
+                        from[0] -= p.amountPaise;
+                        from[2] += p.amountPaise;
+                        deltas.merge(p.fromAccount, -p.amountPaise, Long::sum);
+                        deltas.merge(p.toAccount, p.amountPaise, Long::sum);
+                        accepted.add(p);
+                    }
+                }
+
+                LocalDateTime now = LocalDateTime.now();
+                Timestamp time = Timestamp.valueOf(now);
+                for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                    if (delta.getValue() != 0) {
+                        updatePs.setBigDecimal(1, BigDecimal.valueOf(delta.getValue(), 2));
+                        updatePs.setInt(2, delta.getKey());
+                        updatePs.addBatch();
+                    }
+                }
+                for (Pending p : accepted) {
+                    BigDecimal amount = BigDecimal.valueOf(p.amountPaise, 2);
+                    addRow(insertPs, p.fromAccount, "TRANSFER_OUT", amount, "Transfer to account " + p.toAccount,
+                            time, p.idempotencyKey);
+                    addRow(insertPs, p.toAccount, "TRANSFER_IN", amount, "Transfer from account " + p.fromAccount,
+                            time, null);
+                    auditPs.setTimestamp(1, time);
+                    auditPs.setInt(2, p.fromAccount);
+                    auditPs.setString(3, "TRANSFER | ₹" + amount + " transferred from " + p.fromAccount
+                            + " to " + p.toAccount);
+                    auditPs.addBatch();
+                }
+
+                int[] updated = updatePs.executeBatch();
+                insertPs.executeBatch();
+                List<Integer> ids = new ArrayList<>();
+                try (ResultSet keys = insertPs.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getInt(1));
+                    }
+                }
+                auditPs.executeBatch();
+                conn.commit();
+
+                settled.add(accepted.size());
+                rejected.add(refused.size());
+                balanceUpdates.add(updated.length);
+                for (int n = 0; n < accepted.size(); n++) {
+                    Pending p = accepted.get(n);
+                    int id = ids.size() == accepted.size() * 2 ? ids.get(n * 2) : 0;
+                    p.outcome.complete(Result.ok(new Transaction(id, p.fromAccount, "TRANSFER_OUT",
+                            BigDecimal.valueOf(p.amountPaise, 2), "Transfer to account " + p.toAccount, now, null),
+                            "Transfer successful!"));
+                }
+                refused.forEach((p, result) -> p.outcome.complete(result));
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        private static void addRow(PreparedStatement ps, int accountNo, String type, BigDecimal amount, String memo,
+                                   Timestamp time, String idempotencyKey) throws SQLException {
+            ps.setInt(1, accountNo);
+            ps.setString(2, type);
+            ps.setBigDecimal(3, amount);
+            ps.setString(4, memo);
+            ps.setTimestamp(5, time);
+            ps.setString(6, idempotencyKey);
+            ps.addBatch();
+        }
+
+        private static String placeholders(int count) {
+            return String.join(",", Collections.nCopies(count, "?"));
+        }
+
+        /**
+         * The settler's own connection per shard, kept open across windows
+         */
+        private Connection connection(int shard) throws SQLException {
+            if (connections[shard] == null || connections[shard].isClosed()) {
+                connections[shard] = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS);
+            }
+            return connections[shard];
+        }
+
+        private void closeConnection(int shard) {
+            try {
+                if (connections[shard] != null) {
+                    connections[shard].close();
+                }
+            } catch (SQLException ignored) {
+                // already broken
+            }
+            connections[shard] = null;
+        }
+
+        /**
+         * Settle what is queued and stop; later transfers take the direct path
+         */
+        void close() {
+            synchronized (lock) {
+                running = false;
+                lock.notifyAll();
+            }
+            try {
+                settler.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (int shard = 0; shard < connections.length; shard++) {
+                closeConnection(shard);
+            }
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+
+        static void appendPrometheus(StringBuilder sb) {
+            sb.append("# HELP banking_settlement_windows_total Settlement windows closed\n");
+            sb.append("# TYPE banking_settlement_windows_total counter\n");
+            sb.append("banking_settlement_windows_total ").append(windows.sum()).append('\n');
+            sb.append("# HELP banking_settlement_transfers_total Transfers through settlement windows by outcome\n");
+            sb.append("# TYPE banking_settlement_transfers_total counter\n");
+            sb.append("banking_settlement_transfers_total{outcome=\"settled\"} ").append(settled.sum()).append('\n');
+            sb.append("banking_settlement_transfers_total{outcome=\"rejected\"} ").append(rejected.sum()).append('\n');
+            sb.append("banking_settlement_transfers_total{outcome=\"direct\"} ").append(fallbacks.sum()).append('\n');
+            sb.append("# HELP banking_settlement_balance_updates_total Netted balance UPDATEs applied\n");
+            sb.append("# TYPE banking_settlement_balance_updates_total counter\n");
+            sb.append("banking_settlement_balance_updates_total ").append(balanceUpdates.sum()).append('\n');
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                         BALANCE SLOTS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Split balances for hot receiving accounts (-Dbanking.slots.accounts=1001,1002). A split
+     * account's balance is its accounts row plus K rows in account_balance_slots
+     * (-Dbanking.slots.count). Each credit adds to one slot picked at random, so concurrent
+     * credits rarely wait on the same row lock. A debit first locks the accounts row. If that
+     * row does not cover the debit, the shortfall is drawn from the slots in slot order, and
+     * then the usual debit UPDATE runs. findAccount adds the slots in. The rebalancer folds
+     * slot balances back into the accounts row every banking.slots.rebalanceMs. Reports and
+     * batch jobs that read accounts.balance directly therefore lag by at most one sweep, and
+     * they only ever see less money than there is. Startup folds every slot left from the
+     * previous run before splitting the configured accounts again.
+     */
+    static class BalanceSlots {
+        private static final Map<Integer, Integer> slotCounts = new ConcurrentHashMap<>();
+        private static final LongAdder slotCredits = new LongAdder();
+        private static final LongAdder draws = new LongAdder();
+        private static final LongAdder folds = new LongAdder();
+        private static boolean prepared;
+        private static ScheduledExecutorService rebalancer;
+
+        static boolean isSplit(int accountNo) {
+            return slotCounts.containsKey(accountNo);
+        }
+
+        /**
+         * Create the slot table on every shard, fold slots left by the previous run and split
+         * the configured accounts; later calls do nothing
+         */
+        static synchronized void prepare() throws SQLException {
+            if (prepared) {
+                return;
+            }
+            String ddl = """
+                CREATE TABLE IF NOT EXISTS account_balance_slots (
+                  account_no INT NOT NULL,
+                  slot INT NOT NULL,
+                  balance DOUBLE NOT NULL DEFAULT 0,
+                  PRIMARY KEY (account_no, slot),
+                  FOREIGN KEY (account_no) REFERENCES accounts(account_no)
+                )""";
+            for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                List<Integer> leftover = new ArrayList<>();
+                try (Connection conn = DBUtil.getShardConnection(shard);
+                     Statement st = conn.createStatement()) {
+                    st.execute(ddl);
+                    ResultSet rs = st.executeQuery("SELECT DISTINCT account_no FROM account_balance_slots");
+                    while (rs.next()) {
+                        leftover.add(rs.getInt(1));
+                    }
+                }
+                for (int accountNo : leftover) {
+                    unsplit(accountNo);
+                }
+            }
+
+            for (String account : SLOT_ACCOUNTS.split("\\s*,\\s*")) {
+                if (!account.isEmpty()) {
+                    split(Integer.parseInt(account), SLOT_COUNT);
+                }
+            }
+            prepared = true;
+        }
+
+        /**
+         * Start folding slots into their accounts rows in the background
+         */
+        static synchronized void startRebalancer() {
+            if (rebalancer != null || slotCounts.isEmpty() || SLOT_REBALANCE_MS <= 0) {
+                return;
+            }
+            rebalancer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "balance-slot-rebalancer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rebalancer.scheduleWithFixedDelay(BalanceSlots::rebalance, SLOT_REBALANCE_MS, SLOT_REBALANCE_MS,
+                    TimeUnit.MILLISECONDS);
+            System.out.printf("✓ %d accounts split across %d balance slots%n", slotCounts.size(), SLOT_COUNT);
+        }
+
+        private static void rebalance() {
+            for (int accountNo : slotCounts.keySet()) {
+                try (Connection conn = DBUtil.getConnection(accountNo)) {
+                    fold(conn, accountNo);
+                } catch (SQLException e) {
+                    System.err.println("Balance slot rebalance failed for account " + accountNo + ": " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Give an account k slots (k of 1 or less leaves it unsplit); existing slot balances
+         * are folded first
+         */
+        static void split(int accountNo, int k) throws SQLException {
+            unsplit(accountNo);
+            if (k <= 1) {
+                return;
+            }
+            String insertSql = "INSERT INTO account_balance_slots (account_no, slot, balance) VALUES (?, ?, 0)";
+            try (Connection conn = DBUtil.getConnection(accountNo);
+                 PreparedStatement existsPs = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_no = ?");
+                 PreparedStatement ps = conn.prepareStatement(insertSql)) {
+                existsPs.setInt(1, accountNo);
+                if (!existsPs.executeQuery().next()) {
+                    System.err.println("Not splitting balance of missing account " + accountNo);
+                    return;
+                }
+                for (int slot = 0; slot < k; slot++) {
+                    ps.setInt(1, accountNo);
+                    ps.setInt(2, slot);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            slotCounts.put(accountNo, k);
+        }
+
+        /**
+         * Fold an account's slots into its accounts row and drop them, in one transaction over
+         * the locked slot rows, so a credit that lands in between is neither lost nor counted twice
+         */
+        static void unsplit(int accountNo) throws SQLException {
+            slotCounts.remove(accountNo);
+            String slotsSql = "SELECT slot, balance FROM account_balance_slots WHERE account_no = ? ORDER BY slot FOR UPDATE";
+            String deleteSql = "DELETE FROM account_balance_slots WHERE account_no = ? AND slot = ?";
+            try (Connection conn = DBUtil.getConnection(accountNo)) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement slotsPs = conn.prepareStatement(slotsSql);
+                     PreparedStatement deletePs = conn.prepareStatement(deleteSql)) {
+                    lockMain(conn, accountNo);
+                    slotsPs.setInt(1, accountNo);
+                    ResultSet rs = slotsPs.executeQuery();
+                    long total = 0;
+                    while (rs.next()) {
+                        total += toPaise(rs.getBigDecimal("balance"));
+                        deletePs.setInt(1, accountNo);
+                        deletePs.setInt(2, rs.getInt("slot"));
+                        deletePs.addBatch();
+                    }
+                    deletePs.executeBatch();
+                    addToMain(conn, accountNo, total);
+                    conn.commit();
+                    folds.increment();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+
+        /**
+         * Credit an account, to a random slot when it is split. Returns the rows updated (0 if
+         * the account is missing, or inactive when activeOnly is set).
+         */
+        static int credit(Connection conn, int accountNo, BigDecimal amount, boolean activeOnly) throws SQLException {
+            Integer k = slotCounts.get(accountNo);
+            if (k == null) {
+                return creditMain(conn, accountNo, amount, activeOnly);
+            }
+            String sql = "UPDATE account_balance_slots SET balance = balance + ? WHERE account_no = ? AND slot = ?"
+                    + (activeOnly ? " AND EXISTS (SELECT 1 FROM accounts WHERE account_no = ? AND active = TRUE)" : "");
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setBigDecimal(1, amount);
+                ps.setInt(2, accountNo);
+                ps.setInt(3, ThreadLocalRandom.current().nextInt(k));
+                if (activeOnly) {
+                    ps.setInt(4, accountNo);
+                }
+                if (ps.executeUpdate() == 0) {
+                    // The slot row went with an unsplit while this credit waited on it, or the account is
+                    // missing or inactive; the accounts row tells which
+                    return creditMain(conn, accountNo, amount, activeOnly);
+                }
+                slotCredits.increment();
+                return 1;
+            }
+        }
+
+        private static int creditMain(Connection conn, int accountNo, BigDecimal amount, boolean activeOnly)
+                throws SQLException {
+            String sql = "UPDATE accounts SET balance = balance + ? WHERE account_no = ?"
+                    + (activeOnly ? " AND active = TRUE" : "");
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setBigDecimal(1, amount);
+                ps.setInt(2, accountNo);
+                return ps.executeUpdate();
+            }
+        }
+
+        /**
+         * Before debiting a split account, lock its accounts row and move enough from the
+         * slots into it to cover the amount; does nothing for other accounts
+         */
+        static void draw(Connection conn, int accountNo, BigDecimal amount) throws SQLException {
+            if (!isSplit(accountNo)) {
+                return;
+            }
+            long main = lockMain(conn, accountNo);
+            long needed = toPaise(amount) - main;
+            if (needed <= 0) {
+                return;
+            }
+            String slotsSql = "SELECT slot, balance FROM account_balance_slots WHERE account_no = ? ORDER BY slot FOR UPDATE";
+            String takeSql = "UPDATE account_balance_slots SET balance = balance - ? WHERE account_no = ? AND slot = ?";
+            long moved = 0;
+            try (PreparedStatement slotsPs = conn.prepareStatement(slotsSql);
+                 PreparedStatement takePs = conn.prepareStatement(takeSql)) {
+                slotsPs.setInt(1, accountNo);
+                ResultSet rs = slotsPs.executeQuery();
+                while (rs.next() && moved < needed) {
+                    long take = Math.min(toPaise(rs.getBigDecimal("balance")), needed - moved);
+                    if (take > 0) {
+                        takePs.setBigDecimal(1, BigDecimal.valueOf(take, 2));
+                        takePs.setInt(2, accountNo);
+                        takePs.setInt(3, rs.getInt("slot"));
+                        takePs.addBatch();
+                        moved += take;
+                    }
+                }
+                takePs.executeBatch();
+            }
+            addToMain(conn, accountNo, moved);
+            draws.increment();
+        }
+
+        /**
+         * Sum of an account's slots (zero for an unsplit account)
+         */
+        static BigDecimal slotTotal(Connection conn, int accountNo) throws SQLException {
+            if (!isSplit(accountNo)) {
+                return BigDecimal.ZERO;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COALESCE(SUM(balance), 0) FROM account_balance_slots WHERE account_no = ?")) {
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? rs.getBigDecimal(1) : BigDecimal.ZERO;
+            }
+        }
+
+        /**
+         * Move every slot balance into the accounts row in one transaction
+         */
+        private static void fold(Connection conn, int accountNo) throws SQLException {
+            String slotsSql = "SELECT balance FROM account_balance_slots WHERE account_no = ? FOR UPDATE";
+            String clearSql = "UPDATE account_balance_slots SET balance = 0 WHERE account_no = ? AND balance <> 0";
+            conn.setAutoCommit(false);
+            try (PreparedStatement slotsPs = conn.prepareStatement(slotsSql);
+                 PreparedStatement clearPs = conn.prepareStatement(clearSql)) {
+                lockMain(conn, accountNo);
+                slotsPs.setInt(1, accountNo);
+                ResultSet rs = slotsPs.executeQuery();
+                long total = 0;
+                while (rs.next()) {
+                    total += toPaise(rs.getBigDecimal("balance"));
+                }
+                if (total != 0) {
+                    clearPs.setInt(1, accountNo);
+                    clearPs.executeUpdate();
+                    addToMain(conn, accountNo, total);
+                }
+                conn.commit();
+                folds.increment();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        private static long lockMain(Connection conn, int accountNo) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT balance FROM accounts WHERE account_no = ? FOR UPDATE")) {
+                ps.setInt(1, accountNo);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? toPaise(rs.getBigDecimal("balance")) : 0;
+            }
+        }
+
+        private static void addToMain(Connection conn, int accountNo, long paise) throws SQLException {
+            if (paise == 0) {
+                return;
+            }
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts SET balance = balance + ? WHERE account_no = ?")) {
+                ps.setBigDecimal(1, BigDecimal.valueOf(paise, 2));
+                ps.setInt(2, accountNo);
+                ps.executeUpdate();
+            }
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+
+        static void appendPrometheus(StringBuilder sb) {
+            sb.append("# HELP banking_balance_slot_credits_total Credits applied to a balance slot\n");
+            sb.append("# TYPE banking_balance_slot_credits_total counter\n");
+            sb.append("banking_balance_slot_credits_total ").append(slotCredits.sum()).append('\n');
+            sb.append("# HELP banking_balance_slot_draws_total Debits that drew from balance slots\n");
+            sb.append("# TYPE banking_balance_slot_draws_total counter\n");
+            sb.append("banking_balance_slot_draws_total ").append(draws.sum()).append('\n');
+            sb.append("# HELP banking_balance_slot_folds_total Slot sets folded into their accounts row\n");
+            sb.append("# TYPE banking_balance_slot_folds_total counter\n");
+            sb.append("banking_balance_slot_folds_total ").append(folds.sum()).append('\n');
+        }
+
+        /**
+         * Credit throughput against one account for each slot count in slots=1,2,4,8,16:
+         * threads=N callers run deposits through AccountManager for seconds=S each. Meant for a
+         * scratch database; the account keeps the deposited money.
+         */
+        static void benchmark(AccountManager accountManager, Map<String, String> options) throws Exception {
+            int accountNo = CliUtil.intOption(options, "account", 1);
+            int threads = CliUtil.intOption(options, "threads", 32);
+            int seconds = CliUtil.intOption(options, "seconds", 5);
+            String[] counts = options.getOrDefault("slots", "1,2,4,8,16").split(",");
+            if (accountManager.findAccount(accountNo) == null) {
+                throw new IllegalArgumentException("Account " + accountNo + " not found");
+            }
+
+            System.out.printf("Credits to account %d, %d threads, %ds per run%n", accountNo, threads, seconds);
+            System.out.printf("%-6s %12s %10s %10s %10s%n", "slots", "credits/s", "p50 µs", "p99 µs", "failed");
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                for (String count : counts) {
+                    int k = Integer.parseInt(count.trim());
+                    split(accountNo, k);
+                    LatencyHistogram latency = new LatencyHistogram();
+                    LongAdder failed = new LongAdder();
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+                    List<Future<?>> workers = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        workers.add(executor.submit(() -> {
+                            while (System.nanoTime() < deadline) {
+                                long started = System.nanoTime();
+                                if (accountManager.deposit(accountNo, 1.00).isSuccess()) {
+                                    latency.record(System.nanoTime() - started);
+                                } else {
+                                    failed.increment();
+                                }
+                            }
+                        }));
+                    }
+                    for (Future<?> worker : workers) {
+                        worker.get();
+                    }
+                    System.out.printf("%-6d %12.0f %10d %10d %10d%n", k, latency.getCount() / (double) seconds,
+                            TimeUnit.NANOSECONDS.toMicros(latency.percentile(50)),
+                            TimeUnit.NANOSECONDS.toMicros(latency.percentile(99)), failed.sum());
+                }
+            } finally {
+                executor.shutdown();
+                unsplit(accountNo);
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                         BULK POSTING
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Posts settlement files of deposits, withdrawals and transfers in bulk. The work runs
+     * as a pipeline: a memory-mapped parser feeds a validator, which checks each row
+     * against an in-memory snapshot of the accounts, and the validator feeds a poster. The
+     * poster nets each chunk per account and writes it with JDBC batches in one transaction.
+     *
+     * <p>File format, one posting per line ('#' lines, blank lines and a header row are skipped):
+     * <pre>
+     * type,account_no,amount[,to_account][,memo]
+     * DEPOSIT,1001,2500.00
+     * TRANSFER,1001,120.50,1002,Rent
+     * </pre>
+     *
+     * <p>A chunk commits together with its checkpoint row in bulk_post_checkpoints. A rerun
+     * of the same file resumes after the last committed line. Rejected rows go to
+     * {@code <file>.rejected} with a "# line N: CODE reason" comment above each one, so the
+     * file can be corrected and resubmitted as is. Settlement postings are not
+     * customer-initiated, so the daily limit does not apply. The snapshot assumes the run
+     * happens in the settlement window without concurrent online debits.
+     */
+    static class BulkPostingJob {
+        private static final String DEPOSIT = "DEPOSIT";
+        private static final String WITHDRAWAL = "WITHDRAWAL";
+        private static final String TRANSFER = "TRANSFER";
+
+        private final Path file;
+        private final AuditLogger auditLogger;
+        private final int chunkSize;
+        private final BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(BULK_QUEUE_CHUNKS);
+        private final BlockingQueue<Chunk> validated = new ArrayBlockingQueue<>(BULK_QUEUE_CHUNKS);
+        private final Map<Integer, AccountState> snapshot = new HashMap<>();
+
+        public BulkPostingJob(Path file, AuditLogger auditLogger, int chunkSize) {
+            this.file = file;
+            this.auditLogger = auditLogger;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * One parsed row; amounts are held in paise
+         */
+        private static final class Posting {
+            final long lineNo;
+            final String line;
+            final String type;
+            final int accountNo;
+            final int toAccount;
+            final long amountPaise;
+            final String memo;
+
+            Posting(long lineNo, String line, String type, int accountNo, int toAccount, long amountPaise, String memo) {
+                this.lineNo = lineNo;
+                this.line = line;
+                this.type = type;
+                this.accountNo = accountNo;
+                this.toAccount = toAccount;
+                this.amountPaise = amountPaise;
+                this.memo = memo;
+            }
+        }
+
+        /**
+         * A run of consecutive lines; endOffset/endLine locate the first line after it
+         */
+        private static final class Chunk {
+            final List<Posting> postings = new ArrayList<>();
+            final List<String> rejects = new ArrayList<>();
+            long endOffset;
+            long endLine;
+            boolean last;
+            Exception error;
+
+            int size() { return postings.size() + rejects.size(); }
+        }
+
+        private static final class AccountState {
+            long balancePaise;
+            ResultCode status;
+            LocalDate heldUntil; // running fixed deposit
+
+            AccountState(long balancePaise, ResultCode status, LocalDate heldUntil) {
+                this.balancePaise = balancePaise;
+                this.status = status;
+                this.heldUntil = heldUntil;
+            }
+        }
+
+        /**
+         * Run the whole file (or the rest of it, after a previous partial run)
+         */
+        public Result<Map<String, Object>> run() {
+            if (LEDGER_ENABLED) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Bulk posting writes balances directly; stop the ledger engine first.");
+            }
+            long started = System.nanoTime();
+            String fileKey = fileKey();
+
+            try (Connection conn = DBUtil.openDedicated(BULK_JDBC_PARAMS)) {
+                long fileSize = Files.size(file);
+                long[] checkpoint = loadCheckpoint(conn, fileKey, fileSize);
+                loadSnapshot(conn);
+                if (checkpoint[0] > 0) {
+                    System.out.printf("Resuming %s after line %d%n", file, checkpoint[1]);
+                }
+
+                Thread parser = new Thread(() -> parse(checkpoint[0], checkpoint[1]), "bulk-parser");
+                Thread validator = new Thread(this::validate, "bulk-validator");
+                parser.setDaemon(true);
+                validator.setDaemon(true);
+                parser.start();
+                validator.start();
+
+                long[] totals = post(conn, fileKey, fileSize);
+                double seconds = (System.nanoTime() - started) / 1e9;
+
+                Map<String, Object> report = new LinkedHashMap<>();
+                report.put("file", file.toString());
+                report.put("posted", totals[0]);
+                report.put("rejected", totals[1]);
+                report.put("lines", totals[2]);
+                report.put("seconds", Math.round(seconds * 100) / 100.0);
+                report.put("postingsPerSecond", Math.round(totals[0] / Math.max(seconds, 0.001)));
+
+                auditLogger.log("BULK_POSTING", "Bulk posted " + totals[0] + " rows from " + file.getFileName()
+                        + " (" + totals[1] + " rejected)");
+                return Result.ok(report, "Bulk posting complete.");
+
+            } catch (BankingException e) {
+                return Result.fail(e.getCode(), e.getMessage());
+            } catch (SQLException | IOException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Bulk posting stopped: " + e.getMessage()
+                        + " (rerun to resume from the last committed chunk)");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.fail(ResultCode.CANCELLED, "Bulk posting interrupted.");
+            }
+        }
+
+        private String fileKey() {
+            String key = file.toAbsolutePath().normalize().toString();
+            return key.length() > 255 ? key.substring(key.length() - 255) : key;
+        }
+
+        /**
+         * Returns {byteOffset, lineNo} of the first uncommitted line
+         */
+        private long[] loadCheckpoint(Connection conn, String fileKey, long fileSize) throws SQLException {
+            ensureCheckpointTable(conn);
+
+            String sql = "SELECT file_size, committed_offset, committed_lines FROM bulk_post_checkpoints WHERE file_key = ?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, fileKey);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next()) {
+                    return new long[]{0, 0};
+                }
+                if (rs.getLong("file_size") != fileSize) {
+                    throw new BankingException(ResultCode.INVALID_INPUT,
+                            "File changed since its last partial run; clear its bulk_post_checkpoints row to start over.");
+                }
+                return new long[]{rs.getLong("committed_offset"), rs.getLong("committed_lines")};
+            }
+        }
+
+        /**
+         * Resume points of file jobs; also used by OnboardingJob
+         */
+        static void ensureCheckpointTable(Connection conn) throws SQLException {
+            try (Statement st = conn.createStatement()) {
+                st.execute("""
+                    CREATE TABLE IF NOT EXISTS bulk_post_checkpoints (
+                      file_key VARCHAR(255) PRIMARY KEY,
+                      file_size BIGINT NOT NULL,
+                      committed_offset BIGINT NOT NULL,
+                      committed_lines BIGINT NOT NULL,
+                      updated_at DATETIME
+                    )
+                    """);
+            }
+        }
+
+        private void loadSnapshot(Connection conn) throws SQLException {
+            String sql = """
+                SELECT a.account_no, a.balance, a.active, a.locked, a.account_type, f.maturity_date
+                FROM accounts a
+                LEFT JOIN fixed_deposits f ON f.account_no = a.account_no AND f.status = 'ACTIVE'
+                """;
+            try (Statement st = conn.createStatement()) {
+                DBUtil.streamRows(st);
+                ResultSet rs = st.executeQuery(sql);
+                while (rs.next()) {
+                    ResultCode status = !rs.getBoolean("active") ? ResultCode.ACCOUNT_INACTIVE
+                            : rs.getBoolean("locked") ? ResultCode.ACCOUNT_LOCKED : ResultCode.OK;
+                    long paise = rs.getBigDecimal("balance").movePointRight(2)
+                            .setScale(0, RoundingMode.HALF_UP).longValueExact();
+                    Date maturity = rs.getDate("maturity_date");
+                    LocalDate heldUntil = maturity != null && "Fixed".equalsIgnoreCase(rs.getString("account_type"))
+                            ? maturity.toLocalDate() : null;
+                    snapshot.put(rs.getInt("account_no"), new AccountState(paise, status, heldUntil));
+                }
+            }
+        }
+
+        // ─────────────────────────── Stage 1: parse ───────────────────────────
+
+        private void parse(long startOffset, long startLine) {
+            Chunk chunk = new Chunk();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long position = startOffset;
+                long lineNo = startLine;
+                byte[] scratch = new byte[256];
+
+                while (position < size) {
+                    int window = (int) Math.min(BULK_MAP_WINDOW_BYTES, size - position);
+                    boolean lastWindow = position + window == size;
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+                    int lineStart = 0;
+
+                    for (int i = 0; i < window; i++) {
+                        boolean newline = buffer.get(i) == '\n';
+                        if (!newline && !(lastWindow && i == window - 1)) {
+                            continue;
+                        }
+                        int end = newline ? i : i + 1;
+                        if (end > lineStart && buffer.get(end - 1) == '\r') {
+                            end--;
+                        }
+                        int length = end - lineStart;
+                        if (length > scratch.length) {
+                            scratch = new byte[Math.max(length, scratch.length * 2)];
+                        }
+                        buffer.get(lineStart, scratch, 0, length);
+                        lineNo++;
+                        parseLine(lineNo, new String(scratch, 0, length, StandardCharsets.UTF_8), chunk);
+                        lineStart = i + 1;
+
+                        if (chunk.size() >= chunkSize) {
+                            chunk.endOffset = position + lineStart;
+                            chunk.endLine = lineNo;
+                            parsed.put(chunk);
+                            chunk = new Chunk();
+                        }
+                    }
+
+                    if (lineStart == 0) {
+                        throw new IOException("Line " + (lineNo + 1) + " exceeds " + BULK_MAP_WINDOW_BYTES + " bytes");
+                    }
+                    position += lineStart; // remap from the start of any partial line
+                    chunk.endOffset = position;
+                    chunk.endLine = lineNo;
+                }
+                if (chunk.endOffset == 0) {
+                    chunk.endOffset = startOffset;
+                    chunk.endLine = startLine;
+                }
+            } catch (IOException e) {
+                chunk.error = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                chunk.error = e;
+            }
+
+            chunk.last = true;
+            try {
+                parsed.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void parseLine(long lineNo, String line, Chunk chunk) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                return;
+            }
+            String[] fields = trimmed.split(",", 5);
+            if (fields[0].strip().equalsIgnoreCase("type")) {
+                return; // header row
+            }
+            if (fields.length < 3) {
+                chunk.rejects.add(reject(lineNo, line, ResultCode.INVALID_INPUT, "expected type,account_no,amount"));
+                return;
+            }
+
+            try {
+                String type = fields[0].strip().toUpperCase();
+                int accountNo = Integer.parseInt(fields[1].strip());
+                BigDecimal amount = new BigDecimal(fields[2].strip());
+                String to = fields.length > 3 ? fields[3].strip() : "";
+                String memo = fields.length > 4 && !fields[4].isBlank() ? fields[4].strip() : null;
+
+                if (!type.equals(DEPOSIT) && !type.equals(WITHDRAWAL) && !type.equals(TRANSFER)) {
+                    chunk.rejects.add(reject(lineNo, line, ResultCode.INVALID_INPUT, "unknown type " + type));
+                    return;
+                }
+                if (amount.signum() <= 0 || amount.scale() > 2) {
+                    chunk.rejects.add(reject(lineNo, line, ResultCode.INVALID_INPUT, "amount must be positive with at most 2 decimals"));
+                    return;
+                }
+                if (type.equals(TRANSFER) == to.isEmpty()) {
+                    chunk.rejects.add(reject(lineNo, line, ResultCode.INVALID_INPUT,
+                            type.equals(TRANSFER) ? "transfer needs to_account" : "to_account is only for transfers"));
+                    return;
+                }
+                int toAccount = to.isEmpty() ? 0 : Integer.parseInt(to);
+                if (memo != null && memo.length() > 255) {
+                    memo = memo.substring(0, 255);
+                }
+
+                chunk.postings.add(new Posting(lineNo, line, type, accountNo, toAccount,
+                        amount.movePointRight(2).longValueExact(), memo));
+
+            } catch (NumberFormatException | ArithmeticException e) {
+                chunk.rejects.add(reject(lineNo, line, ResultCode.INVALID_INPUT, "malformed number"));
+            }
+        }
+
+        private static String reject(long lineNo, String line, ResultCode code, String reason) {
+            return "# line " + lineNo + ": " + code + " " + reason + "\n" + line;
+        }
+
+        // ─────────────────────────── Stage 2: validate ───────────────────────────
+
+        private void validate() {
+            try {
+                while (true) {
+                    Chunk chunk = parsed.take();
+                    Iterator<Posting> it = chunk.postings.iterator();
+                    while (it.hasNext()) {
+                        Posting p = it.next();
+                        String failure = check(p);
+                        if (failure != null) {
+                            it.remove();
+                            chunk.rejects.add("# line " + p.lineNo + ": " + failure + "\n" + p.line);
+                        }
+                    }
+                    validated.put(chunk);
+                    if (chunk.last) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Check one posting and apply it to the snapshot; returns the rejection text or null
+         */
+        private String check(Posting p) {
+            AccountState account = snapshot.get(p.accountNo);
+            if (account == null) {
+                return ResultCode.ACCOUNT_NOT_FOUND + " account " + p.accountNo;
+            }
+            if (account.status != ResultCode.OK) {
+                return account.status + " account " + p.accountNo;
+            }
+            // Same term hold as AccountManager.checkTermHold
+            if (account.heldUntil != null) {
+                return p.type.equals(DEPOSIT)
+                        ? ResultCode.INVALID_INPUT + " fixed deposit account " + p.accountNo + " does not accept deposits"
+                        : ResultCode.INVALID_INPUT + " fixed deposit account " + p.accountNo + " is held until "
+                                + account.heldUntil.format(SIMPLE_DATE_FMT);
+            }
+
+            AccountState target = null;
+            if (p.type.equals(TRANSFER)) {
+                target = snapshot.get(p.toAccount);
+                if (target == null) {
+                    return ResultCode.ACCOUNT_NOT_FOUND + " account " + p.toAccount;
+                }
+                if (target.status != ResultCode.OK) {
+                    return target.status + " account " + p.toAccount;
+                }
+                if (target.heldUntil != null) {
+                    return ResultCode.INVALID_INPUT + " fixed deposit account " + p.toAccount + " does not accept deposits";
+                }
+                if (p.toAccount == p.accountNo) {
+                    return ResultCode.INVALID_INPUT + " transfer to the same account";
+                }
+            }
+
+            if (p.type.equals(DEPOSIT)) {
+                account.balancePaise += p.amountPaise;
+            } else {
+                if (account.balancePaise < p.amountPaise) {
+                    return ResultCode.INSUFFICIENT_FUNDS + " account " + p.accountNo;
+                }
+                account.balancePaise -= p.amountPaise;
+                if (target != null) {
+                    target.balancePaise += p.amountPaise;
+                }
+            }
+            return null;
+        }
+
+        // ─────────────────────────── Stage 3: post ───────────────────────────
+
+        /**
+         * Returns {posted, rejected, lines}
+         */
+        private long[] post(Connection conn, String fileKey, long fileSize) throws SQLException, IOException,
+                InterruptedException {
+            String updateSql = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_no = ?";
+            String insertSql = """
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time)
+                VALUES (?, ?, ?, ?, NOW())
+                """;
+            String checkpointSql = """
+                INSERT INTO bulk_post_checkpoints (file_key, file_size, committed_offset, committed_lines, updated_at)
+                VALUES (?, ?, ?, ?, NOW())
+                ON DUPLICATE KEY UPDATE committed_offset = VALUES(committed_offset),
+                                        committed_lines = VALUES(committed_lines), updated_at = NOW()
+                """;
+            Path rejectFile = file.resolveSibling(file.getFileName() + ".rejected");
+            long posted = 0, rejected = 0, lines = 0;
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement updatePs = conn.prepareStatement(updateSql);
+                 PreparedStatement insertPs = conn.prepareStatement(insertSql);
+                 PreparedStatement checkpointPs = conn.prepareStatement(checkpointSql);
+                 BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8,
+                         StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+
+                while (true) {
+                    Chunk chunk = validated.take();
+                    if (chunk.error != null) {
+                        throw new IOException("Reading " + file + " failed: " + chunk.error.getMessage(), chunk.error);
+                    }
+
+                    if (!chunk.postings.isEmpty() || chunk.endLine > lines) {
+                        // Net per account, applied in account order so concurrent transfers lock in the same order
+                        Map<Integer, Long> deltas = new TreeMap<>();
+                        for (Posting p : chunk.postings) {
+                            addBatchRows(insertPs, p, deltas);
+                        }
+                        for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                            if (delta.getValue() != 0) {
+                                updatePs.setBigDecimal(1, BigDecimal.valueOf(delta.getValue(), 2));
+                                updatePs.setInt(2, delta.getKey());
+                                updatePs.addBatch();
+                            }
+                        }
+
+                        try {
+                            updatePs.executeBatch();
+                            insertPs.executeBatch();
+                            checkpointPs.setString(1, fileKey);
+                            checkpointPs.setLong(2, fileSize);
+                            checkpointPs.setLong(3, chunk.endOffset);
+                            checkpointPs.setLong(4, chunk.endLine);
+                            checkpointPs.executeUpdate();
+                            conn.commit();
+                        } catch (SQLException e) {
+                            conn.rollback();
+                            throw e;
+                        }
+                        for (Posting p : chunk.postings) {
+                            recordLive(p);
+                        }
+                    }
+
+                    // Rejects are written only once their chunk is committed, so a resume never repeats them
+                    for (String reject : chunk.rejects) {
+                        rejects.write(reject);
+                        rejects.newLine();
+                    }
+                    rejects.flush();
+
+                    posted += chunk.postings.size();
+                    rejected += chunk.rejects.size();
+                    lines = Math.max(lines, chunk.endLine);
+
+                    if (chunk.last) {
+                        return new long[]{posted, rejected, lines};
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        private static void addBatchRows(PreparedStatement insertPs, Posting p, Map<Integer, Long> deltas)
+                throws SQLException {
+            BigDecimal amount = BigDecimal.valueOf(p.amountPaise, 2);
+            switch (p.type) {
+                case DEPOSIT -> {
+                    addTransactionRow(insertPs, p.accountNo, "DEPOSIT", amount,
+                            p.memo != null ? p.memo : "Bulk deposit");
+                    deltas.merge(p.accountNo, p.amountPaise, Long::sum);
+                }
+                case WITHDRAWAL -> {
+                    addTransactionRow(insertPs, p.accountNo, "WITHDRAWAL", amount,
+                            p.memo != null ? p.memo : "Bulk withdrawal");
+                    deltas.merge(p.accountNo, -p.amountPaise, Long::sum);
+                }
+                default -> {
+                    addTransactionRow(insertPs, p.accountNo, "TRANSFER_OUT", amount,
+                            p.memo != null ? p.memo : "Transfer to account " + p.toAccount);
+                    addTransactionRow(insertPs, p.toAccount, "TRANSFER_IN", amount,
+                            p.memo != null ? p.memo : "Transfer from account " + p.accountNo);
+                    deltas.merge(p.accountNo, -p.amountPaise, Long::sum);
+                    deltas.merge(p.toAccount, p.amountPaise, Long::sum);
+                }
+            }
+        }
+
+        private static void recordLive(Posting p) {
+            if (p.type.equals(DEPOSIT) || p.type.equals(WITHDRAWAL)) {
+                LiveStatistics.recordPosting(p.type, p.amountPaise);
+            } else {
+                LiveStatistics.recordPosting("TRANSFER_OUT", p.amountPaise);
+                LiveStatistics.recordPosting("TRANSFER_IN", p.amountPaise);
+            }
+        }
+
+        private static void addTransactionRow(PreparedStatement insertPs, int accountNo, String type,
+                                              BigDecimal amount, String memo) throws SQLException {
+            insertPs.setInt(1, accountNo);
+            insertPs.setString(2, type);
+            insertPs.setBigDecimal(3, amount);
+            insertPs.setString(4, memo);
+            insertPs.addBatch();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        BULK ONBOARDING
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Opens accounts in bulk. PINs are hashed on a pool of worker threads. Each shard's accounts
+     * are then written in one transaction. The accounts rows go in one JDBC batch that returns
+     * the generated keys; sharded deployments reserve a block of numbers instead. The
+     * INITIAL_DEPOSIT transactions, fixed_deposits rows and ACCOUNT_CREATED audit rows follow
+     * in batches of their own. The returned accounts are built from the input and never read
+     * back.
+     */
+    static class AccountOnboarding {
+        private static final String ACCOUNT_SQL = """
+            INSERT INTO accounts (holder_name, account_type, balance, active, pin_hash, last_interest_date,
+                                  failed_login_attempts, locked, daily_limit, last_daily_reset)
+            VALUES (?, ?, ?, TRUE, ?, CURDATE(), 0, FALSE, ?, CURDATE())
+            """;
+        private static final String NUMBERED_ACCOUNT_SQL = """
+            INSERT INTO accounts (holder_name, account_type, balance, active, pin_hash, last_interest_date,
+                                  failed_login_attempts, locked, daily_limit, last_daily_reset, account_no)
+            VALUES (?, ?, ?, TRUE, ?, CURDATE(), 0, FALSE, ?, CURDATE(), ?)
+            """;
+        private static final String TRANSACTION_SQL = """
+            INSERT INTO transactions (account_no, type, amount, memo, txn_time)
+            VALUES (?, 'INITIAL_DEPOSIT', ?, 'Account opening deposit', NOW())
+            """;
+        private static final String FIXED_SQL = """
+            INSERT INTO fixed_deposits (account_no, principal, annual_rate, term_months, start_date, maturity_date, status)
+            VALUES (?, ?, ?, ?, ?, ?, 'ACTIVE')
+            """;
+        private static final String AUDIT_SQL =
+                "INSERT INTO audit_log (event_time, account_no, event_text) VALUES (NOW(), ?, ?)";
+
+        /** Created on first use so deployments that never onboard in bulk never start it */
+        private static final class Hashers {
+            static final ExecutorService POOL = Executors.newFixedThreadPool(ONBOARDING_HASH_THREADS, r -> {
+                Thread thread = new Thread(r, "pin-hash");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * One account to open; lineNo is the source line in file mode, otherwise the position
+         * in the request
+         */
+        static final class Applicant {
+            final long lineNo;
+            final String holderName;
+            final String accountType;
+            final double initialDeposit;
+            final String pin;
+            final int termMonths;
+
+            Applicant(long lineNo, String holderName, String accountType, double initialDeposit, String pin,
+                      int termMonths) {
+                this.lineNo = lineNo;
+                this.holderName = holderName;
+                this.accountType = accountType;
+                this.initialDeposit = initialDeposit;
+                this.pin = pin;
+                this.termMonths = termMonths;
+            }
+        }
+
+        /**
+         * Per applicant, in input order: the opened account, or the reason it was refused
+         */
+        static final class Outcome {
+            final Account[] accounts;
+            final String[] refusals;
+
+            Outcome(int size) {
+                accounts = new Account[size];
+                refusals = new String[size];
+            }
+
+            int opened() {
+                int count = 0;
+                for (Account account : accounts) {
+                    if (account != null) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+
+            int refused() {
+                return accounts.length - opened();
+            }
+        }
+
+        /**
+         * Runs inside a shard's transaction, after its batches and before the commit
+         */
+        interface BeforeCommit {
+            void run(Connection conn, int shard) throws SQLException;
+        }
+
+        /**
+         * SHA-256 PIN hashes for the listed applicants, computed in parallel slices
+         */
+        static String[] hashPins(List<Applicant> applicants, List<Integer> indexes) {
+            String[] hashes = new String[applicants.size()];
+            int slice = Math.max(256, (indexes.size() + ONBOARDING_HASH_THREADS - 1) / ONBOARDING_HASH_THREADS);
+            List<Future<?>> slices = new ArrayList<>();
+            for (int from = 0; from < indexes.size(); from += slice) {
+                List<Integer> part = indexes.subList(from, Math.min(from + slice, indexes.size()));
+                slices.add(Hashers.POOL.submit(() -> {
+                    for (int i : part) {
+                        hashes[i] = SecurityUtil.hashPin(applicants.get(i).pin);
+                    }
+                }));
+            }
+            try {
+                for (Future<?> future : slices) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BankingException(ResultCode.CANCELLED, "Interrupted while hashing PINs.");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("PIN hashing failed", e.getCause());
+            }
+            return hashes;
+        }
+
+        /**
+         * Write one shard's applicants in a single transaction and fill in their accounts. With
+         * ledgerOpens the balance is left at zero and no deposit row is written, because the
+         * ledger engine posts the opening deposit itself.
+         */
+        static void insert(Connection conn, int shard, List<Applicant> applicants, List<Integer> indexes,
+                           String[] hashes, boolean ledgerOpens, Outcome outcome, BeforeCommit beforeCommit)
+                throws SQLException {
+            boolean sharded = DBUtil.isSharded();
+            int firstNo = sharded && !indexes.isEmpty()
+                    ? DBUtil.allocateAccountNos(conn, shard, indexes.size()) : 0;
+            LocalDate today = LocalDate.now();
+            Account[] opened = new Account[indexes.size()];
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement accountPs = sharded ? conn.prepareStatement(NUMBERED_ACCOUNT_SQL)
+                         : conn.prepareStatement(ACCOUNT_SQL, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement transactionPs = conn.prepareStatement(TRANSACTION_SQL);
+                 PreparedStatement fixedPs = conn.prepareStatement(FIXED_SQL);
+                 PreparedStatement auditPs = conn.prepareStatement(AUDIT_SQL)) {
+                for (int k = 0; k < indexes.size(); k++) {
+                    int i = indexes.get(k);
+                    Applicant a = applicants.get(i);
+                    BigDecimal deposit = BigDecimal.valueOf(a.initialDeposit);
+                    BigDecimal dailyLimit = BigDecimal.valueOf(AccountManager.defaultDailyLimit(a.accountType));
+                    accountPs.setString(1, a.holderName);
+                    accountPs.setString(2, a.accountType);
+                    accountPs.setBigDecimal(3, ledgerOpens ? BigDecimal.ZERO : deposit);
+                    accountPs.setString(4, hashes[i]);
+                    accountPs.setBigDecimal(5, dailyLimit);
+                    if (sharded) {
+                        accountPs.setInt(6, firstNo + k * DBUtil.shardCount());
+                    }
+                    accountPs.addBatch();
+                    opened[k] = new Account(0, a.holderName, a.accountType, deposit, true, hashes[i], today, 0,
+                            false, dailyLimit, today);
+                }
+                accountPs.executeBatch();
+
+                if (sharded) {
+                    for (int k = 0; k < opened.length; k++) {
+                        opened[k].setAccountNo(firstNo + k * DBUtil.shardCount());
+                    }
+                } else {
+                    try (ResultSet keys = accountPs.getGeneratedKeys()) {
+                        for (int k = 0; k < opened.length; k++) {
+                            if (!keys.next()) {
+                                throw new SQLException("Driver returned " + k + " generated keys for "
+                                        + opened.length + " accounts");
+                            }
+                            opened[k].setAccountNo(keys.getInt(1));
+                        }
+                    }
+                }
+
+                for (int k = 0; k < opened.length; k++) {
+                    Applicant a = applicants.get(indexes.get(k));
+                    int accountNo = opened[k].getAccountNo();
+                    if (a.accountType.equalsIgnoreCase("Fixed")) {
+                        fixedPs.setInt(1, accountNo);
+                        fixedPs.setBigDecimal(2, opened[k].getBalance());
+                        fixedPs.setDouble(3, FIXED_INTEREST_RATE);
+                        fixedPs.setInt(4, a.termMonths);
+                        fixedPs.setDate(5, Date.valueOf(today));
+                        fixedPs.setDate(6, Date.valueOf(today.plusMonths(a.termMonths)));
+                        fixedPs.addBatch();
+                    }
+                    if (!ledgerOpens && a.initialDeposit > 0) {
+                        transactionPs.setInt(1, accountNo);
+                        transactionPs.setBigDecimal(2, opened[k].getBalance());
+                        transactionPs.addBatch();
+                    }
+                    auditPs.setInt(1, accountNo);
+                    auditPs.setString(2, "ACCOUNT_CREATED | Account " + accountNo + " created for " + a.holderName);
+                    auditPs.addBatch();
+                }
+                fixedPs.executeBatch();
+                transactionPs.executeBatch();
+                auditPs.executeBatch();
+                if (beforeCommit != null) {
+                    beforeCommit.run(conn, shard);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            for (int k = 0; k < opened.length; k++) {
+                outcome.accounts[indexes.get(k)] = opened[k];
+            }
+        }
+    }
+
+    /**
+     * Opens the accounts listed in a file, for migrations. One applicant per line
+     * ('#' lines, blank lines and a header row are skipped; fields may be double-quoted):
+     * <pre>
+     * holder_name,account_type,initial_deposit,pin[,term_months]
+     * "Rao, Priya",Savings,2500.00,4821
+     * Ankit Shah,Fixed,100000,1234,24
+     * </pre>
+     *
+     * <p>Line n goes to shard n mod shardCount(). Each shard's part of a chunk commits together
+     * with that shard's checkpoint row in bulk_post_checkpoints, so a rerun after a failure
+     * opens every line exactly once. Opened accounts are appended to {@code <file>.accounts}
+     * as line,account_no,holder_name, and refused lines to {@code <file>.rejected} with a
+     * "# line N: CODE reason" comment above each.
+     */
+    static class OnboardingJob {
+        private final Path file;
+        private final AccountManager accountManager;
+        private final AuditLogger auditLogger;
+        private final int chunkSize;
+
+        public OnboardingJob(Path file, AccountManager accountManager, AuditLogger auditLogger, int chunkSize) {
+            this.file = file;
+            this.accountManager = accountManager;
+            this.auditLogger = auditLogger;
+            this.chunkSize = Math.max(1, chunkSize);
+        }
+
+        public Result<Map<String, Object>> run() {
+            if (LEDGER_ENABLED) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Bulk onboarding writes accounts directly; stop the ledger engine first.");
+            }
+            long started = System.nanoTime();
+            String fileKey = fileKey();
+            Connection[] connections = new Connection[DBUtil.shardCount()];
+            long opened = 0, refused = 0, lines = 0;
+            try {
+                long fileSize = Files.size(file);
+                long[] committed = new long[connections.length];
+                for (int shard = 0; shard < connections.length; shard++) {
+                    connections[shard] = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS);
+                    committed[shard] = loadCheckpoint(connections[shard], fileKey, fileSize);
+                }
+                long resumeAfter = Arrays.stream(committed).min().orElse(0);
+                if (resumeAfter > 0) {
+                    System.out.printf("Resuming %s after line %d%n", file, resumeAfter);
+                }
+
+                String checkpointSql = """
+                    INSERT INTO bulk_post_checkpoints (file_key, file_size, committed_offset, committed_lines, updated_at)
+                    VALUES (?, ?, 0, ?, NOW())
+                    ON DUPLICATE KEY UPDATE committed_lines = VALUES(committed_lines), updated_at = NOW()
+                    """;
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                     BufferedWriter accounts = Files.newBufferedWriter(file.resolveSibling(file.getFileName() + ".accounts"),
+                             StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                     BufferedWriter rejects = Files.newBufferedWriter(file.resolveSibling(file.getFileName() + ".rejected"),
+                             StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    List<AccountOnboarding.Applicant> chunk = new ArrayList<>(chunkSize);
+                    List<String> malformed = new ArrayList<>();
+                    String line;
+                    boolean eof = false;
+                    while (!eof) {
+                        line = in.readLine();
+                        eof = line == null;
+                        if (!eof) {
+                            lines++;
+                            String trimmed = line.strip();
+                            if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("holder_name")
+                                    || lines <= committed[(int) (lines % connections.length)]) {
+                                continue;
+                            }
+                            try {
+                                chunk.add(parse(lines, trimmed));
+                            } catch (IllegalArgumentException e) {
+                                malformed.add("# line " + lines + ": INVALID_INPUT " + e.getMessage() + "\n" + line);
+                            }
+                        }
+                        if (chunk.size() < chunkSize && !eof) {
+                            continue;
+                        }
+
+                        long chunkEnd = lines;
+                        AccountOnboarding.Outcome outcome = accountManager.openAccounts(chunk, connections,
+                                (conn, shard) -> {
+                                    try (PreparedStatement ps = conn.prepareStatement(checkpointSql)) {
+                                        ps.setString(1, fileKey);
+                                        ps.setLong(2, fileSize);
+                                        ps.setLong(3, chunkEnd);
+                                        ps.executeUpdate();
+                                    }
+                                });
+                        // Written only once the chunk is committed, so a resume never repeats them
+                        for (int i = 0; i < chunk.size(); i++) {
+                            AccountOnboarding.Applicant a = chunk.get(i);
+                            Account account = outcome.accounts[i];
+                            if (account != null) {
+                                accounts.write(a.lineNo + "," + account.getAccountNo() + "," + quote(a.holderName));
+                                accounts.newLine();
+                            } else {
+                                rejects.write("# line " + a.lineNo + ": " + outcome.refusals[i]);
+                                rejects.newLine();
+                                rejects.write(csvLine(a));
+                                rejects.newLine();
+                            }
+                        }
+                        for (String reject : malformed) {
+                            rejects.write(reject);
+                            rejects.newLine();
+                        }
+                        accounts.flush();
+                        rejects.flush();
+                        opened += outcome.opened();
+                        refused += outcome.refused() + malformed.size();
+                        chunk.clear();
+                        malformed.clear();
+                    }
+                }
+            } catch (BankingException e) {
+                return Result.fail(e.getCode(), e.getMessage());
+            } catch (SQLException | IOException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Onboarding stopped after " + opened + " accounts: "
+                        + e.getMessage() + " (rerun to resume from the last committed chunk)");
+            } finally {
+                DBUtil.closeQuietly(connections);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("file", file.toString());
+            report.put("opened", opened);
+            report.put("refused", refused);
+            report.put("lines", lines);
+            report.put("seconds", Math.round(seconds * 100) / 100.0);
+            report.put("accountsPerSecond", Math.round(opened / Math.max(seconds, 0.001)));
+            auditLogger.log("BULK_ONBOARDING", "Opened " + opened + " accounts from " + file.getFileName()
+                    + " (" + refused + " refused)");
+            return Result.ok(report, "Onboarding complete.");
+        }
+
+        private String fileKey() {
+            String key = "onboard:" + file.toAbsolutePath().normalize();
+            return key.length() > 255 ? key.substring(key.length() - 255) : key;
+        }
+
+        /**
+         * The last line this shard committed for the file, or 0
+         */
+        private static long loadCheckpoint(Connection conn, String fileKey, long fileSize) throws SQLException {
+            BulkPostingJob.ensureCheckpointTable(conn);
+            String sql = "SELECT file_size, committed_lines FROM bulk_post_checkpoints WHERE file_key = ?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, fileKey);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next()) {
+                    return 0;
+                }
+                if (rs.getLong("file_size") != fileSize) {
+                    throw new BankingException(ResultCode.INVALID_INPUT,
+                            "File changed since its last partial run; clear its bulk_post_checkpoints rows to start over.");
+                }
+                return rs.getLong("committed_lines");
+            }
+        }
+
+        static AccountOnboarding.Applicant parse(long lineNo, String line) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() < 4 || fields.size() > 5) {
+                throw new IllegalArgumentException("Expected holder_name,account_type,initial_deposit,pin[,term_months]");
+            }
+            try {
+                return new AccountOnboarding.Applicant(lineNo, fields.get(0), fields.get(1),
+                        Double.parseDouble(fields.get(2)), fields.get(3),
+                        fields.size() == 5 ? Integer.parseInt(fields.get(4)) : FIXED_DEFAULT_TERM_MONTHS);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad number: " + e.getMessage());
+            }
+        }
+
+        private static List<String> splitCsv(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = !quoted;
+                    }
+                } else if (c == ',' && !quoted) {
+                    fields.add(field.toString().strip());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString().strip());
+            return fields;
+        }
+
+        private static String quote(String field) {
+            return field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    ? '"' + field.replace("\"", "\"\"") + '"' : field;
+        }
+
+        private static String csvLine(AccountOnboarding.Applicant a) {
+            return quote(a.holderName) + "," + a.accountType + "," + BigDecimal.valueOf(a.initialDeposit).toPlainString() + ","
+                    + a.pin + "," + a.termMonths;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                           REVERSALS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Reverses posted transactions, one or tens of thousands at a time. Originals are chosen
+     * by ID list, time window, memo pattern and/or account (criteria are ANDed). Each gets a
+     * row of the opposite type whose reverse_of points back at it: a DEPOSIT or INTEREST is
+     * undone by a WITHDRAWAL, a WITHDRAWAL by a DEPOSIT, and a transfer leg by the other leg
+     * type. Transfer legs are reversed independently, so undoing a transfer needs both IDs.
+     *
+     * <p>Work is grouped by account and committed in chunks. A chunk locks its accounts in
+     * account order, applies one net balance update per account and inserts the reversal
+     * rows, all as JDBC batches in one transaction. An account whose reversals would take it
+     * below zero (or that is closed) is skipped whole unless allowNegative is set. The unique
+     * index on reverse_of rejects a second reversal of the same row, and selection already
+     * leaves reversed rows out, so a rerun after a failure picks up where it stopped. Reversal
+     * rows do not count against daily limits. A dry run writes nothing and returns the
+     * per-account balance diff instead.
+     */
+    static class ReversalJob {
+        private static final int DIFF_ROWS = 100;
+        private static final int MEMO_REASON_CHARS = 200;
+
+        /**
+         * Which originals to reverse; at least one criterion must be set
+         */
+        static final class Criteria {
+            List<Integer> ids = List.of();
+            LocalDateTime from;
+            LocalDateTime to;
+            String memoPattern;
+            Integer accountNo;
+            Integer shard;
+
+            /**
+             * From CLI options: ids=1,2,3 from=2025-10-07T00:00 to=... memo=%settlement% account=N shard=N
+             */
+            static Criteria fromOptions(Map<String, String> options) {
+                Criteria criteria = new Criteria();
+                String ids = options.get("ids");
+                if (ids != null && !ids.isBlank()) {
+                    criteria.ids = Arrays.stream(ids.split(","))
+                            .map(String::trim)
+                            .map(Integer::valueOf)
+                            .toList();
+                }
+                if (options.containsKey("from")) {
+                    criteria.from = LocalDateTime.parse(options.get("from"));
+                }
+                if (options.containsKey("to")) {
+                    criteria.to = LocalDateTime.parse(options.get("to"));
+                }
+                criteria.memoPattern = options.get("memo");
+                if (options.containsKey("account")) {
+                    criteria.accountNo = Integer.valueOf(options.get("account"));
+                }
+                if (options.containsKey("shard")) {
+                    criteria.shard = Integer.valueOf(options.get("shard"));
+                }
+                return criteria;
+            }
+
+            boolean isEmpty() {
+                return ids.isEmpty() && from == null && to == null && memoPattern == null && accountNo == null;
+            }
+        }
+
+        /**
+         * One row to reverse; amounts are held in paise
+         */
+        private static final class Original {
+            final int id;
+            final int accountNo;
+            final String reversalType;
+            final long amountPaise;
+            final long deltaPaise;
+
+            Original(int id, int accountNo, String type, long amountPaise) {
+                this.id = id;
+                this.accountNo = accountNo;
+                this.reversalType = reversalType(type);
+                this.amountPaise = amountPaise;
+                boolean reversesDebit = type.equals("WITHDRAWAL") || type.equals("TRANSFER_OUT");
+                this.deltaPaise = reversesDebit ? amountPaise : -amountPaise;
+            }
+        }
+
+        private final AuditLogger auditLogger;
+        private final Criteria criteria;
+        private final String reason;
+        private final boolean dryRun;
+        private final boolean allowNegative;
+        private final int chunkSize;
+
+        private long selected, reversed, skipped;
+        private final List<Map<String, Object>> diff = new ArrayList<>();
+        private long diffAccounts;
+
+        public ReversalJob(AuditLogger auditLogger, Criteria criteria, String reason, boolean dryRun,
+                           boolean allowNegative, int chunkSize) {
+            this.auditLogger = auditLogger;
+            this.criteria = criteria;
+            this.reason = reason;
+            this.dryRun = dryRun;
+            this.allowNegative = allowNegative;
+            this.chunkSize = Math.max(1, chunkSize);
+        }
+
+        static String reversalType(String type) {
+            return switch (type) {
+                case "DEPOSIT", "INTEREST" -> "WITHDRAWAL";
+                case "WITHDRAWAL" -> "DEPOSIT";
+                case "TRANSFER_OUT" -> "TRANSFER_IN";
+                case "TRANSFER_IN" -> "TRANSFER_OUT";
+                default -> throw new IllegalArgumentException("Cannot reverse a " + type + " row");
+            };
+        }
+
+        /**
+         * Select, then reverse (or, for a dry run, diff) every matching row that is not
+         * already reversed
+         */
+        public Result<Map<String, Object>> run() {
+            if (criteria.isEmpty()) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "Give at least one of ids=, from=/to=, memo= or account= to select transactions.");
+            }
+            if (LEDGER_ENABLED && !dryRun) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "Reversals write balances directly; stop the ledger engine first.");
+            }
+
+            List<Integer> shardIds = new ArrayList<>();
+            if (criteria.shard != null) {
+                if (criteria.shard < 0 || criteria.shard >= DBUtil.shardCount()) {
+                    return Result.fail(ResultCode.INVALID_INPUT, "No shard " + criteria.shard + ".");
+                }
+                shardIds.add(criteria.shard);
+            } else if (criteria.accountNo != null) {
+                shardIds.add(DBUtil.shardOf(criteria.accountNo));
+            } else if (!criteria.ids.isEmpty() && DBUtil.isSharded()) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "Transaction IDs are per shard; add shard=N or account=N.");
+            } else {
+                for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                    shardIds.add(shard);
+                }
+            }
+
+            long started = System.nanoTime();
+            try {
+                for (int shard : shardIds) {
+                    try (Connection conn = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS)) {
+                        List<Original> originals = select(conn);
+                        selected += originals.size();
+                        reverse(conn, originals);
+                    }
+                }
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Reversal stopped after " + reversed + " rows: "
+                        + e.getMessage() + " (rerun to continue; reversed rows are not selected again)");
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("dryRun", dryRun);
+            report.put("selected", selected);
+            report.put(dryRun ? "reversible" : "reversed", reversed);
+            report.put("skipped", skipped);
+            report.put("seconds", Math.round(seconds * 100) / 100.0);
+            report.put("reversalsPerSecond", Math.round(reversed / Math.max(seconds, 0.001)));
+            if (dryRun) {
+                report.put("accounts", diffAccounts);
+                report.put("diff", diff);
+                if (diffAccounts > diff.size()) {
+                    report.put("diffTruncated", diffAccounts - diff.size());
+                }
+                return Result.ok(report, "Dry run: " + reversed + " of " + selected + " transactions can be reversed.");
+            }
+
+            if (reversed > 0) {
+                Integer auditAccount = criteria.accountNo;
+                auditLogger.log("BULK_REVERSAL", "Reversed " + reversed + " transactions (" + skipped + " skipped)"
+                        + (reason != null ? ": " + reason : ""), null, auditAccount);
+            }
+            return Result.ok(report, "Reversed " + reversed + " of " + selected + " transactions.");
+        }
+
+        private List<Original> select(Connection conn) throws SQLException {
+            StringBuilder sql = new StringBuilder("""
+                SELECT t.id, t.account_no, t.type, t.amount
+                FROM transactions t
+                WHERE t.reverse_of IS NULL
+                  AND t.type IN ('DEPOSIT', 'WITHDRAWAL', 'TRANSFER_IN', 'TRANSFER_OUT', 'INTEREST')
+                  AND NOT EXISTS (SELECT 1 FROM transactions r WHERE r.reverse_of = t.id)
+                """);
+            List<Object> params = new ArrayList<>();
+            if (!criteria.ids.isEmpty()) {
+                sql.append("  AND t.id IN (").append(String.join(",", Collections.nCopies(criteria.ids.size(), "?")))
+                        .append(")\n");
+                params.addAll(criteria.ids);
+            }
+            if (criteria.from != null) {
+                sql.append("  AND t.txn_time >= ?\n");
+                params.add(Timestamp.valueOf(criteria.from));
+            }
+            if (criteria.to != null) {
+                sql.append("  AND t.txn_time < ?\n");
+                params.add(Timestamp.valueOf(criteria.to));
+            }
+            if (criteria.memoPattern != null) {
+                sql.append("  AND t.memo LIKE ?\n");
+                params.add(criteria.memoPattern);
+            }
+            if (criteria.accountNo != null) {
+                sql.append("  AND t.account_no = ?\n");
+                params.add(criteria.accountNo);
+            }
+            sql.append("ORDER BY t.account_no, t.id");
+
+            List<Original> originals = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                DBUtil.streamRows(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        originals.add(new Original(rs.getInt("id"), rs.getInt("account_no"), rs.getString("type"),
+                                toPaise(rs.getBigDecimal("amount"))));
+                    }
+                }
+            }
+            return originals;
+        }
+
+        /**
+         * Walk the account-ordered originals in chunks that never split an account
+         */
+        private void reverse(Connection conn, List<Original> originals) throws SQLException {
+            int start = 0;
+            while (start < originals.size()) {
+                int end = Math.min(start + chunkSize, originals.size());
+                while (end < originals.size() && originals.get(end).accountNo == originals.get(end - 1).accountNo) {
+                    end++;
+                }
+                reverseChunk(conn, originals.subList(start, end));
+                start = end;
+            }
+        }
+
+        private void reverseChunk(Connection conn, List<Original> chunk) throws SQLException {
+            Map<Integer, Long> deltas = new TreeMap<>();
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (Original o : chunk) {
+                deltas.merge(o.accountNo, o.deltaPaise, Long::sum);
+                counts.merge(o.accountNo, 1, Integer::sum);
+            }
+
+            String lockSql = "SELECT account_no, balance, active FROM accounts WHERE account_no IN ("
+                    + String.join(",", Collections.nCopies(deltas.size(), "?")) + ") ORDER BY account_no"
+                    + (dryRun ? "" : " FOR UPDATE");
+            String updateSql = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE account_no = ?";
+            String insertSql = """
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time, reverse_of)
+                VALUES (?, ?, ?, ?, NOW(), ?)
+                """;
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement lockPs = conn.prepareStatement(lockSql);
+                 PreparedStatement updatePs = conn.prepareStatement(updateSql);
+                 PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
+
+                int i = 1;
+                for (int accountNo : deltas.keySet()) {
+                    lockPs.setInt(i++, accountNo);
+                }
+                Map<Integer, String> refused = new HashMap<>();
+                try (ResultSet rs = lockPs.executeQuery()) {
+                    while (rs.next()) {
+                        int accountNo = rs.getInt("account_no");
+                        long balance = toPaise(rs.getBigDecimal("balance"));
+                        long delta = deltas.get(accountNo);
+                        String status = "OK";
+                        if (!allowNegative && !rs.getBoolean("active")) {
+                            status = "CLOSED";
+                        } else if (!allowNegative && delta < 0 && balance + delta < 0) {
+                            status = "WOULD_OVERDRAW";
+                        }
+                        if (!status.equals("OK")) {
+                            refused.put(accountNo, status);
+                        }
+                        if (dryRun) {
+                            addDiffRow(accountNo, balance, counts.get(accountNo), delta, status);
+                        }
+                    }
+                }
+
+                int chunkReversed = 0;
+                List<Original> applied = new ArrayList<>();
+                for (Original o : chunk) {
+                    if (refused.containsKey(o.accountNo)) {
+                        skipped++;
+                        continue;
+                    }
+                    chunkReversed++;
+                    applied.add(o);
+                    if (!dryRun) {
+                        insertPs.setInt(1, o.accountNo);
+                        insertPs.setString(2, o.reversalType);
+                        insertPs.setBigDecimal(3, BigDecimal.valueOf(o.amountPaise, 2));
+                        insertPs.setString(4, memo(o.id));
+                        insertPs.setInt(5, o.id);
+                        insertPs.addBatch();
+                    }
+                }
+                if (dryRun) {
+                    conn.rollback();
+                    reversed += chunkReversed;
+                    return;
+                }
+                for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                    if (delta.getValue() != 0 && !refused.containsKey(delta.getKey())) {
+                        updatePs.setBigDecimal(1, BigDecimal.valueOf(delta.getValue(), 2));
+                        updatePs.setInt(2, delta.getKey());
+                        updatePs.addBatch();
+                    }
+                }
+
+                try {
+                    updatePs.executeBatch();
+                    insertPs.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                reversed += chunkReversed;
+                for (Original o : applied) {
+                    LiveStatistics.recordPosting(o.reversalType, o.amountPaise);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        private void addDiffRow(int accountNo, long balancePaise, int reversals, long deltaPaise, String status) {
+            diffAccounts++;
+            if (diff.size() < DIFF_ROWS) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("accountNo", accountNo);
+                row.put("balance", BigDecimal.valueOf(balancePaise, 2));
+                row.put("reversals", reversals);
+                row.put("delta", BigDecimal.valueOf(deltaPaise, 2));
+                row.put("newBalance", BigDecimal.valueOf(balancePaise + deltaPaise, 2));
+                row.put("status", status);
+                diff.add(row);
+            }
+        }
+
+        private String memo(int originalId) {
+            if (reason == null || reason.isBlank()) {
+                return "Reversal of #" + originalId;
+            }
+            String text = reason.length() > MEMO_REASON_CHARS ? reason.substring(0, MEMO_REASON_CHARS) : reason;
+            return "Reversal of #" + originalId + ": " + text;
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                         FIXED DEPOSITS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Term deposits held on "Fixed" accounts. The opening deposit is the principal and stays
+     * on the account until maturity. Interest accrues daily as simple interest on the
+     * principal (actual days / 365, rounded to the paisa) and is paid in one credit when the
+     * deposit matures or is withdrawn early. An early withdrawal earns the rate less
+     * FIXED_EARLY_PENALTY_RATE for the days actually held. Once settled, the account works
+     * like a savings account.
+     */
+    static class FixedDeposits {
+
+        /**
+         * One fixed_deposits row; amounts are held in paise
+         */
+        static final class Deposit {
+            final int accountNo;
+            final long principalPaise;
+            final double annualRate;
+            final int termMonths;
+            final LocalDate startDate;
+            final LocalDate maturityDate;
+            final String status;
+            final LocalDate settledDate;
+            final long interestPaidPaise;
+
+            Deposit(ResultSet rs) throws SQLException {
+                this.accountNo = rs.getInt("account_no");
+                this.principalPaise = toPaise(rs.getBigDecimal("principal"));
+                this.annualRate = rs.getDouble("annual_rate");
+                this.termMonths = rs.getInt("term_months");
+                this.startDate = rs.getDate("start_date").toLocalDate();
+                this.maturityDate = rs.getDate("maturity_date").toLocalDate();
+                this.status = rs.getString("status");
+                Date settled = rs.getDate("settled_date");
+                this.settledDate = settled != null ? settled.toLocalDate() : null;
+                BigDecimal paid = rs.getBigDecimal("interest_paid");
+                this.interestPaidPaise = paid != null ? toPaise(paid) : 0;
+            }
+
+            boolean isActive() { return "ACTIVE".equals(status); }
+
+            boolean isMatured(LocalDate asOf) { return !asOf.isBefore(maturityDate); }
+
+            /**
+             * Interest accrued by the end of asOf at the full rate, capped at maturity
+             */
+            long accruedPaise(LocalDate asOf) {
+                return interestPaise(annualRate, daysHeld(asOf));
+            }
+
+            /**
+             * What settling on asOf pays: full interest at maturity, penalised interest before it
+             */
+            long payoutPaise(LocalDate asOf) {
+                double rate = isMatured(asOf) ? annualRate : Math.max(0, annualRate - FIXED_EARLY_PENALTY_RATE);
+                return interestPaise(rate, daysHeld(asOf));
+            }
+
+            private long daysHeld(LocalDate asOf) {
+                LocalDate end = asOf.isAfter(maturityDate) ? maturityDate : asOf;
+                return Math.max(0, ChronoUnit.DAYS.between(startDate, end));
+            }
+
+            private long interestPaise(double rate, long days) {
+                return BigDecimal.valueOf(principalPaise)
+                        .multiply(BigDecimal.valueOf(rate))
+                        .multiply(BigDecimal.valueOf(days))
+                        .divide(BigDecimal.valueOf(365), 0, RoundingMode.HALF_UP)
+                        .longValueExact();
+            }
+        }
+
+        static final String SELECT_SQL = """
+            SELECT account_no, principal, annual_rate, term_months, start_date, maturity_date,
+                   status, settled_date, interest_paid
+            FROM fixed_deposits
+            """;
+
+        /**
+         * Record the deposit for a newly opened Fixed account
+         */
+        static void open(Connection conn, int accountNo, BigDecimal principal, int termMonths) throws SQLException {
+            String sql = """
+                INSERT INTO fixed_deposits (account_no, principal, annual_rate, term_months, start_date, maturity_date, status)
+                VALUES (?, ?, ?, ?, ?, ?, 'ACTIVE')
+                """;
+            LocalDate today = LocalDate.now();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, accountNo);
+                ps.setBigDecimal(2, principal);
+                ps.setDouble(3, FIXED_INTEREST_RATE);
+                ps.setInt(4, termMonths);
+                ps.setDate(5, Date.valueOf(today));
+                ps.setDate(6, Date.valueOf(today.plusMonths(termMonths)));
+                ps.executeUpdate();
+            }
+        }
+
+        static Deposit find(int accountNo) throws SQLException {
+            try (Connection conn = DBUtil.getConnection(accountNo)) {
+                return find(conn, accountNo, false);
+            }
+        }
+
+        static Deposit find(Connection conn, int accountNo, boolean forUpdate) throws SQLException {
+            String sql = SELECT_SQL + "WHERE account_no = ?" + (forUpdate ? " FOR UPDATE" : "");
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, accountNo);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? new Deposit(rs) : null;
+                }
+            }
+        }
+
+        static boolean isFixed(Account account) {
+            return "Fixed".equalsIgnoreCase(account.getAccountType());
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    /**
+     * Pays out every active fixed deposit that has matured by a given date. Due deposits
+     * are found through the (status, maturity_date) index, split into chunks, and the chunks
+     * are settled in parallel, each in one transaction with JDBC batches: lock the rows
+     * still ACTIVE, mark them MATURED, credit the interest and write the INTEREST and audit
+     * rows. A deposit withdrawn early or settled by an overlapping run is no longer ACTIVE
+     * when its chunk locks it, so it is skipped, and a rerun after a failure picks up only
+     * what is still due.
+     */
+    static class FixedDepositMaturityJob {
+        private final AuditLogger auditLogger;
+        private final LocalDate asOf;
+        private final int threads;
+        private final int chunkSize;
+
+        private final LongAdder matured = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder interestPaise = new LongAdder();
+
+        public FixedDepositMaturityJob(AuditLogger auditLogger, LocalDate asOf, int threads, int chunkSize) {
+            this.auditLogger = auditLogger;
+            this.asOf = asOf;
+            this.threads = Math.max(1, threads);
+            this.chunkSize = Math.max(1, chunkSize);
+        }
+
+        public Result<Map<String, Object>> run() {
+            if (LEDGER_ENABLED) {
+                return Result.fail(ResultCode.INVALID_INPUT,
+                        "Maturity processing writes balances directly; stop the ledger engine first.");
+            }
+
+            long started = System.nanoTime();
+            long due = 0;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> chunks = new ArrayList<>();
+                for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                    List<Integer> accounts = selectDue(shard);
+                    due += accounts.size();
+                    for (int start = 0; start < accounts.size(); start += chunkSize) {
+                        int owner = shard;
+                        List<Integer> chunk = accounts.subList(start, Math.min(start + chunkSize, accounts.size()));
+                        chunks.add(executor.submit(() -> {
+                            settleChunk(owner, chunk);
+                            return null;
+                        }));
+                    }
+                }
+                SQLException failure = null;
+                for (Future<?> chunk : chunks) {
+                    try {
+                        chunk.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause() instanceof SQLException sql ? sql : new SQLException(e.getCause());
+                        }
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            } catch (SQLException e) {
+                logRun();
+                return Result.fail(ResultCode.DB_ERROR, "Maturity run stopped after " + matured.sum()
+                        + " deposits: " + e.getMessage() + " (rerun to settle the rest)");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logRun();
+                return Result.fail(ResultCode.CANCELLED, "Maturity run interrupted after " + matured.sum() + " deposits.");
+            } finally {
+                executor.shutdownNow();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("asOf", asOf.toString());
+            report.put("due", due);
+            report.put("matured", matured.sum());
+            report.put("skipped", skipped.sum());
+            report.put("interestPaid", BigDecimal.valueOf(interestPaise.sum(), 2));
+            report.put("threads", threads);
+            report.put("seconds", Math.round(seconds * 100) / 100.0);
+            report.put("depositsPerSecond", Math.round(matured.sum() / Math.max(seconds, 0.001)));
+            logRun();
+            return Result.ok(report, "Matured " + matured.sum() + " of " + due + " due fixed deposits.");
+        }
+
+        private void logRun() {
+            if (matured.sum() > 0) {
+                auditLogger.log("FIXED_DEPOSIT_MATURITY", "Matured " + matured.sum() + " fixed deposits due by "
+                        + asOf + " (₹" + BigDecimal.valueOf(interestPaise.sum(), 2) + " interest)");
+            }
+        }
+
+        private List<Integer> selectDue(int shard) throws SQLException {
+            String sql = """
+                SELECT account_no FROM fixed_deposits
+                WHERE status = 'ACTIVE' AND maturity_date <= ?
+                ORDER BY maturity_date, account_no
+                """;
+            List<Integer> accounts = new ArrayList<>();
+            try (Connection conn = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setDate(1, Date.valueOf(asOf));
+                DBUtil.streamRows(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        accounts.add(rs.getInt(1));
+                    }
+                }
+            }
+            return accounts;
+        }
+
+        private void settleChunk(int shard, List<Integer> accounts) throws SQLException {
+            // Lock by primary key alone; status and maturity are re-checked on the locked rows
+            String lockSql = FixedDeposits.SELECT_SQL + "WHERE account_no IN ("
+                    + String.join(",", Collections.nCopies(accounts.size(), "?")) + ") ORDER BY account_no FOR UPDATE";
+            String settleSql = "UPDATE fixed_deposits SET status = 'MATURED', settled_date = ?, interest_paid = ? WHERE account_no = ?";
+            String creditSql = "UPDATE accounts SET balance = balance + ?, last_interest_date = ? WHERE account_no = ?";
+            String insertSql = """
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time)
+                VALUES (?, 'INTEREST', ?, 'Fixed deposit interest at maturity', ?)
+                """;
+            String auditSql = "INSERT INTO audit_log (event_time, user_id, account_no, event_text) VALUES (?, NULL, ?, ?)";
+
+            try (Connection conn = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS)) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement lockPs = conn.prepareStatement(lockSql);
+                     PreparedStatement settlePs = conn.prepareStatement(settleSql);
+                     PreparedStatement creditPs = conn.prepareStatement(creditSql);
+                     PreparedStatement insertPs = conn.prepareStatement(insertSql);
+                     PreparedStatement auditPs = conn.prepareStatement(auditSql)) {
+
+                    int i = 1;
+                    for (int accountNo : accounts) {
+                        lockPs.setInt(i++, accountNo);
+                    }
+                    List<FixedDeposits.Deposit> deposits = new ArrayList<>();
+                    try (ResultSet rs = lockPs.executeQuery()) {
+                        while (rs.next()) {
+                            FixedDeposits.Deposit deposit = new FixedDeposits.Deposit(rs);
+                            if (deposit.isActive() && deposit.isMatured(asOf)) {
+                                deposits.add(deposit);
+                            }
+                        }
+                    }
+
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    long chunkInterest = 0;
+                    for (FixedDeposits.Deposit deposit : deposits) {
+                        long interest = deposit.payoutPaise(asOf);
+                        BigDecimal amount = BigDecimal.valueOf(interest, 2);
+                        chunkInterest += interest;
+
+                        settlePs.setDate(1, Date.valueOf(asOf));
+                        settlePs.setBigDecimal(2, amount);
+                        settlePs.setInt(3, deposit.accountNo);
+                        settlePs.addBatch();
+                        auditPs.setTimestamp(1, now);
+                        auditPs.setInt(2, deposit.accountNo);
+                        auditPs.setString(3, "FIXED_DEPOSIT_MATURED | ₹" + BigDecimal.valueOf(deposit.principalPaise, 2)
+                                + " fixed deposit on account " + deposit.accountNo + " matured with ₹" + amount + " interest");
+                        auditPs.addBatch();
+                        if (interest > 0) {
+                            creditPs.setBigDecimal(1, amount);
+                            creditPs.setDate(2, Date.valueOf(asOf));
+                            creditPs.setInt(3, deposit.accountNo);
+                            creditPs.addBatch();
+                            insertPs.setInt(1, deposit.accountNo);
+                            insertPs.setBigDecimal(2, amount);
+                            insertPs.setTimestamp(3, now);
+                            insertPs.addBatch();
+                        }
+                    }
+
+                    try {
+                        settlePs.executeBatch();
+                        creditPs.executeBatch();
+                        insertPs.executeBatch();
+                        auditPs.executeBatch();
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+
+                    matured.add(deposits.size());
+                    skipped.add(accounts.size() - deposits.size());
+                    interestPaise.add(chunkInterest);
+                    for (FixedDeposits.Deposit deposit : deposits) {
+                        long interest = deposit.payoutPaise(asOf);
+                        if (interest > 0) {
+                            LiveStatistics.recordPosting("INTEREST", interest);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                        INTEREST ACCRUAL
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Daily interest accrual and the monthly pass that pays it out. The accrual run walks
+     * each shard in account-number ranges. It loads a range into primitive columns, computes
+     * each account's interest for the days since its last accrual in a single loop, and adds
+     * it to the running total in interest_accruals. The posting pass credits whole paise of what has accrued and
+     * carries the remainder.
+     *
+     * <p>Everything is integer arithmetic. Balances are in paise, annual rates in parts per
+     * million, and accruals in micro-paise (10^-6 paisa). A day adds
+     * floor(balance * rate / 365) micro-paise, and a run that catches up n missed days adds
+     * n times that. The same balances therefore always give the same totals, whatever the
+     * order or batching. Rounding never creates money, because the posting pass pays
+     * floor(accrued / 10^6) paise and keeps the rest.
+     *
+     * <p>With -Dbanking.interest.dailyAccrual=true these jobs replace the interest that is
+     * otherwise credited at login. Run --accrue-interest once a day and --post-interest
+     * once a month.
+     */
+    static class InterestAccrualJob {
+        static final long MICROS_PER_PAISA = 1_000_000;
+
+        private final AuditLogger auditLogger;
+        private final LocalDate day;
+        private final int rangeSize;
+
+        private long accounts, accrued, credited, computeNanos;
+        private long accruedMicros;
+
+        public InterestAccrualJob(AuditLogger auditLogger, LocalDate day, int rangeSize) {
+            this.auditLogger = auditLogger;
+            this.day = day;
+            this.rangeSize = Math.max(1, rangeSize);
+        }
+
+        /**
+         * One range of accounts held column-wise
+         */
+        static final class Columns {
+            final int[] accountNo;
+            final long[] balancePaise;
+            final long[] ratePpm;
+            final long[] days;
+            final long[] accruedMicros; // this run's accrual
+            final long[] lastAccrued;   // epoch day of the last accrual, -1 for none
+            int size;
+
+            Columns(int capacity) {
+                accountNo = new int[capacity];
+                balancePaise = new long[capacity];
+                ratePpm = new long[capacity];
+                days = new long[capacity];
+                accruedMicros = new long[capacity];
+                lastAccrued = new long[capacity];
+            }
+        }
+
+        /**
+         * Annual rate in parts per million for an account type, matching calculateMonthlyInterest
+         */
+        static long ratePpm(String accountType) {
+            double rate = switch (accountType.toLowerCase()) {
+                case "checking" -> CHECKING_INTEREST_RATE;
+                case "business" -> BUSINESS_INTEREST_RATE;
+                default -> SAVINGS_INTEREST_RATE;
+            };
+            return Math.round(rate * 1_000_000);
+        }
+
+        /**
+         * Compute each account's accrual for its missed days. Overdrawn balances accrue nothing.
+         * Straight-line and branch-free, so the JIT can unroll it
+         */
+        static void accrue(Columns c) {
+            long[] balance = c.balancePaise;
+            long[] rate = c.ratePpm;
+            long[] days = c.days;
+            long[] accrued = c.accruedMicros;
+            for (int i = 0; i < c.size; i++) {
+                accrued[i] = Math.max(balance[i], 0) * rate[i] / 365 * days[i];
+            }
+        }
+
+        /**
+         * Accrue every active account up to and including day
+         */
+        public Result<Map<String, Object>> accrue() {
+            if (LEDGER_ENABLED) {
+                return Result.fail(ResultCode.INVALID_INPUT, "The ledger engine pays its own interest; stop it first.");
+            }
+            long started = System.nanoTime();
+            try {
+                for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                    try (Connection conn = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS)) {
+                        accrueShard(conn);
+                    }
+                }
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Accrual stopped after " + accounts + " accounts: "
+                        + e.getMessage() + " (rerun to continue; accrued days are not added again)");
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("day", day.toString());
+            report.put("accounts", accounts);
+            report.put("accrued", accrued);
+            report.put("interestAccrued", BigDecimal.valueOf(accruedMicros / MICROS_PER_PAISA, 2));
+            report.put("computeMillis", Math.round(computeNanos / 1e4) / 100.0);
+            report.put("seconds", Math.round(seconds * 100) / 100.0);
+            report.put("accountsPerSecond", Math.round(accounts / Math.max(seconds, 0.001)));
+            auditLogger.log("INTEREST_ACCRUED", "Accrued interest for " + accrued + " accounts through " + day);
+            return Result.ok(report, "Accrued interest for " + accrued + " of " + accounts + " accounts.");
+        }
+
+        private void accrueShard(Connection conn) throws SQLException {
+            String boundsSql = "SELECT MIN(account_no), MAX(account_no) FROM accounts";
+            // Running fixed deposits earn their own rate and are left out
+            String loadSql = """
+                SELECT a.account_no, a.balance, a.account_type, i.accrued_through
+                FROM accounts a
+                LEFT JOIN interest_accruals i ON i.account_no = a.account_no
+                LEFT JOIN fixed_deposits f ON f.account_no = a.account_no AND f.status = 'ACTIVE'
+                WHERE a.account_no >= ? AND a.account_no < ? AND a.active = TRUE AND f.account_no IS NULL
+                """;
+            String insertSql = "INSERT INTO interest_accruals (account_no, accrued_micros, accrued_through) VALUES (?, ?, ?)";
+            // Matching the date read keeps an overlapping run from adding the same days twice
+            String updateSql = """
+                UPDATE interest_accruals SET accrued_micros = accrued_micros + ?, accrued_through = ?
+                WHERE account_no = ? AND accrued_through = ?
+                """;
+
+            long low, high;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(boundsSql)) {
+                rs.next();
+                low = rs.getLong(1);
+                high = rs.getLong(2);
+                if (rs.wasNull()) {
+                    return;
+                }
+            }
+
+            Columns columns = new Columns(rangeSize);
+            Date through = Date.valueOf(day);
+            conn.setAutoCommit(false);
+            try (PreparedStatement loadPs = conn.prepareStatement(loadSql);
+                 PreparedStatement insertPs = conn.prepareStatement(insertSql);
+                 PreparedStatement updatePs = conn.prepareStatement(updateSql)) {
+                for (long start = low; start <= high; start += rangeSize) {
+                    columns.size = 0;
+                    loadPs.setLong(1, start);
+                    loadPs.setLong(2, Math.min(start + rangeSize, high + 1));
+                    try (ResultSet rs = loadPs.executeQuery()) {
+                        while (rs.next()) {
+                            int i = columns.size++;
+                            columns.accountNo[i] = rs.getInt(1);
+                            columns.balancePaise[i] = toPaise(rs.getBigDecimal(2));
+                            columns.ratePpm[i] = ratePpm(rs.getString(3));
+                            Date last = rs.getDate(4);
+                            columns.lastAccrued[i] = last == null ? -1 : last.toLocalDate().toEpochDay();
+                            columns.days[i] = last == null ? 1 : Math.max(0, day.toEpochDay() - columns.lastAccrued[i]);
+                        }
+                    }
+
+                    long computeStarted = System.nanoTime();
+                    accrue(columns);
+                    computeNanos += System.nanoTime() - computeStarted;
+
+                    for (int i = 0; i < columns.size; i++) {
+                        if (columns.days[i] == 0) {
+                            continue;
+                        }
+                        if (columns.lastAccrued[i] < 0) {
+                            insertPs.setInt(1, columns.accountNo[i]);
+                            insertPs.setLong(2, columns.accruedMicros[i]);
+                            insertPs.setDate(3, through);
+                            insertPs.addBatch();
+                        } else {
+                            updatePs.setLong(1, columns.accruedMicros[i]);
+                            updatePs.setDate(2, through);
+                            updatePs.setInt(3, columns.accountNo[i]);
+                            updatePs.setDate(4, Date.valueOf(LocalDate.ofEpochDay(columns.lastAccrued[i])));
+                            updatePs.addBatch();
+                        }
+                        accrued++;
+                        accruedMicros += columns.accruedMicros[i];
+                    }
+                    insertPs.executeBatch();
+                    updatePs.executeBatch();
+                    conn.commit();
+                    accounts += columns.size;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        /**
+         * Credit the whole paise accrued on every account, as of day
+         */
+        public Result<Map<String, Object>> post() {
+            if (LEDGER_ENABLED) {
+                return Result.fail(ResultCode.INVALID_INPUT, "The ledger engine pays its own interest; stop it first.");
+            }
+            long started = System.nanoTime();
+            long postedPaise = 0;
+            try {
+                for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                    try (Connection conn = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS)) {
+                        postedPaise += postShard(conn);
+                    }
+                }
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Interest posting stopped after " + credited + " accounts: "
+                        + e.getMessage() + " (rerun to continue; paid interest is not paid again)");
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("day", day.toString());
+            report.put("credited", credited);
+            report.put("interestPaid", BigDecimal.valueOf(postedPaise, 2));
+            report.put("seconds", Math.round(seconds * 100) / 100.0);
+            report.put("creditsPerSecond", Math.round(credited / Math.max(seconds, 0.001)));
+            if (credited > 0) {
+                auditLogger.log("INTEREST_POSTED", "Credited ₹" + BigDecimal.valueOf(postedPaise, 2)
+                        + " accrued interest to " + credited + " accounts");
+            }
+            return Result.ok(report, "Credited accrued interest to " + credited + " accounts.");
+        }
+
+        private long postShard(Connection conn) throws SQLException {
+            String dueSql = "SELECT account_no FROM interest_accruals WHERE accrued_micros >= ? ORDER BY account_no";
+            List<Integer> due = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(dueSql)) {
+                ps.setLong(1, MICROS_PER_PAISA);
+                DBUtil.streamRows(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        due.add(rs.getInt(1));
+                    }
+                }
+            }
+
+            long postedPaise = 0;
+            for (int start = 0; start < due.size(); start += BULK_CHUNK_ROWS) {
+                postedPaise += postChunk(conn, due.subList(start, Math.min(start + BULK_CHUNK_ROWS, due.size())));
+            }
+            return postedPaise;
+        }
+
+        private long postChunk(Connection conn, List<Integer> chunk) throws SQLException {
+            String lockSql = "SELECT account_no, accrued_micros FROM interest_accruals WHERE account_no IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ") ORDER BY account_no FOR UPDATE";
+            String carrySql = "UPDATE interest_accruals SET accrued_micros = accrued_micros - ?, last_posted = ? WHERE account_no = ?";
+            String creditSql = "UPDATE accounts SET balance = balance + ?, last_interest_date = ? WHERE account_no = ?";
+            String insertSql = """
+                INSERT INTO transactions (account_no, type, amount, memo, txn_time)
+                VALUES (?, 'INTEREST', ?, 'Monthly interest credit', ?)
+                """;
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement lockPs = conn.prepareStatement(lockSql);
+                 PreparedStatement carryPs = conn.prepareStatement(carrySql);
+                 PreparedStatement creditPs = conn.prepareStatement(creditSql);
+                 PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
+
+                int i = 1;
+                for (int accountNo : chunk) {
+                    lockPs.setInt(i++, accountNo);
+                }
+                Date postedOn = Date.valueOf(day);
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                long chunkPaise = 0;
+                List<Long> payments = new ArrayList<>();
+                try (ResultSet rs = lockPs.executeQuery()) {
+                    while (rs.next()) {
+                        long paise = rs.getLong("accrued_micros") / MICROS_PER_PAISA;
+                        if (paise <= 0) {
+                            continue;
+                        }
+                        int accountNo = rs.getInt("account_no");
+                        BigDecimal amount = BigDecimal.valueOf(paise, 2);
+                        carryPs.setLong(1, paise * MICROS_PER_PAISA);
+                        carryPs.setDate(2, postedOn);
+                        carryPs.setInt(3, accountNo);
+                        carryPs.addBatch();
+                        creditPs.setBigDecimal(1, amount);
+                        creditPs.setDate(2, postedOn);
+                        creditPs.setInt(3, accountNo);
+                        creditPs.addBatch();
+                        insertPs.setInt(1, accountNo);
+                        insertPs.setBigDecimal(2, amount);
+                        insertPs.setTimestamp(3, now);
+                        insertPs.addBatch();
+                        chunkPaise += paise;
+                        payments.add(paise);
+                    }
+                }
+
+                try {
+                    carryPs.executeBatch();
+                    creditPs.executeBatch();
+                    insertPs.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                credited += payments.size();
+                for (long paise : payments) {
+                    LiveStatistics.recordPosting("INTEREST", paise);
+                }
+                return chunkPaise;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                       MONTHLY STATEMENTS
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Writes every account's statement for one month as a text file and a CSV file, under
+     * &lt;dir&gt;/&lt;yyyy-MM&gt;/&lt;account_no / 1000&gt;/. Each shard is cut into account-number ranges, which
+     * run in parallel on a pool of workers. A worker reads its range in one repeatable-read
+     * transaction. The first query loads each account with the net of everything posted since
+     * the month began, which gives the opening balance. The second streams the month's rows in
+     * (account_no, txn_time, id) order, and each row is rendered as it arrives. A worker holds
+     * one range of account columns and two fixed output buffers, so its memory does not grow
+     * with the number of transactions. Output goes through FileChannels.
+     *
+     * <p>Inactive accounts with no activity in the month get no statement. A rerun overwrites
+     * the files.
+     */
+    static class StatementRun {
+        private static final int WIDTH = 112;
+        private static final String DOUBLE_RULE = "═".repeat(WIDTH);
+        private static final String RULE = "─".repeat(WIDTH);
+        private static final String COLUMNS = String.format("%-20s %-8s %-16s %-24s %12s %12s %14s",
+                "Date/Time", "Txn", "Type", "Description", "Debit", "Credit", "Balance");
+        private static final DateTimeFormatter MONTH_FMT = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
+        private static final DateTimeFormatter CSV_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        private final AuditLogger auditLogger;
+        private final YearMonth month;
+        private final Path directory;
+        private final int threads;
+        private final boolean text;
+        private final boolean csv;
+
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder openingPaise = new LongAdder();
+        private final LongAdder closingPaise = new LongAdder();
+
+        public StatementRun(AuditLogger auditLogger, YearMonth month, Path directory, int threads, String format) {
+            this.auditLogger = auditLogger;
+            this.month = month;
+            this.directory = directory.resolve(month.toString());
+            this.threads = Math.max(1, threads);
+            this.text = !"csv".equalsIgnoreCase(format);
+            this.csv = !"text".equalsIgnoreCase(format);
+        }
+
+        /**
+         * One range of accounts held column-wise, with the month's running totals
+         */
+        static final class Columns {
+            final int[] accountNo;
+            final String[] holderName;
+            final String[] accountType;
+            final long[] openingPaise;
+            final boolean[] active;
+            int size;
+
+            Columns(int capacity) {
+                accountNo = new int[capacity];
+                holderName = new String[capacity];
+                accountType = new String[capacity];
+                openingPaise = new long[capacity];
+                active = new boolean[capacity];
+            }
+        }
+
+        /**
+         * Buffered UTF-8 output to one file at a time; the buffers are reused for every file
+         */
+        static final class FileOut {
+            private final StringBuilder text = new StringBuilder(16 * 1024);
+            private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+            private FileChannel channel;
+            private long written;
+
+            void open(Path file) throws IOException {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            }
+
+            StringBuilder line() {
+                return text;
+            }
+
+            /** Call after each complete line, so flushing never splits a character */
+            void endLine() throws IOException {
+                text.append('\n');
+                if (text.length() >= 12 * 1024) {
+                    flush();
+                }
+            }
+
+            long close() throws IOException {
+                flush();
+                channel.close();
+                channel = null;
+                long size = written;
+                written = 0;
+                return size;
+            }
+
+            private void flush() throws IOException {
+                CharBuffer in = CharBuffer.wrap(text);
+                encoder.reset();
+                while (true) {
+                    CoderResult result = encoder.encode(in, buffer, true);
+                    if (result.isUnderflow()) {
+                        encoder.flush(buffer);
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer);
+                    }
+                    buffer.clear();
+                    if (result.isUnderflow()) {
+                        break;
+                    }
+                }
+                text.setLength(0);
+            }
+        }
+
+        public Result<Map<String, Object>> run() {
+            long started = System.nanoTime();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            ThreadLocal<FileOut[]> outputs = ThreadLocal.withInitial(() -> new FileOut[]{new FileOut(), new FileOut()});
+            ThreadLocal<Columns> columns = ThreadLocal.withInitial(() -> new Columns(STATEMENT_RANGE_ACCOUNTS));
+            try {
+                Files.createDirectories(directory);
+                List<Future<?>> ranges = new ArrayList<>();
+                for (int shard = 0; shard < DBUtil.shardCount(); shard++) {
+                    long[] bounds = bounds(shard);
+                    for (long start = bounds[0]; start <= bounds[1]; start += STATEMENT_RANGE_ACCOUNTS) {
+                        int owner = shard;
+                        long low = start;
+                        long high = Math.min(start + STATEMENT_RANGE_ACCOUNTS, bounds[1] + 1);
+                        ranges.add(executor.submit(() -> {
+                            writeRange(owner, low, high, columns.get(), outputs.get());
+                            return null;
+                        }));
+                    }
+                }
+                Throwable failure = null;
+                for (Future<?> range : ranges) {
+                    try {
+                        range.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                    }
+                }
+                if (failure instanceof SQLException sql) {
+                    throw sql;
+                } else if (failure instanceof IOException io) {
+                    throw io;
+                } else if (failure != null) {
+                    throw new IllegalStateException(failure);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.fail(ResultCode.CANCELLED, "Statement run interrupted after " + statements.sum()
+                        + " statements.");
+            } catch (SQLException e) {
+                return Result.fail(ResultCode.DB_ERROR, "Statement run stopped after " + statements.sum()
+                        + " statements: " + e.getMessage() + " (rerun to rewrite them all)");
+            } catch (IOException e) {
+                return Result.fail(ResultCode.INVALID_INPUT, "Could not write statements to " + directory + ": "
+                        + e.getMessage());
+            } finally {
+                executor.shutdownNow();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("month", month.toString());
+            report.put("directory", directory.toAbsolutePath().toString());
+            report.put("statements", statements.sum());
+            report.put("transactions", rows.sum());
+            report.put("openingTotal", BigDecimal.valueOf(openingPaise.sum(), 2));
+            report.put("closingTotal", BigDecimal.valueOf(closingPaise.sum(), 2));
+            report.put("megabytes", Math.round(bytes.sum() / 1e4) / 100.0);
+            report.put("threads", threads);
+            report.put("seconds", Math.round(seconds * 100) / 100.0);
+            report.put("statementsPerSecond", Math.round(statements.sum() / Math.max(seconds, 0.001)));
+            auditLogger.log("STATEMENTS_GENERATED", "Wrote " + statements.sum() + " statements for " + month);
+            return Result.ok(report, "Wrote " + statements.sum() + " statements for " + month + ".");
+        }
+
+        private static long[] bounds(int shard) throws SQLException {
+            try (Connection conn = DBUtil.getShardConnection(shard);
+                 Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT MIN(account_no), MAX(account_no) FROM accounts")) {
+                rs.next();
+                long low = rs.getLong(1);
+                long high = rs.getLong(2);
+                return rs.wasNull() ? new long[]{1, 0} : new long[]{low, high};
+            }
+        }
+
+        private void writeRange(int shard, long low, long high, Columns columns, FileOut[] out)
+                throws SQLException, IOException {
+            // Net of everything posted since the month began; balance minus this is the opening balance
+            String accountsSql = """
+                SELECT a.account_no, a.holder_name, a.account_type, a.balance, a.active,
+                       COALESCE(SUM(CASE WHEN t.type IN ('WITHDRAWAL', 'TRANSFER_OUT') THEN -t.amount
+                                         ELSE t.amount END), 0) AS since_start
+                FROM accounts a
+                LEFT JOIN transactions t ON t.account_no = a.account_no AND t.txn_time >= ?
+                WHERE a.account_no >= ? AND a.account_no < ?
+                GROUP BY a.account_no, a.holder_name, a.account_type, a.balance, a.active
+                ORDER BY a.account_no
+                """;
+            String rowsSql = """
+                SELECT account_no, id, type, amount, memo, txn_time, reverse_of FROM transactions
+                WHERE account_no >= ? AND account_no < ? AND txn_time >= ? AND txn_time < ?
+                ORDER BY account_no, txn_time, id
+                """;
+            Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+            Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+
+            try (Connection conn = DBUtil.openDedicated(shard, BULK_JDBC_PARAMS)) {
+                // Both queries read the same snapshot, so postings during the run cannot skew the balances
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                conn.setAutoCommit(false);
+                columns.size = 0;
+                try (PreparedStatement ps = conn.prepareStatement(accountsSql)) {
+                    ps.setTimestamp(1, from);
+                    ps.setLong(2, low);
+                    ps.setLong(3, high);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            int i = columns.size++;
+                            columns.accountNo[i] = rs.getInt(1);
+                            columns.holderName[i] = rs.getString(2);
+                            columns.accountType[i] = rs.getString(3);
+                            columns.openingPaise[i] = toPaise(rs.getBigDecimal(4)) - toPaise(rs.getBigDecimal(6));
+                            columns.active[i] = rs.getBoolean(5);
+                        }
+                    }
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(rowsSql)) {
+                    DBUtil.streamRows(ps);
+                    ps.setLong(1, low);
+                    ps.setLong(2, high);
+                    ps.setTimestamp(3, from);
+                    ps.setTimestamp(4, to);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        boolean more = rs.next();
+                        for (int i = 0; i < columns.size; i++) {
+                            int accountNo = columns.accountNo[i];
+                            boolean activity = more && rs.getInt(1) == accountNo;
+                            if (!activity && !columns.active[i]) {
+                                continue;
+                            }
+                            long balance = columns.openingPaise[i];
+                            long debits = 0, credits = 0;
+                            int count = 0;
+                            begin(out, columns, i);
+                            while (more && rs.getInt(1) == accountNo) {
+                                long paise = toPaise(rs.getBigDecimal(4));
+                                String type = rs.getString(3);
+                                boolean debit = "WITHDRAWAL".equals(type) || "TRANSFER_OUT".equals(type);
+                                balance += debit ? -paise : paise;
+                                if (debit) {
+                                    debits += paise;
+                                } else {
+                                    credits += paise;
+                                }
+                                int reverseOf = rs.getInt(7); // 0 when NULL
+                                line(out, rs.getTimestamp(6).toLocalDateTime(), rs.getInt(2), type,
+                                        rs.getString(5), reverseOf, debit ? paise : 0, debit ? 0 : paise, balance);
+                                count++;
+                                more = rs.next();
+                            }
+                            end(out, columns.openingPaise[i], debits, credits, balance, count);
+                            statements.increment();
+                            rows.add(count);
+                            openingPaise.add(columns.openingPaise[i]);
+                            closingPaise.add(balance);
+                        }
+                    }
+                }
+                conn.commit();
+            }
+        }
+
+        private void begin(FileOut[] out, Columns columns, int i) throws IOException {
+            int accountNo = columns.accountNo[i];
+            Path folder = directory.resolve(Integer.toString(accountNo / 1000));
+            Files.createDirectories(folder);
+            if (text) {
+                out[0].open(folder.resolve(accountNo + ".txt"));
+                StringBuilder sb = out[0].line();
+                sb.append(DOUBLE_RULE);
+                out[0].endLine();
+                sb.append("MONTHLY STATEMENT  ").append(month.format(MONTH_FMT));
+                out[0].endLine();
+                sb.append("Account: ").append(accountNo).append(" | ").append(columns.holderName[i])
+                        .append(" | ").append(columns.accountType[i]);
+                out[0].endLine();
+                sb.append("Period : ").append(month.atDay(1)).append(" to ").append(month.atEndOfMonth());
+                out[0].endLine();
+                sb.append(DOUBLE_RULE);
+                out[0].endLine();
+                sb.append(COLUMNS);
+                out[0].endLine();
+                sb.append(RULE);
+                out[0].endLine();
+                pad(sb, "Opening balance", WIDTH - 14);
+                amount(sb, columns.openingPaise[i], 14);
+                out[0].endLine();
+            }
+            if (csv) {
+                out[1].open(folder.resolve(accountNo + ".csv"));
+                StringBuilder sb = out[1].line();
+                sb.append("date_time,txn_id,type,description,debit,credit,balance");
+                out[1].endLine();
+                sb.append(",,OPENING,,,,");
+                amount(sb, columns.openingPaise[i], 0);
+                out[1].endLine();
+            }
+        }
+
+        private void line(FileOut[] out, LocalDateTime time, int id, String type, String memo, int reverseOf,
+                          long debit, long credit, long balance) throws IOException {
+            String description = memo == null ? "" : memo;
+            if (reverseOf != 0) {
+                description += " (reversal of #" + reverseOf + ")";
+            }
+            if (text) {
+                StringBuilder sb = out[0].line();
+                pad(sb, time.format(DATE_FMT), 21);
+                pad(sb, "#" + id, 9);
+                pad(sb, type, 17);
+                pad(sb, description.length() > 24 ? description.substring(0, 23) + "…" : description, 25);
+                if (debit != 0) {
+                    amount(sb, debit, 12).append(' ');
+                    pad(sb, "", 13);
+                } else {
+                    pad(sb, "", 13);
+                    amount(sb, credit, 12).append(' ');
+                }
+                amount(sb, balance, 14);
+                out[0].endLine();
+            }
+            if (csv) {
+                StringBuilder sb = out[1].line();
+                sb.append(time.format(CSV_TIME_FMT)).append(',').append(id).append(',').append(type).append(',');
+                if (description.indexOf(',') >= 0 || description.indexOf('"') >= 0) {
+                    sb.append('"').append(description.replace("\"", "\"\"")).append('"');
+                } else {
+                    sb.append(description);
+                }
+                sb.append(',');
+                if (debit != 0) {
+                    amount(sb, debit, 0);
+                }
+                sb.append(',');
+                if (credit != 0) {
+                    amount(sb, credit, 0);
+                }
+                sb.append(',');
+                amount(sb, balance, 0);
+                out[1].endLine();
+            }
+        }
+
+        private void end(FileOut[] out, long opening, long debits, long credits, long closing, int count)
+                throws IOException {
+            if (text) {
+                StringBuilder sb = out[0].line();
+                if (count == 0) {
+                    sb.append("No transactions this month.");
+                    out[0].endLine();
+                }
+                sb.append(RULE);
+                out[0].endLine();
+                pad(sb, count + " transactions", WIDTH - 14 - 13 - 13);
+                amount(sb, debits, 12).append(' ');
+                amount(sb, credits, 12).append(' ');
+                amount(sb, closing, 14);
+                out[0].endLine();
+                sb.append("Opening ₹");
+                amount(sb, opening, 0).append("  -  debits ₹");
+                amount(sb, debits, 0).append("  +  credits ₹");
+                amount(sb, credits, 0).append("  =  closing balance ₹");
+                amount(sb, closing, 0);
+                out[0].endLine();
+                sb.append(DOUBLE_RULE);
+                out[0].endLine();
+                bytes.add(out[0].close());
+            }
+            if (csv) {
+                StringBuilder sb = out[1].line();
+                sb.append(",,CLOSING,,");
+                amount(sb, debits, 0).append(',');
+                amount(sb, credits, 0).append(',');
+                amount(sb, closing, 0);
+                out[1].endLine();
+                bytes.add(out[1].close());
+            }
+        }
+
+        private static void pad(StringBuilder sb, String value, int width) {
+            sb.append(value);
+            for (int i = value.length(); i < width; i++) {
+                sb.append(' ');
+            }
+        }
+
+        /**
+         * Append paise as rupees with two decimals, right-aligned in width (0 for no padding)
+         */
+        static StringBuilder amount(StringBuilder sb, long paise, int width) {
+            long abs = Math.abs(paise);
+            int digits = Long.toString(abs / 100).length() + 3 + (paise < 0 ? 1 : 0);
+            for (int i = digits; i < width; i++) {
+                sb.append(' ');
+            }
+            if (paise < 0) {
+                sb.append('-');
+            }
+            sb.append(abs / 100).append('.');
+            long fraction = abs % 100;
+            if (fraction < 10) {
+                sb.append('0');
+            }
+            return sb.append(fraction);
+        }
+
+        private static long toPaise(BigDecimal amount) {
+            return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                         LOAD GENERATOR
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * End-to-end load harness: thousands of simulated customers (one virtual thread each
+     * where available) drive the real login, deposit, withdraw, transfer and mini-statement
+     * flows through BankingServices. Account choice follows a Zipf distribution and customers
+     * pause for exponentially distributed think times between operations. Latency is
+     * recorded per operation in HDR-style histograms, and the report is printed and can also
+     * be written as JSON for comparing runs.
+     *
+     * <p>Point it at a scratch database (-Dbanking.db.url=..., e.g. an embedded H2 in MySQL
+     * mode) and pass setup=true to create the schema and seed accounts that share one PIN.
+     */
+    static class CustomerLoadGenerator {
+        private static final String[] OPERATIONS = {"login", "deposit", "withdraw", "transfer", "statement"};
+        private static final String DEFAULT_MIX = "login:10,deposit:30,withdraw:20,transfer:15,statement:25";
+
+        private final BankingServices services;
+        private final Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+        private final Map<String, Map<ResultCode, LongAdder>> failures = new LinkedHashMap<>();
+        private final LongAdder deadlocks = new LongAdder();
+        private final LongAdder poolTimeouts = new LongAdder();
+        private final LongAdder exceptions = new LongAdder();
+
+        private int[] accounts;
+        private double[] zipfCdf;
+        private int[] mixCdf;
+        private String pin;
+        private long thinkMillis;
+
+        CustomerLoadGenerator(BankingServices services) {
+            this.services = services;
+            for (String op : OPERATIONS) {
+                latency.put(op, new LatencyHistogram());
+                Map<ResultCode, LongAdder> codes = new EnumMap<>(ResultCode.class);
+                for (ResultCode code : ResultCode.values()) {
+                    codes.put(code, new LongAdder());
+                }
+                failures.put(op, codes);
+            }
+        }
+
+        static void run(Map<String, String> options) throws Exception {
+            if (Boolean.parseBoolean(options.getOrDefault("setup", "false"))) {
+                seed(CliUtil.intOption(options, "accounts", 10_000), options.getOrDefault("pin", "1234"));
+            }
+            CustomerLoadGenerator generator = new CustomerLoadGenerator(new BankingServices());
+            Map<String, Object> report = generator.execute(options);
+
+            String out = options.get("out");
+            if (out != null) {
+                Files.writeString(Paths.get(out), JsonUtil.toJson(report) + "\n", StandardCharsets.UTF_8);
+                System.out.println("✓ Report written to " + out);
+            }
+        }
+
+        private Map<String, Object> execute(Map<String, String> options) throws Exception {
+            int customers = CliUtil.intOption(options, "customers", 1000);
+            int seconds = CliUtil.intOption(options, "seconds", 30);
+            int warmup = CliUtil.intOption(options, "warmup", 5);
+            double zipf = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+            String mix = options.getOrDefault("mix", DEFAULT_MIX);
+            pin = options.getOrDefault("pin", "1234");
+            thinkMillis = CliUtil.intOption(options, "think", 50);
+
+            accounts = loadAccounts(CliUtil.intOption(options, "accounts", 10_000));
+            if (accounts.length < 2) {
+                throw new IllegalStateException("Need at least two active accounts (run with setup=true)");
+            }
+            zipfCdf = zipfCdf(accounts.length, zipf);
+            mixCdf = parseMix(mix);
+
+            System.out.printf("Load: %d customers for %ds (+%ds warmup) over %d accounts, zipf=%.2f, think=%dms%n  mix=%s%n",
+                    customers, seconds, warmup, accounts.length, zipf, thinkMillis, mix);
+
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+            long deadline = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+            ExecutorService executor = ThreadUtil.newThreadPerTaskExecutor("customer");
+            for (int i = 0; i < customers; i++) {
+                executor.execute(() -> session(measureFrom, deadline));
+            }
+            executor.shutdown();
+            executor.awaitTermination(seconds + warmup + 60L, TimeUnit.SECONDS);
+
+            Map<String, Object> report = report(customers, seconds, zipf, mix);
+            printReport(report);
+            return report;
+        }
+
+        /**
+         * One customer: pick an operation and an account, run it, think, repeat
+         */
+        private void session(long measureFrom, long deadline) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                String op = OPERATIONS[pick(mixCdf, random.nextInt(mixCdf[mixCdf.length - 1]))];
+                int accountNo = accounts[pickAccount(random)];
+
+                long begin = System.nanoTime();
+                Result<?> result;
+                try {
+                    result = perform(op, accountNo, random);
+                } catch (RuntimeException | AssertionError e) {
+                    // AssertionError: round-trip budget exceeded (-Dbanking.db.enforceRoundTripBudgets=true)
+                    result = null;
+                }
+                long end = System.nanoTime();
+
+                if (begin >= measureFrom && end <= deadline) {
+                    latency.get(op).record(end - begin);
+                    if (result == null) {
+                        exceptions.increment();
+                    } else if (!result.isSuccess()) {
+                        failures.get(op).get(result.getCode()).increment();
+                        String message = result.getMessage();
+                        if (message != null && (message.contains("Deadlock") || message.contains("deadlock")
+                                || message.contains("Lock wait timeout"))) {
+                            deadlocks.increment();
+                        } else if (message != null && message.contains("pooled database connection")) {
+                            poolTimeouts.increment();
+                        }
+                    }
+                }
+
+                if (thinkMillis > 0) {
+                    try {
+                        // Exponential think time with the configured mean
+                        Thread.sleep((long) (-thinkMillis * Math.log(1.0 - random.nextDouble())));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private Result<?> perform(String op, int accountNo, ThreadLocalRandom random) {
+            AccountManager accountManager = services.getAccountManager();
+            return switch (op) {
+                case "login" -> services.login(accountNo, pin);
+                case "deposit" -> accountManager.deposit(accountNo, random.nextInt(100, 5000));
+                case "withdraw" -> accountManager.withdraw(accountNo, random.nextInt(100, 2000));
+                case "transfer" -> {
+                    int toAccount = accounts[pickAccount(random)];
+                    yield toAccount == accountNo
+                            ? accountManager.getTransactionHistory(accountNo, MINI_STATEMENT_SIZE)
+                            : accountManager.transfer(accountNo, toAccount, random.nextInt(100, 2000));
+                }
+                default -> accountManager.getTransactionHistory(accountNo, MINI_STATEMENT_SIZE);
+            };
+        }
+
+        private int pickAccount(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(zipfCdf, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, zipfCdf.length - 1);
+        }
+
+        private static int pick(int[] cdf, int value) {
+            for (int i = 0; i < cdf.length; i++) {
+                if (value < cdf[i]) return i;
+            }
+            return cdf.length - 1;
+        }
+
+        /**
+         * Cumulative weights for OPERATIONS from "op:weight,..." (missing operations weigh 0)
+         */
+        private static int[] parseMix(String mix) {
+            int[] weights = new int[OPERATIONS.length];
+            for (String part : mix.split(",")) {
+                String[] kv = part.split(":");
+                int index = Arrays.asList(OPERATIONS).indexOf(kv[0].strip().toLowerCase());
+                if (index < 0 || kv.length != 2) {
+                    throw new IllegalArgumentException("Bad mix entry '" + part + "'; operations are "
+                            + String.join(", ", OPERATIONS));
+                }
+                weights[index] = Integer.parseInt(kv[1].strip());
+            }
+            int[] cdf = new int[weights.length];
+            int total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                total += weights[i];
+                cdf[i] = total;
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("Operation mix has no weight");
+            }
+            return cdf;
+        }
+
+        /**
+         * Normalised CDF of a Zipf distribution over n ranks; s = 0 is uniform
+         */
+        private static double[] zipfCdf(int n, double s) {
+            double[] cdf = new double[n];
+            double sum = 0;
+            for (int rank = 0; rank < n; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, s);
+                cdf[rank] = sum;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cdf[rank] /= sum;
+            }
+            return cdf;
+        }
+
+        private static int[] loadAccounts(int limit) throws SQLException {
+            String sql = "SELECT account_no FROM accounts WHERE active = TRUE AND locked = FALSE ORDER BY account_no LIMIT ?";
+            try (Connection conn = DBUtil.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, limit);
+                ResultSet rs = ps.executeQuery();
+                List<Integer> ids = new ArrayList<>();
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+                return ids.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        /**
+         * Create the schema if needed and top the database up to the requested number of accounts
+         */
+        private static void seed(int count, String pin) throws SQLException {
+            String insertSql = """
+                INSERT INTO accounts (holder_name, account_type, balance, active, pin_hash,
+                                    last_interest_date, failed_login_attempts, locked,
+                                    daily_limit, last_daily_reset)
+                VALUES (?, 'Savings', ?, TRUE, ?, CURDATE(), 0, FALSE, ?, CURDATE())
+                """;
+
+            try (Connection conn = DBUtil.getConnection()) {
+                DBUtil.ensureSchema(conn);
+
+                int existing;
+                try (Statement st = conn.createStatement()) {
+                    ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM accounts");
+                    existing = rs.next() ? rs.getInt(1) : 0;
+                }
+
+                conn.setAutoCommit(false);
+                String pinHash = SecurityUtil.hashPin(pin);
+                try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
+                    for (int i = existing; i < count; i++) {
+                        ps.setString(1, "Load Customer " + (i + 1));
+                        ps.setBigDecimal(2, BigDecimal.valueOf(100_000));
+                        ps.setString(3, pinHash);
+                        ps.setBigDecimal(4, BigDecimal.valueOf(DEFAULT_SAVINGS_LIMIT));
+                        ps.addBatch();
+                        if ((i - existing + 1) % 1000 == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                }
+                System.out.println("✓ Seeded " + Math.max(0, count - existing) + " accounts (pin " + pin + ")");
+            }
+        }
+
+        private Map<String, Object> report(int customers, int seconds, double zipf, String mix) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("customers", customers);
+            report.put("seconds", seconds);
+            report.put("accounts", accounts.length);
+            report.put("zipf", zipf);
+            report.put("thinkMillis", thinkMillis);
+            report.put("mix", mix);
+
+            LatencyHistogram all = new LatencyHistogram();
+            Map<String, Object> operations = new LinkedHashMap<>();
+            for (String op : OPERATIONS) {
+                LatencyHistogram histogram = latency.get(op);
+                all.add(histogram);
+                operations.put(op, histogramReport(histogram, seconds, failures.get(op)));
+            }
+            report.put("total", histogramReport(all, seconds, null));
+            report.put("operations", operations);
+            report.put("deadlocks", deadlocks.sum());
+            report.put("poolTimeouts", poolTimeouts.sum());
+            report.put("exceptions", exceptions.sum());
+            return report;
+        }
+
+        private static Map<String, Object> histogramReport(LatencyHistogram histogram, int seconds,
+                                                           Map<ResultCode, LongAdder> codes) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("count", histogram.getCount());
+            row.put("throughput", Math.round(histogram.getCount() / (double) seconds * 10) / 10.0);
+            row.put("meanMicros", Math.round(histogram.getMeanNanos() / 1e3));
+            row.put("p50Micros", histogram.percentile(50) / 1000);
+            row.put("p95Micros", histogram.percentile(95) / 1000);
+            row.put("p99Micros", histogram.percentile(99) / 1000);
+            row.put("p999Micros", histogram.percentile(99.9) / 1000);
+            row.put("maxMicros", histogram.getMaxNanos() / 1000);
+            if (codes != null) {
+                Map<String, Object> failed = new LinkedHashMap<>();
+                codes.forEach((code, count) -> {
+                    if (count.sum() > 0) failed.put(code.name(), count.sum());
+                });
+                row.put("failures", failed);
+            }
+            return row;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static void printReport(Map<String, Object> report) {
+            System.out.printf("%n%-10s %10s %10s %10s %10s %10s %10s %10s  %s%n",
+                    "Operation", "ops/s", "p50 µs", "p95 µs", "p99 µs", "p999 µs", "max µs", "count", "failures");
+            Map<String, Object> operations = (Map<String, Object>) report.get("operations");
+            operations.forEach((op, value) -> printRow(op, (Map<String, Object>) value));
+            printRow("total", (Map<String, Object>) report.get("total"));
+            System.out.println("Deadlocks/lock timeouts: " + report.get("deadlocks")
+                    + "  Pool timeouts: " + report.get("poolTimeouts")
+                    + "  Unexpected exceptions: " + report.get("exceptions"));
+        }
+
+        private static void printRow(String name, Map<String, Object> row) {
+            System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s  %s%n", name, row.get("throughput"),
+                    row.get("p50Micros"), row.get("p95Micros"), row.get("p99Micros"), row.get("p999Micros"),
+                    row.get("maxMicros"), row.get("count"), row.getOrDefault("failures", ""));
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    //                          REPLAY TOOL
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Re-drives a recorded time window of production traffic against a copy of the schema.
+     * Deposits, withdrawals and transfers are rebuilt from the transactions table (a transfer
+     * is its TRANSFER_OUT row), and logins come from USER_LOGIN_SUCCESS audit events.
+     * Events can also be exported to, and later read from, a CSV file. Replay runs through
+     * AccountManager at 1x, Nx or max speed. Each account's events stay in recorded order on
+     * one lane, while different accounts run in parallel. Afterwards each account's balance
+     * change is compared with the recorded net postings.
+     *
+     * <p>PINs are not recoverable from the hashes, so a replayed login does the account
+     * lookup, one PIN hash and the audit write. Interest and other derived rows (INTEREST,
+     * INITIAL_DEPOSIT, reversals) are not replayed. They are reported as skipped and left
+     * out of the balance comparison.
+     */
+    static class ReplayTool {
+
+        private static final class ReplayEvent {
+            final LocalDateTime time;
+            final String op;
+            final int accountNo;
+            final int toAccount;
+            final BigDecimal amount;
+
+            ReplayEvent(LocalDateTime time, String op, int accountNo, int toAccount, BigDecimal amount) {
+                this.time = time;
+                this.op = op;
+                this.accountNo = accountNo;
+                this.toAccount = toAccount;
+                this.amount = amount;
             }
         }
 
-        private void processDeposit(int accountNo) {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("            DEPOSIT MONEY");
-            System.out.println("═══════════════════════════════════════");
-
-            double amount = InputUtil.getDouble("Enter deposit amount: ₹");
-
-            if (amount <= 0) {
-                System.out.println("Invalid amount. Deposit cancelled.");
+        static void run(Map<String, String> options) throws Exception {
+            LocalDateTime from = options.containsKey("from")
+                    ? LocalDateTime.parse(options.get("from")) : LocalDate.now().atStartOfDay();
+            LocalDateTime to = options.containsKey("to") ? LocalDateTime.parse(options.get("to")) : LocalDateTime.now();
+            String speed = options.getOrDefault("speed", "max");
+            int lanes = CliUtil.intOption(options, "lanes", 64);
+
+            Map<String, Long> skipped = new TreeMap<>();
+            List<ReplayEvent> events = options.containsKey("file")
+                    ? readFile(Paths.get(options.get("file")))
+                    : readRecorded(options, from, to, skipped);
+            System.out.printf("Replay: %d events from %s (skipped %s)%n", events.size(),
+                    options.getOrDefault("file", from + " .. " + to), skipped);
+
+            if (options.containsKey("export")) {
+                writeFile(Paths.get(options.get("export")), events);
+                System.out.println("✓ Exported to " + options.get("export"));
+                return;
+            }
+            if (events.isEmpty()) {
                 return;
             }
 
-            String confirmation = InputUtil.getString("Confirm deposit of ₹" + amount + "? (yes/no): ");
-
-            if ("yes".equalsIgnoreCase(confirmation)) {
-                if (accountManager.deposit(accountNo, amount)) {
-                    System.out.println("✓ Deposit successful!");
-                    showAccountBalance(accountNo);
-                } else {
-                    System.out.println("✗ Deposit failed. Please try again.");
-                }
-            } else {
-                System.out.println("Deposit cancelled.");
+            BankingServices services = new BankingServices();
+            Map<Integer, BigDecimal> before = loadBalances();
+            Map<String, LatencyHistogram> latency = new TreeMap<>();
+            Map<ResultCode, LongAdder> failures = new ConcurrentHashMap<>();
+
+            double factor = speed.equalsIgnoreCase("max") ? 0 : Double.parseDouble(speed.replace("x", ""));
+            long elapsed = replay(services, events, lanes, factor, latency, failures);
+            Map<Integer, BigDecimal> after = loadBalances();
+
+            double seconds = elapsed / 1e9;
+            System.out.printf("%nReplayed %d events in %.2fs at speed %s: %.0f events/s%n",
+                    events.size(), seconds, speed, events.size() / Math.max(seconds, 0.001));
+            latency.forEach((op, histogram) -> System.out.printf("  %-9s %s%n", op, histogram.summary()));
+            if (!failures.isEmpty()) {
+                System.out.println("  Failed calls: " + failures);
             }
+            compare(events, before, after);
         }
 
-        private void processWithdrawal(int accountNo) {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("           WITHDRAW MONEY");
-            System.out.println("═══════════════════════════════════════");
+        /**
+         * Rebuild calls from the transactions table and login audit events of a time window
+         */
+        private static List<ReplayEvent> readRecorded(Map<String, String> options, LocalDateTime from, LocalDateTime to,
+                                                      Map<String, Long> skipped) throws SQLException {
+            String txnSql = """
+                SELECT id, account_no, type, amount, memo, txn_time, reverse_of
+                FROM transactions
+                WHERE txn_time >= ? AND txn_time < ?
+                ORDER BY id
+                """;
+            String loginSql = """
+                SELECT event_time, account_no
+                FROM audit_log
+                WHERE event_time >= ? AND event_time < ? AND account_no IS NOT NULL
+                AND event_text LIKE 'USER_LOGIN_SUCCESS%'
+                ORDER BY id
+                """;
 
-            showAccountBalance(accountNo);
+            String sourceUrl = options.get("sourceUrl");
+            List<ReplayEvent> events = new ArrayList<>();
+            try (Connection conn = sourceUrl != null
+                    ? DriverManager.getConnection(sourceUrl, options.getOrDefault("sourceUser", DB_USER),
+                                                  options.getOrDefault("sourcePassword", DB_PASS))
+                    : DBUtil.getConnection()) {
 
-            double amount = InputUtil.getDouble("Enter withdrawal amount: ₹");
+                // Keep TRANSFER_IN rows by id so transfers with custom memos can be paired with id + 1
+                Map<Integer, Integer> transferInAccount = new HashMap<>();
+                List<Object[]> transferOuts = new ArrayList<>();
 
-            if (amount <= 0) {
-                System.out.println("Invalid amount. Withdrawal cancelled.");
-                return;
-            }
+                // A source copied before reversals existed has no reverse_of column
+                if (!hasReverseOf(conn)) {
+                    txnSql = txnSql.replace("txn_time, reverse_of", "txn_time, NULL AS reverse_of");
+                }
+                try (PreparedStatement ps = conn.prepareStatement(txnSql)) {
+                    ps.setTimestamp(1, Timestamp.valueOf(from));
+                    ps.setTimestamp(2, Timestamp.valueOf(to));
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        String type = rs.getString("type");
+                        if (rs.getObject("reverse_of") != null) {
+                            // Reversals use the ordinary posting types but are not customer calls
+                            skipped.merge(type + " (reversal)", 1L, Long::sum);
+                            continue;
+                        }
+                        LocalDateTime time = rs.getTimestamp("txn_time").toLocalDateTime();
+                        int accountNo = rs.getInt("account_no");
+                        BigDecimal amount = rs.getBigDecimal("amount");
+                        switch (type) {
+                            case "DEPOSIT" -> events.add(new ReplayEvent(time, "deposit", accountNo, 0, amount));
+                            case "WITHDRAWAL" -> events.add(new ReplayEvent(time, "withdraw", accountNo, 0, amount));
+                            case "TRANSFER_OUT" -> transferOuts.add(new Object[]{
+                                    rs.getInt("id"), time, accountNo, amount, rs.getString("memo")});
+                            case "TRANSFER_IN" -> transferInAccount.put(rs.getInt("id"), accountNo);
+                            default -> skipped.merge(type, 1L, Long::sum);
+                        }
+                    }
+                }
 
-            String confirmation = InputUtil.getString("Confirm withdrawal of ₹" + amount + "? (yes/no): ");
+                for (Object[] out : transferOuts) {
+                    int toAccount = transferTarget((String) out[4], transferInAccount.get((Integer) out[0] + 1));
+                    if (toAccount > 0) {
+                        events.add(new ReplayEvent((LocalDateTime) out[1], "transfer", (Integer) out[2],
+                                toAccount, (BigDecimal) out[3]));
+                    } else {
+                        skipped.merge("TRANSFER_OUT (unpaired)", 1L, Long::sum);
+                    }
+                }
 
-            if ("yes".equalsIgnoreCase(confirmation)) {
-                if (accountManager.withdraw(accountNo, amount)) {
-                    System.out.println("✓ Withdrawal successful!");
-                    showAccountBalance(accountNo);
-                } else {
-                    System.out.println("✗ Withdrawal failed. Please check your balance and daily limit.");
+                try (PreparedStatement ps = conn.prepareStatement(loginSql)) {
+                    ps.setTimestamp(1, Timestamp.valueOf(from));
+                    ps.setTimestamp(2, Timestamp.valueOf(to));
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        events.add(new ReplayEvent(rs.getTimestamp("event_time").toLocalDateTime(), "login",
+                                rs.getInt("account_no"), 0, BigDecimal.ZERO));
+                    }
                 }
-            } else {
-                System.out.println("Withdrawal cancelled.");
             }
+
+            events.sort(Comparator.comparing(e -> e.time)); // stable: ties keep id order
+            return events;
         }
 
-        private void processTransfer(int accountNo) {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("           TRANSFER MONEY");
-            System.out.println("═══════════════════════════════════════");
+        private static boolean hasReverseOf(Connection conn) {
+            try (Statement st = conn.createStatement()) {
+                st.executeQuery("SELECT reverse_of FROM transactions WHERE 1 = 0").close();
+                return true;
+            } catch (SQLException missing) {
+                return false;
+            }
+        }
 
-            showAccountBalance(accountNo);
+        private static int transferTarget(String memo, Integer nextInAccount) {
+            String prefix = "Transfer to account ";
+            if (memo != null && memo.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(memo.substring(prefix.length()).strip());
+                } catch (NumberFormatException ignored) {
+                    // custom memo, fall through to the paired TRANSFER_IN row
+                }
+            }
+            return nextInAccount != null ? nextInAccount : 0;
+        }
 
-            int toAccount = InputUtil.getInt("Enter destination account number: ");
+        private static void writeFile(Path file, List<ReplayEvent> events) throws IOException {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("time,op,account_no,to_account,amount");
+                out.newLine();
+                for (ReplayEvent e : events) {
+                    out.write(e.time + "," + e.op + "," + e.accountNo + "," + e.toAccount + ","
+                            + e.amount.toPlainString());
+                    out.newLine();
+                }
+            }
+        }
 
-            if (toAccount == accountNo) {
-                System.out.println("Cannot transfer to the same account.");
-                return;
+        private static List<ReplayEvent> readFile(Path file) throws IOException {
+            List<ReplayEvent> events = new ArrayList<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank() || line.startsWith("time,")) {
+                    continue;
+                }
+                String[] f = line.split(",");
+                events.add(new ReplayEvent(LocalDateTime.parse(f[0]), f[1], Integer.parseInt(f[2]),
+                        Integer.parseInt(f[3]), new BigDecimal(f[4])));
             }
+            return events;
+        }
 
-            // Verify destination account exists
-            Account destAccount = accountManager.findAccount(toAccount);
-            if (destAccount == null) {
-                System.out.println("Destination account not found.");
-                return;
+        /**
+         * Returns the wall-clock nanoseconds the replay took
+         */
+        private static long replay(BankingServices services, List<ReplayEvent> events, int lanes, double speed,
+                                   Map<String, LatencyHistogram> latency, Map<ResultCode, LongAdder> failures)
+                throws InterruptedException {
+            for (String op : List.of("login", "deposit", "withdraw", "transfer")) {
+                latency.put(op, new LatencyHistogram());
             }
 
-            System.out.println("Destination: " + destAccount.getHolderName() +
-                    " (Account: " + toAccount + ")");
+            ExecutorService[] executors = new ExecutorService[lanes];
+            for (int i = 0; i < lanes; i++) {
+                String name = "replay-lane-" + i;
+                executors[i] = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
 
-            double amount = InputUtil.getDouble("Enter transfer amount: ₹");
+            LocalDateTime origin = events.get(0).time;
+            long start = System.nanoTime();
+            for (ReplayEvent event : events) {
+                long due = speed > 0
+                        ? start + (long) (Duration.between(origin, event.time).toNanos() / speed) : start;
+                executors[Math.floorMod(event.accountNo, lanes)].execute(() -> {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    long begin = System.nanoTime();
+                    ResultCode code = perform(services, event);
+                    latency.get(event.op).record(System.nanoTime() - begin);
+                    if (code != ResultCode.OK) {
+                        failures.computeIfAbsent(code, c -> new LongAdder()).increment();
+                    }
+                });
+            }
 
-            if (amount <= 0) {
-                System.out.println("Invalid amount. Transfer cancelled.");
-                return;
+            for (ExecutorService executor : executors) {
+                executor.shutdown();
+            }
+            for (ExecutorService executor : executors) {
+                executor.awaitTermination(1, TimeUnit.DAYS);
             }
+            return System.nanoTime() - start;
+        }
 
-            String confirmation = InputUtil.getString(
-                    "Confirm transfer of ₹" + amount + " to " + destAccount.getHolderName() +
-                            " (Account: " + toAccount + ")? (yes/no): ");
+        private static ResultCode perform(BankingServices services, ReplayEvent event) {
+            AccountManager accountManager = services.getAccountManager();
+            double amount = event.amount.doubleValue();
+            Result<?> result = switch (event.op) {
+                case "deposit" -> accountManager.deposit(event.accountNo, amount);
+                case "withdraw" -> accountManager.withdraw(event.accountNo, amount);
+                case "transfer" -> accountManager.transfer(event.accountNo, event.toAccount, amount);
+                default -> {
+                    Account account = accountManager.findAccount(event.accountNo);
+                    if (account == null) {
+                        yield Result.fail(ResultCode.ACCOUNT_NOT_FOUND, "Account not found.");
+                    }
+                    SecurityUtil.hashPin("0000");
+                    services.getAuditLogger().log("USER_LOGIN_SUCCESS", "User logged in (replay)", null, event.accountNo);
+                    yield Result.ok(account, null);
+                }
+            };
+            return result.getCode();
+        }
 
-            if ("yes".equalsIgnoreCase(confirmation)) {
-                if (accountManager.transfer(accountNo, toAccount, amount)) {
-                    System.out.println("✓ Transfer successful!");
-                    showAccountBalance(accountNo);
-                } else {
-                    System.out.println("✗ Transfer failed. Please check your balance and daily limit.");
+        private static Map<Integer, BigDecimal> loadBalances() throws SQLException {
+            Map<Integer, BigDecimal> balances = new HashMap<>();
+            try (Connection conn = DBUtil.getConnection();
+                 Statement st = conn.createStatement()) {
+                ResultSet rs = st.executeQuery("SELECT account_no, balance FROM accounts");
+                while (rs.next()) {
+                    balances.put(rs.getInt(1), rs.getBigDecimal(2));
                 }
-            } else {
-                System.out.println("Transfer cancelled.");
             }
+            return balances;
         }
 
-        private void showTransactionHistory(int accountNo) {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("        TRANSACTION HISTORY");
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("1. Last 10 transactions");
-            System.out.println("2. Last 25 transactions");
-            System.out.println("3. Last 50 transactions");
+        /**
+         * Compare each account's balance change with the net of its recorded postings
+         */
+        private static void compare(List<ReplayEvent> events, Map<Integer, BigDecimal> before,
+                                    Map<Integer, BigDecimal> after) {
+            Map<Integer, BigDecimal> expected = new TreeMap<>();
+            for (ReplayEvent e : events) {
+                switch (e.op) {
+                    case "deposit" -> expected.merge(e.accountNo, e.amount, BigDecimal::add);
+                    case "withdraw" -> expected.merge(e.accountNo, e.amount.negate(), BigDecimal::add);
+                    case "transfer" -> {
+                        expected.merge(e.accountNo, e.amount.negate(), BigDecimal::add);
+                        expected.merge(e.toAccount, e.amount, BigDecimal::add);
+                    }
+                    default -> expected.putIfAbsent(e.accountNo, BigDecimal.ZERO);
+                }
+            }
 
-            int choice = InputUtil.getInt("Choose option: ");
-            int limit = switch (choice) {
-                case 1 -> 10;
-                case 2 -> 25;
-                case 3 -> 50;
-                default -> 10;
-            };
-            /*
-             * Author: Samruddha Belsare
-             * Updated: 07-Oct-2025
-             */
-            accountManager.showTransactionHistory(accountNo, limit);
+            BigDecimal tolerance = new BigDecimal("0.005");
+            int divergent = 0;
+            for (Map.Entry<Integer, BigDecimal> entry : expected.entrySet()) {
+                int accountNo = entry.getKey();
+                BigDecimal start = before.getOrDefault(accountNo, BigDecimal.ZERO);
+                BigDecimal actual = after.getOrDefault(accountNo, BigDecimal.ZERO).subtract(start);
+                if (actual.subtract(entry.getValue()).abs().compareTo(tolerance) > 0) {
+                    if (divergent++ < 20) {
+                        System.out.printf("  ✗ account %-8d expected %s, replay %s (start %s)%n", accountNo,
+                                entry.getValue().setScale(2, RoundingMode.HALF_UP),
+                                actual.setScale(2, RoundingMode.HALF_UP), start.setScale(2, RoundingMode.HALF_UP));
+                    }
+                }
+            }
+            System.out.printf("%s %d of %d accounts diverged from the recorded postings%n",
+                    divergent == 0 ? "✓" : "✗", divergent, expected.size());
         }
+    }
 
-        private void manageScheduledTransactions(int accountNo) {
-            while (true) {
-                System.out.println("\n═══════════════════════════════════════");
-                System.out.println("       SCHEDULED TRANSACTIONS");
-                System.out.println("═══════════════════════════════════════");
-                System.out.println("1. View Pending Scheduled Transactions");
-                System.out.println("2. Schedule New Transaction");
-                System.out.println("3. Cancel Scheduled Transaction");
-                System.out.println("4. Back to Main Menu");
+    // ═══════════════════════════════════════════════════════════════
+    //                           MAIN METHOD
+    // ═══════════════════════════════════════════════════════════════
 
-                int choice = InputUtil.getInt("Choose option: ");
+    /**
+     * Application entry point
+     */
+    public static void main(String[] args) {
+        List<String> flags = Arrays.asList(args);
+        boolean serve = flags.contains("--serve");
+        boolean terminal = flags.contains("--terminal");
 
-                switch (choice) {
-                    case 1 -> scheduledManager.viewPendingScheduledTransactions(accountNo);
-                    case 2 -> scheduleNewTransaction(accountNo);
-                    case 3 -> cancelScheduledTransaction(accountNo);
-                    case 4 -> { return; }
-                    default -> System.out.println("Invalid option.");
-                }
+        if (flags.contains("--terminal-load")) {
+            try {
+                TerminalLoadClient.run(CliUtil.parseOptions(args));
+            } catch (Exception e) {
+                System.err.println("✗ Load run failed: " + e.getMessage());
             }
+            return;
         }
 
-        private void scheduleNewTransaction(int accountNo) {
-            System.out.println("\n═══════════════════════════════════════");
-            System.out.println("       SCHEDULE NEW TRANSACTION");
-            System.out.println("═══════════════════════════════════════");
-            System.out.println("1. Schedule Deposit");
-            System.out.println("2. Schedule Withdrawal");
+        int jfrSummary = flags.indexOf("--jfr-summary");
+        if (jfrSummary >= 0 && jfrSummary + 1 < args.length) {
+            try {
+                JfrAnalyzer.run(Paths.get(args[jfrSummary + 1]));
+            } catch (IOException e) {
+                System.err.println("✗ Could not read recording: " + e.getMessage());
+            }
+            return;
+        }
 
-            int type = InputUtil.getInt("Choose transaction type: ");
-            String txnType;
+        if (flags.contains("--check-round-trips")) {
+            int failures;
+            try {
+                failures = RoundTripCheck.run();
+            } catch (SQLException e) {
+                System.err.println("✗ Round-trip check failed: " + e.getMessage());
+                failures = 1;
+            } finally {
+                DBUtil.shutdown();
+            }
+            if (failures > 0) {
+                System.out.println("✗ " + failures + " operations over their round-trip budget");
+                System.exit(1);
+            }
+            System.out.println("✓ All operations within their round-trip budgets");
+            return;
+        }
 
-            switch (type) {
-                case 1 -> txnType = "DEPOSIT";
-                case 2 -> txnType = "WITHDRAWAL";
-                default -> {
-                    System.out.println("Invalid type.");
-                    return;
+        if (flags.contains("--check-concurrency")) {
+            int failures;
+            try {
+                failures = ConcurrencyCheck.run();
+            } catch (Exception e) {
+                System.err.println("✗ Concurrency check failed: " + e);
+                failures = 1;
+            } finally {
+                DBUtil.shutdown();
+            }
+            if (failures > 0) {
+                System.out.println("✗ " + failures + " concurrency checks failed");
+                System.exit(1);
+            }
+            System.out.println("✓ All concurrency checks passed");
+            return;
+        }
+
+        if (flags.contains("--load") || flags.contains("--replay")) {
+            if (DBUtil.isSharded()) {
+                System.out.println("✗ The load generator and replay tool need a single database; unset banking.db.shards");
+                return;
+            }
+            try {
+                if (flags.contains("--replay")) {
+                    ReplayTool.run(CliUtil.parseOptions(args));
+                } else {
+                    CustomerLoadGenerator.run(CliUtil.parseOptions(args));
                 }
+            } catch (Exception e) {
+                System.err.println("✗ Run failed: " + e.getMessage());
+            } finally {
+                DBUtil.shutdown();
             }
+            return;
+        }
 
-            double amount = InputUtil.getDouble("Enter amount: ₹");
-            String memo = InputUtil.getString("Enter description: ");
+        try {
+            // Test every database connection at once
+            Startup.phase("database", () -> DBUtil.fanOut(conn -> null));
+            System.out.println("✓ Database connection successful!");
+            if (DBUtil.isSharded()) {
+                if (flags.contains("--snapshot") || flags.contains("--post-file")) {
+                    System.out.println("✗ Snapshots and bulk posting need a single database; unset banking.db.shards");
+                    DBUtil.shutdown();
+                    return;
+                }
+                Startup.phase("shards", DBUtil::ensureShards);
+                System.out.println("✓ Accounts sharded across " + DBUtil.shardCount() + " databases");
+            }
+            if (flags.contains("--snapshot")) {
+                BalanceSlots.prepare();
+                long started = System.nanoTime();
+                long[] written = LedgerSnapshot.write(Paths.get(LEDGER_SNAPSHOT));
+                System.out.printf("✓ Snapshot of %,d accounts written to %s (%,d bytes) in %d ms%n", written[0],
+                        LEDGER_SNAPSHOT, written[1], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                DBUtil.shutdown();
+                return;
+            }
 
-            System.out.print("Enter schedule date (YYYY-MM-DD): ");
-            String dateStr = sc.nextLine().trim();
+            BankingServices services = Startup.core();
 
-            try {
-                LocalDate scheduleDate = LocalDate.parse(dateStr);
+            // Metrics endpoint: always in service mode, in console mode only when a port is given
+            MetricsHttpExporter metricsExporter = null;
+            if (METRICS_ENABLED && (serve || terminal || System.getProperty("banking.metrics.port") != null)) {
+                metricsExporter = new MetricsHttpExporter();
+                metricsExporter.start(METRICS_PORT);
+                System.out.println("✓ Metrics at http://localhost:" + METRICS_PORT + "/metrics");
+            }
+            MetricsHttpExporter metrics = metricsExporter;
 
-                if (scheduleDate.isBefore(LocalDate.now())) {
-                    System.out.println("Schedule date cannot be in the past.");
+            int postFile = flags.indexOf("--post-file");
+            if (postFile >= 0) {
+                if (postFile + 1 >= args.length) {
+                    System.out.println("✗ Usage: --post-file <postings.csv> [chunk=N]");
                     return;
                 }
-
-                if (scheduledManager.scheduleTransaction(accountNo, txnType, amount, memo, scheduleDate)) {
-                    System.out.println("✓ Transaction scheduled successfully!");
-                } else {
-                    System.out.println("✗ Failed to schedule transaction.");
+                BulkPostingJob job = new BulkPostingJob(Paths.get(args[postFile + 1]), services.getAuditLogger(),
+                        CliUtil.intOption(CliUtil.parseOptions(args), "chunk", BULK_CHUNK_ROWS));
+                Result<Map<String, Object>> result = job.run();
+                System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isSuccess()) {
+                    System.out.println(JsonUtil.toJson(result.getValue()));
                 }
+                DBUtil.shutdown();
+                return;
+            }
 
-            } catch (Exception e) {
-                System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+            if (flags.contains("--slot-bench")) {
+                BalanceSlots.benchmark(services.getAccountManager(), CliUtil.parseOptions(args));
+                DBUtil.shutdown();
+                return;
             }
-        }
 
-        private void cancelScheduledTransaction(int accountNo) {
-            scheduledManager.viewPendingScheduledTransactions(accountNo);
+            if (flags.contains("--reverse")) {
+                Map<String, String> options = CliUtil.parseOptions(args);
+                ReversalJob job = new ReversalJob(services.getAuditLogger(), ReversalJob.Criteria.fromOptions(options),
+                        options.get("reason"), Boolean.parseBoolean(options.get("dryRun")),
+                        Boolean.parseBoolean(options.get("allowNegative")),
+                        CliUtil.intOption(options, "chunk", BULK_CHUNK_ROWS));
+                Result<Map<String, Object>> result = job.run();
+                System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isSuccess()) {
+                    System.out.println(JsonUtil.toJson(result.getValue()));
+                }
+                DBUtil.shutdown();
+                return;
+            }
 
-            int scheduledId = InputUtil.getInt("Enter ID of transaction to cancel (0 to go back): ");
+            if (flags.contains("--accrue-interest") || flags.contains("--post-interest")) {
+                Map<String, String> options = CliUtil.parseOptions(args);
+                InterestAccrualJob job = new InterestAccrualJob(services.getAuditLogger(),
+                        options.containsKey("date") ? LocalDate.parse(options.get("date")) : LocalDate.now(),
+                        CliUtil.intOption(options, "range", ACCRUAL_RANGE_ACCOUNTS));
+                Result<Map<String, Object>> result = flags.contains("--post-interest") ? job.post() : job.accrue();
+                System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isSuccess()) {
+                    System.out.println(JsonUtil.toJson(result.getValue()));
+                }
+                DBUtil.shutdown();
+                return;
+            }
 
-            if (scheduledId == 0) {
+            int onboardFile = flags.indexOf("--onboard-file");
+            if (onboardFile >= 0) {
+                if (onboardFile + 1 >= args.length) {
+                    System.out.println("✗ Usage: --onboard-file <customers.csv> [chunk=N]");
+                    DBUtil.shutdown();
+                    return;
+                }
+                OnboardingJob job = new OnboardingJob(Paths.get(args[onboardFile + 1]), services.getAccountManager(),
+                        services.getAuditLogger(), CliUtil.intOption(CliUtil.parseOptions(args), "chunk", BULK_CHUNK_ROWS));
+                Result<Map<String, Object>> result = job.run();
+                System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isSuccess()) {
+                    System.out.println(JsonUtil.toJson(result.getValue()));
+                }
+                DBUtil.shutdown();
                 return;
             }
 
-            String confirmation = InputUtil.getString("Are you sure you want to cancel this scheduled transaction? (yes/no): ");
+            if (flags.contains("--statements")) {
+                Map<String, String> options = CliUtil.parseOptions(args);
+                StatementRun run = new StatementRun(services.getAuditLogger(),
+                        options.containsKey("month") ? YearMonth.parse(options.get("month"))
+                                : YearMonth.now().minusMonths(1),
+                        Paths.get(options.getOrDefault("out", STATEMENT_DIR)),
+                        CliUtil.intOption(options, "threads", STATEMENT_THREADS),
+                        options.getOrDefault("format", "both"));
+                Result<Map<String, Object>> result = run.run();
+                System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isSuccess()) {
+                    System.out.println(JsonUtil.toJson(result.getValue()));
+                }
+                DBUtil.shutdown();
+                return;
+            }
 
-            if ("yes".equalsIgnoreCase(confirmation)) {
-                if (scheduledManager.cancelScheduledTransaction(scheduledId, accountNo)) {
-                    System.out.println("✓ Scheduled transaction cancelled successfully!");
-                } else {
-                    System.out.println("✗ Failed to cancel scheduled transaction.");
+            if (flags.contains("--mature-deposits")) {
+                Map<String, String> options = CliUtil.parseOptions(args);
+                FixedDepositMaturityJob job = new FixedDepositMaturityJob(services.getAuditLogger(),
+                        options.containsKey("date") ? LocalDate.parse(options.get("date")) : LocalDate.now(),
+                        CliUtil.intOption(options, "threads", MATURITY_THREADS),
+                        CliUtil.intOption(options, "chunk", MATURITY_CHUNK_ROWS));
+                Result<Map<String, Object>> result = job.run();
+                System.out.println((result.isSuccess() ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isSuccess()) {
+                    System.out.println(JsonUtil.toJson(result.getValue()));
                 }
+                DBUtil.shutdown();
+                return;
             }
-        }
-    }
 
-    // ═══════════════════════════════════════════════════════════════
-    //                           MAIN METHOD
-    // ═══════════════════════════════════════════════════════════════
+            if (serve || terminal) {
+                // Headless service mode: the server threads keep the JVM alive
+                services.getAuditLogger().log("SYSTEM_STARTUP", "Banking service started, core ready in " + Startup.summary());
 
-    /**
-     * Application entry point
-     */
-    public static void main(String[] args) {
-        try {
-            // Test database connection
-            try (Connection conn = DBUtil.getConnection()) {
-                System.out.println("✓ Database connection successful!");
+                BankingHttpServer httpServer = serve ? new BankingHttpServer(services) : null;
+                TerminalServer terminalServer = terminal ? new TerminalServer(services.getAccountManager()) : null;
+                if (httpServer != null) {
+                    httpServer.start(HTTP_PORT);
+                    System.out.println("✓ Banking service listening on port " + HTTP_PORT);
+                }
+                if (terminalServer != null) {
+                    terminalServer.start(TERMINAL_PORT);
+                    System.out.println("✓ Terminal protocol listening on port " + TERMINAL_PORT);
+                }
+                Startup.catchUp(services, true);
+
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    if (httpServer != null) httpServer.stop();
+                    if (terminalServer != null) terminalServer.stop();
+                    if (metrics != null) metrics.stop();
+                    Startup.stopCatchUp();
+                    services.getAuditLogger().log("SYSTEM_SHUTDOWN", "Banking service shutdown");
+                    DBUtil.shutdown();
+                }));
+                return;
             }
 
             // Start the application
-            MainMenuController controller = new MainMenuController();
+            Startup.catchUp(services, false);
+            MainMenuController controller = new MainMenuController(services);
             controller.start();
+            Startup.stopCatchUp();
+            if (metrics != null) metrics.stop();
+            DBUtil.shutdown();
 
         } catch (SQLException e) {
             System.err.println("✗ Database connection failed!");
@@ -2293,4 +13909,4 @@ public class BankingSystemSQLComplete {
 /*
  * Author: Samruddha Belsare
  * Updated: 07-Oct-2025
- */
\ No newline at end of file
+ */
@@ -0,0 +1,58 @@
+package banking_system_console;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Row-to-Account mapping done for every account lookup. The ResultSet is an in-memory
+ * proxy, so the score includes one proxy dispatch per column on top of the mapping itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountMappingBenchmark {
+
+    private ResultSet row;
+
+    @Setup
+    public void setup() {
+        BigDecimal balance = new BigDecimal("125430.75");
+        BigDecimal dailyLimit = new BigDecimal("20000.00");
+        Date lastInterest = Date.valueOf(LocalDate.of(2025, 9, 1));
+        Date lastReset = Date.valueOf(LocalDate.of(2025, 10, 6));
+        String pinHash = BankingSystemSQLComplete.SecurityUtil.hashPin("1234");
+
+        row = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String column = args != null && args.length == 1 ? String.valueOf(args[0]) : "";
+                    return switch (column) {
+                        case "account_no" -> 1001;
+                        case "holder_name" -> "Asha Kulkarni";
+                        case "account_type" -> "Savings";
+                        case "balance" -> balance;
+                        case "active" -> true;
+                        case "pin_hash" -> pinHash;
+                        case "last_interest_date" -> lastInterest;
+                        case "failed_login_attempts" -> 0;
+                        case "locked" -> false;
+                        case "daily_limit" -> dailyLimit;
+                        case "last_daily_reset" -> lastReset;
+                        default -> throw new SQLException("Unexpected call " + method.getName() + "(" + column + ")");
+                    };
+                });
+    }
+
+    @Benchmark
+    public BankingSystemSQLComplete.Account mapResultSetToAccount() throws SQLException {
+        return BankingSystemSQLComplete.AccountManager.mapResultSetToAccount(row);
+    }
+}
@@ -0,0 +1,39 @@
+package banking_system_console;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Console input parsing; the invalid cases measure the exception path taken on a typo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputParsingBenchmark {
+
+    public String amount = " 2500.50 ";
+    public String accountNo = " 1001 ";
+    public String typo = "25OO";
+
+    @Benchmark
+    public double parseDouble() {
+        return BankingSystemSQLComplete.InputUtil.parseDouble(amount);
+    }
+
+    @Benchmark
+    public int parseInt() {
+        return BankingSystemSQLComplete.InputUtil.parseInt(accountNo);
+    }
+
+    @Benchmark
+    public int parseIntInvalid() {
+        try {
+            return BankingSystemSQLComplete.InputUtil.parseInt(typo);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
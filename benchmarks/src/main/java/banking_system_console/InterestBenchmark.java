@@ -0,0 +1,27 @@
+package banking_system_console;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BigDecimal monthly interest calculation from applyInterestIfDue
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterestBenchmark {
+
+    @Param({"Savings", "Business"})
+    public String accountType;
+
+    private final BigDecimal balance = new BigDecimal("125430.75");
+
+    @Benchmark
+    public BigDecimal calculateMonthlyInterest() {
+        return BankingSystemSQLComplete.AccountManager.calculateMonthlyInterest(balance, accountType);
+    }
+}
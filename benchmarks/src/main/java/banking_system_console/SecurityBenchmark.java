@@ -0,0 +1,29 @@
+package banking_system_console;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PIN hashing and validation, run on every login and PIN check
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityBenchmark {
+
+    @Param({"1234"})
+    public String pin;
+
+    @Benchmark
+    public String hashPin() {
+        return BankingSystemSQLComplete.SecurityUtil.hashPin(pin);
+    }
+
+    @Benchmark
+    public boolean validatePin() {
+        return BankingSystemSQLComplete.SecurityUtil.validatePin(pin);
+    }
+}
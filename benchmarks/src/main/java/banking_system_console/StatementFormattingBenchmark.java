@@ -0,0 +1,60 @@
+package banking_system_console;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Transaction history rendering (the formatting behind "Transaction History"), printed
+ * into a discarding stream so that only formatting and encoding are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementFormattingBenchmark {
+
+    @Param({"10", "50"})
+    public int rows;
+
+    private BankingSystemSQLComplete.Account account;
+    private List<BankingSystemSQLComplete.Transaction> transactions;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setup() {
+        account = new BankingSystemSQLComplete.Account();
+        account.setAccountNo(1001);
+        account.setHolderName("Asha Kulkarni");
+        account.setBalance(new BigDecimal("125430.75"));
+
+        transactions = new ArrayList<>();
+        LocalDateTime time = LocalDateTime.of(2025, 10, 7, 9, 30);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(new BankingSystemSQLComplete.Transaction(i + 1, 1001,
+                    i % 3 == 0 ? "DEPOSIT" : "WITHDRAWAL", new BigDecimal("1500.00").add(BigDecimal.valueOf(i)),
+                    "Cash deposit", time.minusHours(i), i % 10 == 9 ? i : null));
+        }
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void printTransactionHistory() {
+        BankingSystemSQLComplete.ConsoleView.printTransactionHistory(account, transactions);
+    }
+}